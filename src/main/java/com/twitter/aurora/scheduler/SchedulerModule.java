@@ -54,6 +54,14 @@ public class SchedulerModule extends AbstractModule {
   @CmdLine(name = "gc_executor_path", help = "Path to the gc executor launch script.")
   private static final Arg<String> GC_EXECUTOR_PATH = Arg.create(null);
 
+  @CmdLine(name = "gc_executor_incremental",
+      help = "If true, only send the GC executor the task changes on a host since the last "
+          + "message it accepted, rather than all tasks on the host.  Changes are only sent to "
+          + "executors that report support for them, others are always sent all tasks.  An "
+          + "executor that predates this support would kill tasks missing from the changes, so "
+          + "disable this before rolling GC executors back to such a version.")
+  private static final Arg<Boolean> GC_EXECUTOR_INCREMENTAL = Arg.create(false);
+
   @Override
   protected void configure() {
     bind(Driver.class).to(DriverImpl.class);
@@ -68,11 +76,13 @@ public class SchedulerModule extends AbstractModule {
 
     bind(new TypeLiteral<Optional<String>>() { }).annotatedWith(GcExecutor.class)
         .toInstance(Optional.fromNullable(GC_EXECUTOR_PATH.get()));
+    bind(Boolean.class).annotatedWith(GcExecutor.class).toInstance(GC_EXECUTOR_INCREMENTAL.get());
     bind(new TypeLiteral<PulseMonitor<String>>() { })
         .annotatedWith(GcExecutor.class)
         .toInstance(new PulseMonitorImpl<String>(EXECUTOR_GC_INTERVAL.get()));
 
     bind(GcExecutorLauncher.class).in(Singleton.class);
+    PubsubEventModule.bindSubscriber(binder(), GcExecutorLauncher.class);
     bind(UserTaskLauncher.class).in(Singleton.class);
 
     bind(SchedulerLifecycle.class).in(Singleton.class);
@@ -42,6 +42,7 @@ import com.twitter.aurora.scheduler.http.ServletModule;
 import com.twitter.aurora.scheduler.metadata.MetadataModule;
 import com.twitter.aurora.scheduler.state.StateModule;
 import com.twitter.aurora.scheduler.stats.AsyncStatsModule;
+import com.twitter.aurora.scheduler.stats.TimedHistogramInterceptor;
 import com.twitter.common.application.ShutdownRegistry;
 import com.twitter.common.application.modules.LifecycleModule;
 import com.twitter.common.base.Command;
@@ -83,6 +84,7 @@ class AppModule extends AbstractModule {
   protected void configure() {
     // Enable intercepted method timings and context classloader repair.
     TimedInterceptor.bind(binder());
+    TimedHistogramInterceptor.bind(binder());
     GuiceUtils.bindJNIContextClassLoader(binder(), Scheduler.class);
     GuiceUtils.bindExceptionTrap(binder(), Scheduler.class);
 
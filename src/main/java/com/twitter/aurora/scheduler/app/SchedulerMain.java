@@ -42,7 +42,7 @@ import com.twitter.aurora.scheduler.SchedulerLifecycle;
 import com.twitter.aurora.scheduler.SchedulerLifecycle.ShutdownOnDriverExit;
 import com.twitter.aurora.scheduler.cron.CronPredictor;
 import com.twitter.aurora.scheduler.cron.CronScheduler;
-import com.twitter.aurora.scheduler.cron.noop.NoopCronModule;
+import com.twitter.aurora.scheduler.cron.timer.TimerCronModule;
 import com.twitter.aurora.scheduler.local.IsolatedSchedulerModule;
 import com.twitter.aurora.scheduler.log.mesos.MesosLogStreamModule;
 import com.twitter.aurora.scheduler.quota.QuotaManager;
@@ -117,9 +117,9 @@ public class SchedulerMain extends AbstractApplication {
       .build();
 
   @CmdLine(name = "cron_module",
-      help = "A Guice module to provide cron bindings. NOTE: The default is a no-op.")
+      help = "A Guice module to provide cron bindings.")
   private static final Arg<? extends Class<? extends Module>> CRON_MODULE =
-      Arg.create(NoopCronModule.class);
+      Arg.create(TimerCronModule.class);
 
   private static final Iterable<Class<?>> CRON_MODULE_CLASSES = ImmutableList.<Class<?>>builder()
       .add(CronPredictor.class)
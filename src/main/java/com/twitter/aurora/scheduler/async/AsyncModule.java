@@ -108,6 +108,12 @@ public class AsyncModule extends AbstractModule {
   private static final Arg<Amount<Long, Time>> PREEMPTION_DELAY =
       Arg.create(Amount.of(10L, Time.MINUTES));
 
+  @CmdLine(name = "offer_placement_policy",
+      help = "Policy for choosing among offers that fit a task: FIRST_FIT, BEST_FIT (pack tasks "
+          + "onto the smallest offers) or WORST_FIT (spread tasks onto the largest offers).")
+  private static final Arg<PlacementPolicy> PLACEMENT_POLICY =
+      Arg.create(PlacementPolicy.FIRST_FIT);
+
   @CmdLine(name = "enable_preemptor",
       help = "Enable the preemptor and preemption")
   private static final Arg<Boolean> ENABLE_PREEMPTOR = Arg.create(true);
@@ -176,6 +182,7 @@ public class AsyncModule extends AbstractModule {
     binder().install(new PrivateModule() {
       @Override protected void configure() {
         bind(OfferReturnDelay.class).to(RandomJitterReturnDelay.class);
+        bind(PlacementPolicy.class).toInstance(PLACEMENT_POLICY.get());
         bind(ScheduledExecutorService.class).toInstance(executor);
         bind(OfferQueue.class).to(OfferQueueImpl.class);
         bind(OfferQueueImpl.class).in(Singleton.class);
@@ -15,6 +15,7 @@
  */
 package com.twitter.aurora.scheduler.async;
 
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
@@ -32,8 +33,10 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.eventbus.Subscribe;
 
@@ -41,14 +44,15 @@ import org.apache.mesos.Protos.Offer;
 import org.apache.mesos.Protos.OfferID;
 import org.apache.mesos.Protos.TaskInfo;
 
-import com.twitter.aurora.gen.HostStatus;
 import com.twitter.aurora.gen.MaintenanceMode;
 import com.twitter.aurora.scheduler.Driver;
+import com.twitter.aurora.scheduler.configuration.Resources;
 import com.twitter.aurora.scheduler.events.PubsubEvent.DriverDisconnected;
 import com.twitter.aurora.scheduler.events.PubsubEvent.EventSubscriber;
 import com.twitter.aurora.scheduler.events.PubsubEvent.HostMaintenanceStateChange;
 import com.twitter.aurora.scheduler.state.MaintenanceController;
 import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
 import com.twitter.common.quantity.Time;
 import com.twitter.common.stats.Stats;
 
@@ -79,6 +83,7 @@ public interface OfferQueue extends EventSubscriber {
 
   /**
    * Launches the first task that satisfies the {@code acceptor} by returning a {@link TaskInfo}.
+   * Offers are presented to the acceptor in the order dictated by the {@link PlacementPolicy}.
    *
    * @param acceptor Function that determines if an offer is accepted.
    * @return {@code true} if the task was launched, {@code false} if no offers satisfied the
@@ -126,15 +131,35 @@ public interface OfferQueue extends EventSubscriber {
   class OfferQueueImpl implements OfferQueue {
     private static final Logger LOG = Logger.getLogger(OfferQueueImpl.class.getName());
 
-    static final Comparator<HostOffer> PREFERENCE_COMPARATOR =
-        // Currently, the only preference is based on host maintenance status.
+    private static final Ordering<HostOffer> MODE_ORDER =
         Ordering.explicit(NONE, SCHEDULED, DRAINING, DRAINED)
             .onResultOf(new Function<HostOffer, MaintenanceMode>() {
               @Override public MaintenanceMode apply(HostOffer offer) {
                 return offer.mode;
               }
-            })
-            .compound(Ordering.arbitrary());
+            });
+
+    static final Comparator<HostOffer> PREFERENCE_COMPARATOR =
+        // Currently, the only preference is based on host maintenance status.
+        MODE_ORDER.compound(Ordering.arbitrary());
+
+    private static final Ordering<ScoredOffer> SMALLEST_FIRST = new Ordering<ScoredOffer>() {
+      @Override public int compare(ScoredOffer left, ScoredOffer right) {
+        return ComparisonChain.start()
+            .compare(left.hostOffer, right.hostOffer, MODE_ORDER)
+            .compare(left.score, right.score)
+            .result();
+      }
+    };
+
+    private static final Ordering<ScoredOffer> LARGEST_FIRST = new Ordering<ScoredOffer>() {
+      @Override public int compare(ScoredOffer left, ScoredOffer right) {
+        return ComparisonChain.start()
+            .compare(left.hostOffer, right.hostOffer, MODE_ORDER)
+            .compare(right.score, left.score)
+            .result();
+      }
+    };
 
     private final Set<HostOffer> hostOffers = new ConcurrentSkipListSet<>(PREFERENCE_COMPARATOR);
     private final AtomicLong offerRaces = Stats.exportLong("offer_accept_races");
@@ -143,17 +168,20 @@ public interface OfferQueue extends EventSubscriber {
     private final OfferReturnDelay returnDelay;
     private final ScheduledExecutorService executor;
     private final MaintenanceController maintenance;
+    private final PlacementPolicy placementPolicy;
 
     @Inject
     OfferQueueImpl(Driver driver,
         OfferReturnDelay returnDelay,
         ScheduledExecutorService executor,
-        MaintenanceController maintenance) {
+        MaintenanceController maintenance,
+        PlacementPolicy placementPolicy) {
 
       this.driver = driver;
       this.returnDelay = returnDelay;
       this.executor = executor;
       this.maintenance = maintenance;
+      this.placementPolicy = Preconditions.checkNotNull(placementPolicy);
       // Potential gotcha - since this is now a ConcurrentSkipListSet, size() is more expensive.
       // Could track this separately if it turns out to pose problems.
       Stats.exportSize("outstanding_offers", hostOffers);
@@ -242,13 +270,14 @@ public interface OfferQueue extends EventSubscriber {
      */
     @Subscribe
     public void hostChangedState(HostMaintenanceStateChange change) {
-      final HostStatus hostStatus = change.getStatus();
+      final String host = change.getStatus().getHost();
+      final MaintenanceMode mode = maintenance.getMode(host);
 
       // Remove and re-add a host's offers to re-sort based on its new hostStatus
       Set<HostOffer> changedOffers = FluentIterable.from(hostOffers)
           .filter(new Predicate<HostOffer>() {
             @Override public boolean apply(HostOffer hostOffer) {
-              return hostOffer.offer.getHostname().equals(hostStatus.getHost());
+              return hostOffer.offer.getHostname().equals(host);
             }
           })
           .toSet();
@@ -257,7 +286,7 @@ public interface OfferQueue extends EventSubscriber {
           FluentIterable.from(changedOffers)
               .transform(new Function<HostOffer, HostOffer>() {
                 @Override public HostOffer apply(HostOffer hostOffer) {
-                  return new HostOffer(hostOffer.offer, hostStatus.getMode());
+                  return new HostOffer(hostOffer, mode);
                 }
               })
               .toSet());
@@ -278,15 +307,31 @@ public interface OfferQueue extends EventSubscriber {
     }
 
     /**
-     * Encapsulate an offer from a host, and the host's maintenance mode.
+     * Encapsulate an offer from a host, and the host's maintenance mode.  The offered resources
+     * are extracted once, so that offers may be repeatedly scored for placement.
      */
     private static class HostOffer {
       private final Offer offer;
       private final MaintenanceMode mode;
+      private final double cpus;
+      private final double ramMb;
+      private final double diskMb;
 
       HostOffer(Offer offer, MaintenanceMode mode) {
         this.offer = offer;
         this.mode = mode;
+        Resources resources = Resources.from(offer);
+        this.cpus = resources.getNumCpus();
+        this.ramMb = resources.getRam().as(Data.MB);
+        this.diskMb = resources.getDisk().as(Data.MB);
+      }
+
+      HostOffer(HostOffer hostOffer, MaintenanceMode mode) {
+        this.offer = hostOffer.offer;
+        this.mode = mode;
+        this.cpus = hostOffer.cpus;
+        this.ramMb = hostOffer.ramMb;
+        this.diskMb = hostOffer.diskMb;
       }
 
       @Override
@@ -304,6 +349,61 @@ public interface OfferQueue extends EventSubscriber {
       }
     }
 
+    private static class ScoredOffer {
+      private final HostOffer hostOffer;
+      private final double score;
+
+      ScoredOffer(HostOffer hostOffer, double score) {
+        this.hostOffer = hostOffer;
+        this.score = score;
+      }
+    }
+
+    private static double share(double value, double max) {
+      return (max > 0) ? value / max : 0;
+    }
+
+    /**
+     * Orders held offers according to the placement policy.  The acceptor assigns the task as a
+     * side effect of accepting an offer, so rather than trying the task against every offer,
+     * offers are ordered by their size and the acceptor is applied in that order.
+     *
+     * @return Offers in the order they should be presented to a task.
+     */
+    private Iterable<HostOffer> orderedOffers() {
+      if (placementPolicy == PlacementPolicy.FIRST_FIT) {
+        return hostOffers;
+      }
+
+      List<HostOffer> offers = Lists.newArrayList();
+      double maxCpus = 0;
+      double maxRamMb = 0;
+      double maxDiskMb = 0;
+      for (HostOffer hostOffer : hostOffers) {
+        offers.add(hostOffer);
+        maxCpus = Math.max(maxCpus, hostOffer.cpus);
+        maxRamMb = Math.max(maxRamMb, hostOffer.ramMb);
+        maxDiskMb = Math.max(maxDiskMb, hostOffer.diskMb);
+      }
+
+      List<ScoredOffer> scored = Lists.newArrayListWithCapacity(offers.size());
+      for (HostOffer hostOffer : offers) {
+        double dominantShare = Math.max(
+            share(hostOffer.cpus, maxCpus),
+            Math.max(share(hostOffer.ramMb, maxRamMb), share(hostOffer.diskMb, maxDiskMb)));
+        scored.add(new ScoredOffer(hostOffer, dominantShare));
+      }
+      Collections.sort(
+          scored,
+          (placementPolicy == PlacementPolicy.BEST_FIT) ? SMALLEST_FIRST : LARGEST_FIRST);
+
+      return Lists.transform(scored, new Function<ScoredOffer, HostOffer>() {
+        @Override public HostOffer apply(ScoredOffer offer) {
+          return offer.hostOffer;
+        }
+      });
+    }
+
     @Override
     public boolean launchFirst(Function<Offer, Optional<TaskInfo>> acceptor)
         throws LaunchException {
@@ -311,7 +411,7 @@ public interface OfferQueue extends EventSubscriber {
       // It's important that this method is not called concurrently - doing so would open up the
       // possibility of a race between the same offers being accepted by different threads.
 
-      for (HostOffer hostOffer : hostOffers) {
+      for (HostOffer hostOffer : orderedOffers()) {
         Optional<TaskInfo> assignment = acceptor.apply(hostOffer.offer);
         if (assignment.isPresent()) {
           // Guard against an offer being removed after we grabbed it from the iterator.
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.async;
+
+/**
+ * Determines the order in which held offers are presented to a task for placement.
+ * <p>
+ * Host maintenance mode always takes precedence, the policy only orders offers from hosts in the
+ * same maintenance mode.  Offers are sized by their dominant resource, which is the largest share
+ * of the cpu, ram or disk that the offer holds relative to the largest offer currently held.
+ */
+public enum PlacementPolicy {
+  /**
+   * Offers are tried in arbitrary order, and the first offer that fits is used.
+   */
+  FIRST_FIT,
+
+  /**
+   * Offers are tried smallest first, packing tasks onto the fullest hosts and leaving large
+   * offers available for large tasks.
+   */
+  BEST_FIT,
+
+  /**
+   * Offers are tried largest first, spreading tasks across hosts.
+   */
+  WORST_FIT
+}
@@ -17,6 +17,7 @@ package com.twitter.aurora.scheduler.async;
 
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -25,18 +26,15 @@ import java.util.logging.Logger;
 
 import javax.inject.Inject;
 
-import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
-import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -52,6 +50,7 @@ import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import com.twitter.aurora.scheduler.events.PubsubEvent.TasksDeleted;
 import com.twitter.aurora.scheduler.storage.Storage;
 import com.twitter.aurora.scheduler.storage.entities.IAssignedTask;
+import com.twitter.aurora.scheduler.storage.entities.IJobKey;
 import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
 import com.twitter.aurora.scheduler.storage.entities.ITaskConfig;
 import com.twitter.aurora.scheduler.storage.entities.ITaskEvent;
@@ -90,6 +89,7 @@ public class TaskGroups implements EventSubscriber {
   private final BackoffStrategy flappingBackoffStrategy;
   private final Clock clock;
   private final Preemptor preemptor;
+  private final Map<InstanceKey, FlapHistory> flapHistories = Maps.newHashMap();
 
   @Inject
   TaskGroups(
@@ -228,51 +228,99 @@ public class TaskGroups implements EventSubscriber {
     return Optional.fromNullable(Iterables.getOnlyElement(res, null));
   }
 
-  private static final Predicate<ScheduleStatus> IS_ACTIVE_STATUS =
-      Predicates.in(Tasks.ACTIVE_STATES);
-
-  private static final Function<ITaskEvent, ScheduleStatus> TO_STATUS =
-      new Function<ITaskEvent, ScheduleStatus>() {
-    @Override public ScheduleStatus apply(ITaskEvent input) {
-      return input.getStatus();
-    }
-  };
-
   private static final Set<ScheduleStatus> INTERRUPTED_TASK_STATES =
       EnumSet.of(RESTARTING, KILLING);
 
-  private final Predicate<IScheduledTask> flapped = new Predicate<IScheduledTask>() {
-    @Override public boolean apply(IScheduledTask task) {
-      if (!task.isSetTaskEvents()) {
-        return false;
-      }
+  /**
+   * Calculates the time a terminated task was active before it terminated.
+   *
+   * @param task Terminated task.
+   * @return The time the task was active, or absent if the task's events do not end in a terminal
+   *     state or the task was interrupted by outside action, such as a user restarting it.
+   */
+  private Optional<Long> getRunDurationMs(IScheduledTask task) {
+    if (!task.isSetTaskEvents() || task.getTaskEvents().isEmpty()) {
+      return Optional.absent();
+    }
 
-      List<ITaskEvent> events = Lists.reverse(task.getTaskEvents());
+    List<ITaskEvent> events = Lists.reverse(task.getTaskEvents());
+    ITaskEvent terminalEvent = events.get(0);
+    if (!Tasks.isTerminated(terminalEvent.getStatus())) {
+      return Optional.absent();
+    }
 
+    ITaskEvent activeEvent = null;
+    for (ITaskEvent event : events) {
       // Avoid penalizing tasks that were interrupted by outside action, such as a user
       // restarting them.
-      if (Iterables.any(Iterables.transform(events, TO_STATUS),
-          Predicates.in(INTERRUPTED_TASK_STATES))) {
-        return false;
+      if (INTERRUPTED_TASK_STATES.contains(event.getStatus())) {
+        return Optional.absent();
+      }
+      if ((activeEvent == null) && Tasks.isActive(event.getStatus())) {
+        activeEvent = event;
       }
+    }
 
-      ITaskEvent terminalEvent = Iterables.get(events, 0);
-      ScheduleStatus terminalState = terminalEvent.getStatus();
-      Preconditions.checkState(Tasks.isTerminated(terminalState));
+    return (activeEvent == null)
+        ? Optional.<Long>absent()
+        : Optional.of(terminalEvent.getTimestamp() - activeEvent.getTimestamp());
+  }
 
-      ITaskEvent activeEvent =
-          Iterables.find(events, Predicates.compose(IS_ACTIVE_STATUS, TO_STATUS));
+  private boolean flapped(IScheduledTask task) {
+    Optional<Long> runDurationMs = getRunDurationMs(task);
+    return runDurationMs.isPresent()
+        && (runDurationMs.get() < flappingThreshold.as(Time.MILLISECONDS));
+  }
 
-      long thresholdMs = flappingThreshold.as(Time.MILLISECONDS);
+  /**
+   * Records the flapping penalty incurred by a terminated task, to be applied to its replacement.
+   * The penalty grows for each consecutive flap of an instance, and is reset when a run is not
+   * considered a flap.
+   */
+  private void recordTerminated(IScheduledTask task) {
+    InstanceKey key = new InstanceKey(task.getAssignedTask());
+    FlapHistory history = flapHistories.get(key);
+    if ((history != null) && history.taskId.equals(Tasks.id(task))) {
+      return;
+    }
 
-      return (terminalEvent.getTimestamp() - activeEvent.getTimestamp()) < thresholdMs;
+    boolean continued = (history != null)
+        && task.isSetAncestorId()
+        && history.taskId.equals(task.getAncestorId());
+    long penaltyMs = 0;
+    if (flapped(task)) {
+      penaltyMs = flappingBackoffStrategy.calculateBackoffMs(continued ? history.penaltyMs : 0);
     }
-  };
+    flapHistories.put(key, new FlapHistory(Tasks.id(task), penaltyMs));
+  }
 
   private long getTaskReadyTimestamp(IScheduledTask task) {
+    if (!task.isSetAncestorId()) {
+      return clock.nowMillis();
+    }
+
+    InstanceKey key = new InstanceKey(task.getAssignedTask());
+    FlapHistory history = flapHistories.get(key);
+    long penaltyMs;
+    if ((history != null) && history.taskId.equals(task.getAncestorId())) {
+      penaltyMs = history.penaltyMs;
+    } else {
+      // The ancestor's termination has not been observed, fall back to walking the ancestry.
+      penaltyMs = getAncestryPenaltyMs(task);
+      flapHistories.put(key, new FlapHistory(task.getAncestorId(), penaltyMs));
+    }
+
+    if (penaltyMs > 0) {
+      LOG.info(String.format(
+          "Ancestor of %s flapped, delaying by %d ms", Tasks.id(task), penaltyMs));
+    }
+    return penaltyMs + clock.nowMillis();
+  }
+
+  private long getAncestryPenaltyMs(IScheduledTask task) {
     Optional<IScheduledTask> curTask = getTaskAncestor(task);
     long penaltyMs = 0;
-    while (curTask.isPresent() && flapped.apply(curTask.get())) {
+    while (curTask.isPresent() && flapped(curTask.get())) {
       LOG.info(
           String.format("Ancestor of %s flapped: %s", Tasks.id(task), Tasks.id(curTask.get())));
       long newPenalty = flappingBackoffStrategy.calculateBackoffMs(penaltyMs);
@@ -283,8 +331,7 @@ public class TaskGroups implements EventSubscriber {
       penaltyMs = newPenalty;
       curTask = getTaskAncestor(curTask.get());
     }
-
-    return penaltyMs + clock.nowMillis();
+    return penaltyMs;
   }
 
   /**
@@ -299,6 +346,8 @@ public class TaskGroups implements EventSubscriber {
   public synchronized void taskChangedState(TaskStateChange stateChange) {
     if (stateChange.getNewState() == PENDING) {
       add(stateChange.getTask().getAssignedTask(), getTaskReadyTimestamp(stateChange.getTask()));
+    } else if (Tasks.isTerminated(stateChange.getNewState())) {
+      recordTerminated(stateChange.getTask());
     }
   }
 
@@ -306,15 +355,41 @@ public class TaskGroups implements EventSubscriber {
    * Signals that storage has started and is consistent.
    * <p>
    * Upon this signal, all {@link com.twitter.aurora.gen.ScheduleStatus#PENDING} tasks in the stoage
-   * will become eligible for scheduling.
+   * will become eligible for scheduling.  The flapping history of each instance is rebuilt from the
+   * terminated tasks in the storage.
    *
    * @param event Storage started notification.
    */
   @Subscribe
   public void storageStarted(StorageStarted event) {
-    for (IScheduledTask task
-        : Storage.Util.consistentFetchTasks(storage, Query.unscoped().byStatus(PENDING))) {
+    // Tasks are fetched before acquiring the monitor, since state changes are delivered while
+    // holding the storage lock and then acquire the monitor.
+    Set<IScheduledTask> tasks = Storage.Util.consistentFetchTasks(storage, Query.unscoped());
+    rebuild(tasks);
+  }
+
+  private synchronized void rebuild(Set<IScheduledTask> tasks) {
+    flapHistories.clear();
+    List<IScheduledTask> terminated = Lists.newArrayList();
+    List<IScheduledTask> pending = Lists.newArrayList();
+    for (IScheduledTask task : tasks) {
+      if (task.getStatus() == PENDING) {
+        pending.add(task);
+      } else if (Tasks.isTerminated(task.getStatus())
+          && task.isSetTaskEvents()
+          && !task.getTaskEvents().isEmpty()) {
+
+        terminated.add(task);
+      }
+    }
+
+    // Ancestors terminate before their replacements, so replaying in order of activity rebuilds
+    // consecutive flaps.
+    for (IScheduledTask task : Tasks.LATEST_ACTIVITY.sortedCopy(terminated)) {
+      recordTerminated(task);
+    }
 
+    for (IScheduledTask task : pending) {
       add(task.getAssignedTask(), getTaskReadyTimestamp(task));
     }
   }
@@ -332,6 +407,12 @@ public class TaskGroups implements EventSubscriber {
       if (group != null) {
         group.remove(task.getTaskId());
       }
+
+      InstanceKey key = new InstanceKey(task);
+      FlapHistory history = flapHistories.get(key);
+      if ((history != null) && history.taskId.equals(task.getTaskId())) {
+        flapHistories.remove(key);
+      }
     }
   }
 
@@ -366,6 +447,47 @@ public class TaskGroups implements EventSubscriber {
     }
   }
 
+  /**
+   * Identifies an instance of a job, which is the unit that flapping penalties accumulate for.
+   */
+  private static class InstanceKey {
+    private final IJobKey jobKey;
+    private final int instanceId;
+
+    InstanceKey(IAssignedTask task) {
+      this.jobKey = Tasks.ASSIGNED_TO_JOB_KEY.apply(task);
+      this.instanceId = task.getInstanceId();
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(jobKey, instanceId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof InstanceKey)) {
+        return false;
+      }
+      InstanceKey other = (InstanceKey) o;
+      return Objects.equal(jobKey, other.jobKey) && (instanceId == other.instanceId);
+    }
+  }
+
+  /**
+   * The most recently terminated task of an instance, and the flapping penalty to apply to its
+   * replacement.
+   */
+  private static class FlapHistory {
+    private final String taskId;
+    private final long penaltyMs;
+
+    FlapHistory(String taskId, long penaltyMs) {
+      this.taskId = checkNotNull(taskId);
+      this.penaltyMs = penaltyMs;
+    }
+  }
+
   interface SchedulingAction {
     /**
      * Attempts to schedule a task, possibly performing irreversible actions.
@@ -31,6 +31,7 @@ import org.apache.mesos.Protos.TaskInfo;
 
 import com.twitter.aurora.scheduler.async.TaskGroups.SchedulingAction;
 import com.twitter.aurora.scheduler.base.Query;
+import com.twitter.aurora.scheduler.events.VetoAggregator;
 import com.twitter.aurora.scheduler.state.StateManager;
 import com.twitter.aurora.scheduler.state.TaskAssigner;
 import com.twitter.aurora.scheduler.storage.Storage;
@@ -59,6 +60,7 @@ class TaskScheduler implements SchedulingAction {
   private final StateManager stateManager;
   private final TaskAssigner assigner;
   private final OfferQueue offerQueue;
+  private final VetoAggregator vetoAggregator;
 
   private final AtomicLong scheduleAttemptsFired = Stats.exportLong("schedule_attempts_fired");
   private final AtomicLong scheduleAttemptsFailed = Stats.exportLong("schedule_attempts_failed");
@@ -68,12 +70,14 @@ class TaskScheduler implements SchedulingAction {
       Storage storage,
       StateManager stateManager,
       TaskAssigner assigner,
-      OfferQueue offerQueue) {
+      OfferQueue offerQueue,
+      VetoAggregator vetoAggregator) {
 
     this.storage = checkNotNull(storage);
     this.stateManager = checkNotNull(stateManager);
     this.assigner = checkNotNull(assigner);
     this.offerQueue = checkNotNull(offerQueue);
+    this.vetoAggregator = checkNotNull(vetoAggregator);
   }
 
   @VisibleForTesting
@@ -100,9 +104,13 @@ class TaskScheduler implements SchedulingAction {
                     return assigner.maybeAssign(offer, task);
                   }
                 };
+            // Vetoes from every offer tried are reduced to the closest fit for the attempt.
+            vetoAggregator.beginAttempt(taskId);
+            boolean assigned = true;
             try {
               if (!offerQueue.launchFirst(assignment)) {
                 // Task could not be scheduled.
+                assigned = false;
                 return false;
               }
             } catch (OfferQueue.LaunchException e) {
@@ -114,6 +122,8 @@ class TaskScheduler implements SchedulingAction {
               // Should the state change fail due to storage issues, that's okay.  The task will
               // time out in the ASSIGNED state and be moved to LOST.
               stateManager.changeState(pendingTaskQuery, LOST, LAUNCH_FAILED_MSG);
+            } finally {
+              vetoAggregator.endAttempt(assigned);
             }
           }
 
@@ -19,6 +19,7 @@ import java.util.EnumSet;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Ints;
@@ -28,9 +29,12 @@ import com.twitter.aurora.gen.InstanceKey;
 import com.twitter.aurora.gen.ScheduleStatus;
 import com.twitter.aurora.gen.TaskQuery;
 import com.twitter.aurora.scheduler.storage.entities.IJobKey;
+import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
+import com.twitter.aurora.scheduler.storage.entities.ITaskConfig;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isEmpty;
 
 /**
@@ -71,6 +75,66 @@ public final class Query {
     return jobKey.isPresent() && Query.jobScoped(jobKey.get()).equals(query);
   }
 
+  /**
+   * Creates a filter that matches tasks against every field of a query.
+   *
+   * @param query Query to match.
+   * @return A predicate that holds for tasks matching the query.
+   */
+  public static Predicate<IScheduledTask> filter(final TaskQuery query) {
+    return new Predicate<IScheduledTask>() {
+      @Override public boolean apply(IScheduledTask task) {
+        ITaskConfig config = task.getAssignedTask().getTask();
+        if (query.getOwner() != null) {
+          if (!isBlank(query.getOwner().getRole())) {
+            if (!query.getOwner().getRole().equals(config.getOwner().getRole())) {
+              return false;
+            }
+          }
+          if (!isBlank(query.getOwner().getUser())) {
+            if (!query.getOwner().getUser().equals(config.getOwner().getUser())) {
+              return false;
+            }
+          }
+        }
+        if (query.getEnvironment() != null) {
+          if (!query.getEnvironment().equals(config.getEnvironment())) {
+            return false;
+          }
+        }
+        if (query.getJobName() != null) {
+          if (!query.getJobName().equals(config.getJobName())) {
+            return false;
+          }
+        }
+
+        if (query.getTaskIds() != null) {
+          if (!query.getTaskIds().contains(Tasks.id(task))) {
+            return false;
+          }
+        }
+
+        if (query.getStatusesSize() > 0) {
+          if (!query.getStatuses().contains(task.getStatus())) {
+            return false;
+          }
+        }
+        if (!isEmpty(query.getSlaveHost())) {
+          if (!query.getSlaveHost().equals(task.getAssignedTask().getSlaveHost())) {
+            return false;
+          }
+        }
+        if (query.getInstanceIdsSize() > 0) {
+          if (!query.getInstanceIds().contains(task.getAssignedTask().getInstanceId())) {
+            return false;
+          }
+        }
+
+        return true;
+      }
+    };
+  }
+
   public static Builder arbitrary(TaskQuery query) {
     return new Builder(query.deepCopy());
   }
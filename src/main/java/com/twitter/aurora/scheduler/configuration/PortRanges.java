@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.configuration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.Sets;
+import com.google.common.collect.TreeRangeSet;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A set of ports held as disjoint ranges, so that ports can be counted and selected without
+ * enumerating every port in an offer.
+ */
+final class PortRanges {
+
+  // Disjoint, non-adjacent and ordered ranges, each closed below and open above.
+  private final List<Range<Integer>> ranges;
+  private final int size;
+
+  private PortRanges(List<Range<Integer>> ranges, int size) {
+    this.ranges = ranges;
+    this.size = size;
+  }
+
+  /**
+   * Creates a port set from mesos ranges, which may overlap.
+   *
+   * @param mesosRanges Ranges of ports.
+   * @return The ports in the ranges.
+   */
+  static PortRanges from(Iterable<org.apache.mesos.Protos.Value.Range> mesosRanges) {
+    RangeSet<Integer> rangeSet = TreeRangeSet.create();
+    for (org.apache.mesos.Protos.Value.Range range : mesosRanges) {
+      rangeSet.add(Range.closed((int) range.getBegin(), (int) range.getEnd())
+          .canonical(DiscreteDomain.integers()));
+    }
+
+    int size = 0;
+    for (Range<Integer> range : rangeSet.asRanges()) {
+      size += range.upperEndpoint() - range.lowerEndpoint();
+    }
+    return new PortRanges(ImmutableList.copyOf(rangeSet.asRanges()), size);
+  }
+
+  /**
+   * Gets the number of ports in the set.
+   *
+   * @return The number of ports.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Selects distinct ports uniformly at random.
+   *
+   * @param count Number of ports to select.
+   * @param random Source of randomness.
+   * @return {@code count} ports from the set, in random order.
+   */
+  Set<Integer> select(int count, Random random) {
+    checkArgument(count >= 0 && count <= size);
+    checkNotNull(random);
+
+    // Pick distinct offsets into the set using Floyd's algorithm, which needs only as many draws
+    // and as much space as the number of ports selected.
+    Set<Integer> chosen = Sets.newHashSetWithExpectedSize(count);
+    for (int bound = size - count; bound < size; bound++) {
+      int offset = random.nextInt(bound + 1);
+      chosen.add(chosen.contains(offset) ? bound : offset);
+    }
+
+    // Map the offsets to ports with a single pass over the ranges.
+    int[] offsets = new int[count];
+    int i = 0;
+    for (int offset : chosen) {
+      offsets[i++] = offset;
+    }
+    Arrays.sort(offsets);
+
+    List<Integer> ports = Lists.newArrayListWithCapacity(count);
+    int rangeStart = 0;
+    i = 0;
+    for (Range<Integer> range : ranges) {
+      int rangeSize = range.upperEndpoint() - range.lowerEndpoint();
+      while (i < count && offsets[i] < rangeStart + rangeSize) {
+        ports.add(range.lowerEndpoint() + offsets[i] - rangeStart);
+        i++;
+      }
+      rangeStart += rangeSize;
+    }
+
+    // Offsets were visited in order, so shuffle to avoid favoring low ports for the first names.
+    Collections.shuffle(ports, random);
+    return ImmutableSet.copyOf(ports);
+  }
+}
@@ -15,23 +15,19 @@
  */
 package com.twitter.aurora.scheduler.configuration;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
-import com.google.common.collect.ContiguousSet;
-import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
-import com.google.common.collect.Sets;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.mesos.Protos.Offer;
@@ -59,14 +55,7 @@ public class Resources {
   public static final String DISK_MB = "disk";
   public static final String PORTS = "ports";
 
-  private static final Function<Range, Set<Integer>> RANGE_TO_MEMBERS =
-      new Function<Range, Set<Integer>>() {
-        @Override public Set<Integer> apply(Range range) {
-          return ContiguousSet.create(
-              com.google.common.collect.Range.closed((int) range.getBegin(), (int) range.getEnd()),
-              DiscreteDomain.integers());
-        }
-      };
+  private static final Random PORT_SELECTOR = new Random();
 
   private final double numCpus;
   private final Amount<Long, Data> disk;
@@ -242,11 +231,7 @@ public class Resources {
   }
 
   private static int getNumAvailablePorts(List<Resource> resource) {
-    int offeredPorts = 0;
-    for (Range range : getPortRanges(resource)) {
-      offeredPorts += 1 + (range.getEnd() - range.getBegin());
-    }
-    return offeredPorts;
+    return PortRanges.from(getPortRanges(resource)).size();
   }
 
   private static double getScalarValue(Offer offer, String key) {
@@ -383,17 +368,13 @@ public class Resources {
       return ImmutableSet.of();
     }
 
-    List<Integer> availablePorts = Lists.newArrayList(Sets.newHashSet(
-        Iterables.concat(
-            Iterables.transform(getPortRanges(offer.getResourcesList()), RANGE_TO_MEMBERS))));
-
+    PortRanges availablePorts = PortRanges.from(getPortRanges(offer.getResourcesList()));
     if (availablePorts.size() < numPorts) {
       throw new InsufficientResourcesException(
           String.format("Could not get %d ports from %s", numPorts, offer));
     }
 
-    Collections.shuffle(availablePorts);
-    return ImmutableSet.copyOf(availablePorts.subList(0, numPorts));
+    return availablePorts.select(numPorts, PORT_SELECTOR);
   }
 
   /**
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.cron.timer;
+
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import com.twitter.aurora.scheduler.cron.CronException;
+import com.twitter.aurora.scheduler.cron.CronPredictor;
+import com.twitter.common.stats.Stats;
+import com.twitter.common.util.Clock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A cron predictor that caches compiled schedules along with their most recent prediction.
+ *
+ * <p>Since many jobs share a schedule and a prediction stays valid until it passes, a prediction
+ * is usually a cache hit and a comparison against the current time.
+ */
+class CachedCronPredictor implements CronPredictor {
+  private static final Logger LOG = Logger.getLogger(CachedCronPredictor.class.getName());
+
+  private static final int MAX_CACHED_SCHEDULES = 10000;
+
+  private final Clock clock;
+  private final TimeZone timeZone;
+  private final LoadingCache<String, Prediction> predictions;
+
+  @Inject
+  CachedCronPredictor(Clock clock, TimeZone timeZone) {
+    this.clock = checkNotNull(clock);
+    this.timeZone = checkNotNull(timeZone);
+    this.predictions = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_SCHEDULES)
+        .build(new CacheLoader<String, Prediction>() {
+          @Override public Prediction load(String schedule) {
+            try {
+              return new Prediction(Optional.of(CronExpression.parse(schedule)));
+            } catch (CronException e) {
+              LOG.warning("Unable to predict next run of invalid schedule " + schedule);
+              return new Prediction(Optional.<CronExpression>absent());
+            }
+          }
+        });
+
+    Stats.exportSize("cron_predictor_cached_schedules", predictions.asMap());
+  }
+
+  /**
+   * A compiled schedule and the next run time last predicted for it.
+   */
+  private class Prediction {
+    private final Optional<CronExpression> expression;
+    private volatile long nextRunMillis = Long.MIN_VALUE;
+
+    Prediction(Optional<CronExpression> expression) {
+      this.expression = expression;
+    }
+
+    long nextRunAfter(long nowMillis) {
+      if (!expression.isPresent()) {
+        return 0;
+      }
+
+      // Races here are benign, as any thread will compute the same prediction.
+      long cached = nextRunMillis;
+      if (cached > nowMillis) {
+        return cached;
+      }
+      long next = expression.get().nextFireAfter(nowMillis, timeZone).or(0L);
+      nextRunMillis = next;
+      return next;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Returns Unix epoch time for schedules that are invalid or will never fire.
+   */
+  @Override
+  public Date predictNextRun(String schedule) {
+    checkNotNull(schedule);
+    return new Date(predictions.getUnchecked(schedule).nextRunAfter(clock.nowMillis()));
+  }
+}
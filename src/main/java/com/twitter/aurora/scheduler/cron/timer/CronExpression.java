@@ -0,0 +1,291 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.cron.timer;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import com.twitter.aurora.scheduler.cron.CronException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A compiled five-field cron expression ({@code minute hour day-of-month month day-of-week}).
+ *
+ * <p>Each field is compiled into a bit mask once, so matching and next-fire computation never
+ * re-parse the schedule string. Supported syntax per field is a comma-separated list of
+ * {@code *}, {@code N}, {@code N-M}, each optionally followed by {@code /step}. Months and days of
+ * the week also accept three-letter names ({@code JAN}, {@code MON}), and {@code 7} is treated as
+ * Sunday. The {@code @yearly}, {@code @monthly}, {@code @weekly}, {@code @daily} and
+ * {@code @hourly} shorthands are accepted as well.
+ *
+ * <p>As with vixie cron, when both day-of-month and day-of-week are restricted, a day matches if
+ * either field matches.
+ */
+final class CronExpression {
+
+  private static final Map<String, String> SHORTHANDS = ImmutableMap.<String, String>builder()
+      .put("@yearly", "0 0 1 1 *")
+      .put("@annually", "0 0 1 1 *")
+      .put("@monthly", "0 0 1 * *")
+      .put("@weekly", "0 0 * * 0")
+      .put("@daily", "0 0 * * *")
+      .put("@midnight", "0 0 * * *")
+      .put("@hourly", "0 * * * *")
+      .build();
+
+  private static final Map<String, Integer> MONTH_NAMES = ImmutableMap.<String, Integer>builder()
+      .put("JAN", 1).put("FEB", 2).put("MAR", 3).put("APR", 4).put("MAY", 5).put("JUN", 6)
+      .put("JUL", 7).put("AUG", 8).put("SEP", 9).put("OCT", 10).put("NOV", 11).put("DEC", 12)
+      .build();
+
+  private static final Map<String, Integer> DAY_NAMES = ImmutableMap.<String, Integer>builder()
+      .put("SUN", 0).put("MON", 1).put("TUE", 2).put("WED", 3).put("THU", 4).put("FRI", 5)
+      .put("SAT", 6)
+      .build();
+
+  private static final Splitter FIELD_SPLITTER = Splitter.on(' ').omitEmptyStrings().trimResults();
+  private static final Splitter LIST_SPLITTER = Splitter.on(',');
+
+  // Bounds the search for a matching date, which is only reached for schedules that can never fire
+  // (e.g. February 30th).  Leap days recur within this window.
+  private static final int MAX_SEARCH_YEARS = 8;
+
+  private final String schedule;
+  private final long minutes;
+  private final long hours;
+  private final long daysOfMonth;
+  private final long months;
+  private final long daysOfWeek;
+  private final boolean domRestricted;
+  private final boolean dowRestricted;
+
+  private CronExpression(
+      String schedule,
+      long minutes,
+      long hours,
+      long daysOfMonth,
+      long months,
+      long daysOfWeek,
+      boolean domRestricted,
+      boolean dowRestricted) {
+
+    this.schedule = schedule;
+    this.minutes = minutes;
+    this.hours = hours;
+    this.daysOfMonth = daysOfMonth;
+    this.months = months;
+    this.daysOfWeek = daysOfWeek;
+    this.domRestricted = domRestricted;
+    this.dowRestricted = dowRestricted;
+  }
+
+  /**
+   * Compiles a cron schedule.
+   *
+   * @param schedule Cron schedule to compile.
+   * @return The compiled expression.
+   * @throws CronException If the schedule is not well-formed.
+   */
+  static CronExpression parse(String schedule) throws CronException {
+    checkNotNull(schedule);
+
+    String trimmed = schedule.trim();
+    String expanded = Optional.fromNullable(SHORTHANDS.get(trimmed.toLowerCase())).or(trimmed);
+    List<String> fields = ImmutableList.copyOf(FIELD_SPLITTER.split(expanded));
+    if (fields.size() != 5) {
+      throw new CronException("Expected 5 fields in cron schedule: " + schedule);
+    }
+
+    long daysOfWeek = parseField(fields.get(4), 0, 7, DAY_NAMES);
+    // Both 0 and 7 mean Sunday.
+    if ((daysOfWeek & (1L << 7)) != 0) {
+      daysOfWeek = (daysOfWeek | 1L) & ~(1L << 7);
+    }
+
+    return new CronExpression(
+        schedule,
+        parseField(fields.get(0), 0, 59, ImmutableMap.<String, Integer>of()),
+        parseField(fields.get(1), 0, 23, ImmutableMap.<String, Integer>of()),
+        parseField(fields.get(2), 1, 31, ImmutableMap.<String, Integer>of()),
+        parseField(fields.get(3), 1, 12, MONTH_NAMES),
+        daysOfWeek,
+        !fields.get(2).startsWith("*"),
+        !fields.get(4).startsWith("*"));
+  }
+
+  private static long parseField(String field, int min, int max, Map<String, Integer> names)
+      throws CronException {
+
+    long mask = 0;
+    for (String element : LIST_SPLITTER.split(field)) {
+      int step = 1;
+      String range = element;
+      int slash = element.indexOf('/');
+      if (slash != -1) {
+        step = parseNumber(element.substring(slash + 1), ImmutableMap.<String, Integer>of());
+        if (step <= 0) {
+          throw new CronException("Invalid step in cron field: " + field);
+        }
+        range = element.substring(0, slash);
+      }
+
+      int low;
+      int high;
+      if ("*".equals(range)) {
+        low = min;
+        high = max;
+      } else {
+        int dash = range.indexOf('-');
+        if (dash == -1) {
+          low = parseNumber(range, names);
+          // A single value with a step (e.g. 0/5) runs from the value to the end of the range.
+          high = slash == -1 ? low : max;
+        } else {
+          low = parseNumber(range.substring(0, dash), names);
+          high = parseNumber(range.substring(dash + 1), names);
+        }
+      }
+
+      if (low < min || high > max || low > high) {
+        throw new CronException(
+            String.format("Cron field %s is outside of range [%d, %d]", field, min, max));
+      }
+
+      for (int i = low; i <= high; i += step) {
+        mask |= 1L << i;
+      }
+    }
+    return mask;
+  }
+
+  private static int parseNumber(String value, Map<String, Integer> names) throws CronException {
+    Integer named = names.get(value.toUpperCase());
+    if (named != null) {
+      return named;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new CronException("Invalid value in cron schedule: " + value, e);
+    }
+  }
+
+  /**
+   * Gets the original schedule string this expression was compiled from.
+   *
+   * @return Cron schedule.
+   */
+  String getSchedule() {
+    return schedule;
+  }
+
+  private static boolean isSet(long mask, int bit) {
+    return (mask & (1L << bit)) != 0;
+  }
+
+  /**
+   * Finds the lowest set bit at or above {@code from}.
+   *
+   * @return The matching bit, or {@code -1} if no such bit is set.
+   */
+  private static int nextSetBit(long mask, int from) {
+    if (from >= Long.SIZE) {
+      return -1;
+    }
+    long remaining = mask & (-1L << from);
+    return remaining == 0 ? -1 : Long.numberOfTrailingZeros(remaining);
+  }
+
+  private boolean dayMatches(Calendar calendar) {
+    boolean domMatch = isSet(daysOfMonth, calendar.get(Calendar.DAY_OF_MONTH));
+    boolean dowMatch = isSet(daysOfWeek, calendar.get(Calendar.DAY_OF_WEEK) - 1);
+    if (domRestricted && dowRestricted) {
+      return domMatch || dowMatch;
+    }
+    return domMatch && dowMatch;
+  }
+
+  private static void startOfDay(Calendar calendar) {
+    calendar.set(Calendar.HOUR_OF_DAY, 0);
+    calendar.set(Calendar.MINUTE, 0);
+  }
+
+  /**
+   * Computes the first time strictly after {@code afterMillis} at which this expression fires.
+   *
+   * @param afterMillis Epoch time in milliseconds to search from.
+   * @param timeZone Time zone the schedule is evaluated in.
+   * @return Epoch time in milliseconds of the next fire time, or absent if the expression can never
+   *     fire.
+   */
+  Optional<Long> nextFireAfter(long afterMillis, TimeZone timeZone) {
+    Calendar calendar = Calendar.getInstance(timeZone);
+    calendar.setTimeInMillis(afterMillis);
+    calendar.set(Calendar.SECOND, 0);
+    calendar.set(Calendar.MILLISECOND, 0);
+    calendar.add(Calendar.MINUTE, 1);
+
+    int yearLimit = calendar.get(Calendar.YEAR) + MAX_SEARCH_YEARS;
+    while (calendar.get(Calendar.YEAR) <= yearLimit) {
+      if (!isSet(months, calendar.get(Calendar.MONTH) + 1)) {
+        calendar.add(Calendar.MONTH, 1);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        startOfDay(calendar);
+        continue;
+      }
+
+      if (!dayMatches(calendar)) {
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        startOfDay(calendar);
+        continue;
+      }
+
+      int hour = nextSetBit(hours, calendar.get(Calendar.HOUR_OF_DAY));
+      if (hour == -1) {
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        startOfDay(calendar);
+        continue;
+      } else if (hour != calendar.get(Calendar.HOUR_OF_DAY)) {
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, 0);
+      }
+
+      int minute = nextSetBit(minutes, calendar.get(Calendar.MINUTE));
+      if (minute == -1) {
+        calendar.add(Calendar.HOUR_OF_DAY, 1);
+        calendar.set(Calendar.MINUTE, 0);
+        continue;
+      }
+      calendar.set(Calendar.MINUTE, minute);
+      return Optional.of(calendar.getTimeInMillis());
+    }
+
+    return Optional.absent();
+  }
+
+  @Override
+  public String toString() {
+    return schedule;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.cron.timer;
+
+import java.util.TimeZone;
+
+import javax.inject.Singleton;
+
+import com.google.inject.PrivateModule;
+
+import com.twitter.aurora.scheduler.cron.CronPredictor;
+import com.twitter.aurora.scheduler.cron.CronScheduler;
+import com.twitter.aurora.scheduler.cron.timer.TimerCronScheduler.TriggerThreads;
+import com.twitter.common.args.Arg;
+import com.twitter.common.args.CmdLine;
+import com.twitter.common.args.constraints.Positive;
+import com.twitter.common.util.Clock;
+
+/**
+ * A Module to wire up the built-in cron scheduler, which triggers cron jobs from a single timer
+ * thread in the scheduler process.
+ */
+public class TimerCronModule extends PrivateModule {
+
+  @Positive
+  @CmdLine(name = "cron_trigger_threads",
+      help = "Number of threads used to run cron jobs once they are triggered.")
+  private static final Arg<Integer> CRON_TRIGGER_THREADS = Arg.create(4);
+
+  @CmdLine(name = "cron_timezone",
+      help = "Time zone that cron schedules are evaluated in.")
+  private static final Arg<String> CRON_TIMEZONE = Arg.create(TimeZone.getDefault().getID());
+
+  @Override
+  protected void configure() {
+    requireBinding(Clock.class);
+    bind(TimeZone.class).toInstance(TimeZone.getTimeZone(CRON_TIMEZONE.get()));
+    bind(Integer.class).annotatedWith(TriggerThreads.class).toInstance(CRON_TRIGGER_THREADS.get());
+
+    bind(CronScheduler.class).to(TimerCronScheduler.class);
+    bind(TimerCronScheduler.class).in(Singleton.class);
+    expose(CronScheduler.class);
+
+    bind(CronPredictor.class).to(CachedCronPredictor.class);
+    bind(CachedCronPredictor.class).in(Singleton.class);
+    expose(CronPredictor.class);
+  }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.cron.timer;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.BindingAnnotation;
+
+import com.twitter.aurora.scheduler.cron.CronException;
+import com.twitter.aurora.scheduler.cron.CronScheduler;
+import com.twitter.common.stats.SlidingStats;
+import com.twitter.common.stats.Stats;
+import com.twitter.common.util.Clock;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * An in-process cron scheduler driven by a single timer thread.
+ *
+ * <p>Every scheduled cron is kept in a min-heap ordered by its next fire time, and the timer thread
+ * sleeps until the head of the heap is due. A due entry is handed to a small trigger pool, and its
+ * next fire time is computed from the compiled {@link CronExpression} and pushed back onto the
+ * heap. The cost of an idle cron is therefore a heap entry, regardless of how many are scheduled.
+ *
+ * <p>Descheduled entries are removed from the heap lazily, either when they reach its head or when
+ * they outnumber the live entries.
+ */
+class TimerCronScheduler implements CronScheduler {
+  private static final Logger LOG = Logger.getLogger(TimerCronScheduler.class.getName());
+
+  /**
+   * Binding annotation for the number of threads used to run triggered cron work.
+   */
+  @BindingAnnotation
+  @Target({ FIELD, PARAMETER, METHOD }) @Retention(RUNTIME)
+  @interface TriggerThreads { }
+
+  private static final int PURGE_MIN_QUEUE_SIZE = 64;
+
+  private final Clock clock;
+  private final TimeZone timeZone;
+  private final int triggerThreads;
+
+  private final Lock lock = new ReentrantLock();
+  private final Condition headChanged = lock.newCondition();
+  private final PriorityQueue<ScheduledCron> queue = new PriorityQueue<>();
+  private final Map<String, ScheduledCron> scheduled = Maps.newConcurrentMap();
+  private final AtomicLong nextKey = new AtomicLong();
+  private final AtomicBoolean started = new AtomicBoolean(false);
+  private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+  private final AtomicLong cronTriggers = Stats.exportLong("cron_triggers");
+  private final AtomicLong cronTriggerFailures = Stats.exportLong("cron_trigger_failures");
+  private final SlidingStats triggerLag = new SlidingStats("cron_trigger_lag", "ms");
+
+  private volatile Thread timerThread;
+  private volatile ExecutorService triggerExecutor;
+
+  @Inject
+  TimerCronScheduler(Clock clock, TimeZone timeZone, @TriggerThreads int triggerThreads) {
+    this.clock = checkNotNull(clock);
+    this.timeZone = checkNotNull(timeZone);
+    checkArgument(triggerThreads > 0);
+    this.triggerThreads = triggerThreads;
+
+    Stats.exportSize("cron_scheduled_entries", scheduled);
+  }
+
+  private static class ScheduledCron implements Comparable<ScheduledCron> {
+    private final String key;
+    private final CronExpression expression;
+    private final Runnable task;
+    private volatile boolean cancelled = false;
+    private long nextFireMillis;
+
+    ScheduledCron(String key, CronExpression expression, Runnable task, long nextFireMillis) {
+      this.key = key;
+      this.expression = expression;
+      this.task = task;
+      this.nextFireMillis = nextFireMillis;
+    }
+
+    @Override
+    public int compareTo(ScheduledCron other) {
+      return Long.compare(nextFireMillis, other.nextFireMillis);
+    }
+  }
+
+  @Override
+  public String schedule(String schedule, Runnable task) throws CronException {
+    checkNotNull(task);
+    checkState(started.get() && !stopped.get(), "Cron scheduler is not running.");
+
+    CronExpression expression = CronExpression.parse(schedule);
+    Optional<Long> firstFire = expression.nextFireAfter(clock.nowMillis(), timeZone);
+    if (!firstFire.isPresent()) {
+      throw new CronException("Cron schedule will never fire: " + schedule);
+    }
+
+    String key = "cron-" + nextKey.incrementAndGet();
+    ScheduledCron entry = new ScheduledCron(key, expression, task, firstFire.get());
+    scheduled.put(key, entry);
+    enqueue(entry);
+    return key;
+  }
+
+  private void enqueue(ScheduledCron entry) {
+    lock.lock();
+    try {
+      queue.add(entry);
+      if (queue.peek() == entry) {
+        headChanged.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void deschedule(String key) {
+    checkNotNull(key);
+
+    ScheduledCron entry = scheduled.remove(key);
+    if (entry != null) {
+      entry.cancelled = true;
+      purgeIfNeeded();
+    }
+  }
+
+  /**
+   * Drops cancelled entries from the heap once they make up the majority of it, so that frequent
+   * schedule updates do not grow the heap until the stale entries come due.
+   */
+  private void purgeIfNeeded() {
+    lock.lock();
+    try {
+      if (queue.size() > PURGE_MIN_QUEUE_SIZE && queue.size() > 2 * scheduled.size()) {
+        Iterator<ScheduledCron> entries = queue.iterator();
+        while (entries.hasNext()) {
+          if (entries.next().cancelled) {
+            entries.remove();
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<String> getSchedule(String key) {
+    checkNotNull(key);
+
+    ScheduledCron entry = scheduled.get(key);
+    return entry == null
+        ? Optional.<String>absent()
+        : Optional.of(entry.expression.getSchedule());
+  }
+
+  @Override
+  public void start() {
+    checkState(started.compareAndSet(false, true), "Cron scheduler may only be started once.");
+
+    triggerExecutor = Executors.newFixedThreadPool(
+        triggerThreads,
+        new ThreadFactoryBuilder().setNameFormat("CronTrigger-%d").setDaemon(true).build());
+    timerThread = new ThreadFactoryBuilder()
+        .setNameFormat("CronTimer")
+        .setDaemon(true)
+        .build()
+        .newThread(new Runnable() {
+          @Override public void run() {
+            runTimer();
+          }
+        });
+    timerThread.start();
+  }
+
+  @Override
+  public void stop() throws CronException {
+    if (!started.get()) {
+      throw new CronException("Cron scheduler was never started.");
+    }
+    if (!stopped.compareAndSet(false, true)) {
+      return;
+    }
+
+    timerThread.interrupt();
+    triggerExecutor.shutdownNow();
+    try {
+      timerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CronException("Interrupted while stopping cron timer.", e);
+    }
+  }
+
+  @Override
+  public boolean isValidSchedule(@Nullable String schedule) {
+    if (schedule == null) {
+      return false;
+    }
+
+    try {
+      return CronExpression.parse(schedule).nextFireAfter(clock.nowMillis(), timeZone).isPresent();
+    } catch (CronException e) {
+      return false;
+    }
+  }
+
+  private void runTimer() {
+    try {
+      while (!stopped.get()) {
+        ScheduledCron due = awaitDue();
+        if (!due.cancelled) {
+          trigger(due);
+        }
+      }
+    } catch (InterruptedException e) {
+      LOG.info("Cron timer interrupted, exiting.");
+    }
+  }
+
+  /**
+   * Blocks until the head of the queue is due, and removes it.
+   */
+  private ScheduledCron awaitDue() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        ScheduledCron head = queue.peek();
+        if (head == null) {
+          headChanged.await();
+        } else if (head.cancelled) {
+          queue.poll();
+        } else {
+          long waitMillis = head.nextFireMillis - clock.nowMillis();
+          if (waitMillis <= 0) {
+            return queue.poll();
+          }
+          headChanged.await(waitMillis, TimeUnit.MILLISECONDS);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void trigger(final ScheduledCron entry) {
+    long now = clock.nowMillis();
+    triggerLag.accumulate(now - entry.nextFireMillis);
+    cronTriggers.incrementAndGet();
+
+    triggerExecutor.execute(new Runnable() {
+      @Override public void run() {
+        try {
+          entry.task.run();
+        } catch (RuntimeException e) {
+          cronTriggerFailures.incrementAndGet();
+          LOG.log(Level.SEVERE, "Cron task " + entry.key + " failed.", e);
+        }
+      }
+    });
+
+    // Compute the next fire time relative to the missed fire time, but never schedule in the past
+    // so that a stalled timer does not replay every missed run.
+    Optional<Long> nextFire =
+        entry.expression.nextFireAfter(Math.max(now, entry.nextFireMillis), timeZone);
+    if (nextFire.isPresent()) {
+      entry.nextFireMillis = nextFire.get();
+      enqueue(entry);
+    } else {
+      LOG.warning("Cron schedule " + entry.expression + " will not fire again.");
+      scheduled.remove(entry.key);
+    }
+  }
+
+  @VisibleForTesting
+  int getQueueSize() {
+    lock.lock();
+    try {
+      return queue.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
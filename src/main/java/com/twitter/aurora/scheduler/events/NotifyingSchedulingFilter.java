@@ -18,16 +18,22 @@ package com.twitter.aurora.scheduler.events;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.inject.BindingAnnotation;
 
 import com.twitter.aurora.scheduler.ResourceSlot;
 import com.twitter.aurora.scheduler.events.PubsubEvent.Vetoed;
 import com.twitter.aurora.scheduler.filter.SchedulingFilter;
+import com.twitter.aurora.scheduler.filter.Vetoes;
 import com.twitter.aurora.scheduler.storage.entities.ITaskConfig;
 import com.twitter.common.base.Closure;
+import com.twitter.common.stats.Stats;
 
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.ElementType.METHOD;
@@ -35,11 +41,15 @@ import static java.lang.annotation.ElementType.PARAMETER;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 /**
  * A decorating scheduling filter that sends an event when a scheduling assignment is vetoed.
+ * <p>
+ * Within a scheduling attempt, only the closest fit among the vetoes is sent, once the attempt
+ * ends.  Vetoes are also counted by kind.
  */
-class NotifyingSchedulingFilter implements SchedulingFilter {
+class NotifyingSchedulingFilter implements SchedulingFilter, VetoAggregator {
 
   /**
    * Binding annotation that the underlying {@link SchedulingFilter} must be bound with.
@@ -48,8 +58,30 @@ class NotifyingSchedulingFilter implements SchedulingFilter {
   @Target({FIELD, PARAMETER, METHOD}) @Retention(RUNTIME)
   public @interface NotifyDelegate { }
 
+  private static class Attempt {
+    private final String taskId;
+    private Set<Veto> closestFit;
+
+    Attempt(String taskId) {
+      this.taskId = taskId;
+    }
+
+    void vetoed(Set<Veto> vetoes) {
+      if ((closestFit == null) || Vetoes.isCloserFit(vetoes, closestFit)) {
+        closestFit = vetoes;
+      }
+    }
+  }
+
   private final SchedulingFilter delegate;
   private final Closure<PubsubEvent> eventSink;
+  private final ThreadLocal<Attempt> currentAttempt = new ThreadLocal<>();
+  private final LoadingCache<String, AtomicLong> vetoesByKind = CacheBuilder.newBuilder()
+      .build(new CacheLoader<String, AtomicLong>() {
+        @Override public AtomicLong load(String kind) {
+          return Stats.exportLong(Stats.normalizeName("scheduling_vetoes_" + kind));
+        }
+      });
 
   @Inject
   NotifyingSchedulingFilter(
@@ -64,9 +96,37 @@ class NotifyingSchedulingFilter implements SchedulingFilter {
   public Set<Veto> filter(ResourceSlot offer, String slaveHost, ITaskConfig task, String taskId) {
     Set<Veto> vetoes = delegate.filter(offer, slaveHost, task, taskId);
     if (!vetoes.isEmpty()) {
-      eventSink.execute(new Vetoed(taskId, vetoes));
+      for (Veto veto : vetoes) {
+        vetoesByKind.getUnchecked(veto.getKind()).incrementAndGet();
+      }
+
+      Attempt attempt = currentAttempt.get();
+      if ((attempt != null) && attempt.taskId.equals(taskId)) {
+        attempt.vetoed(vetoes);
+      } else {
+        eventSink.execute(new Vetoed(taskId, vetoes));
+      }
     }
 
     return vetoes;
   }
+
+  @Override
+  public void beginAttempt(String taskId) {
+    checkNotNull(taskId);
+    checkState(currentAttempt.get() == null, "A scheduling attempt is already in progress.");
+
+    currentAttempt.set(new Attempt(taskId));
+  }
+
+  @Override
+  public void endAttempt(boolean scheduled) {
+    Attempt attempt = currentAttempt.get();
+    checkState(attempt != null, "No scheduling attempt is in progress.");
+
+    currentAttempt.remove();
+    if (!scheduled && (attempt.closestFit != null)) {
+      eventSink.execute(new Vetoed(attempt.taskId, attempt.closestFit));
+    }
+  }
 }
@@ -110,6 +110,7 @@ public final class PubsubEventModule extends AbstractModule {
   public static void bind(Binder binder, final Class<? extends SchedulingFilter> filterClass) {
     binder.bind(SchedulingFilter.class).annotatedWith(NotifyDelegate.class).to(filterClass);
     binder.bind(SchedulingFilter.class).to(NotifyingSchedulingFilter.class);
+    binder.bind(VetoAggregator.class).to(NotifyingSchedulingFilter.class);
     binder.bind(NotifyingSchedulingFilter.class).in(Singleton.class);
     binder.install(new PubsubEventModule());
   }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.events;
+
+/**
+ * Groups the vetoes against a task during a scheduling attempt, so that a single veto event
+ * carrying the closest fit is sent for the attempt rather than an event for every vetoed offer.
+ * <p>
+ * Attempts are tracked per thread, and scheduling filter calls made on the thread between
+ * {@link #beginAttempt(String)} and {@link #endAttempt(boolean)} are aggregated.
+ */
+public interface VetoAggregator {
+
+  /**
+   * Starts aggregating vetoes against a task on the calling thread.
+   *
+   * @param taskId Task being scheduled.
+   */
+  void beginAttempt(String taskId);
+
+  /**
+   * Finishes the calling thread's current attempt.  If the task was not scheduled, the closest
+   * fit among the vetoes against the task is sent.
+   *
+   * @param scheduled Whether the task was scheduled in the attempt.
+   */
+  void endAttempt(boolean scheduled);
+}
@@ -45,6 +45,9 @@ class ConstraintFilter implements Function<IConstraint, Optional<Veto>> {
 
   private static final Logger LOG = Logger.getLogger(ConstraintFilter.class.getName());
 
+  private static final String LIMIT_VETO = "Limit not satisfied";
+  private static final String MISMATCH_VETO = "Constraint not satisfied";
+
   private final IJobKey jobKey;
   private final Supplier<Collection<IScheduledTask>> activeTasksSupplier;
   private final AttributeLoader attributeLoader;
@@ -72,12 +75,12 @@ class ConstraintFilter implements Function<IConstraint, Optional<Veto>> {
 
   @VisibleForTesting
   static Veto limitVeto(String limit) {
-    return new Veto("Limit not satisfied: " + limit, Veto.MAX_SCORE);
+    return new Veto(LIMIT_VETO, LIMIT_VETO + ": " + limit, Veto.MAX_SCORE);
   }
 
   @VisibleForTesting
   static Veto mismatchVeto(String constraint) {
-    return Veto.constraintMismatch("Constraint not satisfied: " + constraint);
+    return Veto.constraintMismatch(MISMATCH_VETO, MISMATCH_VETO + ": " + constraint);
   }
 
   @VisibleForTesting
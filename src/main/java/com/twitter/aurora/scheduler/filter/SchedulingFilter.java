@@ -33,15 +33,20 @@ public interface SchedulingFilter {
    * A veto also contains a score, which is an opaque indicator as to how strong a veto is.  This
    * is only intended to be used for relative ranking of vetoes for determining which veto against
    * a scheduling assignment is 'weakest'.
+   * <p>
+   * A veto has a kind, which summarizes the reason without details such as user-supplied
+   * constraint names, so that vetoes may be grouped into a bounded set of categories.
    */
   public static class Veto {
     public static final int MAX_SCORE = 1000;
 
+    private final String kind;
     private final String reason;
     private final int score;
     private final boolean valueMismatch;
 
-    private Veto(String reason, int score, boolean valueMismatch) {
+    private Veto(String kind, String reason, int score, boolean valueMismatch) {
+      this.kind = kind;
       this.reason = reason;
       this.score = Math.min(MAX_SCORE, score);
       this.valueMismatch = valueMismatch;
@@ -49,7 +54,18 @@ public interface SchedulingFilter {
 
     @VisibleForTesting
     public Veto(String reason, int score) {
-      this(reason, score, false);
+      this(reason, reason, score, false);
+    }
+
+    /**
+     * Creates a veto whose reason carries details beyond its kind.
+     *
+     * @param kind Summary of the reason, free of details.
+     * @param reason Reason for the veto.
+     * @param score Strength of the veto.
+     */
+    public Veto(String kind, String reason, int score) {
+      this(kind, reason, score, false);
     }
 
     /**
@@ -60,7 +76,22 @@ public interface SchedulingFilter {
      * @return A constraint mismatch veto.
      */
     public static Veto constraintMismatch(String reason) {
-      return new Veto(reason, MAX_SCORE, true);
+      return constraintMismatch(reason, reason);
+    }
+
+    /**
+     * Creates a constraint mismatch veto whose reason carries details beyond its kind.
+     *
+     * @param kind Summary of the mismatch, free of details.
+     * @param reason Information about the value mismatch.
+     * @return A constraint mismatch veto.
+     */
+    public static Veto constraintMismatch(String kind, String reason) {
+      return new Veto(kind, reason, MAX_SCORE, true);
+    }
+
+    public String getKind() {
+      return kind;
     }
 
     public String getReason() {
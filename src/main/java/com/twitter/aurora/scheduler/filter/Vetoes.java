@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.filter;
+
+import java.util.Set;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+
+import com.twitter.aurora.scheduler.filter.SchedulingFilter.Veto;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Utility functions for comparing sets of vetoes against scheduling assignments.
+ */
+public final class Vetoes {
+
+  private Vetoes() {
+    // Utility class.
+  }
+
+  private static final Predicate<Veto> IS_CONSTRAINT_MISMATCH = new Predicate<Veto>() {
+    @Override public boolean apply(Veto veto) {
+      return veto.isConstraintMismatch();
+    }
+  };
+
+  private static int score(Iterable<Veto> vetoes) {
+    int total = 0;
+    for (Veto veto : vetoes) {
+      total += veto.getScore();
+    }
+    return total;
+  }
+
+  /**
+   * Determines whether a set of vetoes represents a closer fit than another.
+   * <p>
+   * There are two classes of vetoes: those with and without constraint mismatches. A set of
+   * vetoes without a constraint mismatch is always a better fit than a set with constraint
+   * mismatches.
+   * <p>
+   * If two sets are equivalent in that they do or do not have constraint mismatches, they are
+   * compared by the following criteria:
+   * <ul>
+   *   <li> the one with fewer vetoes is a better fit, irrespective of scores
+   *   <li> if the veto count is equal, the one with the smaller aggregate score is a better fit
+   * </ul>
+   *
+   * @param candidate Vetoes to compare against the current closest fit.
+   * @param closest Current closest fit.
+   * @return {@code true} if {@code candidate} is a strictly closer fit than {@code closest}.
+   */
+  public static boolean isCloserFit(Set<Veto> candidate, Set<Veto> closest) {
+    checkNotNull(candidate);
+    checkNotNull(closest);
+
+    boolean valueMismatchOld = Iterables.any(closest, IS_CONSTRAINT_MISMATCH);
+    boolean valueMismatchNew = Iterables.any(candidate, IS_CONSTRAINT_MISMATCH);
+    if (valueMismatchOld == valueMismatchNew) {
+      if (candidate.size() < closest.size()) {
+        return true;
+      } else {
+        return (candidate.size() == closest.size()) && (score(candidate) < score(closest));
+      }
+    } else {
+      return valueMismatchOld;
+    }
+  }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nullable;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.hash.Hashing;
+import com.google.common.net.HttpHeaders;
+
+import com.twitter.aurora.scheduler.base.JobKeys;
+import com.twitter.aurora.scheduler.base.Tasks;
+import com.twitter.aurora.scheduler.events.PubsubEvent.EventSubscriber;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TasksDeleted;
+import com.twitter.aurora.scheduler.storage.entities.IJobKey;
+import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
+import com.twitter.common.net.http.filters.AbstractHttpFilter;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.StatImpl;
+import com.twitter.common.stats.Stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An HTTP filter that caches successful GET responses of the scheduler pages, and answers
+ * conditional requests with {@code 304 Not Modified}.
+ * <p>
+ * Cached responses are scoped by path: job pages to their job, role pages to their role, and all
+ * other pages to the whole cluster.  A task event invalidates the responses for the task's job,
+ * its role, and the cluster.  Responses also expire after a fixed time, which bounds staleness
+ * for changes that are not signalled by task events, such as quotas and cron schedules.
+ * <p>
+ * Responses are cached separately for each combination of the headers that select their
+ * representation, {@code Accept} and whether {@code Accept-Encoding} allows gzip.
+ */
+class ResponseCacheFilter extends AbstractHttpFilter implements EventSubscriber {
+
+  // Scope generations are striped by hash, so that memory is bounded.  A collision only causes
+  // an extra invalidation.
+  private static final int GENERATION_STRIPES = 1024;
+
+  private static final String SCHEDULER_PATH = "scheduler";
+  private static final String GZIP = "gzip";
+
+  private final Cache<String, CachedResponse> cache;
+  private final AtomicLong clusterGeneration = new AtomicLong();
+  private final AtomicLongArray roleGenerations = new AtomicLongArray(GENERATION_STRIPES);
+  private final AtomicLongArray jobGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+  private final AtomicLong hits = Stats.exportLong("http_response_cache_hits");
+  private final AtomicLong misses = Stats.exportLong("http_response_cache_misses");
+  private final AtomicLong notModified = Stats.exportLong("http_response_cache_not_modified");
+
+  /**
+   * Creates a response cache.
+   *
+   * @param ttl Time after which cached responses expire.
+   * @param maxSize Maximum total size of cached response bodies.
+   */
+  ResponseCacheFilter(Amount<Long, Time> ttl, Amount<Long, Data> maxSize) {
+    checkArgument(ttl.getValue() > 0);
+    cache = CacheBuilder.newBuilder()
+        .expireAfterWrite(ttl.as(Time.MILLISECONDS), TimeUnit.MILLISECONDS)
+        .maximumWeight(maxSize.as(Data.BYTES))
+        .weigher(new Weigher<String, CachedResponse>() {
+          @Override public int weigh(String key, CachedResponse response) {
+            return key.length() + response.body.length;
+          }
+        })
+        .build();
+
+    Stats.exportSize("http_response_cache_entries", cache.asMap());
+    Stats.export(new StatImpl<Double>("http_response_cache_hit_rate") {
+      @Override public Double read() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return (total == 0) ? 0.0 : ((double) hitCount) / total;
+      }
+    });
+  }
+
+  private static int stripe(String scope) {
+    return (scope.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+  }
+
+  private void invalidate(IScheduledTask task) {
+    IJobKey jobKey = Tasks.SCHEDULED_TO_JOB_KEY.apply(task);
+    roleGenerations.incrementAndGet(stripe(jobKey.getRole()));
+    jobGenerations.incrementAndGet(stripe(JobKeys.toPath(jobKey)));
+    clusterGeneration.incrementAndGet();
+  }
+
+  @Subscribe
+  public void taskChangedState(TaskStateChange stateChange) {
+    invalidate(stateChange.getTask());
+  }
+
+  @Subscribe
+  public void tasksDeleted(TasksDeleted deleted) {
+    for (IScheduledTask task : deleted.getTasks()) {
+      invalidate(task);
+    }
+  }
+
+  /**
+   * Gets the current generation of the data a path is rendered from.
+   */
+  @VisibleForTesting
+  long getGeneration(String path) {
+    // Paths of the scheduler pages are /scheduler/{role}/{environment}/{job}.
+    ImmutableList<String> parts =
+        ImmutableList.copyOf(Splitter.on('/').omitEmptyStrings().split(path));
+    if ((parts.size() >= 2) && SCHEDULER_PATH.equals(parts.get(0))) {
+      if (parts.size() >= 4) {
+        return jobGenerations.get(
+            stripe(parts.get(1) + "/" + parts.get(2) + "/" + parts.get(3)));
+      }
+      return roleGenerations.get(stripe(parts.get(1)));
+    }
+    return clusterGeneration.get();
+  }
+
+  private static String getKey(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    boolean gzip = (acceptEncoding != null) && acceptEncoding.contains(GZIP);
+    String accept = request.getHeader(HttpHeaders.ACCEPT);
+    String query = request.getQueryString();
+    return request.getRequestURI()
+        + ((query == null) ? "" : "?" + query)
+        + " " + Strings.nullToEmpty(accept)
+        + (gzip ? " " + GZIP : "");
+  }
+
+  private static boolean matches(HttpServletRequest request, String etag) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    return (ifNoneMatch != null) && (ifNoneMatch.contains(etag) || ifNoneMatch.equals("*"));
+  }
+
+  private void send(HttpServletRequest request, HttpServletResponse response, CachedResponse cached)
+      throws IOException {
+
+    response.setHeader(HttpHeaders.ETAG, cached.etag);
+    if (matches(request, cached.etag)) {
+      notModified.incrementAndGet();
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    response.setStatus(cached.status);
+    if (cached.contentType != null) {
+      response.setContentType(cached.contentType);
+    }
+    for (Map.Entry<String, String> header : cached.headers.entries()) {
+      response.addHeader(header.getKey(), header.getValue());
+    }
+    response.setContentLength(cached.body.length);
+    response.getOutputStream().write(cached.body);
+  }
+
+  @Override
+  public void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+
+    if (!"GET".equals(request.getMethod())) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    String key = getKey(request);
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    // The generation is read before rendering, so that a concurrent event invalidates the result.
+    long generation = getGeneration(path);
+    CachedResponse cached = cache.getIfPresent(key);
+    if ((cached != null) && (cached.generation == generation)) {
+      hits.incrementAndGet();
+      send(request, response, cached);
+      return;
+    }
+
+    misses.incrementAndGet();
+    BufferedResponse buffered = new BufferedResponse(response);
+    chain.doFilter(request, buffered);
+    if (buffered.passedThrough) {
+      return;
+    }
+
+    CachedResponse rendered = buffered.build(generation);
+    if (buffered.cacheable && (rendered.status == HttpServletResponse.SC_OK)) {
+      cache.put(key, rendered);
+    } else {
+      cache.invalidate(key);
+    }
+    send(request, response, rendered);
+  }
+
+  private static class CachedResponse {
+    private final long generation;
+    private final int status;
+    @Nullable private final String contentType;
+    private final ListMultimap<String, String> headers;
+    private final byte[] body;
+    private final String etag;
+
+    CachedResponse(
+        long generation,
+        int status,
+        @Nullable String contentType,
+        ListMultimap<String, String> headers,
+        byte[] body) {
+
+      this.generation = generation;
+      this.status = status;
+      this.contentType = contentType;
+      this.headers = ImmutableListMultimap.copyOf(headers);
+      this.body = body;
+      this.etag = "\"" + Hashing.murmur3_128().hashBytes(body) + "\"";
+    }
+  }
+
+  /**
+   * A response that holds back the status, headers and body, so that they may be cached.
+   * The content type is set on the underlying response, which is not committed until the body is
+   * sent.  Redirects and errors are sent immediately and not cached.
+   */
+  private static class BufferedResponse extends HttpServletResponseWrapper {
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final ListMultimap<String, String> headers = LinkedListMultimap.create();
+    private int status = HttpServletResponse.SC_OK;
+    @Nullable private PrintWriter writer;
+    private boolean cacheable = true;
+    private boolean passedThrough = false;
+
+    BufferedResponse(HttpServletResponse response) {
+      super(response);
+    }
+
+    CachedResponse build(long generation) {
+      if (writer != null) {
+        writer.flush();
+      }
+      return new CachedResponse(generation, status, getContentType(), headers, body.toByteArray());
+    }
+
+    @Override public ServletOutputStream getOutputStream() {
+      return new ServletOutputStream() {
+        @Override public void write(int b) {
+          body.write(b);
+        }
+
+        @Override public void write(byte[] b, int off, int len) {
+          body.write(b, off, len);
+        }
+      };
+    }
+
+    @Override public PrintWriter getWriter() throws IOException {
+      if (writer == null) {
+        writer = new PrintWriter(new OutputStreamWriter(body, getCharacterEncoding()));
+      }
+      return writer;
+    }
+
+    @Override public void setContentLength(int len) {
+      // The length is set when the buffered body is sent.
+    }
+
+    @Override public void flushBuffer() {
+      if (writer != null) {
+        writer.flush();
+      }
+    }
+
+    @Override public void resetBuffer() {
+      body.reset();
+    }
+
+    @Override public void reset() {
+      super.reset();
+      resetBuffer();
+      headers.clear();
+      status = HttpServletResponse.SC_OK;
+    }
+
+    @Override public void setStatus(int sc) {
+      status = sc;
+    }
+
+    @Override public void setStatus(int sc, String sm) {
+      status = sc;
+    }
+
+    @Override public void sendError(int sc) throws IOException {
+      passedThrough = true;
+      super.sendError(sc);
+    }
+
+    @Override public void sendError(int sc, String msg) throws IOException {
+      passedThrough = true;
+      super.sendError(sc, msg);
+    }
+
+    @Override public void sendRedirect(String location) throws IOException {
+      passedThrough = true;
+      super.sendRedirect(location);
+    }
+
+    @Override public void setHeader(String name, String value) {
+      headers.replaceValues(name, ImmutableList.of(value));
+    }
+
+    @Override public void addHeader(String name, String value) {
+      headers.put(name, value);
+    }
+
+    @Override public void setIntHeader(String name, int value) {
+      setHeader(name, String.valueOf(value));
+    }
+
+    @Override public void addIntHeader(String name, int value) {
+      addHeader(name, String.valueOf(value));
+    }
+
+    @Override public void setDateHeader(String name, long date) {
+      cacheable = false;
+      super.setDateHeader(name, date);
+    }
+
+    @Override public void addDateHeader(String name, long date) {
+      cacheable = false;
+      super.addDateHeader(name, date);
+    }
+
+    @Override public boolean containsHeader(String name) {
+      return headers.containsKey(name) || super.containsHeader(name);
+    }
+
+    @Override public boolean isCommitted() {
+      return passedThrough || super.isCommitted();
+    }
+  }
+}
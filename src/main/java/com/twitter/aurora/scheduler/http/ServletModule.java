@@ -16,12 +16,14 @@
 package com.twitter.aurora.scheduler.http;
 
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.net.MediaType;
 import com.google.inject.AbstractModule;
 import com.google.inject.Key;
@@ -31,15 +33,21 @@ import com.sun.jersey.api.container.filter.GZIPContentEncodingFilter;
 import com.sun.jersey.guice.JerseyServletModule;
 import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
 
+import com.twitter.aurora.scheduler.events.PubsubEventModule;
 import com.twitter.aurora.scheduler.quota.QuotaManager;
 import com.twitter.aurora.scheduler.state.CronJobManager;
 import com.twitter.aurora.scheduler.state.SchedulerCore;
 import com.twitter.common.application.http.Registration;
 import com.twitter.common.application.modules.LifecycleModule;
 import com.twitter.common.application.modules.LocalServiceRegistry;
+import com.twitter.common.args.Arg;
+import com.twitter.common.args.CmdLine;
 import com.twitter.common.base.ExceptionalCommand;
 import com.twitter.common.net.pool.DynamicHostSet;
 import com.twitter.common.net.pool.DynamicHostSet.MonitorException;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
 import com.twitter.common.webassets.bootstrap.BootstrapModule;
 import com.twitter.common.webassets.bootstrap.BootstrapModule.BootstrapVersion;
 import com.twitter.common.webassets.jquery.JQueryModule;
@@ -54,6 +62,22 @@ import static com.sun.jersey.api.json.JSONConfiguration.FEATURE_POJO_MAPPING;
  */
 public class ServletModule extends AbstractModule {
 
+  @CmdLine(name = "http_response_cache_ttl",
+      help = "Time that rendered scheduler and utilization pages may be served from cache.  Task "
+          + "events invalidate cached pages earlier, other changes such as cron jobs and quotas "
+          + "may be stale for up to this time.  Zero disables the cache.")
+  private static final Arg<Amount<Long, Time>> RESPONSE_CACHE_TTL =
+      Arg.create(Amount.of(0L, Time.SECONDS));
+
+  @CmdLine(name = "http_response_cache_max_size",
+      help = "Maximum total size of scheduler pages held in the response cache.")
+  private static final Arg<Amount<Long, Data>> RESPONSE_CACHE_MAX_SIZE =
+      Arg.create(Amount.of(32L, Data.MB));
+
+  // Endpoints whose responses are cached.  These are rendered from tasks, so task events
+  // invalidate them.  Offers and slaves change without events, so they are not cached.
+  private static final Set<String> CACHED_ENDPOINTS = ImmutableSet.of("/scheduler", "/utilization");
+
   private static final Map<String, String> CONTAINER_PARAMS = ImmutableMap.of(
       FEATURE_POJO_MAPPING, Boolean.TRUE.toString(),
       PROPERTY_CONTAINER_REQUEST_FILTERS, GZIPContentEncodingFilter.class.getName(),
@@ -72,10 +96,22 @@ public class ServletModule extends AbstractModule {
     // Bindings required for the leader redirector.
     requireBinding(LocalServiceRegistry.class);
     requireBinding(Key.get(new TypeLiteral<DynamicHostSet<ServiceInstance>>() { }));
+
+    final boolean cacheResponses = RESPONSE_CACHE_TTL.get().getValue() > 0;
+    if (cacheResponses) {
+      bind(ResponseCacheFilter.class).toInstance(
+          new ResponseCacheFilter(RESPONSE_CACHE_TTL.get(), RESPONSE_CACHE_MAX_SIZE.get()));
+      PubsubEventModule.bindSubscriber(binder(), ResponseCacheFilter.class);
+    }
+
     Registration.registerServletFilter(binder(), GuiceFilter.class, "/*");
     install(new JerseyServletModule() {
       private void registerJerseyEndpoint(String indexPath, Class<?>... servlets) {
         filter(indexPath + "*").through(LeaderRedirectFilter.class);
+        // Cached responses are only served by the leader.
+        if (cacheResponses && CACHED_ENDPOINTS.contains(indexPath)) {
+          filter(indexPath + "*").through(ResponseCacheFilter.class);
+        }
         filter(indexPath + "*").through(GuiceContainer.class, CONTAINER_PARAMS);
         Registration.registerEndpoint(binder(), indexPath);
         for (Class<?> servlet : servlets) {
@@ -99,6 +135,7 @@ public class ServletModule extends AbstractModule {
             SchedulerzRole.class,
             SchedulerzJob.class);
         registerJerseyEndpoint("/slaves", Slaves.class);
+        registerJerseyEndpoint("/storage", StorageProfile.class);
         registerJerseyEndpoint("/structdump", StructDump.class);
         registerJerseyEndpoint("/utilization", Utilization.class);
       }
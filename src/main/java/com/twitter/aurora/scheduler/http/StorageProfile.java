@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.http;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import com.twitter.aurora.scheduler.storage.StorageProfiler;
+
+/**
+ * Servlet that exposes where time is spent in storage operations.
+ */
+@Path("/storage")
+public class StorageProfile {
+
+  private final StorageProfiler profiler;
+
+  @Inject
+  StorageProfile(StorageProfiler profiler) {
+    this.profiler = Preconditions.checkNotNull(profiler);
+  }
+
+  /**
+   * Dumps storage operation statistics per site, task query statistics per index, and the
+   * slowest operations recorded.
+   *
+   * @return HTTP response.
+   */
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getProfile() {
+    return Response.ok(ImmutableMap.of(
+        "sites", profiler.getSites(),
+        "queries", profiler.getQueries(),
+        "slowest", profiler.getSlowest())).build();
+  }
+}
@@ -0,0 +1,714 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.local;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.mesos.Protos.Attribute;
+import org.apache.mesos.Protos.Filters;
+import org.apache.mesos.Protos.FrameworkID;
+import org.apache.mesos.Protos.MasterInfo;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.Protos.Status;
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.Protos.Value.Scalar;
+import org.apache.mesos.Protos.Value.Text;
+import org.apache.mesos.Protos.Value.Type;
+import org.apache.mesos.Scheduler;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.thrift.TException;
+
+import com.twitter.aurora.gen.AuroraAdmin;
+import com.twitter.aurora.gen.Identity;
+import com.twitter.aurora.gen.JobConfiguration;
+import com.twitter.aurora.gen.Quota;
+import com.twitter.aurora.gen.Response;
+import com.twitter.aurora.gen.ResponseCode;
+import com.twitter.aurora.gen.SessionKey;
+import com.twitter.aurora.scheduler.DriverFactory;
+import com.twitter.aurora.scheduler.base.Tasks;
+import com.twitter.aurora.scheduler.configuration.ConfigurationManager;
+import com.twitter.aurora.scheduler.configuration.Resources;
+import com.twitter.aurora.scheduler.events.PubsubEvent.DriverRegistered;
+import com.twitter.aurora.scheduler.events.PubsubEvent.EventSubscriber;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import com.twitter.aurora.scheduler.local.FakeDriverFactory.FakeSchedulerDriver;
+import com.twitter.aurora.scheduler.storage.Storage;
+import com.twitter.aurora.scheduler.storage.Storage.MutateWork;
+import com.twitter.common.application.Lifecycle;
+import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.base.Command;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.SlidingStats;
+import com.twitter.common.util.concurrent.ExecutorServiceShutdown;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Simulates a mesos cluster in-process, driving the scheduler with synthetic offers and task
+ * status updates.
+ * <p>
+ * Slaves are spread across racks, and offer their unallocated resources periodically.  Launched
+ * tasks start, run for a random duration and then finish or fail.  Racks may be taken out
+ * periodically, losing all the tasks on them.  The time taken to place and start tasks, the
+ * fraction of offered resources accepted and the latency of storage writes are logged
+ * periodically.
+ */
+class ClusterSimulator implements EventSubscriber, DriverFactory {
+
+  private static final Logger LOG = Logger.getLogger(ClusterSimulator.class.getName());
+
+  private static final Identity OWNER = new Identity("mesos", "mesos");
+
+  /**
+   * Parameters of the simulated cluster.
+   */
+  static class Settings {
+    private final int numSlaves;
+    private final int numRacks;
+    private final Resources slaveResources;
+    private final Amount<Long, Time> offerInterval;
+    private final Amount<Long, Time> taskStartupTime;
+    private final Amount<Long, Time> taskRunTime;
+    private final double taskFailureRate;
+    private final Amount<Long, Time> rackOutageInterval;
+    private final Amount<Long, Time> rackOutageDuration;
+    private final Amount<Long, Time> reportInterval;
+
+    Settings(
+        int numSlaves,
+        int numRacks,
+        Resources slaveResources,
+        Amount<Long, Time> offerInterval,
+        Amount<Long, Time> taskStartupTime,
+        Amount<Long, Time> taskRunTime,
+        double taskFailureRate,
+        Amount<Long, Time> rackOutageInterval,
+        Amount<Long, Time> rackOutageDuration,
+        Amount<Long, Time> reportInterval) {
+
+      checkArgument(numSlaves > 0);
+      checkArgument(numRacks > 0);
+      checkArgument(taskFailureRate >= 0 && taskFailureRate <= 1);
+      this.numSlaves = numSlaves;
+      this.numRacks = numRacks;
+      this.slaveResources = checkNotNull(slaveResources);
+      this.offerInterval = checkNotNull(offerInterval);
+      this.taskStartupTime = checkNotNull(taskStartupTime);
+      this.taskRunTime = checkNotNull(taskRunTime);
+      this.taskFailureRate = taskFailureRate;
+      this.rackOutageInterval = checkNotNull(rackOutageInterval);
+      this.rackOutageDuration = checkNotNull(rackOutageDuration);
+      this.reportInterval = checkNotNull(reportInterval);
+    }
+  }
+
+  private static class SimulatedSlave {
+    private final SlaveID slaveId;
+    private final String host;
+    private final String rack;
+    private final Set<String> tasks = Sets.newHashSet();
+    private Resources free;
+    private boolean up = true;
+    @Nullable private OfferID outstandingOffer;
+
+    SimulatedSlave(int index, String rack, Resources resources) {
+      this.slaveId = SlaveID.newBuilder().setValue("sim-slave-" + index).build();
+      this.host = "sim-host-" + index;
+      this.rack = rack;
+      this.free = resources;
+    }
+  }
+
+  private static class SimulatedTask {
+    private final SimulatedSlave slave;
+    private final Resources resources;
+
+    SimulatedTask(SimulatedSlave slave, Resources resources) {
+      this.slave = slave;
+      this.resources = resources;
+    }
+  }
+
+  /**
+   * Latency samples, exported as a stat and summarized by percentile for each report.
+   */
+  private static class LatencySamples {
+    private final SlidingStats stats;
+    private final List<Long> window = Lists.newArrayList();
+
+    LatencySamples(String name) {
+      stats = new SlidingStats(name, "nanos");
+    }
+
+    synchronized void record(long nanos) {
+      stats.accumulate(nanos);
+      window.add(nanos);
+    }
+
+    private long percentileMs(int percentile) {
+      int index = Math.min(window.size() - 1, (window.size() * percentile) / 100);
+      return TimeUnit.NANOSECONDS.toMillis(window.get(index));
+    }
+
+    synchronized String drain() {
+      if (window.isEmpty()) {
+        return "no samples";
+      }
+
+      Collections.sort(window);
+      String summary = String.format("p50 %d ms, p90 %d ms, p99 %d ms, max %d ms (%d samples)",
+          percentileMs(50), percentileMs(90), percentileMs(99), percentileMs(100), window.size());
+      window.clear();
+      return summary;
+    }
+  }
+
+  private final Settings settings;
+  private final JobMix jobMix;
+  private final Provider<Scheduler> scheduler;
+  private final AuroraAdmin.Iface thrift;
+  private final Storage storage;
+  private final Lifecycle lifecycle;
+  private final ScheduledExecutorService executor;
+  private final SimulatedDriver driver = new SimulatedDriver();
+  private final Random random = new Random();
+  private final AtomicLong offerIds = new AtomicLong();
+
+  private final List<SimulatedSlave> slaves;
+  private final ImmutableListMultimap<String, SimulatedSlave> slavesByRack;
+  // Guarded by 'this'.
+  private final Map<OfferID, SimulatedSlave> offers = Maps.newHashMap();
+  private final Map<String, SimulatedTask> tasks = Maps.newHashMap();
+  private double offeredCpus = 0;
+  private double acceptedCpus = 0;
+  private long offeredRamMb = 0;
+  private long acceptedRamMb = 0;
+
+  private final ConcurrentMap<String, Long> pendingSince = Maps.newConcurrentMap();
+  private final LatencySamples timeToAssigned = new LatencySamples("simulator_time_to_assigned");
+  private final LatencySamples timeToRunning = new LatencySamples("simulator_time_to_running");
+  private final LatencySamples storageWriteLatency =
+      new LatencySamples("simulator_storage_write_latency");
+
+  @Inject
+  ClusterSimulator(
+      Settings settings,
+      JobMix jobMix,
+      Provider<Scheduler> scheduler,
+      AuroraAdmin.Iface thrift,
+      Storage storage,
+      Lifecycle lifecycle,
+      ShutdownRegistry shutdownRegistry) {
+
+    this.settings = checkNotNull(settings);
+    this.jobMix = checkNotNull(jobMix);
+    this.scheduler = checkNotNull(scheduler);
+    this.thrift = checkNotNull(thrift);
+    this.storage = checkNotNull(storage);
+    this.lifecycle = checkNotNull(lifecycle);
+    this.executor = createThreadPool(shutdownRegistry);
+
+    ImmutableList.Builder<SimulatedSlave> slaveBuilder = ImmutableList.builder();
+    for (int i = 0; i < settings.numSlaves; i++) {
+      slaveBuilder.add(
+          new SimulatedSlave(i, "sim-rack-" + (i % settings.numRacks), settings.slaveResources));
+    }
+    this.slaves = slaveBuilder.build();
+    this.slavesByRack = Multimaps.index(slaves, new Function<SimulatedSlave, String>() {
+      @Override public String apply(SimulatedSlave slave) {
+        return slave.rack;
+      }
+    });
+  }
+
+  private static ScheduledExecutorService createThreadPool(ShutdownRegistry shutdownRegistry) {
+    final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+        4,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ClusterSimulator-%d").build());
+    shutdownRegistry.addAction(new Command() {
+      @Override public void execute() {
+        new ExecutorServiceShutdown(executor, Amount.of(1L, Time.SECONDS)).execute();
+      }
+    });
+    return executor;
+  }
+
+  /**
+   * A driver that registers with the scheduler, and applies launches, declines and kills to the
+   * simulated cluster.
+   */
+  private class SimulatedDriver extends FakeSchedulerDriver {
+    private volatile FrameworkID frameworkId = FrameworkID.newBuilder().setValue("").build();
+
+    @Override public Status run() {
+      scheduler.get().registered(
+          this,
+          frameworkId,
+          MasterInfo.newBuilder().setId("master-id").setIp(100).setPort(200).build());
+      lifecycle.awaitShutdown();
+      return null;
+    }
+
+    @Override public Status launchTasks(OfferID offerId, Collection<TaskInfo> taskInfos,
+        Filters filters) {
+      return launchTasks(offerId, taskInfos);
+    }
+
+    @Override public Status launchTasks(OfferID offerId, Collection<TaskInfo> taskInfos) {
+      launched(offerId, taskInfos);
+      return null;
+    }
+
+    @Override public Status killTask(TaskID taskId) {
+      killed(taskId.getValue());
+      return null;
+    }
+
+    @Override public Status declineOffer(OfferID offerId, Filters filters) {
+      return declineOffer(offerId);
+    }
+
+    @Override public Status declineOffer(OfferID offerId) {
+      declined(offerId);
+      return null;
+    }
+  }
+
+  @Override
+  public SchedulerDriver apply(@Nullable String frameworkId) {
+    driver.frameworkId = FrameworkID.newBuilder()
+        .setValue(Optional.fromNullable(frameworkId).or("new-framework-id"))
+        .build();
+    return driver;
+  }
+
+  private void schedule(Runnable runnable, Amount<Long, Time> delay) {
+    executor.schedule(runnable, delay.getValue(), delay.getUnit().getTimeUnit());
+  }
+
+  private void scheduleAtFixedRate(final Runnable runnable, Amount<Long, Time> interval) {
+    executor.scheduleAtFixedRate(
+        new Runnable() {
+          @Override public void run() {
+            try {
+              runnable.run();
+            } catch (RuntimeException e) {
+              LOG.log(Level.WARNING, "Simulator action failed: " + e, e);
+            }
+          }
+        },
+        interval.getValue(),
+        interval.getValue(),
+        interval.getUnit().getTimeUnit());
+  }
+
+  @Subscribe
+  public void registered(DriverRegistered event) {
+    executor.submit(new Runnable() {
+      @Override public void run() {
+        setQuota();
+        List<JobConfiguration> jobs = jobMix.createJobs(OWNER);
+        LOG.info("Simulating " + slaves.size() + " slaves in " + slavesByRack.keySet().size()
+            + " racks, submitting " + jobs.size() + " jobs with "
+            + jobMix.getInstanceCount() + " instances.");
+        for (JobConfiguration job : jobs) {
+          submitJob(job);
+        }
+      }
+    });
+
+    scheduleAtFixedRate(
+        new Runnable() {
+          @Override public void run() {
+            offerResources();
+          }
+        },
+        settings.offerInterval);
+    if (settings.rackOutageInterval.getValue() > 0) {
+      scheduleAtFixedRate(
+          new Runnable() {
+            @Override public void run() {
+              rackOutage();
+            }
+          },
+          settings.rackOutageInterval);
+    }
+    scheduleAtFixedRate(
+        new Runnable() {
+          @Override public void run() {
+            report();
+          }
+        },
+        settings.reportInterval);
+  }
+
+  private void setQuota() {
+    try {
+      thrift.setQuota(
+          OWNER.getRole(),
+          new Quota(2.0 * 1000000, 100000000, 100000000),
+          new SessionKey());
+    } catch (TException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private void submitJob(JobConfiguration job) {
+    Response response;
+    try {
+      response = thrift.createJob(job, null, new SessionKey());
+    } catch (TException e) {
+      throw Throwables.propagate(e);
+    }
+    if (response.getResponseCode() != ResponseCode.OK) {
+      LOG.warning("Failed to create job " + job.getKey() + ": " + response);
+    }
+  }
+
+  private static Resource scalar(String name, double value) {
+    return Resource.newBuilder()
+        .setName(name)
+        .setType(Type.SCALAR)
+        .setScalar(Scalar.newBuilder().setValue(value))
+        .build();
+  }
+
+  private static Attribute attribute(String name, String value) {
+    return Attribute.newBuilder()
+        .setName(name)
+        .setType(Type.TEXT)
+        .setText(Text.newBuilder().setValue(value))
+        .build();
+  }
+
+  private void offerResources() {
+    List<Offer> newOffers = Lists.newArrayList();
+    synchronized (this) {
+      for (SimulatedSlave slave : slaves) {
+        if (slave.up
+            && (slave.outstandingOffer == null)
+            && (slave.free.getNumCpus() > 0)
+            && (slave.free.getRam().as(Data.MB) > 0)) {
+
+          OfferID offerId =
+              OfferID.newBuilder().setValue("sim-offer-" + offerIds.incrementAndGet()).build();
+          slave.outstandingOffer = offerId;
+          offers.put(offerId, slave);
+          offeredCpus += slave.free.getNumCpus();
+          offeredRamMb += slave.free.getRam().as(Data.MB);
+          newOffers.add(Offer.newBuilder()
+              .setId(offerId)
+              .setFrameworkId(driver.frameworkId)
+              .setSlaveId(slave.slaveId)
+              .setHostname(slave.host)
+              .addResources(scalar(Resources.CPUS, slave.free.getNumCpus()))
+              .addResources(scalar(Resources.RAM_MB, slave.free.getRam().as(Data.MB)))
+              .addResources(scalar(Resources.DISK_MB, slave.free.getDisk().as(Data.MB)))
+              .addAttributes(attribute(ConfigurationManager.RACK_CONSTRAINT, slave.rack))
+              .addAttributes(attribute(ConfigurationManager.HOST_CONSTRAINT, slave.host))
+              .build());
+        }
+      }
+    }
+
+    if (!newOffers.isEmpty()) {
+      scheduler.get().resourceOffers(driver, newOffers);
+    }
+  }
+
+  private static Resources getResources(TaskInfo task) {
+    Resources resources = Resources.from(task.getResourcesList());
+    if (task.hasExecutor()) {
+      resources = Resources.sum(resources, Resources.from(task.getExecutor().getResourcesList()));
+    }
+    return resources;
+  }
+
+  private void launched(OfferID offerId, Collection<TaskInfo> launchedTasks) {
+    boolean accepted;
+    synchronized (this) {
+      SimulatedSlave slave = offers.remove(offerId);
+      accepted = (slave != null) && slave.up;
+      if (slave != null) {
+        slave.outstandingOffer = null;
+      }
+      if (accepted) {
+        for (TaskInfo task : launchedTasks) {
+          Resources resources = getResources(task);
+          slave.free = Resources.subtract(slave.free, resources);
+          slave.tasks.add(task.getTaskId().getValue());
+          tasks.put(task.getTaskId().getValue(), new SimulatedTask(slave, resources));
+          acceptedCpus += resources.getNumCpus();
+          acceptedRamMb += resources.getRam().as(Data.MB);
+        }
+      }
+    }
+
+    for (TaskInfo task : launchedTasks) {
+      String taskId = task.getTaskId().getValue();
+      if (accepted) {
+        long startupMs = randomMs(settings.taskStartupTime);
+        long runMs = randomMs(settings.taskRunTime);
+        sendStatus(taskId, TaskState.TASK_STARTING, startupMs / 2);
+        sendStatus(taskId, TaskState.TASK_RUNNING, startupMs);
+        TaskState endState = (random.nextDouble() < settings.taskFailureRate)
+            ? TaskState.TASK_FAILED
+            : TaskState.TASK_FINISHED;
+        sendStatus(taskId, endState, startupMs + runMs);
+      } else {
+        // The offer was rescinded, so as with mesos the task is lost.
+        sendStatusNow(taskId, TaskState.TASK_LOST);
+      }
+    }
+  }
+
+  private long randomMs(Amount<Long, Time> max) {
+    long maxMs = max.as(Time.MILLISECONDS);
+    return (maxMs > 0) ? (long) (random.nextDouble() * maxMs) : 0;
+  }
+
+  private synchronized void declined(OfferID offerId) {
+    SimulatedSlave slave = offers.remove(offerId);
+    if (slave != null) {
+      slave.outstandingOffer = null;
+    }
+  }
+
+  private void killed(final String taskId) {
+    executor.submit(new Runnable() {
+      @Override public void run() {
+        if (release(taskId)) {
+          sendStatusNow(taskId, TaskState.TASK_KILLED);
+        }
+      }
+    });
+  }
+
+  /**
+   * Releases a task's resources.
+   *
+   * @param taskId Task to release.
+   * @return {@code true} if the task was running on the cluster.
+   */
+  private synchronized boolean release(String taskId) {
+    SimulatedTask task = tasks.remove(taskId);
+    if (task == null) {
+      return false;
+    }
+    task.slave.free = Resources.sum(task.slave.free, task.resources);
+    task.slave.tasks.remove(taskId);
+    return true;
+  }
+
+  private synchronized boolean isRunning(String taskId) {
+    return tasks.containsKey(taskId);
+  }
+
+  private static boolean isTerminal(TaskState state) {
+    switch (state) {
+      case TASK_FINISHED:
+      case TASK_FAILED:
+      case TASK_KILLED:
+      case TASK_LOST:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void sendStatus(final String taskId, final TaskState state, long delayMs) {
+    schedule(
+        new Runnable() {
+          @Override public void run() {
+            // The task may have been killed or lost in the meantime.
+            boolean current = isTerminal(state) ? release(taskId) : isRunning(taskId);
+            if (current) {
+              sendStatusNow(taskId, state);
+            }
+          }
+        },
+        Amount.of(delayMs, Time.MILLISECONDS));
+  }
+
+  private void sendStatusNow(String taskId, TaskState state) {
+    scheduler.get().statusUpdate(
+        driver,
+        TaskStatus.newBuilder()
+            .setTaskId(TaskID.newBuilder().setValue(taskId))
+            .setState(state)
+            .build());
+  }
+
+  private void rackOutage() {
+    List<String> racks = Lists.newArrayList(slavesByRack.keySet());
+    final String rack = racks.get(random.nextInt(racks.size()));
+    List<OfferID> rescinded = Lists.newArrayList();
+    List<String> lost = Lists.newArrayList();
+    synchronized (this) {
+      if (!slavesByRack.get(rack).get(0).up) {
+        // The rack is already out.
+        return;
+      }
+      for (SimulatedSlave slave : slavesByRack.get(rack)) {
+        slave.up = false;
+        if (slave.outstandingOffer != null) {
+          offers.remove(slave.outstandingOffer);
+          rescinded.add(slave.outstandingOffer);
+          slave.outstandingOffer = null;
+        }
+        lost.addAll(slave.tasks);
+      }
+      for (String taskId : lost) {
+        release(taskId);
+      }
+    }
+
+    LOG.info("Simulating outage of " + rack + ", losing " + lost.size() + " tasks.");
+    for (OfferID offerId : rescinded) {
+      scheduler.get().offerRescinded(driver, offerId);
+    }
+    for (String taskId : lost) {
+      sendStatusNow(taskId, TaskState.TASK_LOST);
+    }
+
+    schedule(
+        new Runnable() {
+          @Override public void run() {
+            synchronized (ClusterSimulator.this) {
+              for (SimulatedSlave slave : slavesByRack.get(rack)) {
+                slave.up = true;
+              }
+            }
+            LOG.info("Simulated outage of " + rack + " is over.");
+          }
+        },
+        settings.rackOutageDuration);
+  }
+
+  private static void recordSince(LatencySamples samples, @Nullable Long start, long now) {
+    if (start != null) {
+      samples.record(now - start);
+    }
+  }
+
+  @Subscribe
+  public void stateChanged(TaskStateChange stateChange) {
+    String taskId = stateChange.getTaskId();
+    long now = System.nanoTime();
+    switch (stateChange.getNewState()) {
+      case PENDING:
+        pendingSince.put(taskId, now);
+        break;
+
+      case ASSIGNED:
+        recordSince(timeToAssigned, pendingSince.get(taskId), now);
+        break;
+
+      case RUNNING:
+        recordSince(timeToRunning, pendingSince.remove(taskId), now);
+        break;
+
+      default:
+        if (Tasks.isTerminated(stateChange.getNewState())) {
+          pendingSince.remove(taskId);
+        }
+        break;
+    }
+  }
+
+  private static double percent(double part, double total) {
+    return (total > 0) ? (100 * part) / total : 0;
+  }
+
+  private void report() {
+    // Probe the time taken to get through the storage write lock and the log.
+    long start = System.nanoTime();
+    storage.write(MutateWork.NOOP);
+    storageWriteLatency.record(System.nanoTime() - start);
+
+    int slavesUp = 0;
+    double freeCpus = 0;
+    long freeRamMb = 0;
+    double offerCpuUtilization;
+    double offerRamUtilization;
+    int runningTasks;
+    synchronized (this) {
+      for (SimulatedSlave slave : slaves) {
+        if (slave.up) {
+          slavesUp++;
+          freeCpus += slave.free.getNumCpus();
+          freeRamMb += slave.free.getRam().as(Data.MB);
+        }
+      }
+      offerCpuUtilization = percent(acceptedCpus, offeredCpus);
+      offerRamUtilization = percent(acceptedRamMb, offeredRamMb);
+      offeredCpus = 0;
+      acceptedCpus = 0;
+      offeredRamMb = 0;
+      acceptedRamMb = 0;
+      runningTasks = tasks.size();
+    }
+
+    double totalCpus = slavesUp * settings.slaveResources.getNumCpus();
+    double totalRamMb = slavesUp * settings.slaveResources.getRam().as(Data.MB);
+    LOG.info(String.format("Simulated cluster: %d/%d slaves up, %d tasks on slaves, "
+        + "%.1f%% cpu and %.1f%% ram allocated", slavesUp, slaves.size(), runningTasks,
+        percent(totalCpus - freeCpus, totalCpus), percent(totalRamMb - freeRamMb, totalRamMb)));
+    LOG.info(String.format("Offer utilization: %.1f%% of offered cpu and %.1f%% of offered ram "
+        + "accepted", offerCpuUtilization, offerRamUtilization));
+    LOG.info("Time to assigned: " + timeToAssigned.drain());
+    LOG.info("Time to running: " + timeToRunning.drain());
+    LOG.info("Storage write latency: " + storageWriteLatency.drain());
+  }
+}
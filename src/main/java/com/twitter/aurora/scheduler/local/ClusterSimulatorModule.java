@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.local;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.inject.Singleton;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+
+import com.twitter.aurora.scheduler.DriverFactory;
+import com.twitter.aurora.scheduler.configuration.Resources;
+import com.twitter.aurora.scheduler.events.PubsubEventModule;
+import com.twitter.aurora.scheduler.local.ClusterSimulator.Settings;
+import com.twitter.common.args.Arg;
+import com.twitter.common.args.CmdLine;
+import com.twitter.common.args.constraints.Positive;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
+
+/**
+ * Binds a simulated cluster of synthetic slaves, used in place of a mesos driver to exercise the
+ * scheduler at scale.
+ */
+class ClusterSimulatorModule extends AbstractModule {
+
+  @Positive
+  @CmdLine(name = "simulator_slaves", help = "Number of slaves in the simulated cluster.")
+  private static final Arg<Integer> NUM_SLAVES = Arg.create(2000);
+
+  @Positive
+  @CmdLine(name = "simulator_racks", help = "Number of racks the simulated slaves are spread over.")
+  private static final Arg<Integer> NUM_RACKS = Arg.create(50);
+
+  @Positive
+  @CmdLine(name = "simulator_slave_cpus", help = "CPUs on each simulated slave.")
+  private static final Arg<Double> SLAVE_CPUS = Arg.create(16D);
+
+  @CmdLine(name = "simulator_slave_ram", help = "RAM on each simulated slave.")
+  private static final Arg<Amount<Long, Data>> SLAVE_RAM = Arg.create(Amount.of(24L, Data.GB));
+
+  @CmdLine(name = "simulator_slave_disk", help = "Disk on each simulated slave.")
+  private static final Arg<Amount<Long, Data>> SLAVE_DISK = Arg.create(Amount.of(100L, Data.GB));
+
+  @CmdLine(name = "simulator_offer_interval",
+      help = "Interval at which simulated slaves offer their unallocated resources.")
+  private static final Arg<Amount<Long, Time>> OFFER_INTERVAL =
+      Arg.create(Amount.of(1L, Time.SECONDS));
+
+  @CmdLine(name = "simulator_task_startup_time",
+      help = "Maximum time for a simulated task to reach RUNNING after it is launched.")
+  private static final Arg<Amount<Long, Time>> TASK_STARTUP_TIME =
+      Arg.create(Amount.of(10L, Time.SECONDS));
+
+  @CmdLine(name = "simulator_task_run_time",
+      help = "Maximum time a simulated task runs before finishing or failing.")
+  private static final Arg<Amount<Long, Time>> TASK_RUN_TIME =
+      Arg.create(Amount.of(10L, Time.MINUTES));
+
+  @CmdLine(name = "simulator_task_failure_rate",
+      help = "Fraction of simulated tasks that fail rather than finish.")
+  private static final Arg<Double> TASK_FAILURE_RATE = Arg.create(0.05);
+
+  @CmdLine(name = "simulator_rack_outage_interval",
+      help = "Interval at which a random rack of simulated slaves goes down, or 0 for no outages.")
+  private static final Arg<Amount<Long, Time>> RACK_OUTAGE_INTERVAL =
+      Arg.create(Amount.of(30L, Time.MINUTES));
+
+  @CmdLine(name = "simulator_rack_outage_duration",
+      help = "Time a simulated rack outage lasts.")
+  private static final Arg<Amount<Long, Time>> RACK_OUTAGE_DURATION =
+      Arg.create(Amount.of(5L, Time.MINUTES));
+
+  @CmdLine(name = "simulator_report_interval",
+      help = "Interval at which simulated cluster statistics are logged.")
+  private static final Arg<Amount<Long, Time>> REPORT_INTERVAL =
+      Arg.create(Amount.of(1L, Time.MINUTES));
+
+  @CmdLine(name = "simulator_job_mix",
+      help = "File describing the jobs to submit to the simulated cluster.  By default, a small "
+          + "mix of service, adhoc and cron jobs is submitted.")
+  private static final Arg<File> JOB_MIX = Arg.create(null);
+
+  @Override
+  protected void configure() {
+    bind(Settings.class).toInstance(new Settings(
+        NUM_SLAVES.get(),
+        NUM_RACKS.get(),
+        new Resources(SLAVE_CPUS.get(), SLAVE_RAM.get(), SLAVE_DISK.get(), 0),
+        OFFER_INTERVAL.get(),
+        TASK_STARTUP_TIME.get(),
+        TASK_RUN_TIME.get(),
+        TASK_FAILURE_RATE.get(),
+        RACK_OUTAGE_INTERVAL.get(),
+        RACK_OUTAGE_DURATION.get(),
+        REPORT_INTERVAL.get()));
+    bind(DriverFactory.class).to(ClusterSimulator.class);
+    bind(ClusterSimulator.class).in(Singleton.class);
+    PubsubEventModule.bindSubscriber(binder(), ClusterSimulator.class);
+  }
+
+  @Provides
+  @Singleton
+  JobMix provideJobMix() throws IOException {
+    return (JOB_MIX.get() == null) ? JobMix.DEFAULT : JobMix.read(JOB_MIX.get());
+  }
+}
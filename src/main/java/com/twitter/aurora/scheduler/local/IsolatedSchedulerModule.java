@@ -75,6 +75,8 @@ import com.twitter.aurora.scheduler.events.PubsubEventModule;
 import com.twitter.aurora.scheduler.local.FakeDriverFactory.FakeSchedulerDriver;
 import com.twitter.aurora.scheduler.log.testing.FileLogStreamModule;
 import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.args.Arg;
+import com.twitter.common.args.CmdLine;
 import com.twitter.common.base.Command;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
@@ -88,16 +90,26 @@ import com.twitter.common.util.concurrent.ExecutorServiceShutdown;
  * <pre>
  * $ ./pants goal bundle aurora:scheduler-local && ./aurora/scripts/scheduler.sh -c local
  * </pre>
+ * With {@code -enable_cluster_simulator}, a large simulated cluster is used in place of the two
+ * fake slaves, see {@link ClusterSimulator}.
  */
 public class IsolatedSchedulerModule extends AbstractModule {
 
   private static final Logger LOG = Logger.getLogger(IsolatedSchedulerModule.class.getName());
 
+  @CmdLine(name = "enable_cluster_simulator",
+      help = "Run the isolated scheduler against a large simulated cluster.")
+  private static final Arg<Boolean> ENABLE_CLUSTER_SIMULATOR = Arg.create(false);
+
   @Override
   protected void configure() {
-    bind(DriverFactory.class).to(FakeDriverFactory.class);
-    bind(FakeDriverFactory.class).in(Singleton.class);
-    PubsubEventModule.bindSubscriber(binder(), FakeClusterRunner.class);
+    if (ENABLE_CLUSTER_SIMULATOR.get()) {
+      install(new ClusterSimulatorModule());
+    } else {
+      bind(DriverFactory.class).to(FakeDriverFactory.class);
+      bind(FakeDriverFactory.class).in(Singleton.class);
+      PubsubEventModule.bindSubscriber(binder(), FakeClusterRunner.class);
+    }
     install(new FileLogStreamModule());
   }
 
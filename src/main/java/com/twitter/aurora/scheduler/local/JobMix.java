@@ -0,0 +1,234 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import com.twitter.aurora.gen.ExecutorConfig;
+import com.twitter.aurora.gen.Identity;
+import com.twitter.aurora.gen.JobConfiguration;
+import com.twitter.aurora.gen.Package;
+import com.twitter.aurora.gen.TaskConfig;
+import com.twitter.aurora.scheduler.base.JobKeys;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A synthetic mix of jobs to submit to a simulated cluster.
+ * <p>
+ * A job mix is described by lines of whitespace-separated fields, with '#' starting a comment:
+ * <pre>
+ * # kind   jobs  instances  cpus  ram_mb  disk_mb  [production]
+ * service  100   10         1.0   1024    2048     production
+ * adhoc    50    5          0.5   512     1024
+ * cron     20    1          1.0   1024    1024
+ * </pre>
+ * Each line describes a group of identical jobs, where kind is one of {@code service},
+ * {@code adhoc} or {@code cron}.
+ */
+final class JobMix {
+
+  enum Kind {
+    SERVICE,
+    ADHOC,
+    CRON
+  }
+
+  static final JobMix DEFAULT = new JobMix(ImmutableList.of(
+      new JobGroup(Kind.SERVICE, 20, 5, 1.0, 1024, 1024, true),
+      new JobGroup(Kind.ADHOC, 20, 5, 1.0, 1024, 1024, false),
+      new JobGroup(Kind.CRON, 20, 5, 1.0, 1024, 1024, false)));
+
+  private static final Splitter FIELD_SPLITTER =
+      Splitter.on(' ').trimResults().omitEmptyStrings();
+
+  private final List<JobGroup> groups;
+
+  private JobMix(List<JobGroup> groups) {
+    this.groups = ImmutableList.copyOf(groups);
+  }
+
+  /**
+   * Reads a job mix from a file.
+   *
+   * @param file File describing the job mix.
+   * @return The job mix in the file.
+   * @throws IOException If the file could not be read.
+   */
+  static JobMix read(File file) throws IOException {
+    return parse(Files.readLines(file, Charsets.UTF_8));
+  }
+
+  /**
+   * Parses a job mix.
+   *
+   * @param lines Lines describing the job mix.
+   * @return The job mix.
+   * @throws IllegalArgumentException If a line is malformed.
+   */
+  @VisibleForTesting
+  static JobMix parse(Iterable<String> lines) {
+    List<JobGroup> groups = Lists.newArrayList();
+    for (String line : lines) {
+      int comment = line.indexOf('#');
+      String content = ((comment == -1) ? line : line.substring(0, comment)).replace('\t', ' ');
+      List<String> fields = ImmutableList.copyOf(FIELD_SPLITTER.split(content));
+      if (fields.isEmpty()) {
+        continue;
+      }
+
+      checkArgument(fields.size() == 6 || fields.size() == 7, "Malformed job mix line: " + line);
+      boolean production = false;
+      if (fields.size() == 7) {
+        checkArgument("production".equals(fields.get(6)), "Unrecognized field: " + fields.get(6));
+        production = true;
+      }
+      try {
+        groups.add(new JobGroup(
+            Kind.valueOf(fields.get(0).toUpperCase()),
+            Integer.parseInt(fields.get(1)),
+            Integer.parseInt(fields.get(2)),
+            Double.parseDouble(fields.get(3)),
+            Long.parseLong(fields.get(4)),
+            Long.parseLong(fields.get(5)),
+            production));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Malformed job mix line: " + line, e);
+      }
+    }
+    return new JobMix(groups);
+  }
+
+  /**
+   * Creates the jobs in the mix.
+   *
+   * @param owner Owner of the jobs.
+   * @return Configurations for every job in the mix.
+   */
+  List<JobConfiguration> createJobs(Identity owner) {
+    checkNotNull(owner);
+
+    ImmutableList.Builder<JobConfiguration> jobs = ImmutableList.builder();
+    for (int i = 0; i < groups.size(); i++) {
+      JobGroup group = groups.get(i);
+      for (int j = 0; j < group.jobs; j++) {
+        jobs.add(group.createJob(owner, group.kind.name().toLowerCase() + "_" + i + "_" + j));
+      }
+    }
+    return jobs.build();
+  }
+
+  /**
+   * Gets the total number of task instances in the mix.
+   *
+   * @return Number of instances.
+   */
+  int getInstanceCount() {
+    int count = 0;
+    for (JobGroup group : groups) {
+      count += group.jobs * group.instances;
+    }
+    return count;
+  }
+
+  @VisibleForTesting
+  List<JobGroup> getGroups() {
+    return groups;
+  }
+
+  @VisibleForTesting
+  static class JobGroup {
+    private final Kind kind;
+    private final int jobs;
+    private final int instances;
+    private final double cpus;
+    private final long ramMb;
+    private final long diskMb;
+    private final boolean production;
+
+    JobGroup(
+        Kind kind,
+        int jobs,
+        int instances,
+        double cpus,
+        long ramMb,
+        long diskMb,
+        boolean production) {
+
+      checkArgument(jobs > 0);
+      checkArgument(instances > 0);
+      checkArgument(cpus > 0);
+      checkArgument(ramMb > 0);
+      checkArgument(diskMb > 0);
+      this.kind = checkNotNull(kind);
+      this.jobs = jobs;
+      this.instances = instances;
+      this.cpus = cpus;
+      this.ramMb = ramMb;
+      this.diskMb = diskMb;
+      this.production = production;
+    }
+
+    Kind getKind() {
+      return kind;
+    }
+
+    int getJobs() {
+      return jobs;
+    }
+
+    int getInstances() {
+      return instances;
+    }
+
+    boolean isProduction() {
+      return production;
+    }
+
+    private JobConfiguration createJob(Identity owner, String jobName) {
+      JobConfiguration job = new JobConfiguration()
+          .setKey(JobKeys.from(owner.getRole(), "test", jobName).newBuilder())
+          .setOwner(owner)
+          .setInstanceCount(instances)
+          .setTaskConfig(new TaskConfig()
+              .setOwner(owner)
+              .setJobName(jobName)
+              .setEnvironment("test")
+              .setNumCpus(cpus)
+              .setRamMb(ramMb)
+              .setDiskMb(diskMb)
+              .setProduction(production)
+              .setIsService(kind == Kind.SERVICE)
+              .setPackages(ImmutableSet.of(new Package(owner.getRole(), "package", 15)))
+              .setExecutorConfig(new ExecutorConfig("aurora", "opaque")));
+      if (kind == Kind.CRON) {
+        job.setCronSchedule("* * * * *");
+      }
+      return job;
+    }
+  }
+}
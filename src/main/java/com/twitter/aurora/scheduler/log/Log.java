@@ -19,6 +19,8 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.Iterator;
 
+import com.google.common.base.Optional;
+
 /**
  * Represents an append only log that can be read after and truncated before a known
  * {@link Position}.
@@ -32,6 +34,14 @@ public interface Log {
    * An opaque ordered handle to a log entry's position in the log stream.
    */
   interface Position extends Comparable<Position> {
+
+    /**
+     * Gets a serialized form of this position that can be turned back into a position with
+     * {@link Stream#position(byte[])}.
+     *
+     * @return the identity of this position
+     */
+    byte[] identity();
   }
 
   /**
@@ -47,6 +57,19 @@ public interface Log {
     byte[] contents();
   }
 
+  /**
+   * A log entry that knows its position in the log stream.
+   */
+  interface PositionedEntry extends Entry {
+
+    /**
+     * Gets the position of the log entry.
+     *
+     * @return the position of this log entry in the log stream
+     */
+    Position position();
+  }
+
   /**
    * An interface to the live {@link Log} stream that allows for appending, reading and writing
    * entries.
@@ -101,6 +124,47 @@ public interface Log {
      */
     Iterator<Entry> readAll() throws InvalidPositionException, StreamAccessException;
 
+    /**
+     * Reads all entries following the given {@code position}, with the same guarantee of seeing
+     * every entry appended to the log stream as {@link #readAll()}.  If the entries up to the given
+     * position have already been truncated from the log stream, reading starts from the first
+     * entry in the stream.
+     *
+     * @param position the position of the last entry already read
+     * @return an iterator over the entries following {@code position}
+     * @throws InvalidPositionException if the specified position is not from this log, or is past
+     *     the end of the log
+     * @throws StreamAccessException if the stream could not be read from
+     */
+    Iterator<PositionedEntry> readAfter(Position position)
+        throws InvalidPositionException, StreamAccessException;
+
+    /**
+     * Reads the entries following the given {@code position} that are currently known to this log
+     * replica.  Unlike {@link #readAll()} and {@link #readAfter(Position)} this never writes to the
+     * log stream, so it is safe to call from a replica that is not the log writer in order to
+     * follow the stream; in exchange, recently appended entries may not be seen until a later
+     * call.  If the entries up to the given position have already been truncated from the log
+     * stream, reading starts from the first entry in the stream.
+     *
+     * @param position the position of the last entry already read, or absent to read from the
+     *     beginning of the stream
+     * @return an iterator over the entries following {@code position}
+     * @throws InvalidPositionException if the specified position is not from this log
+     * @throws StreamAccessException if the stream could not be read from
+     */
+    Iterator<PositionedEntry> follow(Optional<Position> position)
+        throws InvalidPositionException, StreamAccessException;
+
+    /**
+     * Recreates a position of this log stream from its {@link Position#identity() identity}.
+     *
+     * @param identity the identity of a position previously obtained from this log
+     * @return the position with the given identity
+     * @throws InvalidPositionException if the identity is not that of a position in this log
+     */
+    Position position(byte[] identity) throws InvalidPositionException;
+
     /**
      * Removes all log entries preceding the log entry at the given {@code position}.
      *
@@ -30,8 +30,11 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Functions;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.UnmodifiableIterator;
 import com.google.common.primitives.Longs;
 import com.google.inject.BindingAnnotation;
@@ -196,6 +199,37 @@ public class MesosLog implements com.twitter.aurora.scheduler.log.Log {
 
     @Override
     public Iterator<Entry> readAll() throws StreamAccessException {
+      appendNoop();
+      return Iterators.transform(
+          read(reader.beginning(), end().unwrap()),
+          Functions.<Entry>identity());
+    }
+
+    @Override
+    public Iterator<PositionedEntry> readAfter(Position position)
+        throws InvalidPositionException, StreamAccessException {
+
+      Preconditions.checkNotNull(position);
+      appendNoop();
+
+      // Having just appended, we know the full extent of the log.  A position past its end is
+      // from some other log.
+      if (identity(position) > identity(end())) {
+        throw new InvalidPositionException("Position is past the end of the log: " + position);
+      }
+      return read(Optional.of(position));
+    }
+
+    @Override
+    public Iterator<PositionedEntry> follow(Optional<Position> position)
+        throws InvalidPositionException, StreamAccessException {
+
+      // Reads only what the local replica has learned; we must not append here since that would
+      // contend with the log writer for the coordinator role.
+      return read(position);
+    }
+
+    private void appendNoop() throws StreamAccessException {
       // TODO(John Sirois): Currently we must be the coordinator to ensure we get the 'full read'
       // of log entries expected by the users of the com.twitter.aurora.scheduler.log.Log interface.
       // Switch to another method of ensuring this when it becomes available in mesos' log
@@ -205,18 +239,48 @@ public class MesosLog implements com.twitter.aurora.scheduler.log.Log {
       } catch (StreamAccessException e) {
         throw new StreamAccessException("Error writing noop prior to a read", e);
       }
+    }
+
+    private Iterator<PositionedEntry> read(Optional<Position> after) {
+      Log.Position beginning = reader.beginning();
+      Log.Position to = end().unwrap();
+      if (!after.isPresent()) {
+        return read(beginning, to);
+      }
+      // Entries up to and including the given position may have been truncated away, in which
+      // case we start from the beginning of the log.
+      long next = identity(after.get()) + 1;
+      if (next <= Longs.fromByteArray(beginning.identity())) {
+        return read(beginning, to);
+      }
+      return read(log.position(Longs.toByteArray(next)), to);
+    }
 
-      final Log.Position from = reader.beginning();
-      final Log.Position to = end().unwrap();
+    private static long identity(Position position) {
+      if (!(position instanceof LogPosition)) {
+        throw new InvalidPositionException("Unrecognized position " + position);
+      }
+      return Longs.fromByteArray(position.identity());
+    }
+
+    @Override
+    public LogPosition position(byte[] identity) throws InvalidPositionException {
+      if (identity.length != Longs.BYTES) {
+        throw new InvalidPositionException(
+            "Invalid position identity of length " + identity.length);
+      }
+      return LogPosition.wrap(log.position(identity));
+    }
 
+    private Iterator<PositionedEntry> read(final Log.Position from, final Log.Position to) {
       // Reading all the entries at once may cause large garbage collections. Instead, we
       // lazily read the entries one by one as they are requested.
       // TODO(Benjamin Hindman): Eventually replace this functionality with functionality
       // from the Mesos Log.
-      return new UnmodifiableIterator<Entry>() {
+      return new UnmodifiableIterator<PositionedEntry>() {
         private long position = Longs.fromByteArray(from.identity());
         private final long endPosition = Longs.fromByteArray(to.identity());
-        private Entry entry = null;
+        private PositionedEntry entry = null;
 
         @Override
         public boolean hasNext() {
@@ -262,12 +326,12 @@ public class MesosLog implements com.twitter.aurora.scheduler.log.Log {
         }
 
         @Override
-        public Entry next() {
+        public PositionedEntry next() {
           if (entry == null && !hasNext()) {
             throw new NoSuchElementException();
           }
 
-          Entry result = Preconditions.checkNotNull(entry);
+          PositionedEntry result = Preconditions.checkNotNull(entry);
           entry = null;
           return result;
         }
@@ -357,13 +421,18 @@ public class MesosLog implements com.twitter.aurora.scheduler.log.Log {
         return underlying;
       }
 
+      @Override public byte[] identity() {
+        return underlying.identity();
+      }
+
       @Override public int compareTo(Position o) {
         Preconditions.checkArgument(o instanceof LogPosition);
         return underlying.compareTo(((LogPosition) o).underlying);
       }
     }
 
-    private static class LogEntry implements com.twitter.aurora.scheduler.log.Log.Entry {
+    private static class LogEntry
+        implements com.twitter.aurora.scheduler.log.Log.PositionedEntry {
       private final Log.Entry underlying;
 
       public LogEntry(Log.Entry entry) {
@@ -374,6 +443,11 @@ public class MesosLog implements com.twitter.aurora.scheduler.log.Log {
       public byte[] contents() {
         return underlying.data;
       }
+
+      @Override
+      public LogPosition position() {
+        return LogPosition.wrap(underlying.position);
+      }
     }
   }
 }
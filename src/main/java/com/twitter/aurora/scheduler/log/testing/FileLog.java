@@ -24,11 +24,14 @@ import javax.inject.Inject;
 
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.io.Files;
@@ -39,6 +42,7 @@ import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
 import com.twitter.aurora.gen.test.FileLogContents;
 import com.twitter.aurora.gen.test.LogRecord;
 import com.twitter.aurora.scheduler.log.Log;
+import com.twitter.aurora.scheduler.log.Log.Stream.StreamAccessException;
 import com.twitter.common.base.Closure;
 
 /**
@@ -64,8 +68,17 @@ class FileLog implements Log {
       if (logFile.createNewFile()) {
         logContents = new FileLogContents(Maps.<Long, LogRecord>newHashMap());
       } else {
-        logContents = ThriftBinaryCodec.decode(FileLogContents.class, Files.toByteArray(logFile));
+        logContents = readContents();
       }
+      Supplier<FileLogContents> logReader = new Supplier<FileLogContents>() {
+        @Override public FileLogContents get() {
+          try {
+            return readContents();
+          } catch (IOException | CodingException e) {
+            throw new StreamAccessException("Failed to read log contents", e);
+          }
+        }
+      };
       Closure<FileLogContents> logWriter = new Closure<FileLogContents>() {
         @Override public void execute(FileLogContents logContents) {
           try {
@@ -75,20 +88,34 @@ class FileLog implements Log {
           }
         }
       };
-      return new FileStream(logContents, logWriter);
+      return new FileStream(logContents, logReader, logWriter);
     } catch (CodingException e) {
       throw new IOException("Failed to interpret log contents: " + e, e);
     }
   }
 
+  private FileLogContents readContents() throws IOException, CodingException {
+    return ThriftBinaryCodec.decode(FileLogContents.class, Files.toByteArray(logFile));
+  }
+
   private static class FileStream implements Stream {
-    private final FileLogContents logContents;
+    private final Supplier<FileLogContents> logReader;
     private final Closure<FileLogContents> logWriter;
+    private FileLogContents logContents;
     private long nextPosition;
 
-    FileStream(FileLogContents logContents, Closure<FileLogContents> logWriter) {
-      this.logContents = logContents;
+    FileStream(
+        FileLogContents logContents,
+        Supplier<FileLogContents> logReader,
+        Closure<FileLogContents> logWriter) {
+
+      this.logReader = logReader;
       this.logWriter = logWriter;
+      setContents(logContents);
+    }
+
+    private void setContents(FileLogContents contents) {
+      logContents = contents;
       nextPosition = logContents.getRecords().isEmpty()
           ? 1
           : Ordering.natural().max(logContents.getRecords().keySet()) + 1;
@@ -103,33 +130,78 @@ class FileLog implements Log {
       return position;
     }
 
-    private static final Function<LogRecord, Entry> TO_ENTRY = new Function<LogRecord, Entry>() {
-      @Override public Entry apply(final LogRecord record) {
-        return new Entry() {
+    private final Function<Long, PositionedEntry> toEntry = new Function<Long, PositionedEntry>() {
+      @Override public PositionedEntry apply(final Long position) {
+        final LogRecord record = logContents.getRecords().get(position);
+        return new PositionedEntry() {
           @Override public byte[] contents() {
             return record.getContents();
           }
+
+          @Override public Position position() {
+            return new CounterPosition(position);
+          }
         };
       }
     };
 
-    @Override
-    public Iterator<Entry> readAll() throws InvalidPositionException, StreamAccessException {
+    private Iterator<PositionedEntry> readAfter(final long after) {
       return FluentIterable.from(Ordering.natural().sortedCopy(logContents.getRecords().keySet()))
-          .transform(Functions.forMap(logContents.getRecords()))
-          .transform(TO_ENTRY)
+          .filter(new Predicate<Long>() {
+            @Override public boolean apply(Long recordPosition) {
+              return recordPosition > after;
+            }
+          })
+          .transform(toEntry)
           .iterator();
     }
 
     @Override
-    public void truncateBefore(Position position)
+    public Iterator<Entry> readAll() throws InvalidPositionException, StreamAccessException {
+      return Iterators.transform(readAfter(0), Functions.<Entry>identity());
+    }
+
+    @Override
+    public Iterator<PositionedEntry> readAfter(Position position)
+        throws InvalidPositionException, StreamAccessException {
+
+      long after = toCounter(position).value;
+      if (after >= nextPosition) {
+        throw new InvalidPositionException("Position is past the end of the log: " + after);
+      }
+      return readAfter(after);
+    }
+
+    @Override
+    public Iterator<PositionedEntry> follow(Optional<Position> position)
         throws InvalidPositionException, StreamAccessException {
 
+      // Another process may be writing to the log file, so pick up its latest contents.
+      setContents(logReader.get());
+      return readAfter(position.isPresent() ? toCounter(position.get()).value : 0);
+    }
+
+    @Override
+    public Position position(byte[] identity) throws InvalidPositionException {
+      if (identity.length != Longs.BYTES) {
+        throw new InvalidPositionException(
+            "Invalid position identity of length " + identity.length);
+      }
+      return new CounterPosition(Longs.fromByteArray(identity));
+    }
+
+    private static CounterPosition toCounter(Position position) {
       if (!(position instanceof CounterPosition)) {
         throw new InvalidPositionException("Unrecognized position " + position);
       }
+      return (CounterPosition) position;
+    }
 
-      final long truncateBefore = ((CounterPosition) position).value;
+    @Override
+    public void truncateBefore(Position position)
+        throws InvalidPositionException, StreamAccessException {
+
+      final long truncateBefore = toCounter(position).value;
       Iterables.removeIf(logContents.getRecords().keySet(), new Predicate<Long>() {
         @Override public boolean apply(Long recordPosition) {
           return recordPosition < truncateBefore;
@@ -154,6 +226,16 @@ class FileLog implements Log {
       public int compareTo(Position position) {
         return Longs.compare(value, ((CounterPosition) position).value);
       }
+
+      @Override
+      public byte[] identity() {
+        return Longs.toByteArray(value);
+      }
+
+      @Override
+      public String toString() {
+        return Long.toString(value);
+      }
     }
   }
 }
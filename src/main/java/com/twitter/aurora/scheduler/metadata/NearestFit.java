@@ -15,19 +15,17 @@
  */
 package com.twitter.aurora.scheduler.metadata;
 
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
 import com.google.common.base.Ticker;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
 import com.google.common.eventbus.Subscribe;
 
 import com.twitter.aurora.gen.ScheduleStatus;
@@ -37,12 +35,16 @@ import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import com.twitter.aurora.scheduler.events.PubsubEvent.TasksDeleted;
 import com.twitter.aurora.scheduler.events.PubsubEvent.Vetoed;
 import com.twitter.aurora.scheduler.filter.SchedulingFilter.Veto;
+import com.twitter.aurora.scheduler.filter.Vetoes;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
 
 /**
  * Tracks vetoes against scheduling decisions and maintains the closest fit among all the vetoes
  * for a task.
+ * <p>
+ * This class does not lock, the fit for each task is updated with compare-and-set so that
+ * concurrent veto events for different tasks do not contend.
  */
 public class NearestFit implements EventSubscriber {
   @VisibleForTesting
@@ -77,9 +79,9 @@ public class NearestFit implements EventSubscriber {
    * @return The nearest fit vetoes for the given task.  This will return an empty set if
    *         no vetoes have been recorded for the task.
    */
-  public synchronized ImmutableSet<Veto> getNearestFit(String taskId) {
+  public ImmutableSet<Veto> getNearestFit(String taskId) {
     Fit fit = fitByTask.getIfPresent(taskId);
-    return (fit == null) ? NO_VETO : fit.vetoes;
+    return (fit == null) ? NO_VETO : fit.get();
   }
 
   /**
@@ -88,7 +90,7 @@ public class NearestFit implements EventSubscriber {
    * @param deletedEvent Task deleted event.
    */
   @Subscribe
-  public synchronized void remove(TasksDeleted deletedEvent) {
+  public void remove(TasksDeleted deletedEvent) {
     fitByTask.invalidateAll(Tasks.ids(deletedEvent.getTasks()));
   }
 
@@ -99,79 +101,48 @@ public class NearestFit implements EventSubscriber {
    * @param stateChangeEvent Task state change.
    */
   @Subscribe
-  public synchronized void stateChanged(TaskStateChange stateChangeEvent) {
+  public void stateChanged(TaskStateChange stateChangeEvent) {
     if (stateChangeEvent.getOldState() == ScheduleStatus.PENDING) {
       fitByTask.invalidate(stateChangeEvent.getTaskId());
     }
   }
 
-  private static final Predicate<Veto> IS_CONSTRAINT_MISMATCH = new Predicate<Veto>() {
-    @Override public boolean apply(Veto veto) {
-      return veto.isConstraintMismatch();
-    }
-  };
-
   /**
-   * Records a task veto event.
-   * This will ignore any veto events where any veto returns {@code true} from
-   * {@link Veto#isConstraintMismatch()}.
+   * Records a task veto event, updating the nearest fit if the vetoes are a closer fit as
+   * determined by {@link Vetoes#isCloserFit(java.util.Set, java.util.Set)}.
    *
    * @param vetoEvent Veto event.
    */
   @Subscribe
-  public synchronized void vetoed(Vetoed vetoEvent) {
+  public void vetoed(Vetoed vetoEvent) {
     Preconditions.checkNotNull(vetoEvent);
     fitByTask.getUnchecked(vetoEvent.getTaskId()).maybeUpdate(vetoEvent.getVetoes());
   }
 
   private static class Fit {
-    private ImmutableSet<Veto> vetoes;
-
-    private static int score(Iterable<Veto> vetoes) {
-      int total = 0;
-      for (Veto veto : vetoes) {
-        total += veto.getScore();
-      }
-      return total;
-    }
+    private final AtomicReference<ImmutableSet<Veto>> vetoes = new AtomicReference<>();
 
-    private void update(Iterable<Veto> newVetoes) {
-      vetoes = ImmutableSet.copyOf(newVetoes);
+    ImmutableSet<Veto> get() {
+      ImmutableSet<Veto> current = vetoes.get();
+      return (current == null) ? NO_VETO : current;
     }
 
     /**
      * Updates the nearest fit if the provided vetoes represents a closer fit than the current
      * best fit.
-     * <p>
-     * There are two classes of vetoes: those with and without constraint mismatches. A set of
-     * vetoes without a constraint mismatch is always a better fit than a set with constraint
-     * mismatches.
-     * <p>
-     * If two sets are equivalent in that they do or do not have constraint mismatches, they are
-     * compared by the following criteria:
-     * <ul>
-     *   <li> the one with fewer vetoes is a better fit, irrespective of scores
-     *   <li> if the veto count is equal, the one with the smaller aggregate score is a better fit
-     * </ul>
      *
-     * @param newVetoes The vetoes for the scheduling assignment with {@code newHost}.
+     * @param newVetoes The vetoes for a scheduling assignment.
      */
-    void maybeUpdate(Set<Veto> newVetoes) {
-      if (vetoes == null) {
-        update(newVetoes);
-        return;
-      }
-
-      boolean valueMismatchOld = Iterables.any(vetoes, IS_CONSTRAINT_MISMATCH);
-      boolean valueMismatchNew = Iterables.any(newVetoes, IS_CONSTRAINT_MISMATCH);
-      if (valueMismatchOld == valueMismatchNew) {
-        if (newVetoes.size() < vetoes.size()) {
-          update(newVetoes);
-        } else if ((newVetoes.size() == vetoes.size()) && (score(newVetoes) < score(vetoes))) {
-          update(newVetoes);
+    void maybeUpdate(Iterable<Veto> newVetoes) {
+      ImmutableSet<Veto> candidate = ImmutableSet.copyOf(newVetoes);
+      while (true) {
+        ImmutableSet<Veto> current = vetoes.get();
+        if ((current != null) && !Vetoes.isCloserFit(candidate, current)) {
+          return;
+        }
+        if (vetoes.compareAndSet(current, candidate)) {
+          return;
         }
-      } else if (valueMismatchOld) {
-        update(newVetoes);
       }
     }
   }
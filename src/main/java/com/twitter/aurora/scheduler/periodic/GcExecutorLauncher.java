@@ -17,15 +17,24 @@ package com.twitter.aurora.scheduler.periodic;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.MapDifference;
 import com.google.common.collect.Maps;
+import com.google.common.eventbus.Subscribe;
 import com.google.inject.BindingAnnotation;
 import com.google.protobuf.ByteString;
 
@@ -40,17 +49,28 @@ import org.apache.mesos.Protos.TaskStatus;
 import com.twitter.aurora.Protobufs;
 import com.twitter.aurora.codec.ThriftBinaryCodec;
 import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
+import com.twitter.aurora.gen.ScheduleStatus;
 import com.twitter.aurora.gen.comm.AdjustRetainedTasks;
+import com.twitter.aurora.gen.comm.GcExecutorCapabilities;
 import com.twitter.aurora.scheduler.PulseMonitor;
 import com.twitter.aurora.scheduler.TaskLauncher;
 import com.twitter.aurora.scheduler.base.CommandUtil;
 import com.twitter.aurora.scheduler.base.Query;
 import com.twitter.aurora.scheduler.base.Tasks;
 import com.twitter.aurora.scheduler.configuration.Resources;
+import com.twitter.aurora.scheduler.events.PubsubEvent.EventSubscriber;
+import com.twitter.aurora.scheduler.events.PubsubEvent.StorageStarted;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TasksDeleted;
 import com.twitter.aurora.scheduler.storage.Storage;
+import com.twitter.aurora.scheduler.storage.Storage.StoreProvider;
+import com.twitter.aurora.scheduler.storage.Storage.Work;
+import com.twitter.aurora.scheduler.storage.entities.IAssignedTask;
 import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Data;
+import com.twitter.common.stats.SlidingStats;
+import com.twitter.common.stats.Stats;
 
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.ElementType.METHOD;
@@ -62,8 +82,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * A task launcher that periodically initiates garbage collection on a host, re-using a single
  * garbage collection executor
+ * <p>
+ * The tasks retained on each host are indexed from task events once storage has started, so that
+ * launching garbage collection does not require a storage query.  Optionally, only the changes
+ * since the last message accepted by a host's executor are sent, to executors that report
+ * support for them in {@link GcExecutorCapabilities}.
  */
-public class GcExecutorLauncher implements TaskLauncher {
+public class GcExecutorLauncher implements TaskLauncher, EventSubscriber {
   private static final Logger LOG = Logger.getLogger(GcExecutorLauncher.class.getName());
 
   /**
@@ -91,15 +116,40 @@ public class GcExecutorLauncher implements TaskLauncher {
   private final PulseMonitor<String> pulseMonitor;
   private final Optional<String> gcExecutorPath;
   private final Storage storage;
+  private final boolean incremental;
+
+  private final SlidingStats launchCost = new SlidingStats("gc_executor_launch", "nanos");
+  private final AtomicLong fullLaunches = Stats.exportLong("gc_executor_full_launches");
+  private final AtomicLong incrementalLaunches =
+      Stats.exportLong("gc_executor_incremental_launches");
+  private final LoadingCache<String, AtomicLong> payloadBytesByHost = CacheBuilder.newBuilder()
+      .build(new CacheLoader<String, AtomicLong>() {
+        @Override public AtomicLong load(String host) {
+          return Stats.exportLong(Stats.normalizeName("gc_executor_payload_bytes_" + host));
+        }
+      });
+
+  // Statuses of the tasks on each host, maintained from task events once storage has started.
+  private final Map<String, Map<String, ScheduleStatus>> tasksByHost = Maps.newHashMap();
+  private boolean hostIndexReady = false;
+
+  // Retained tasks most recently accepted by the executor on each host.
+  private final Map<String, ImmutableMap<String, ScheduleStatus>> acceptedByHost =
+      Maps.newHashMap();
+  // Garbage collection tasks that have been launched and not yet terminated, by task ID.
+  private final Map<String, GcRun> pendingRuns = Maps.newHashMap();
+  private final Map<String, String> pendingRunByHost = Maps.newHashMap();
 
   @Inject
   GcExecutorLauncher(
       @GcExecutor PulseMonitor<String> pulseMonitor,
       @GcExecutor Optional<String> gcExecutorPath,
+      @GcExecutor Boolean incremental,
       Storage storage) {
 
     this.pulseMonitor = checkNotNull(pulseMonitor);
     this.gcExecutorPath = checkNotNull(gcExecutorPath);
+    this.incremental = checkNotNull(incremental);
     this.storage = checkNotNull(storage);
   }
 
@@ -111,10 +161,15 @@ public class GcExecutorLauncher implements TaskLauncher {
       return Optional.absent();
     }
 
-    Set<IScheduledTask> tasksOnHost =
-        Storage.Util.weaklyConsistentFetchTasks(storage, Query.slaveScoped(offer.getHostname()));
-    AdjustRetainedTasks message = new AdjustRetainedTasks()
-        .setRetainedTasks(Maps.transformValues(Tasks.mapById(tasksOnHost), Tasks.GET_STATUS));
+    long start = System.nanoTime();
+    String host = offer.getHostname();
+    Optional<ImmutableMap<String, ScheduleStatus>> indexed = getIndexedTasks(host);
+    ImmutableMap<String, ScheduleStatus> retainedTasks = indexed.isPresent()
+        ? indexed.get()
+        : fetchTasks(host);
+
+    String taskId = SYSTEM_TASK_PREFIX + UUID.randomUUID().toString();
+    AdjustRetainedTasks message = prepareRun(host, taskId, retainedTasks);
     byte[] data;
     try {
       data = ThriftBinaryCodec.encode(message);
@@ -123,36 +178,227 @@ public class GcExecutorLauncher implements TaskLauncher {
       return Optional.absent();
     }
 
-    pulseMonitor.pulse(offer.getHostname());
+    pulseMonitor.pulse(host);
 
     ExecutorInfo.Builder executor = ExecutorInfo.newBuilder()
         .setExecutorId(ExecutorID.newBuilder().setValue(EXECUTOR_NAME))
         .setName(EXECUTOR_NAME)
-        .setSource(offer.getHostname())
+        .setSource(host)
         .addAllResources(GC_EXECUTOR_RESOURCES.toResourceList())
         .setCommand(CommandUtil.create(gcExecutorPath.get()));
 
-    return Optional.of(TaskInfo.newBuilder().setName("system-gc")
-        .setTaskId(TaskID.newBuilder().setValue(SYSTEM_TASK_PREFIX + UUID.randomUUID().toString()))
+    TaskInfo task = TaskInfo.newBuilder().setName("system-gc")
+        .setTaskId(TaskID.newBuilder().setValue(taskId))
         .setSlaveId(offer.getSlaveId())
         .setData(ByteString.copyFrom(data))
         .setExecutor(executor)
         .addAllResources(EPSILON.toResourceList())
-        .build());
+        .build();
+
+    payloadBytesByHost.getUnchecked(host).set(data.length);
+    launchCost.accumulate(System.nanoTime() - start);
+    return Optional.of(task);
+  }
+
+  private synchronized Optional<ImmutableMap<String, ScheduleStatus>> getIndexedTasks(
+      String host) {
+
+    if (!hostIndexReady) {
+      return Optional.absent();
+    }
+
+    Map<String, ScheduleStatus> tasks = tasksByHost.get(host);
+    return Optional.of((tasks == null)
+        ? ImmutableMap.<String, ScheduleStatus>of()
+        : ImmutableMap.copyOf(tasks));
+  }
+
+  private ImmutableMap<String, ScheduleStatus> fetchTasks(String host) {
+    Set<IScheduledTask> tasksOnHost =
+        Storage.Util.weaklyConsistentFetchTasks(storage, Query.slaveScoped(host));
+    return ImmutableMap.copyOf(Maps.transformValues(Tasks.mapById(tasksOnHost), Tasks.GET_STATUS));
+  }
+
+  private synchronized AdjustRetainedTasks prepareRun(
+      String host,
+      String taskId,
+      ImmutableMap<String, ScheduleStatus> retainedTasks) {
+
+    AdjustRetainedTasks message = new AdjustRetainedTasks();
+    ImmutableMap<String, ScheduleStatus> accepted = acceptedByHost.get(host);
+
+    // Changes are only sent relative to a message the executor is known to have accepted, and
+    // when no other message to the executor is in flight.
+    if (incremental && (accepted != null) && !pendingRunByHost.containsKey(host)) {
+      MapDifference<String, ScheduleStatus> difference =
+          Maps.difference(accepted, retainedTasks);
+      Map<String, ScheduleStatus> changed = Maps.newHashMap(difference.entriesOnlyOnRight());
+      for (Map.Entry<String, MapDifference.ValueDifference<ScheduleStatus>> entry
+          : difference.entriesDiffering().entrySet()) {
+
+        changed.put(entry.getKey(), entry.getValue().rightValue());
+      }
+      message.setIncremental(true)
+          .setRetainedTasks(changed)
+          .setReleasedTasks(difference.entriesOnlyOnLeft().keySet());
+      incrementalLaunches.incrementAndGet();
+    } else {
+      message.setRetainedTasks(retainedTasks);
+      fullLaunches.incrementAndGet();
+    }
+
+    if (incremental) {
+      String superseded = pendingRunByHost.put(host, taskId);
+      if (superseded != null) {
+        pendingRuns.remove(superseded);
+      }
+      pendingRuns.put(taskId, new GcRun(host, retainedTasks));
+    }
+
+    return message;
   }
 
   @Override
   public boolean statusUpdate(TaskStatus status) {
     if (status.getTaskId().getValue().startsWith(SYSTEM_TASK_PREFIX)) {
       LOG.info("Received status update for GC task: " + Protobufs.toString(status));
+      if (incremental) {
+        recordRunStatus(status);
+      }
       return true;
     } else {
       return false;
     }
   }
 
+  private synchronized void recordRunStatus(TaskStatus status) {
+    GcRun run;
+    switch (status.getState()) {
+      case TASK_FINISHED:
+        // The executor accepts a message when it is received, even if the run is skipped.  An
+        // executor that does not support changes would treat them as all tasks to retain, so
+        // only executors that support them are sent changes.
+        run = pendingRuns.remove(status.getTaskId().getValue());
+        if (run != null) {
+          pendingRunByHost.remove(run.host);
+          if (supportsIncremental(status)) {
+            acceptedByHost.put(run.host, run.retainedTasks);
+          } else {
+            acceptedByHost.remove(run.host);
+          }
+        }
+        break;
+
+      case TASK_FAILED:
+      case TASK_KILLED:
+      case TASK_LOST:
+        // The executor may have rejected the message, so the next message must be complete.
+        run = pendingRuns.remove(status.getTaskId().getValue());
+        if (run != null) {
+          pendingRunByHost.remove(run.host);
+          acceptedByHost.remove(run.host);
+        }
+        break;
+
+      default:
+        break;
+    }
+  }
+
+  private static boolean supportsIncremental(TaskStatus status) {
+    if (!status.hasData()) {
+      return false;
+    }
+
+    try {
+      return ThriftBinaryCodec.decodeNonNull(
+          GcExecutorCapabilities.class,
+          status.getData().toByteArray()).isIncremental();
+    } catch (CodingException e) {
+      LOG.warning("Failed to decode GC executor capabilities: " + e);
+      return false;
+    }
+  }
+
   @Override
   public void cancelOffer(OfferID offer) {
     // No-op.
   }
+
+  private void index(IScheduledTask task) {
+    IAssignedTask assignedTask = task.getAssignedTask();
+    if (assignedTask.isSetSlaveHost()) {
+      Map<String, ScheduleStatus> tasks = tasksByHost.get(assignedTask.getSlaveHost());
+      if (tasks == null) {
+        tasks = Maps.newHashMap();
+        tasksByHost.put(assignedTask.getSlaveHost(), tasks);
+      }
+      tasks.put(assignedTask.getTaskId(), task.getStatus());
+    }
+  }
+
+  /**
+   * Signals that storage has started and is consistent, building the index of tasks on each
+   * host.
+   *
+   * @param event Storage started notification.
+   */
+  @Subscribe
+  public void storageStarted(StorageStarted event) {
+    // Index within a storage operation, so that no task events are missed.
+    storage.consistentRead(new Work.Quiet<Void>() {
+      @Override public Void apply(StoreProvider storeProvider) {
+        synchronized (GcExecutorLauncher.this) {
+          tasksByHost.clear();
+          for (IScheduledTask task
+              : storeProvider.getTaskStore().fetchTasks(Query.unscoped())) {
+
+            index(task);
+          }
+          hostIndexReady = true;
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Updates the index of tasks on each host with a task state change.
+   *
+   * @param stateChange State change notification.
+   */
+  @Subscribe
+  public synchronized void taskChangedState(TaskStateChange stateChange) {
+    index(stateChange.getTask());
+  }
+
+  /**
+   * Removes deleted tasks from the index of tasks on each host.
+   *
+   * @param deleted Tasks deleted event.
+   */
+  @Subscribe
+  public synchronized void tasksDeleted(TasksDeleted deleted) {
+    for (IAssignedTask task
+        : Iterables.transform(deleted.getTasks(), Tasks.SCHEDULED_TO_ASSIGNED)) {
+
+      Map<String, ScheduleStatus> tasks = tasksByHost.get(task.getSlaveHost());
+      if (tasks != null) {
+        tasks.remove(task.getTaskId());
+        if (tasks.isEmpty()) {
+          tasksByHost.remove(task.getSlaveHost());
+        }
+      }
+    }
+  }
+
+  private static class GcRun {
+    private final String host;
+    private final ImmutableMap<String, ScheduleStatus> retainedTasks;
+
+    GcRun(String host, ImmutableMap<String, ScheduleStatus> retainedTasks) {
+      this.host = checkNotNull(host);
+      this.retainedTasks = checkNotNull(retainedTasks);
+    }
+  }
 }
@@ -19,8 +19,6 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,8 +36,8 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -55,6 +53,8 @@ import com.twitter.aurora.scheduler.cron.CronException;
 import com.twitter.aurora.scheduler.cron.CronScheduler;
 import com.twitter.aurora.scheduler.events.PubsubEvent.EventSubscriber;
 import com.twitter.aurora.scheduler.events.PubsubEvent.StorageStarted;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TasksDeleted;
 import com.twitter.aurora.scheduler.storage.Storage;
 import com.twitter.aurora.scheduler.storage.Storage.MutateWork;
 import com.twitter.aurora.scheduler.storage.Storage.Work;
@@ -63,14 +63,9 @@ import com.twitter.aurora.scheduler.storage.entities.IJobKey;
 import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
 import com.twitter.aurora.scheduler.storage.entities.ITaskConfig;
 import com.twitter.common.application.ShutdownRegistry;
-import com.twitter.common.args.Arg;
-import com.twitter.common.args.CmdLine;
 import com.twitter.common.base.ExceptionalCommand;
-import com.twitter.common.base.Supplier;
-import com.twitter.common.quantity.Amount;
-import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.SlidingStats;
 import com.twitter.common.stats.Stats;
-import com.twitter.common.util.BackoffHelper;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -89,18 +84,10 @@ public class CronJobManager extends JobManager implements EventSubscriber {
 
   private static final Logger LOG = Logger.getLogger(CronJobManager.class.getName());
 
-  @CmdLine(name = "cron_start_initial_backoff", help =
-      "Initial backoff delay while waiting for a previous cron run to start.")
-  private static final Arg<Amount<Long, Time>> CRON_START_INITIAL_BACKOFF =
-      Arg.create(Amount.of(1L, Time.SECONDS));
-
-  @CmdLine(name = "cron_start_max_backoff", help =
-      "Max backoff delay while waiting for a previous cron run to start.")
-  private static final Arg<Amount<Long, Time>> CRON_START_MAX_BACKOFF =
-      Arg.create(Amount.of(1L, Time.MINUTES));
-
   private final AtomicLong cronJobsTriggered = Stats.exportLong("cron_jobs_triggered");
   private final AtomicLong cronJobLaunchFailures = Stats.exportLong("cron_job_launch_failures");
+  private final SlidingStats pendingRunLatency =
+      new SlidingStats("cron_pending_run_latency", "nanos");
 
   // Maps from the unique job identifier to the unique identifier used internally by the cron
   // scheduler.
@@ -109,16 +96,15 @@ public class CronJobManager extends JobManager implements EventSubscriber {
 
   // Prevents runs from dogpiling while waiting for a run to transition out of the KILLING state.
   // This is necessary because killing a job (if dictated by cron collision policy) is an
-  // asynchronous operation.
-  private final Map<IJobKey, SanitizedConfiguration> pendingRuns =
-      Collections.synchronizedMap(Maps.<IJobKey, SanitizedConfiguration>newHashMap());
+  // asynchronous operation.  A pending run is launched when the last of the tasks it waits on
+  // terminates, as observed through task events.
+  private final Map<IJobKey, PendingRun> pendingRuns =
+      Collections.synchronizedMap(Maps.<IJobKey, PendingRun>newHashMap());
 
   private final StateManager stateManager;
   private final Storage storage;
   private final CronScheduler cron;
   private final ShutdownRegistry shutdownRegistry;
-  private final BackoffHelper delayedStartBackoff;
-  private final Executor delayedRunExecutor;
 
   @Inject
   CronJobManager(
@@ -127,34 +113,27 @@ public class CronJobManager extends JobManager implements EventSubscriber {
       CronScheduler cron,
       ShutdownRegistry shutdownRegistry) {
 
-    this(
-        stateManager,
-        storage,
-        cron,
-        shutdownRegistry,
-        Executors.newCachedThreadPool(
-            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("CronDelay-%d").build()));
-  }
-
-  @VisibleForTesting
-  CronJobManager(
-      StateManager stateManager,
-      Storage storage,
-      CronScheduler cron,
-      ShutdownRegistry shutdownRegistry,
-      Executor delayedRunExecutor) {
-
     this.stateManager = checkNotNull(stateManager);
     this.storage = checkNotNull(storage);
     this.cron = checkNotNull(cron);
     this.shutdownRegistry = checkNotNull(shutdownRegistry);
-    this.delayedStartBackoff =
-        new BackoffHelper(CRON_START_INITIAL_BACKOFF.get(), CRON_START_MAX_BACKOFF.get());
-    this.delayedRunExecutor = checkNotNull(delayedRunExecutor);
 
     Stats.exportSize("cron_num_pending_runs", pendingRuns);
   }
 
+  /**
+   * A cron run that is waiting for the active tasks of a previous run to terminate.
+   */
+  private static class PendingRun {
+    private final Set<String> awaitedTaskIds = Sets.newHashSet();
+    private final long createdNanos = System.nanoTime();
+    private SanitizedConfiguration config;
+
+    PendingRun(SanitizedConfiguration config) {
+      this.config = config;
+    }
+  }
+
   private void mapScheduledJob(IJobConfiguration job, String scheduledJobKey) {
     IJobKey jobKey = job.getKey();
     synchronized (scheduledJobs) {
@@ -215,48 +194,108 @@ public class CronJobManager extends JobManager implements EventSubscriber {
     cronTriggered(SanitizedConfiguration.fromUnsanitized(jobConfig.get()));
   }
 
-  private void delayedRun(final Query.Builder query, final SanitizedConfiguration config) {
-    IJobConfiguration job = config.getJobConfig();
-    final String jobPath = JobKeys.toPath(job);
-    final IJobKey jobKey = job.getKey();
-    LOG.info("Waiting for job to terminate before launching cron job " + jobPath);
-    if (pendingRuns.put(jobKey, config) == null) {
-      LOG.info("Launching a task to wait for job to finish: " + jobPath);
-      // There was no run already pending for this job, launch a task to delay launch until the
-      // existing run has terminated.
-      delayedRunExecutor.execute(new Runnable() {
-        @Override public void run() {
-          runWhenTerminated(query, jobKey);
-        }
-      });
-    }
-  }
-
-  private void runWhenTerminated(final Query.Builder query, final IJobKey jobKey) {
-    try {
-      delayedStartBackoff.doUntilSuccess(new Supplier<Boolean>() {
-        @Override public Boolean get() {
-          if (!hasTasks(query)) {
-            LOG.info("Initiating delayed launch of cron " + jobKey);
-            SanitizedConfiguration config = pendingRuns.remove(jobKey);
-            checkNotNull(config, "Failed to fetch job for delayed run of " + jobKey);
-            LOG.info("Launching " + config.getTaskConfigs().size() + " tasks.");
-            stateManager.insertPendingTasks(config.getTaskConfigs());
+  /**
+   * Registers a run to be launched once the job's active tasks have terminated.
+   *
+   * @param query Query for the active tasks of the job.
+   * @param config Configuration to launch.
+   * @return {@code true} if the job has no active tasks and the run should be launched immediately,
+   *     {@code false} if the run will be launched by a later task event.
+   */
+  private boolean delayedRun(final Query.Builder query, final SanitizedConfiguration config) {
+    final IJobKey jobKey = config.getJobConfig().getKey();
+
+    // The active tasks are fetched and registered within a storage operation so that no task event
+    // for the job can be missed between the two.
+    return storage.consistentRead(new Work.Quiet<Boolean>() {
+      @Override public Boolean apply(Storage.StoreProvider storeProvider) {
+        Set<String> activeTaskIds = Tasks.ids(storeProvider.getTaskStore().fetchTasks(query));
+        synchronized (pendingRuns) {
+          if (activeTaskIds.isEmpty()) {
+            pendingRuns.remove(jobKey);
             return true;
+          }
+
+          PendingRun run = pendingRuns.get(jobKey);
+          if (run == null) {
+            LOG.info("Waiting for job to terminate before launching cron job "
+                + JobKeys.toPath(jobKey));
+            run = new PendingRun(config);
+            pendingRuns.put(jobKey, run);
           } else {
-            LOG.info("Not yet safe to run cron " + jobKey);
-            return false;
+            run.config = config;
           }
+          run.awaitedTaskIds.addAll(activeTaskIds);
+          return false;
         }
-      });
-    } catch (InterruptedException e) {
-      LOG.log(Level.WARNING, "Interrupted while trying to launch cron " + jobKey, e);
-      Thread.currentThread().interrupt();
+      }
+    });
+  }
+
+  /**
+   * Notifies the cron job manager of task state changes, to launch runs that were waiting for the
+   * changed task to terminate.
+   *
+   * @param stateChange State change notification.
+   */
+  @Subscribe
+  public void taskChangedState(TaskStateChange stateChange) {
+    if (!pendingRuns.isEmpty() && !Tasks.isActive(stateChange.getNewState())) {
+      taskTerminated(stateChange.getTask());
+    }
+  }
+
+  /**
+   * Notifies the cron job manager of deleted tasks, to launch runs that were waiting for the
+   * deleted tasks.
+   *
+   * @param deleted Deletion notification.
+   */
+  @Subscribe
+  public void tasksDeleted(TasksDeleted deleted) {
+    if (!pendingRuns.isEmpty()) {
+      for (IScheduledTask task : deleted.getTasks()) {
+        taskTerminated(task);
+      }
     }
   }
 
-  private boolean hasTasks(Query.Builder query) {
-    return !Storage.Util.consistentFetchTasks(storage, query).isEmpty();
+  private void taskTerminated(IScheduledTask task) {
+    IJobKey jobKey = Tasks.SCHEDULED_TO_JOB_KEY.apply(task);
+    synchronized (pendingRuns) {
+      PendingRun run = pendingRuns.get(jobKey);
+      if (run == null
+          || !run.awaitedTaskIds.remove(Tasks.id(task))
+          || !run.awaitedTaskIds.isEmpty()) {
+        return;
+      }
+    }
+
+    // Task events are delivered within the storage operation that caused them, so tasks that became
+    // active alongside this event (e.g. a rescheduled task) are visible here.
+    Query.Builder activeQuery = Query.jobScoped(jobKey).active();
+    Set<String> stragglers = Tasks.ids(Storage.Util.consistentFetchTasks(storage, activeQuery));
+    SanitizedConfiguration config;
+    long waitNanos;
+    synchronized (pendingRuns) {
+      PendingRun run = pendingRuns.get(jobKey);
+      if (run == null || !run.awaitedTaskIds.isEmpty()) {
+        return;
+      }
+      if (!stragglers.isEmpty()) {
+        LOG.info("Not yet safe to run cron " + JobKeys.toPath(jobKey));
+        run.awaitedTaskIds.addAll(stragglers);
+        return;
+      }
+      pendingRuns.remove(jobKey);
+      config = run.config;
+      waitNanos = System.nanoTime() - run.createdNanos;
+    }
+
+    LOG.info("Initiating delayed launch of cron " + JobKeys.toPath(jobKey));
+    pendingRunLatency.accumulate(waitNanos);
+    LOG.info("Launching " + config.getTaskConfigs().size() + " tasks.");
+    stateManager.insertPendingTasks(config.getTaskConfigs());
   }
 
   public static CronCollisionPolicy orDefault(@Nullable CronCollisionPolicy policy) {
@@ -291,10 +330,8 @@ public class CronJobManager extends JobManager implements EventSubscriber {
             schedulerCore.killTasks(activeQuery, CRON_USER);
             // Check immediately if the tasks are gone.  This could happen if the existing tasks
             // were pending.
-            if (!hasTasks(activeQuery)) {
+            if (delayedRun(activeQuery, config)) {
               builder.putAll(config.getTaskConfigs());
-            } else {
-              delayedRun(activeQuery, config);
             }
           } catch (ScheduleException e) {
             LOG.log(Level.SEVERE, "Failed to kill job.", e);
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.state;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
+
+import com.twitter.aurora.scheduler.storage.entities.IJobKey;
+import com.twitter.common.stats.SlidingStats;
+
+/**
+ * Mutual exclusion for scheduler operations on jobs, striped by job key so that operations on
+ * independent jobs may proceed concurrently.
+ *
+ * <p>Operations that affect jobs which cannot be identified up front lock all jobs.  Locks for
+ * multiple jobs are always acquired in stripe order, so concurrent multi-job operations can not
+ * deadlock.  To preserve that ordering, a thread that already holds job locks may only re-acquire
+ * locks it holds; it may not lock further jobs, nor all jobs.
+ */
+class JobLocks {
+
+  /**
+   * Locks held for an operation, which must be released when the operation completes.
+   */
+  interface Held {
+
+    /**
+     * Releases the locks.
+     */
+    void release();
+  }
+
+  private final ReentrantReadWriteLock allJobs = new ReentrantReadWriteLock();
+  private final Striped<Lock> stripes;
+
+  // Stripes held by the current thread, in acquisition order and with repeats for re-entry.
+  private final ThreadLocal<Deque<Lock>> heldStripes = new ThreadLocal<Deque<Lock>>() {
+    @Override protected Deque<Lock> initialValue() {
+      return Lists.newLinkedList();
+    }
+  };
+
+  private final LoadingCache<String, OperationStats> stats = CacheBuilder.newBuilder()
+      .build(new CacheLoader<String, OperationStats>() {
+        @Override public OperationStats load(String operation) {
+          return new OperationStats(operation);
+        }
+      });
+
+  private static class OperationStats {
+    private final SlidingStats wait;
+    private final SlidingStats hold;
+
+    OperationStats(String operation) {
+      wait = new SlidingStats("scheduler_core_" + operation + "_lock_wait", "nanos");
+      hold = new SlidingStats("scheduler_core_" + operation + "_lock_hold", "nanos");
+    }
+  }
+
+  /**
+   * Creates job locks.
+   *
+   * @param stripeCount Number of locks to stripe jobs across.
+   */
+  JobLocks(int stripeCount) {
+    Preconditions.checkArgument(stripeCount > 0);
+    stripes = Striped.lock(stripeCount);
+  }
+
+  /**
+   * Blocks until the locks for the given jobs are held.
+   *
+   * @param operation Name of the operation the locks are held for, used to export lock timing.
+   * @param jobKeys Jobs to lock.
+   * @return The held locks.
+   * @throws IllegalStateException If the current thread holds job locks other than those
+   *     requested.
+   */
+  Held lockJobs(String operation, Iterable<IJobKey> jobKeys) {
+    // bulkGet orders the stripes by index, which is the lock ordering for multi-job operations.
+    final List<Lock> locks = ImmutableList.copyOf(stripes.bulkGet(ImmutableSet.copyOf(jobKeys)));
+    final Deque<Lock> held = heldStripes.get();
+    Preconditions.checkState(held.isEmpty() || held.containsAll(locks),
+        "Additional jobs may not be locked while holding job locks.");
+
+    final OperationStats operationStats = stats.getUnchecked(operation);
+    long waitStart = System.nanoTime();
+    allJobs.readLock().lock();
+    for (Lock lock : locks) {
+      lock.lock();
+      held.push(lock);
+    }
+    final long holdStart = System.nanoTime();
+    operationStats.wait.accumulate(holdStart - waitStart);
+
+    return new Held() {
+      @Override public void release() {
+        for (Lock lock : Lists.reverse(locks)) {
+          held.removeFirstOccurrence(lock);
+          lock.unlock();
+        }
+        allJobs.readLock().unlock();
+        operationStats.hold.accumulate(System.nanoTime() - holdStart);
+      }
+    };
+  }
+
+  /**
+   * Blocks until the lock for the given job is held.
+   *
+   * @param operation Name of the operation the lock is held for, used to export lock timing.
+   * @param jobKey Job to lock.
+   * @return The held lock.
+   */
+  Held lockJob(String operation, IJobKey jobKey) {
+    return lockJobs(operation, ImmutableSet.of(jobKey));
+  }
+
+  /**
+   * Blocks until no other operation holds any job locks, and prevents any from acquiring them.
+   *
+   * @param operation Name of the operation the locks are held for, used to export lock timing.
+   * @return The held locks.
+   * @throws IllegalStateException If the current thread holds locks for individual jobs.
+   */
+  Held lockAllJobs(String operation) {
+    Preconditions.checkState(allJobs.getReadHoldCount() == 0,
+        "All jobs may not be locked while holding job locks.");
+
+    final OperationStats operationStats = stats.getUnchecked(operation);
+    long waitStart = System.nanoTime();
+    allJobs.writeLock().lock();
+    final long holdStart = System.nanoTime();
+    operationStats.wait.accumulate(holdStart - waitStart);
+
+    return new Held() {
+      @Override public void release() {
+        allJobs.writeLock().unlock();
+        operationStats.hold.accumulate(System.nanoTime() - holdStart);
+      }
+    };
+  }
+}
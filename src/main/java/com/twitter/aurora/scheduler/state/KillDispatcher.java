@@ -0,0 +1,250 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.state;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.twitter.aurora.scheduler.Driver;
+import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.args.Arg;
+import com.twitter.common.args.CmdLine;
+import com.twitter.common.args.constraints.Positive;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.SlidingStats;
+import com.twitter.common.stats.Stats;
+import com.twitter.common.util.concurrent.ExecutorServiceShutdown;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Sends kill requests for tasks to the mesos master outside of storage operations.
+ */
+public interface KillDispatcher {
+
+  /**
+   * Requests that tasks be killed.  Must be called only once the state changes requiring the kills
+   * have been committed to storage.  This does not block, since callers may be nested within an
+   * enclosing storage operation that holds the storage lock.
+   *
+   * @param taskIds IDs of the tasks to kill.
+   */
+  void killTasks(Iterable<String> taskIds);
+
+  /**
+   * A kill dispatcher that sends kill requests in batches from a background thread, at a limited
+   * rate, retrying requests that fail.
+   */
+  class KillDispatcherImpl implements KillDispatcher {
+    private static final Logger LOG = Logger.getLogger(KillDispatcherImpl.class.getName());
+
+    @Positive
+    @CmdLine(name = "max_kill_queue_depth",
+        help = "Maximum number of task kills waiting to be sent, beyond which further kills are "
+            + "held in an overflow list.")
+    private static final Arg<Integer> MAX_QUEUE_DEPTH = Arg.create(10000);
+
+    @Positive
+    @CmdLine(name = "max_kills_per_sec", help = "Maximum rate at which task kills are sent.")
+    private static final Arg<Double> MAX_KILLS_PER_SEC = Arg.create(500D);
+
+    @Positive
+    @CmdLine(name = "kill_batch_size",
+        help = "Maximum number of task kills to send in each pass over the kill queue.")
+    private static final Arg<Integer> BATCH_SIZE = Arg.create(100);
+
+    @Positive
+    @CmdLine(name = "max_kill_attempts",
+        help = "Maximum number of times to try sending a task kill before giving up.")
+    private static final Arg<Integer> MAX_ATTEMPTS = Arg.create(5);
+
+    @CmdLine(name = "kill_retry_delay", help = "Time to wait before retrying a failed task kill.")
+    private static final Arg<Amount<Long, Time>> RETRY_DELAY =
+        Arg.create(Amount.of(1L, Time.SECONDS));
+
+    private static final Amount<Long, Time> SHUTDOWN_GRACE_PERIOD = Amount.of(1L, Time.SECONDS);
+
+    private static class PendingKill {
+      private final String taskId;
+      private final long queuedNanos;
+      private int attempts = 0;
+
+      PendingKill(String taskId, long queuedNanos) {
+        this.taskId = taskId;
+        this.queuedNanos = queuedNanos;
+      }
+    }
+
+    private final Driver driver;
+    private final ScheduledExecutorService executor;
+    private final RateLimiter rateLimiter;
+    private final BlockingQueue<PendingKill> queue;
+    // Kills that did not fit in the queue.  Enqueueing never blocks, so the overflow is unbounded.
+    private final Queue<PendingKill> overflow = new ConcurrentLinkedQueue<>();
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Amount<Long, Time> retryDelay;
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final SlidingStats killLatency = new SlidingStats("scheduler_kill_latency", "nanos");
+    private final AtomicLong killsSent = Stats.exportLong("scheduler_kills_sent");
+    private final AtomicLong killRetries = Stats.exportLong("scheduler_kill_retries");
+    private final AtomicLong killsAbandoned = Stats.exportLong("scheduler_kills_abandoned");
+    private final AtomicLong killsOverflowed = Stats.exportLong("scheduler_kills_overflowed");
+
+    private final Runnable drainer = new Runnable() {
+      @Override public void run() {
+        drain();
+      }
+    };
+
+    @Inject
+    KillDispatcherImpl(Driver driver, ShutdownRegistry shutdownRegistry) {
+      this(
+          driver,
+          createExecutor(shutdownRegistry),
+          RateLimiter.create(MAX_KILLS_PER_SEC.get()),
+          MAX_QUEUE_DEPTH.get(),
+          BATCH_SIZE.get(),
+          MAX_ATTEMPTS.get(),
+          RETRY_DELAY.get());
+    }
+
+    private static ScheduledExecutorService createExecutor(ShutdownRegistry shutdownRegistry) {
+      ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("KillDispatcher-%d")
+              .setDaemon(true)
+              .build());
+      shutdownRegistry.addAction(new ExecutorServiceShutdown(executor, SHUTDOWN_GRACE_PERIOD));
+      return executor;
+    }
+
+    @VisibleForTesting
+    KillDispatcherImpl(
+        Driver driver,
+        ScheduledExecutorService executor,
+        RateLimiter rateLimiter,
+        int maxQueueDepth,
+        int batchSize,
+        int maxAttempts,
+        Amount<Long, Time> retryDelay) {
+
+      Preconditions.checkArgument(batchSize > 0);
+      Preconditions.checkArgument(maxAttempts > 0);
+      this.driver = checkNotNull(driver);
+      this.executor = checkNotNull(executor);
+      this.rateLimiter = checkNotNull(rateLimiter);
+      this.queue = new LinkedBlockingQueue<>(maxQueueDepth);
+      this.batchSize = batchSize;
+      this.maxAttempts = maxAttempts;
+      this.retryDelay = checkNotNull(retryDelay);
+
+      Stats.exportSize("scheduler_kill_queue_depth", queue);
+      Stats.exportSize("scheduler_kill_overflow_depth", overflow);
+    }
+
+    @Override
+    public void killTasks(Iterable<String> taskIds) {
+      long now = System.nanoTime();
+      for (String taskId : taskIds) {
+        PendingKill kill = new PendingKill(taskId, now);
+        // Callers may hold the storage write lock through an enclosing operation, so kills that do
+        // not fit in the queue are set aside rather than blocking until the queue drains.
+        if (!overflow.isEmpty() || !queue.offer(kill)) {
+          killsOverflowed.incrementAndGet();
+          overflow.add(kill);
+        }
+      }
+      scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+      if (drainScheduled.compareAndSet(false, true)) {
+        executor.execute(drainer);
+      }
+    }
+
+    private void drain() {
+      // Reset before draining so that kills queued while draining schedule another pass.
+      drainScheduled.set(false);
+
+      List<PendingKill> batch = Lists.newArrayListWithCapacity(batchSize);
+      while (queue.drainTo(batch, batchSize) > 0 || drainOverflow(batch) > 0) {
+        rateLimiter.acquire(batch.size());
+        for (PendingKill kill : batch) {
+          send(kill);
+        }
+        batch.clear();
+      }
+    }
+
+    private int drainOverflow(List<PendingKill> batch) {
+      int drained = 0;
+      PendingKill kill;
+      while (drained < batchSize && (kill = overflow.poll()) != null) {
+        batch.add(kill);
+        drained++;
+      }
+      return drained;
+    }
+
+    private void send(final PendingKill kill) {
+      kill.attempts++;
+      try {
+        driver.killTask(kill.taskId);
+        killsSent.incrementAndGet();
+        killLatency.accumulate(System.nanoTime() - kill.queuedNanos);
+      } catch (RuntimeException e) {
+        if (kill.attempts < maxAttempts) {
+          LOG.log(Level.WARNING, "Failed to kill task " + kill.taskId + ", will retry.", e);
+          killRetries.incrementAndGet();
+          executor.schedule(
+              new Runnable() {
+                @Override public void run() {
+                  rateLimiter.acquire();
+                  send(kill);
+                }
+              },
+              retryDelay.getValue(),
+              retryDelay.getUnit().getTimeUnit());
+        } else {
+          LOG.log(Level.SEVERE, "Giving up on killing task " + kill.taskId + " after "
+              + kill.attempts + " attempts.", e);
+          killsAbandoned.incrementAndGet();
+        }
+      }
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.twitter.aurora.scheduler.state;
 
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -26,8 +27,10 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
@@ -127,6 +130,10 @@ public interface MaintenanceController {
     // however.
     private final Multimap<String, String> drainingTasksByHost =
         Multimaps.synchronizedMultimap(HashMultimap.<String, String>create());
+    // Maintenance modes of hosts not in mode NONE, mirroring the attribute store so that modes can
+    // be read without a storage operation.  The map is replaced on each change, within the
+    // storage operation that changes the modes.
+    private volatile ImmutableMap<String, MaintenanceMode> hostModes = ImmutableMap.of();
 
     @Inject
     public MaintenanceControllerImpl(
@@ -185,8 +192,10 @@ public interface MaintenanceController {
     public void storageStarted(StorageStarted started) {
       storage.write(new MutateWork.NoResult.Quiet() {
         @Override protected void execute(MutableStoreProvider storeProvider) {
+          Set<HostAttributes> attributes = storeProvider.getAttributeStore().getHostAttributes();
+          loadModes(attributes);
           Set<String> drainingHosts =
-              FluentIterable.from(storeProvider.getAttributeStore().getHostAttributes())
+              FluentIterable.from(attributes)
                   .filter(IS_DRAINING)
                   .transform(HOST_NAME)
                   .toSet();
@@ -261,23 +270,10 @@ public interface MaintenanceController {
           }
         };
 
-    private static final Function<HostStatus, MaintenanceMode> GET_MODE =
-      new Function<HostStatus, MaintenanceMode>() {
-        @Override public MaintenanceMode apply(HostStatus status) {
-          return status.getMode();
-        }
-      };
-
     @Override
-    public MaintenanceMode getMode(final String host) {
-      return storage.weaklyConsistentRead(new Work.Quiet<MaintenanceMode>() {
-        @Override public MaintenanceMode apply(StoreProvider storeProvider) {
-          return storeProvider.getAttributeStore().getHostAttributes(host)
-              .transform(ATTRS_TO_STATUS)
-              .transform(GET_MODE)
-              .or(MaintenanceMode.NONE);
-        }
-      });
+    public MaintenanceMode getMode(String host) {
+      MaintenanceMode mode = hostModes.get(host);
+      return (mode == null) ? MaintenanceMode.NONE : mode;
     }
 
     @Override
@@ -321,12 +317,43 @@ public interface MaintenanceController {
       ImmutableSet.Builder<HostStatus> statuses = ImmutableSet.builder();
       for (String host : hosts) {
         if (store.setMaintenanceMode(host, mode)) {
-          HostStatus status = new HostStatus().setHost(host).setMode(mode);
-          eventSink.execute(new PubsubEvent.HostMaintenanceStateChange(status.deepCopy()));
-          statuses.add(status);
+          statuses.add(new HostStatus().setHost(host).setMode(mode));
+        }
+      }
+      Set<HostStatus> changed = statuses.build();
+
+      // Modes are updated before notifying subscribers, who may read them.
+      updateModes(changed);
+      for (HostStatus status : changed) {
+        eventSink.execute(new PubsubEvent.HostMaintenanceStateChange(status.deepCopy()));
+      }
+      return changed;
+    }
+
+    private synchronized void loadModes(Iterable<HostAttributes> attributes) {
+      ImmutableMap.Builder<String, MaintenanceMode> modes = ImmutableMap.builder();
+      for (HostAttributes hostAttributes : attributes) {
+        if (hostAttributes.isSetMode() && (hostAttributes.getMode() != MaintenanceMode.NONE)) {
+          modes.put(hostAttributes.getHost(), hostAttributes.getMode());
+        }
+      }
+      hostModes = modes.build();
+    }
+
+    private synchronized void updateModes(Set<HostStatus> changes) {
+      if (changes.isEmpty()) {
+        return;
+      }
+
+      Map<String, MaintenanceMode> modes = Maps.newHashMap(hostModes);
+      for (HostStatus status : changes) {
+        if (status.getMode() == MaintenanceMode.NONE) {
+          modes.remove(status.getHost());
+        } else {
+          modes.put(status.getHost(), status.getMode());
         }
       }
-      return statuses.build();
+      hostModes = ImmutableMap.copyOf(modes);
     }
   }
 }
@@ -66,6 +66,12 @@ class SchedulerCoreImpl implements SchedulerCore {
   @CmdLine(name = "max_tasks_per_job", help = "Maximum number of allowed tasks in a single job.")
   public static final Arg<Integer> MAX_TASKS_PER_JOB = Arg.create(1000);
 
+  @Positive
+  @CmdLine(name = "scheduler_core_job_lock_stripes",
+      help = "Number of locks to stripe jobs across, bounding how many jobs may be operated on "
+          + "concurrently.")
+  private static final Arg<Integer> JOB_LOCK_STRIPES = Arg.create(64);
+
   private static final Logger LOG = Logger.getLogger(SchedulerCoreImpl.class.getName());
 
   private final Storage storage;
@@ -82,6 +88,9 @@ class SchedulerCoreImpl implements SchedulerCore {
   private final TaskIdGenerator taskIdGenerator;
   private final JobFilter jobFilter;
 
+  // Guards operations on jobs, allowing operations on independent jobs to run concurrently.
+  private final JobLocks jobLocks = new JobLocks(JOB_LOCK_STRIPES.get());
+
   /**
    * Creates a new core scheduler.
    *
@@ -116,35 +125,75 @@ class SchedulerCoreImpl implements SchedulerCore {
     return Iterables.any(jobManagers, managerHasJob(job));
   }
 
+  /**
+   * Locks the jobs a query may affect.  Queries that are not scoped to jobs or tasks may affect
+   * any job, and lock all jobs.
+   *
+   * @param operation Name of the operation to lock for.
+   * @param query Query to lock the jobs of.
+   * @return The held locks.
+   */
+  private JobLocks.Held lockJobs(String operation, Query.Builder query) {
+    Optional<IJobKey> jobKey = JobKeys.from(query);
+    if (jobKey.isPresent()) {
+      return jobLocks.lockJob(operation, jobKey.get());
+    }
+
+    if (query.get().isSetTaskIds()) {
+      // A task never moves between jobs, so the jobs found here are the only ones the query can
+      // affect even if the tasks change before the locks are acquired.
+      Set<IJobKey> jobKeys = FluentIterable
+          .from(Storage.Util.weaklyConsistentFetchTasks(
+              storage,
+              Query.taskScoped(query.get().getTaskIds())))
+          .transform(Tasks.SCHEDULED_TO_JOB_KEY)
+          .toSet();
+      return jobLocks.lockJobs(operation, jobKeys);
+    }
+
+    return jobLocks.lockAllJobs(operation);
+  }
+
   @Override
-  public synchronized void tasksDeleted(Set<String> taskIds) {
-    setTaskStatus(Query.taskScoped(taskIds), ScheduleStatus.UNKNOWN, Optional.<String>absent());
+  public void tasksDeleted(Set<String> taskIds) {
+    Query.Builder query = Query.taskScoped(taskIds);
+    JobLocks.Held held = lockJobs("tasks_deleted", query);
+    try {
+      stateManager.changeState(query, ScheduleStatus.UNKNOWN, Optional.<String>absent());
+    } finally {
+      held.release();
+    }
   }
 
   @Override
-  public synchronized void createJob(SanitizedConfiguration sanitizedConfiguration)
+  public void createJob(SanitizedConfiguration sanitizedConfiguration)
       throws ScheduleException {
 
     IJobConfiguration job = sanitizedConfiguration.getJobConfig();
-    if (hasActiveJob(job)) {
-      throw new ScheduleException("Job already exists: " + JobKeys.toPath(job));
-    }
+    JobLocks.Held held = jobLocks.lockJob("create_job", job.getKey());
+    try {
+      if (hasActiveJob(job)) {
+        throw new ScheduleException("Job already exists: " + JobKeys.toPath(job));
+      }
 
-    runJobFilters(job.getKey(), job.getTaskConfig(), job.getInstanceCount(), false);
+      runJobFilters(job.getKey(), job.getTaskConfig(), job.getInstanceCount(), false);
 
-    boolean accepted = false;
-    for (final JobManager manager : jobManagers) {
-      if (manager.receiveJob(sanitizedConfiguration)) {
-        LOG.info("Job accepted by manager: " + manager.getUniqueKey());
-        accepted = true;
-        break;
+      boolean accepted = false;
+      for (final JobManager manager : jobManagers) {
+        if (manager.receiveJob(sanitizedConfiguration)) {
+          LOG.info("Job accepted by manager: " + manager.getUniqueKey());
+          accepted = true;
+          break;
+        }
       }
-    }
 
-    if (!accepted) {
-      LOG.severe("Job was not accepted by any of the configured schedulers, discarding.");
-      LOG.severe("Discarded job: " + job);
-      throw new ScheduleException("Job not accepted, discarding.");
+      if (!accepted) {
+        LOG.severe("Job was not accepted by any of the configured schedulers, discarding.");
+        LOG.severe("Discarded job: " + job);
+        throw new ScheduleException("Job not accepted, discarding.");
+      }
+    } finally {
+      held.release();
     }
   }
 
@@ -217,16 +266,21 @@ class SchedulerCoreImpl implements SchedulerCore {
   }
 
   @Override
-  public synchronized void startCronJob(IJobKey jobKey)
+  public void startCronJob(IJobKey jobKey)
       throws ScheduleException, TaskDescriptionException {
 
     checkNotNull(jobKey);
 
-    if (!cronScheduler.hasJob(jobKey)) {
-      throw new ScheduleException("Cron job does not exist for " + JobKeys.toPath(jobKey));
-    }
+    JobLocks.Held held = jobLocks.lockJob("start_cron_job", jobKey);
+    try {
+      if (!cronScheduler.hasJob(jobKey)) {
+        throw new ScheduleException("Cron job does not exist for " + JobKeys.toPath(jobKey));
+      }
 
-    cronScheduler.startJobNow(jobKey);
+      cronScheduler.startJobNow(jobKey);
+    } finally {
+      held.release();
+    }
   }
 
   /**
@@ -244,7 +298,7 @@ class SchedulerCoreImpl implements SchedulerCore {
   }
 
   @Override
-  public synchronized void setTaskStatus(
+  public void setTaskStatus(
       Query.Builder query,
       final ScheduleStatus status,
       Optional<String> message) {
@@ -252,34 +306,45 @@ class SchedulerCoreImpl implements SchedulerCore {
     checkNotNull(query);
     checkNotNull(status);
 
-    stateManager.changeState(query, status, message);
+    JobLocks.Held held = lockJobs("set_task_status", query);
+    try {
+      stateManager.changeState(query, status, message);
+    } finally {
+      held.release();
+    }
   }
 
   @Override
-  public synchronized void killTasks(Query.Builder query, String user) throws ScheduleException {
+  public void killTasks(Query.Builder query, String user) throws ScheduleException {
     checkNotNull(query);
     LOG.info("Killing tasks matching " + query);
 
-    boolean jobDeleted = false;
-
-    if (Query.isOnlyJobScoped(query)) {
-      // If this looks like a query for all tasks in a job, instruct the scheduler modules to
-      // delete the job.
-      IJobKey jobKey = JobKeys.from(query).get();
-      for (JobManager manager : jobManagers) {
-        if (manager.deleteJob(jobKey)) {
-          jobDeleted = true;
+    JobLocks.Held held = lockJobs("kill_tasks", query);
+    try {
+      boolean jobDeleted = false;
+
+      if (Query.isOnlyJobScoped(query)) {
+        // If this looks like a query for all tasks in a job, instruct the scheduler modules to
+        // delete the job.
+        IJobKey jobKey = JobKeys.from(query).get();
+        for (JobManager manager : jobManagers) {
+          if (manager.deleteJob(jobKey)) {
+            jobDeleted = true;
+          }
         }
       }
-    }
 
-    // Unless statuses were specifically supplied, only attempt to kill active tasks.
-    Query.Builder taskQuery = query.get().isSetStatuses() ? query.byStatus(ACTIVE_STATES) : query;
+      // Unless statuses were specifically supplied, only attempt to kill active tasks.
+      Query.Builder taskQuery =
+          query.get().isSetStatuses() ? query.byStatus(ACTIVE_STATES) : query;
 
-    int tasksAffected =
-        stateManager.changeState(taskQuery, KILLING, Optional.of("Killed by " + user));
-    if (!jobDeleted && (tasksAffected == 0)) {
-      throw new ScheduleException("No jobs to kill");
+      int tasksAffected =
+          stateManager.changeState(taskQuery, KILLING, Optional.of("Killed by " + user));
+      if (!jobDeleted && (tasksAffected == 0)) {
+        throw new ScheduleException("No jobs to kill");
+      }
+    } finally {
+      held.release();
     }
   }
 
@@ -317,12 +382,18 @@ class SchedulerCoreImpl implements SchedulerCore {
 
 
   @Override
-  public synchronized void preemptTask(IAssignedTask task, IAssignedTask preemptingTask) {
+  public void preemptTask(IAssignedTask task, IAssignedTask preemptingTask) {
     checkNotNull(task);
     checkNotNull(preemptingTask);
     // TODO(William Farner): Throw SchedulingException if either task doesn't exist, etc.
 
-    stateManager.changeState(Query.taskScoped(task.getTaskId()), ScheduleStatus.PREEMPTING,
-        Optional.of("Preempting in favor of " + preemptingTask.getTaskId()));
+    JobLocks.Held held =
+        jobLocks.lockJob("preempt_task", Tasks.ASSIGNED_TO_JOB_KEY.apply(task));
+    try {
+      stateManager.changeState(Query.taskScoped(task.getTaskId()), ScheduleStatus.PREEMPTING,
+          Optional.of("Preempting in favor of " + preemptingTask.getTaskId()));
+    } finally {
+      held.release();
+    }
   }
 }
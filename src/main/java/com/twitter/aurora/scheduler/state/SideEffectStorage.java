@@ -15,6 +15,7 @@
  */
 package com.twitter.aurora.scheduler.state;
 
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -45,9 +46,15 @@ class SideEffectStorage {
 
   private AtomicBoolean inOperation = new AtomicBoolean(false);
 
+  // Tasks to kill once the outermost operation on the current thread has committed.  Work runs on
+  // the calling thread, so tracking these per thread keeps them from being sent on behalf of
+  // another thread's uncommitted operation.
+  private final ThreadLocal<List<String>> pendingKills = new ThreadLocal<>();
+
   private final Storage storage;
   private final OperationFinalizer operationFinalizer;
   private final Closure<PubsubEvent> taskEventSink;
+  private final KillDispatcher killDispatcher;
 
   interface OperationFinalizer {
     /**
@@ -68,11 +75,13 @@ class SideEffectStorage {
   SideEffectStorage(
       Storage storage,
       OperationFinalizer operationFinalizer,
-      Closure<PubsubEvent> taskEventSink) {
+      Closure<PubsubEvent> taskEventSink,
+      KillDispatcher killDispatcher) {
 
     this.storage = checkNotNull(storage);
     this.operationFinalizer = checkNotNull(operationFinalizer);
     this.taskEventSink = checkNotNull(taskEventSink);
+    this.killDispatcher = checkNotNull(killDispatcher);
   }
 
   /**
@@ -85,7 +94,24 @@ class SideEffectStorage {
    * @throws E The work exception.
    */
   <T, E extends Exception> T write(SideEffectWork<T, E> work) throws E {
-    return storage.write(executeSideEffectsAfter(work));
+    if (pendingKills.get() != null) {
+      return storage.write(executeSideEffectsAfter(work));
+    }
+
+    List<String> kills = Lists.newArrayList();
+    pendingKills.set(kills);
+    T result;
+    try {
+      result = storage.write(executeSideEffectsAfter(work));
+    } finally {
+      pendingKills.remove();
+    }
+    // Kills are queued only after the operation that required them has completed.  An enclosing
+    // storage operation may still hold the storage lock here, so queueing kills never blocks.
+    if (!kills.isEmpty()) {
+      killDispatcher.killTasks(kills);
+    }
+    return result;
   }
 
   <T, E extends Exception> T consistentRead(Work<T, E> work) throws StorageException, E {
@@ -105,6 +131,17 @@ class SideEffectStorage {
       Preconditions.checkState(inOperation.get());
       events.add(Preconditions.checkNotNull(notice));
     }
+
+    /**
+     * Requests that a task be killed once the operation commits.  If the operation fails, the
+     * kill is not sent.
+     *
+     * @param taskId ID of the task to kill.
+     */
+    protected final void killTaskAfterCommit(String taskId) {
+      Preconditions.checkState(inOperation.get());
+      pendingKills.get().add(Preconditions.checkNotNull(taskId));
+    }
   }
 
   /**
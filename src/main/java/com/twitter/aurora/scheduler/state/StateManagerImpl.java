@@ -44,7 +44,6 @@ import org.apache.mesos.Protos.SlaveID;
 import com.twitter.aurora.gen.AssignedTask;
 import com.twitter.aurora.gen.ScheduleStatus;
 import com.twitter.aurora.gen.ScheduledTask;
-import com.twitter.aurora.scheduler.Driver;
 import com.twitter.aurora.scheduler.TaskIdGenerator;
 import com.twitter.aurora.scheduler.base.Query;
 import com.twitter.aurora.scheduler.base.Tasks;
@@ -89,6 +88,7 @@ public class StateManagerImpl implements StateManager {
   }
 
   private final TaskIdGenerator taskIdGenerator;
+  private final TaskEventRetention eventRetention;
 
   // Work queue to receive state machine side effect work.
   // Items are sorted to place DELETE entries last.  This is to ensure that within an operation,
@@ -129,7 +129,6 @@ public class StateManagerImpl implements StateManager {
         }
       };
 
-  private final Driver driver;
   private final Clock clock;
 
   /**
@@ -155,12 +154,14 @@ public class StateManagerImpl implements StateManager {
   StateManagerImpl(
       final Storage storage,
       final Clock clock,
-      Driver driver,
+      KillDispatcher killDispatcher,
       TaskIdGenerator taskIdGenerator,
+      TaskEventRetention eventRetention,
       Closure<PubsubEvent> taskEventSink) {
 
     checkNotNull(storage);
     this.clock = checkNotNull(clock);
+    this.eventRetention = checkNotNull(eventRetention);
 
     OperationFinalizer finalizer = new OperationFinalizer() {
       @Override public void finalize(SideEffectWork<?, ?> work, MutableStoreProvider store) {
@@ -168,9 +169,8 @@ public class StateManagerImpl implements StateManager {
       }
     };
 
-    this.storage = new SideEffectStorage(storage, finalizer, taskEventSink);
+    this.storage = new SideEffectStorage(storage, finalizer, taskEventSink, killDispatcher);
 
-    this.driver = checkNotNull(driver);
     this.taskIdGenerator = checkNotNull(taskIdGenerator);
 
     Stats.exportSize("work_queue_depth", workQueue);
@@ -327,7 +327,7 @@ public class StateManagerImpl implements StateManager {
       final TaskStateMachine stateMachine = work.stateMachine;
 
       if (work.command == WorkCommand.KILL) {
-        driver.killTask(stateMachine.getTaskId());
+        sideEffectWork.killTaskAfterCommit(stateMachine.getTaskId());
       } else {
         TaskStore.Mutable taskStore = storeProvider.getUnsafeTaskStore();
         String taskId = stateMachine.getTaskId();
@@ -364,8 +364,8 @@ public class StateManagerImpl implements StateManager {
           case UPDATE_STATE:
             taskStore.mutateTasks(idQuery, new TaskMutation() {
               @Override public IScheduledTask apply(IScheduledTask task) {
-                return work.mutation.apply(
-                    IScheduledTask.build(task.newBuilder().setStatus(stateMachine.getState())));
+                return eventRetention.compact(work.mutation.apply(
+                    IScheduledTask.build(task.newBuilder().setStatus(stateMachine.getState()))));
               }
             });
             sideEffectWork.addTaskEvent(
@@ -24,6 +24,7 @@ import com.google.inject.Binder;
 import com.twitter.aurora.scheduler.MesosTaskFactory;
 import com.twitter.aurora.scheduler.MesosTaskFactory.MesosTaskFactoryImpl;
 import com.twitter.aurora.scheduler.events.PubsubEventModule;
+import com.twitter.aurora.scheduler.state.KillDispatcher.KillDispatcherImpl;
 import com.twitter.aurora.scheduler.state.MaintenanceController.MaintenanceControllerImpl;
 import com.twitter.aurora.scheduler.state.TaskAssigner.TaskAssignerImpl;
 import com.twitter.aurora.scheduler.state.UUIDGenerator.UUIDGeneratorImpl;
@@ -43,6 +44,8 @@ public class StateModule extends AbstractModule {
 
     bind(StateManager.class).to(StateManagerImpl.class);
     bind(StateManagerImpl.class).in(Singleton.class);
+    bind(KillDispatcher.class).to(KillDispatcherImpl.class);
+    bind(KillDispatcherImpl.class).in(Singleton.class);
 
     bind(UUIDGenerator.class).to(UUIDGeneratorImpl.class);
     bind(UUIDGeneratorImpl.class).in(Singleton.class);
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.state;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+
+import com.twitter.aurora.gen.ScheduledTask;
+import com.twitter.aurora.gen.TaskEvent;
+import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
+import com.twitter.common.args.Arg;
+import com.twitter.common.args.CmdLine;
+import com.twitter.common.stats.Stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Bounds the event history kept for each task.
+ * <p>
+ * The first event and the most recent events are always kept, along with a limited number of
+ * older events that carry a message.  The remaining events are replaced by a single summary
+ * event, placed where the last of them occurred, so that timestamps remain in order.  Since the
+ * most recent events are kept, the latest timestamp and the events leading up to a terminal
+ * state remain available.
+ */
+class TaskEventRetention {
+
+  @CmdLine(name = "task_event_history_size",
+      help = "Number of recent events to keep for each task, also the number of older events "
+          + "with messages to keep.  Other events are summarized.  Must be at least 2.")
+  private static final Arg<Integer> HISTORY_SIZE = Arg.create(20);
+
+  @VisibleForTesting
+  static final String SUMMARY_MESSAGE = "Earlier events compacted";
+
+  private final int historySize;
+  private final AtomicLong eventsCompacted = Stats.exportLong("task_events_compacted");
+
+  @Inject
+  TaskEventRetention() {
+    this(HISTORY_SIZE.get());
+  }
+
+  @VisibleForTesting
+  TaskEventRetention(int historySize) {
+    checkArgument(historySize >= 2, "At least two recent task events must be kept.");
+    this.historySize = historySize;
+  }
+
+  private static boolean isSummary(TaskEvent event) {
+    return SUMMARY_MESSAGE.equals(event.getMessage());
+  }
+
+  /**
+   * Compacts a task's event history if it exceeds the retained size.
+   *
+   * @param task Task to compact.
+   * @return The task with a bounded event history.
+   */
+  IScheduledTask compact(IScheduledTask task) {
+    checkNotNull(task);
+
+    // Only the first event, the recent events and older message events are retained.
+    if (task.getTaskEvents().size() <= (historySize + 1)) {
+      return task;
+    }
+
+    ScheduledTask builder = task.newBuilder();
+    List<TaskEvent> events = builder.getTaskEvents();
+    List<TaskEvent> middle = events.subList(1, events.size() - historySize);
+
+    // Keep the most recent message events from the middle of the history.
+    boolean[] keep = new boolean[middle.size()];
+    int messagesKept = 0;
+    for (int i = middle.size() - 1; (i >= 0) && (messagesKept < historySize); i--) {
+      TaskEvent event = middle.get(i);
+      if (event.isSetMessage() && !isSummary(event)) {
+        keep[i] = true;
+        messagesKept++;
+      }
+    }
+
+    int lastDropped = -1;
+    int dropped = 0;
+    for (int i = 0; i < middle.size(); i++) {
+      if (!keep[i]) {
+        lastDropped = i;
+        dropped++;
+      }
+    }
+    // Replacing a single event with a summary would not shrink the history.
+    if (dropped < 2) {
+      return task;
+    }
+
+    List<TaskEvent> compacted = Lists.newArrayListWithCapacity(2 * historySize + 2);
+    compacted.add(events.get(0));
+    for (int i = 0; i < middle.size(); i++) {
+      if (keep[i]) {
+        compacted.add(middle.get(i));
+      } else if (i == lastDropped) {
+        compacted.add(new TaskEvent(middle.get(i)).setMessage(SUMMARY_MESSAGE));
+      }
+    }
+    compacted.addAll(events.subList(events.size() - historySize, events.size()));
+
+    eventsCompacted.addAndGet(events.size() - compacted.size());
+    return IScheduledTask.build(builder.setTaskEvents(compacted));
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.StatImpl;
+import com.twitter.common.stats.Stats;
+import com.twitter.common.util.Clock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A latency histogram with logarithmic buckets, from which tail percentiles can be exported.
+ * <p>
+ * Each power of two is divided into sixteen linear buckets, so that reported
+ * values are within about 6% of the recorded values.  Recording a value increments a single
+ * counter, and does not allocate.  Percentiles cover between one and two of the most recent
+ * windows.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private static final Amount<Long, Time> DEFAULT_WINDOW = Amount.of(1L, Time.MINUTES);
+
+  private final Clock clock;
+  private final long windowNanos;
+
+  private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+  private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+  private volatile long nextRotationNanos;
+
+  @VisibleForTesting
+  LatencyHistogram(Clock clock, Amount<Long, Time> window) {
+    this.clock = checkNotNull(clock);
+    this.windowNanos = window.as(Time.NANOSECONDS);
+    checkArgument(windowNanos > 0);
+    this.nextRotationNanos = clock.nowNanos() + windowNanos;
+  }
+
+  /**
+   * Creates a histogram and exports its 50th, 90th, 99th and 99.9th percentiles as stats named
+   * with the given prefix.
+   *
+   * @param name Prefix of the exported stat names.
+   * @return A new exported histogram.
+   */
+  public static LatencyHistogram export(String name) {
+    LatencyHistogram histogram = new LatencyHistogram(Clock.SYSTEM_CLOCK, DEFAULT_WINDOW);
+    histogram.exportPercentile(name + "_p50", 50);
+    histogram.exportPercentile(name + "_p90", 90);
+    histogram.exportPercentile(name + "_p99", 99);
+    histogram.exportPercentile(name + "_p999", 99.9);
+    return histogram;
+  }
+
+  private void exportPercentile(String name, final double percentile) {
+    Stats.export(new StatImpl<Long>(Stats.normalizeName(name)) {
+      @Override public Long read() {
+        return getPercentile(percentile);
+      }
+    });
+  }
+
+  @VisibleForTesting
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(0, value);
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  @VisibleForTesting
+  static long highestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    int shift = (bucket / SUB_BUCKETS) - 1;
+    long lowest = (long) (SUB_BUCKETS + (bucket % SUB_BUCKETS)) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  private void maybeRotate() {
+    long now = clock.nowNanos();
+    if (now < nextRotationNanos) {
+      return;
+    }
+
+    synchronized (this) {
+      if (now < nextRotationNanos) {
+        return;
+      }
+
+      // Samples older than two windows are discarded entirely.
+      previous = (now < (nextRotationNanos + windowNanos))
+          ? current
+          : new AtomicLongArray(BUCKETS);
+      current = new AtomicLongArray(BUCKETS);
+      nextRotationNanos = now + windowNanos;
+    }
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos Latency in nanoseconds.
+   */
+  public void record(long nanos) {
+    maybeRotate();
+    current.incrementAndGet(bucket(nanos));
+  }
+
+  /**
+   * Gets an upper bound of the given percentile of the recent latencies.
+   *
+   * @param percentile Percentile, between 0 and 100.
+   * @return The percentile in nanoseconds, or {@code 0} if no latencies were recently recorded.
+   */
+  public long getPercentile(double percentile) {
+    checkArgument((percentile >= 0) && (percentile <= 100));
+    maybeRotate();
+
+    AtomicLongArray latest = current;
+    AtomicLongArray earlier = previous;
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += latest.get(i) + earlier.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += latest.get(i) + earlier.get(i);
+      if (seen >= rank) {
+        return highestValue(i);
+      }
+    }
+    // Samples recorded during the scan may push the rank past the end.
+    return highestValue(BUCKETS - 1);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.stats;
+
+import java.lang.reflect.Method;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.inject.Binder;
+import com.google.inject.matcher.Matchers;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import com.twitter.common.inject.TimedInterceptor.Timed;
+
+/**
+ * A method interceptor that records the latency of {@link Timed} methods in a
+ * {@link LatencyHistogram}, alongside the averages exported by the timed interceptor.
+ */
+public final class TimedHistogramInterceptor implements MethodInterceptor {
+
+  private final LoadingCache<Method, LatencyHistogram> histograms =
+      CacheBuilder.newBuilder().build(new CacheLoader<Method, LatencyHistogram>() {
+        @Override public LatencyHistogram load(Method method) {
+          String name = method.getAnnotation(Timed.class).value();
+          return LatencyHistogram.export(
+              (Strings.isNullOrEmpty(name) ? method.getName() : name) + "_latency_nanos");
+        }
+      });
+
+  private TimedHistogramInterceptor() {
+    // Instantiated through bind().
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    LatencyHistogram histogram = histograms.getUnchecked(invocation.getMethod());
+    long start = System.nanoTime();
+    try {
+      return invocation.proceed();
+    } finally {
+      histogram.record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Binds an interceptor that records latency histograms for all {@link Timed} methods.
+   *
+   * @param binder Binder to bind the interceptor with.
+   */
+  public static void bind(Binder binder) {
+    binder.bindInterceptor(
+        Matchers.any(),
+        Matchers.annotatedWith(Timed.class),
+        new TimedHistogramInterceptor());
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+import com.twitter.common.args.Arg;
+import com.twitter.common.args.CmdLine;
+import com.twitter.common.args.constraints.Positive;
+import com.twitter.common.util.Clock;
+
+/**
+ * Collects lock wait and hold times of storage operations, broken down by the class of the work
+ * performed, and the shape of task queries.
+ * <p>
+ * Recording an operation updates a few counters for its site.  The slowest operations are only
+ * retained once they exceed the fastest of the currently retained operations, which rarely
+ * requires synchronization.
+ */
+@Singleton
+public class StorageProfiler {
+
+  @Positive
+  @CmdLine(name = "storage_profiler_slowest_operations",
+      help = "Number of the slowest storage operations to retain for diagnostics.")
+  private static final Arg<Integer> SLOWEST_OPERATIONS = Arg.create(20);
+
+  /**
+   * Kinds of storage operations.
+   */
+  public enum Kind {
+    CONSISTENT_READ,
+    WEAKLY_CONSISTENT_READ,
+    WRITE,
+    LOG_WRITE
+  }
+
+  private final int slowestOperations;
+  private final Clock clock;
+
+  private final Map<Kind, ConcurrentMap<String, SiteStats>> sites = Maps.newEnumMap(Kind.class);
+  private final ConcurrentMap<String, QueryStats> queries = Maps.newConcurrentMap();
+
+  // The innermost operations are attributed to the site of the outermost operation on a thread.
+  private final ThreadLocal<Class<?>> outerSite = new ThreadLocal<Class<?>>();
+
+  private static final Ordering<Map<String, Object>> BY_TOTAL_HOLD =
+      new Ordering<Map<String, Object>>() {
+        @Override public int compare(Map<String, Object> left, Map<String, Object> right) {
+          return Long.compare(
+              (Long) right.get("hold_nanos_total"),
+              (Long) left.get("hold_nanos_total"));
+        }
+      };
+
+  private final PriorityQueue<SlowOperation> slowest =
+      new PriorityQueue<SlowOperation>(11, SlowOperation.BY_HOLD_TIME);
+  private volatile long slowestThresholdNanos = 0;
+
+  @Inject
+  public StorageProfiler() {
+    this(SLOWEST_OPERATIONS.get(), Clock.SYSTEM_CLOCK);
+  }
+
+  public StorageProfiler(int slowestOperations, Clock clock) {
+    this.slowestOperations = slowestOperations;
+    this.clock = clock;
+    for (Kind kind : Kind.values()) {
+      sites.put(kind, Maps.<String, SiteStats>newConcurrentMap());
+    }
+  }
+
+  /**
+   * Marks the start of an operation on the calling thread, so that nested operations are
+   * attributed to the same site.
+   *
+   * @param work Work performed by the operation.
+   * @return {@code true} if this is the outermost operation on the thread, in which case
+   *     {@link #exit()} must be called when it completes.
+   */
+  public boolean enter(Object work) {
+    if (outerSite.get() != null) {
+      return false;
+    }
+    outerSite.set(work.getClass());
+    return true;
+  }
+
+  /**
+   * Marks the end of the outermost operation on the calling thread.
+   */
+  public void exit() {
+    outerSite.remove();
+  }
+
+  /**
+   * Records a completed storage operation.
+   *
+   * @param kind Kind of operation.
+   * @param work Work performed, whose class identifies the calling site unless an enclosing
+   *     operation was entered on this thread.
+   * @param waitNanos Time spent waiting for locks.
+   * @param holdNanos Time spent performing the work, while holding locks.
+   */
+  public void record(Kind kind, Object work, long waitNanos, long holdNanos) {
+    Class<?> outer = outerSite.get();
+    String site = ((outer == null) ? work.getClass() : outer).getName();
+    ConcurrentMap<String, SiteStats> kindSites = sites.get(kind);
+    SiteStats stats = kindSites.get(site);
+    if (stats == null) {
+      kindSites.putIfAbsent(site, new SiteStats());
+      stats = kindSites.get(site);
+    }
+    stats.record(waitNanos, holdNanos);
+
+    if (holdNanos > slowestThresholdNanos) {
+      recordSlow(new SlowOperation(kind, site, waitNanos, holdNanos, clock.nowMillis()));
+    }
+  }
+
+  private synchronized void recordSlow(SlowOperation operation) {
+    slowest.add(operation);
+    if (slowest.size() > slowestOperations) {
+      slowest.poll();
+      slowestThresholdNanos = slowest.peek().holdNanos;
+    }
+  }
+
+  /**
+   * Records the shape of a task query.
+   *
+   * @param index Index used to find candidate tasks.
+   * @param scanned Number of candidate tasks scanned.
+   * @param returned Number of tasks matching the query.
+   * @param nanos Time taken by the query.
+   */
+  public void recordQuery(String index, int scanned, int returned, long nanos) {
+    QueryStats stats = queries.get(index);
+    if (stats == null) {
+      queries.putIfAbsent(index, new QueryStats());
+      stats = queries.get(index);
+    }
+    stats.count.incrementAndGet();
+    stats.scanned.addAndGet(scanned);
+    stats.returned.addAndGet(returned);
+    stats.nanos.addAndGet(nanos);
+  }
+
+  /**
+   * Gets a snapshot of the operation statistics per site, ordered by total lock hold time.
+   *
+   * @return Statistics for each kind of operation and site.
+   */
+  public List<Map<String, Object>> getSites() {
+    List<Map<String, Object>> snapshot = Lists.newArrayList();
+    for (Map.Entry<Kind, ConcurrentMap<String, SiteStats>> kindSites : sites.entrySet()) {
+      for (Map.Entry<String, SiteStats> entry : kindSites.getValue().entrySet()) {
+        SiteStats stats = entry.getValue();
+        snapshot.add(ImmutableMap.<String, Object>builder()
+            .put("kind", kindSites.getKey().name())
+            .put("site", entry.getKey())
+            .put("count", stats.count.get())
+            .put("wait_nanos_total", stats.waitNanos.get())
+            .put("wait_nanos_max", stats.maxWaitNanos.get())
+            .put("hold_nanos_total", stats.holdNanos.get())
+            .put("hold_nanos_max", stats.maxHoldNanos.get())
+            .build());
+      }
+    }
+    return BY_TOTAL_HOLD.sortedCopy(snapshot);
+  }
+
+  /**
+   * Gets a snapshot of task query statistics per index.
+   *
+   * @return Statistics for each index.
+   */
+  public Map<String, Map<String, Long>> getQueries() {
+    ImmutableMap.Builder<String, Map<String, Long>> snapshot = ImmutableMap.builder();
+    for (Map.Entry<String, QueryStats> entry : queries.entrySet()) {
+      QueryStats stats = entry.getValue();
+      snapshot.put(entry.getKey(), ImmutableMap.of(
+          "count", stats.count.get(),
+          "scanned", stats.scanned.get(),
+          "returned", stats.returned.get(),
+          "nanos_total", stats.nanos.get()));
+    }
+    return snapshot.build();
+  }
+
+  /**
+   * Gets the slowest operations recorded, slowest first.
+   *
+   * @return The slowest operations.
+   */
+  public synchronized List<Map<String, Object>> getSlowest() {
+    ImmutableList.Builder<Map<String, Object>> snapshot = ImmutableList.builder();
+    for (SlowOperation operation : SlowOperation.BY_HOLD_TIME.reverse().sortedCopy(slowest)) {
+      snapshot.add(ImmutableMap.<String, Object>of(
+          "kind", operation.kind.name(),
+          "site", operation.site,
+          "wait_nanos", operation.waitNanos,
+          "hold_nanos", operation.holdNanos,
+          "timestamp_ms", operation.timestampMs));
+    }
+    return snapshot.build();
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long current = max.get();
+    while ((value > current) && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  private static class SiteStats {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong holdNanos = new AtomicLong();
+    private final AtomicLong maxHoldNanos = new AtomicLong();
+
+    void record(long wait, long hold) {
+      count.incrementAndGet();
+      waitNanos.addAndGet(wait);
+      holdNanos.addAndGet(hold);
+      updateMax(maxWaitNanos, wait);
+      updateMax(maxHoldNanos, hold);
+    }
+  }
+
+  private static class QueryStats {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong returned = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+  }
+
+  private static class SlowOperation {
+    private static final Ordering<SlowOperation> BY_HOLD_TIME = new Ordering<SlowOperation>() {
+      @Override public int compare(SlowOperation left, SlowOperation right) {
+        return Long.compare(left.holdNanos, right.holdNanos);
+      }
+    };
+
+    private final Kind kind;
+    private final String site;
+    private final long waitNanos;
+    private final long holdNanos;
+    private final long timestampMs;
+
+    SlowOperation(Kind kind, String site, long waitNanos, long holdNanos, long timestampMs) {
+      this.kind = kind;
+      this.site = site;
+      this.waitNanos = waitNanos;
+      this.holdNanos = holdNanos;
+      this.timestampMs = timestampMs;
+    }
+  }
+}
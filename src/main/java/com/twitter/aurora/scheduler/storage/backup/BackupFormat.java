@@ -0,0 +1,510 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.backup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+import com.twitter.aurora.codec.ThriftBinaryCodec;
+import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
+import com.twitter.aurora.gen.JobKey;
+import com.twitter.aurora.gen.ScheduledTask;
+import com.twitter.aurora.gen.storage.Snapshot;
+import com.twitter.aurora.gen.storage.StoredJob;
+import com.twitter.aurora.scheduler.storage.entities.IJobKey;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads and writes backup files.
+ *
+ * <p>A backup file is a header, a deflate-compressed payload and a checksum footer:
+ * <pre>
+ *   magic (4 bytes) | version (1 byte) | type (1 byte) | base backup name (modified UTF-8)
+ *   deflated thrift binary payload
+ *   CRC32 of all preceding bytes (8 bytes) | end magic (4 bytes)
+ * </pre>
+ * The payload of a full backup is a {@link Snapshot}. The payload of an incremental backup is a
+ * {@link Snapshot} holding only the tasks and jobs that changed since its base full backup,
+ * followed by the IDs of tasks and keys of jobs that were removed since then.
+ *
+ * <p>Payloads are encoded straight to and from the file streams, so neither writing nor reading a
+ * backup buffers the encoded snapshot in memory. Files that do not start with the magic are read
+ * in the original backup format, an uncompressed thrift-encoded {@link Snapshot}.
+ */
+final class BackupFormat {
+
+  // "ABKP" and "ABKE".  The first byte of a thrift-encoded struct is a field type, which is always
+  // lower than the first byte of the magic.
+  private static final int MAGIC = 0x41424B50;
+  private static final int END_MAGIC = 0x41424B45;
+  private static final byte VERSION = 1;
+  private static final int FOOTER_SIZE = 12;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private BackupFormat() {
+    // Utility class.
+  }
+
+  /**
+   * The kind of contents stored in a backup.
+   */
+  enum BackupType {
+    FULL,
+    INCREMENTAL
+  }
+
+  /**
+   * The decoded contents of a single backup file.
+   */
+  static class BackupContents {
+    private final BackupType type;
+    private final Optional<String> baseName;
+    private final Snapshot snapshot;
+    private final Set<String> deletedTaskIds;
+    private final Set<JobKey> deletedJobs;
+
+    BackupContents(
+        BackupType type,
+        Optional<String> baseName,
+        Snapshot snapshot,
+        Set<String> deletedTaskIds,
+        Set<JobKey> deletedJobs) {
+
+      this.type = checkNotNull(type);
+      this.baseName = checkNotNull(baseName);
+      this.snapshot = checkNotNull(snapshot);
+      this.deletedTaskIds = checkNotNull(deletedTaskIds);
+      this.deletedJobs = checkNotNull(deletedJobs);
+    }
+
+    BackupType getType() {
+      return type;
+    }
+
+    /**
+     * Gets the name of the full backup this backup is relative to.
+     *
+     * @return The base backup name, absent for full backups.
+     */
+    Optional<String> getBaseName() {
+      return baseName;
+    }
+
+    Snapshot getSnapshot() {
+      return snapshot;
+    }
+
+    Set<String> getDeletedTaskIds() {
+      return deletedTaskIds;
+    }
+
+    Set<JobKey> getDeletedJobs() {
+      return deletedJobs;
+    }
+  }
+
+  /**
+   * Writes a full backup.
+   *
+   * @param snapshot Snapshot to write.
+   * @param file File to write to.
+   * @return Number of bytes written.
+   * @throws IOException If the file could not be written.
+   * @throws CodingException If the snapshot could not be encoded.
+   */
+  static long writeFull(Snapshot snapshot, File file) throws IOException, CodingException {
+    return write(
+        BackupType.FULL,
+        Optional.<String>absent(),
+        snapshot,
+        ImmutableSet.<String>of(),
+        ImmutableSet.<JobKey>of(),
+        file);
+  }
+
+  /**
+   * Writes an incremental backup.
+   *
+   * @param changed Snapshot containing the tasks and jobs that changed since the base backup, and
+   *     the complete contents of all other stores.
+   * @param deletedTaskIds IDs of tasks removed since the base backup.
+   * @param deletedJobs Keys of jobs removed since the base backup.
+   * @param baseName Name of the full backup this backup is relative to.
+   * @param file File to write to.
+   * @return Number of bytes written.
+   * @throws IOException If the file could not be written.
+   * @throws CodingException If the snapshot could not be encoded.
+   */
+  static long writeIncremental(
+      Snapshot changed,
+      Set<String> deletedTaskIds,
+      Set<JobKey> deletedJobs,
+      String baseName,
+      File file) throws IOException, CodingException {
+
+    return write(
+        BackupType.INCREMENTAL,
+        Optional.of(baseName),
+        changed,
+        deletedTaskIds,
+        deletedJobs,
+        file);
+  }
+
+  private static long write(
+      BackupType type,
+      Optional<String> baseName,
+      Snapshot snapshot,
+      Set<String> deletedTaskIds,
+      Set<JobKey> deletedJobs,
+      File file) throws IOException, CodingException {
+
+    FileOutputStream fileOut = new FileOutputStream(file);
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      BufferedOutputStream buffered = new BufferedOutputStream(fileOut, BUFFER_SIZE);
+      CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32());
+      DataOutputStream header = new DataOutputStream(checked);
+      header.writeInt(MAGIC);
+      header.writeByte(VERSION);
+      header.writeByte(type.ordinal());
+      header.writeUTF(baseName.or(""));
+
+      DeflaterOutputStream deflated = new DeflaterOutputStream(checked, deflater, BUFFER_SIZE);
+      TProtocol protocol =
+          ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(new TIOStreamTransport(deflated));
+      try {
+        snapshot.write(protocol);
+        if (type == BackupType.INCREMENTAL) {
+          protocol.writeI32(deletedTaskIds.size());
+          for (String taskId : deletedTaskIds) {
+            protocol.writeString(taskId);
+          }
+          protocol.writeI32(deletedJobs.size());
+          for (JobKey jobKey : deletedJobs) {
+            jobKey.write(protocol);
+          }
+        }
+      } catch (TException e) {
+        throw new CodingException("Failed to encode backup.", e);
+      }
+      deflated.finish();
+
+      DataOutputStream footer = new DataOutputStream(buffered);
+      footer.writeLong(checked.getChecksum().getValue());
+      footer.writeInt(END_MAGIC);
+      footer.flush();
+      fileOut.getFD().sync();
+      return fileOut.getChannel().position();
+    } finally {
+      deflater.end();
+      fileOut.close();
+    }
+  }
+
+  /**
+   * The header of a backup file.
+   */
+  static class BackupHeader {
+    private final BackupType type;
+    private final Optional<String> baseName;
+
+    BackupHeader(BackupType type, Optional<String> baseName) {
+      this.type = checkNotNull(type);
+      this.baseName = checkNotNull(baseName);
+    }
+
+    BackupType getType() {
+      return type;
+    }
+
+    Optional<String> getBaseName() {
+      return baseName;
+    }
+  }
+
+  /**
+   * Consumes the decompressed payload of a backup.
+   *
+   * @param <T> Result type.
+   */
+  private interface PayloadReader<T> {
+    T read(BackupHeader header, InputStream payload) throws IOException, CodingException;
+  }
+
+  private static final PayloadReader<BackupContents> DECODE =
+      new PayloadReader<BackupContents>() {
+        @Override public BackupContents read(BackupHeader header, InputStream payload)
+            throws CodingException {
+
+          TProtocol protocol =
+              ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(new TIOStreamTransport(payload));
+          Snapshot snapshot = new Snapshot();
+          ImmutableSet.Builder<String> deletedTaskIds = ImmutableSet.builder();
+          ImmutableSet.Builder<JobKey> deletedJobs = ImmutableSet.builder();
+          try {
+            snapshot.read(protocol);
+            if (header.getType() == BackupType.INCREMENTAL) {
+              readDeletions(protocol, deletedTaskIds, deletedJobs);
+            }
+          } catch (TException e) {
+            throw new CodingException("Failed to decode backup.", e);
+          }
+          return new BackupContents(
+              header.getType(),
+              header.getBaseName(),
+              snapshot,
+              deletedTaskIds.build(),
+              deletedJobs.build());
+        }
+      };
+
+  /**
+   * Reads the task IDs and job keys that follow the snapshot in the payload of an incremental
+   * backup.
+   *
+   * @param protocol Protocol positioned after the snapshot.
+   * @param deletedTaskIds Builder to add deleted task IDs to.
+   * @param deletedJobs Builder to add deleted job keys to.
+   * @throws TException If the deletions could not be decoded.
+   */
+  static void readDeletions(
+      TProtocol protocol,
+      ImmutableSet.Builder<String> deletedTaskIds,
+      ImmutableSet.Builder<JobKey> deletedJobs) throws TException {
+
+    int deletedTaskCount = protocol.readI32();
+    for (int i = 0; i < deletedTaskCount; i++) {
+      deletedTaskIds.add(protocol.readString());
+    }
+    int deletedJobCount = protocol.readI32();
+    for (int i = 0; i < deletedJobCount; i++) {
+      JobKey jobKey = new JobKey();
+      jobKey.read(protocol);
+      deletedJobs.add(jobKey);
+    }
+  }
+
+  /**
+   * Reads a single backup file, verifying its checksum.
+   *
+   * @param file Backup file to read.
+   * @return The backup contents.
+   * @throws IOException If the file could not be read.
+   * @throws CodingException If the file is corrupt or could not be decoded.
+   */
+  static BackupContents read(File file) throws IOException, CodingException {
+    return readPayload(file, DECODE);
+  }
+
+  /**
+   * Copies the decompressed payload of a backup file to another file, verifying the backup
+   * checksum.  The copy holds the thrift-encoded {@link Snapshot}, followed by the deletions of an
+   * incremental backup, and can be decoded without reading the whole payload into memory.
+   *
+   * @param file Backup file to read.
+   * @param spool File to copy the payload to.
+   * @return The backup header.
+   * @throws IOException If either file could not be accessed.
+   * @throws CodingException If the backup is corrupt.
+   */
+  static BackupHeader spoolPayload(File file, final File spool)
+      throws IOException, CodingException {
+
+    return readPayload(file, new PayloadReader<BackupHeader>() {
+      @Override public BackupHeader read(BackupHeader header, InputStream payload)
+          throws IOException {
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(spool), BUFFER_SIZE);
+        try {
+          ByteStreams.copy(payload, out);
+        } finally {
+          out.close();
+        }
+        return header;
+      }
+    });
+  }
+
+  private static <T> T readPayload(File file, PayloadReader<T> reader)
+      throws IOException, CodingException {
+
+    long length = file.length();
+    InputStream fileIn = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+    try {
+      fileIn.mark(4);
+      byte[] magic = new byte[4];
+      int magicBytes = ByteStreams.read(fileIn, magic, 0, magic.length);
+      fileIn.reset();
+      if (magicBytes < magic.length || Ints.fromByteArray(magic) != MAGIC) {
+        // Legacy backups are an uncompressed snapshot without a checksum.
+        return reader.read(new BackupHeader(BackupType.FULL, Optional.<String>absent()), fileIn);
+      }
+
+      if (length < FOOTER_SIZE) {
+        throw new CodingException("Backup " + file + " is truncated.");
+      }
+
+      CheckedInputStream checked =
+          new CheckedInputStream(ByteStreams.limit(fileIn, length - FOOTER_SIZE), new CRC32());
+      DataInputStream headerIn = new DataInputStream(checked);
+      BackupHeader header;
+      try {
+        headerIn.readInt();
+        byte version = headerIn.readByte();
+        if (version != VERSION) {
+          throw new CodingException("Unsupported backup version " + version);
+        }
+        int typeOrdinal = headerIn.readByte();
+        if (typeOrdinal < 0 || typeOrdinal >= BackupType.values().length) {
+          throw new CodingException("Unknown backup type " + typeOrdinal);
+        }
+        header = new BackupHeader(
+            BackupType.values()[typeOrdinal],
+            Optional.fromNullable(Strings.emptyToNull(headerIn.readUTF())));
+      } catch (EOFException e) {
+        throw new CodingException("Backup " + file + " is truncated.", e);
+      }
+
+      T result;
+      Inflater inflater = new Inflater();
+      try {
+        result = reader.read(header, new InflaterInputStream(checked, inflater, BUFFER_SIZE));
+      } finally {
+        inflater.end();
+      }
+
+      // Consume any remainder of the payload so the checksum covers all of it.
+      byte[] remainder = new byte[BUFFER_SIZE];
+      while (checked.read(remainder) != -1) {
+        // Drain.
+      }
+      DataInputStream footer = new DataInputStream(fileIn);
+      long expectedChecksum;
+      try {
+        expectedChecksum = footer.readLong();
+        if (footer.readInt() != END_MAGIC) {
+          throw new CodingException("Backup " + file + " is missing its footer.");
+        }
+      } catch (EOFException e) {
+        throw new CodingException("Backup " + file + " is truncated.", e);
+      }
+      if (expectedChecksum != checked.getChecksum().getValue()) {
+        throw new CodingException("Checksum mismatch for backup " + file);
+      }
+      return result;
+    } finally {
+      fileIn.close();
+    }
+  }
+
+  /**
+   * Restores the full snapshot represented by a backup, applying it to its base backup if it is an
+   * incremental backup.
+   *
+   * @param dir Backup directory.
+   * @param name Name of the backup to restore.
+   * @return The restored snapshot.
+   * @throws IOException If a backup in the chain could not be read.
+   * @throws CodingException If a backup in the chain could not be decoded.
+   */
+  static Snapshot restore(File dir, String name) throws IOException, CodingException {
+    BackupContents contents = read(new File(dir, name));
+    if (contents.getType() == BackupType.FULL) {
+      return contents.getSnapshot();
+    }
+
+    BackupContents base = read(new File(dir, contents.getBaseName().get()));
+    if (base.getType() != BackupType.FULL) {
+      throw new CodingException("Base of backup " + name + " is not a full backup.");
+    }
+    return applyIncremental(base.getSnapshot(), contents);
+  }
+
+  private static IJobKey jobKey(StoredJob job) {
+    return IJobKey.build(job.getJobConfiguration().getKey());
+  }
+
+  /**
+   * Applies an incremental backup to the full backup it is relative to.
+   *
+   * @param base Snapshot from the base full backup.
+   * @param incremental Incremental backup contents.
+   * @return The combined snapshot.
+   */
+  static Snapshot applyIncremental(Snapshot base, BackupContents incremental) {
+    Map<String, ScheduledTask> tasks = Maps.newHashMap();
+    for (ScheduledTask task : base.getTasks()) {
+      tasks.put(task.getAssignedTask().getTaskId(), task);
+    }
+    tasks.keySet().removeAll(incremental.getDeletedTaskIds());
+    Snapshot changed = incremental.getSnapshot();
+    for (ScheduledTask task : changed.getTasks()) {
+      tasks.put(task.getAssignedTask().getTaskId(), task);
+    }
+
+    Map<IJobKey, StoredJob> jobs = Maps.newHashMap();
+    for (StoredJob job : base.getJobs()) {
+      jobs.put(jobKey(job), job);
+    }
+    for (JobKey deleted : incremental.getDeletedJobs()) {
+      jobs.remove(IJobKey.build(deleted));
+    }
+    for (StoredJob job : changed.getJobs()) {
+      jobs.put(jobKey(job), job);
+    }
+
+    // Everything other than tasks and jobs is stored in full in every backup.
+    return new Snapshot()
+        .setTimestamp(changed.getTimestamp())
+        .setHostAttributes(changed.getHostAttributes())
+        .setTasks(ImmutableSet.copyOf(tasks.values()))
+        .setJobs(ImmutableSet.copyOf(jobs.values()))
+        .setSchedulerMetadata(changed.getSchedulerMetadata())
+        .setQuotaConfigurations(changed.getQuotaConfigurations())
+        .setLocks(changed.getLocks());
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.backup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A record of the backup chain: which backups in the backup directory are incremental, and which
+ * full backup each of them depends on.
+ *
+ * <p>The manifest is a text file with one line per backup, holding the backup name optionally
+ * followed by the name of its base full backup. Incremental backups also record their base in
+ * their own header, so the manifest is not needed to restore a backup; it is used to avoid pruning
+ * full backups that retained incremental backups depend on.
+ */
+class BackupManifest {
+  static final String MANIFEST_NAME = "backup-chain.manifest";
+
+  private static final Splitter FIELD_SPLITTER = Splitter.on(' ').omitEmptyStrings();
+
+  private final File dir;
+  private final Map<String, Optional<String>> bases = Maps.newTreeMap();
+
+  private BackupManifest(File dir) {
+    this.dir = checkNotNull(dir);
+  }
+
+  /**
+   * Loads the manifest from a backup directory, creating an empty manifest if none exists.
+   *
+   * @param dir Backup directory.
+   * @return The manifest.
+   * @throws IOException If an existing manifest could not be read.
+   */
+  static BackupManifest load(File dir) throws IOException {
+    BackupManifest manifest = new BackupManifest(dir);
+    File file = new File(dir, MANIFEST_NAME);
+    if (file.exists()) {
+      for (String line : Files.readLines(file, Charsets.UTF_8)) {
+        List<String> fields = ImmutableList.copyOf(FIELD_SPLITTER.split(line));
+        if (!fields.isEmpty()) {
+          manifest.bases.put(
+              fields.get(0),
+              fields.size() > 1 ? Optional.of(fields.get(1)) : Optional.<String>absent());
+        }
+      }
+    }
+    return manifest;
+  }
+
+  /**
+   * Records a full backup.
+   *
+   * @param name Backup name.
+   */
+  void addFull(String name) {
+    bases.put(name, Optional.<String>absent());
+  }
+
+  /**
+   * Records an incremental backup.
+   *
+   * @param name Backup name.
+   * @param baseName Name of the full backup it depends on.
+   */
+  void addIncremental(String name, String baseName) {
+    bases.put(name, Optional.of(baseName));
+  }
+
+  /**
+   * Gets the names of full backups that are depended upon by any of the given backups.
+   *
+   * @param backups Backup names.
+   * @return Names of full backups required to restore {@code backups}.
+   */
+  Set<String> getRequiredBases(Iterable<String> backups) {
+    ImmutableSet.Builder<String> required = ImmutableSet.builder();
+    for (String backup : backups) {
+      Optional<String> base = bases.get(backup);
+      if (base != null && base.isPresent()) {
+        required.add(base.get());
+      }
+    }
+    return required.build();
+  }
+
+  /**
+   * Drops entries for backups that no longer exist, and writes the manifest to the backup
+   * directory.
+   *
+   * @throws IOException If the manifest could not be written.
+   */
+  void save() throws IOException {
+    StringBuilder contents = new StringBuilder();
+    for (Map.Entry<String, Optional<String>> entry : ImmutableList.copyOf(bases.entrySet())) {
+      if (!new File(dir, entry.getKey()).exists()) {
+        bases.remove(entry.getKey());
+      } else {
+        contents.append(entry.getKey());
+        if (entry.getValue().isPresent()) {
+          contents.append(' ').append(entry.getValue().get());
+        }
+        contents.append('\n');
+      }
+    }
+
+    File temp = new File(dir, "temp_" + MANIFEST_NAME);
+    Files.write(contents.toString(), temp, Charsets.UTF_8);
+    Files.move(temp, new File(dir, MANIFEST_NAME));
+  }
+}
@@ -30,12 +30,14 @@ import com.google.inject.TypeLiteral;
 import com.twitter.aurora.gen.storage.Snapshot;
 import com.twitter.aurora.scheduler.storage.SnapshotStore;
 import com.twitter.aurora.scheduler.storage.backup.Recovery.RecoveryImpl;
+import com.twitter.aurora.scheduler.storage.backup.Recovery.RecoveryImpl.IndexedStaging;
 import com.twitter.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImpl;
 import com.twitter.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImpl.BackupConfig;
 import com.twitter.aurora.scheduler.storage.backup.TemporaryStorage.TemporaryStorageFactory;
 import com.twitter.common.application.Lifecycle;
 import com.twitter.common.args.Arg;
 import com.twitter.common.args.CmdLine;
+import com.twitter.common.args.constraints.NotNegative;
 import com.twitter.common.args.constraints.NotNull;
 import com.twitter.common.base.Command;
 import com.twitter.common.quantity.Amount;
@@ -58,6 +60,18 @@ public class BackupModule extends PrivateModule {
       help = "Maximum number of backups to retain before deleting the oldest backups.")
   private static final Arg<Integer> MAX_SAVED_BACKUPS = Arg.create(48);
 
+  @NotNegative
+  @CmdLine(name = "incremental_backups_per_full",
+      help = "Number of incremental backups to write between full backups. "
+          + "Incremental backups only hold tasks and jobs that changed since the last full backup. "
+          + "A value of 0 disables incremental backups.")
+  private static final Arg<Integer> INCREMENTAL_BACKUPS_PER_FULL = Arg.create(0);
+
+  @CmdLine(name = "indexed_recovery_staging",
+      help = "Stage backups for recovery as an index into the backup file, decoding tasks only "
+          + "as they are queried, rather than loading the entire backup into memory.")
+  private static final Arg<Boolean> INDEXED_RECOVERY_STAGING = Arg.create(false);
+
   @NotNull
   @CmdLine(name = "backup_dir",
       help = "Directory to store backups under. Will be created if it does not exist.")
@@ -101,6 +115,8 @@ public class BackupModule extends PrivateModule {
     bind(new TypeLiteral<Function<Snapshot, TemporaryStorage>>() { })
         .to(TemporaryStorageFactory.class);
 
+    bind(Boolean.class).annotatedWith(IndexedStaging.class)
+        .toInstance(INDEXED_RECOVERY_STAGING.get());
     bind(Command.class).to(LifecycleHook.class);
     bind(Recovery.class).to(RecoveryImpl.class);
     bind(RecoveryImpl.class).in(Singleton.class);
@@ -140,6 +156,10 @@ public class BackupModule extends PrivateModule {
 
   @Provides
   private BackupConfig provideBackupConfig(File backupDir) {
-    return new BackupConfig(backupDir, MAX_SAVED_BACKUPS.get(), BACKUP_INTERVAL.get());
+    return new BackupConfig(
+        backupDir,
+        MAX_SAVED_BACKUPS.get(),
+        BACKUP_INTERVAL.get(),
+        INCREMENTAL_BACKUPS_PER_FULL.get());
   }
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.backup;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.Files;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TSet;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+import com.twitter.aurora.codec.ThriftBinaryCodec;
+import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
+import com.twitter.aurora.gen.JobKey;
+import com.twitter.aurora.gen.ScheduledTask;
+import com.twitter.aurora.gen.TaskQuery;
+import com.twitter.aurora.gen.storage.Snapshot;
+import com.twitter.aurora.scheduler.base.JobKeys;
+import com.twitter.aurora.scheduler.base.Query;
+import com.twitter.aurora.scheduler.base.Tasks;
+import com.twitter.aurora.scheduler.storage.backup.BackupFormat.BackupContents;
+import com.twitter.aurora.scheduler.storage.backup.BackupFormat.BackupHeader;
+import com.twitter.aurora.scheduler.storage.backup.BackupFormat.BackupType;
+import com.twitter.aurora.scheduler.storage.entities.IJobKey;
+import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Temporary storage for a staged backup that holds an index of the tasks in the backup rather than
+ * the tasks themselves.
+ *
+ * <p>Staging decompresses the backup payload to a spool file and makes a single pass over it,
+ * recording the offset and length of every task by task ID and job key.  Queries and deletes decode
+ * only the tasks selected by the index, and the full set of tasks is only decoded when a
+ * {@link Snapshot} is requested to commit the backup.  All stores other than tasks are small, and
+ * are decoded during staging.
+ */
+class IndexedBackup implements TemporaryStorage {
+  private static final Logger LOG = Logger.getLogger(IndexedBackup.class.getName());
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final short TASKS_FIELD_ID = Snapshot._Fields.TASKS.getThriftFieldId();
+
+  /**
+   * The location of an encoded task in a spool file.
+   */
+  private static class TaskRecord {
+    private final RandomAccessFile spool;
+    private final long offset;
+    private final int length;
+    private final IJobKey jobKey;
+
+    TaskRecord(RandomAccessFile spool, long offset, int length, IJobKey jobKey) {
+      this.spool = spool;
+      this.offset = offset;
+      this.length = length;
+      this.jobKey = jobKey;
+    }
+  }
+
+  private final File spoolDir;
+  private final List<RandomAccessFile> spools = Lists.newArrayList();
+  private final Map<String, TaskRecord> tasks = Maps.newHashMap();
+  private final Multimap<IJobKey, String> tasksByJobKey = HashMultimap.create();
+  private Snapshot otherStores;
+
+  private IndexedBackup(File spoolDir) {
+    this.spoolDir = checkNotNull(spoolDir);
+  }
+
+  /**
+   * Indexes a backup, following an incremental backup to its base full backup.
+   *
+   * @param dir Backup directory.
+   * @param name Name of the backup to index.
+   * @return Temporary storage backed by the index.
+   * @throws IOException If a backup in the chain could not be read.
+   * @throws CodingException If a backup in the chain could not be decoded.
+   */
+  static IndexedBackup load(File dir, String name) throws IOException, CodingException {
+    IndexedBackup backup = new IndexedBackup(Files.createTempDir());
+    try {
+      backup.indexChain(dir, name);
+    } catch (IOException | CodingException | RuntimeException e) {
+      backup.release();
+      throw e;
+    }
+    return backup;
+  }
+
+  private void indexChain(File dir, String name) throws IOException, CodingException {
+    File spool = new File(spoolDir, name);
+    BackupHeader header = BackupFormat.spoolPayload(new File(dir, name), spool);
+    if (header.getType() == BackupType.FULL) {
+      otherStores = index(spool, header).getSnapshot();
+      return;
+    }
+
+    String baseName = header.getBaseName().get();
+    File baseSpool = new File(spoolDir, baseName);
+    BackupHeader baseHeader = BackupFormat.spoolPayload(new File(dir, baseName), baseSpool);
+    if (baseHeader.getType() != BackupType.FULL) {
+      throw new CodingException("Base of backup " + name + " is not a full backup.");
+    }
+    Snapshot base = index(baseSpool, baseHeader).getSnapshot();
+
+    // Tasks from the incremental backup replace those of the same ID from the base.
+    BackupContents incremental = index(spool, header);
+    for (String taskId : incremental.getDeletedTaskIds()) {
+      remove(taskId);
+    }
+    otherStores = BackupFormat.applyIncremental(base, incremental);
+  }
+
+  /**
+   * Indexes the tasks in a spooled backup payload.
+   *
+   * @return Backup contents, where the snapshot holds every store other than tasks.
+   */
+  private BackupContents index(File spoolFile, BackupHeader header)
+      throws IOException, CodingException {
+
+    RandomAccessFile spool = new RandomAccessFile(spoolFile, "r");
+    spools.add(spool);
+
+    List<long[]> otherFields = Lists.newArrayList();
+    ImmutableSet.Builder<String> deletedTaskIds = ImmutableSet.builder();
+    ImmutableSet.Builder<JobKey> deletedJobs = ImmutableSet.builder();
+    CountingInputStream in = new CountingInputStream(
+        new BufferedInputStream(new FileInputStream(spoolFile), BUFFER_SIZE));
+    try {
+      TProtocol protocol =
+          ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(new TIOStreamTransport(in));
+      protocol.readStructBegin();
+      while (true) {
+        long fieldStart = in.getCount();
+        TField field = protocol.readFieldBegin();
+        if (field.type == TType.STOP) {
+          break;
+        }
+        if (field.id == TASKS_FIELD_ID && field.type == TType.SET) {
+          TSet set = protocol.readSetBegin();
+          for (int i = 0; i < set.size; i++) {
+            long taskStart = in.getCount();
+            ScheduledTask task = new ScheduledTask();
+            task.read(protocol);
+            IScheduledTask indexed = IScheduledTask.build(task);
+            remove(Tasks.id(indexed));
+            add(Tasks.id(indexed), new TaskRecord(
+                spool,
+                taskStart,
+                (int) (in.getCount() - taskStart),
+                Tasks.SCHEDULED_TO_JOB_KEY.apply(indexed)));
+          }
+          protocol.readSetEnd();
+        } else {
+          TProtocolUtil.skip(protocol, field.type);
+          otherFields.add(new long[] {fieldStart, in.getCount()});
+        }
+        protocol.readFieldEnd();
+      }
+      protocol.readStructEnd();
+
+      if (header.getType() == BackupType.INCREMENTAL) {
+        BackupFormat.readDeletions(protocol, deletedTaskIds, deletedJobs);
+      }
+    } catch (TException e) {
+      throw new CodingException("Failed to index backup " + spoolFile.getName(), e);
+    } finally {
+      in.close();
+    }
+
+    // The binary protocol encodes a struct as its fields followed by a stop byte, so the fields
+    // other than tasks can be decoded on their own as a snapshot.
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    for (long[] range : otherFields) {
+      encoded.write(read(spool, range[0], (int) (range[1] - range[0])));
+    }
+    encoded.write(TType.STOP);
+    Snapshot snapshot = ThriftBinaryCodec.decodeNonNull(Snapshot.class, encoded.toByteArray());
+    snapshot.setTasks(ImmutableSet.<ScheduledTask>of());
+
+    return new BackupContents(
+        header.getType(),
+        header.getBaseName(),
+        snapshot,
+        deletedTaskIds.build(),
+        deletedJobs.build());
+  }
+
+  private void add(String taskId, TaskRecord record) {
+    tasks.put(taskId, record);
+    tasksByJobKey.put(record.jobKey, taskId);
+  }
+
+  private void remove(String taskId) {
+    TaskRecord removed = tasks.remove(taskId);
+    if (removed != null) {
+      tasksByJobKey.remove(removed.jobKey, taskId);
+    }
+  }
+
+  private static byte[] read(RandomAccessFile spool, long offset, int length) throws IOException {
+    byte[] buffer = new byte[length];
+    spool.seek(offset);
+    spool.readFully(buffer);
+    return buffer;
+  }
+
+  private Set<IScheduledTask> decode(Iterable<String> taskIds) {
+    ImmutableSet.Builder<IScheduledTask> decoded = ImmutableSet.builder();
+    for (String taskId : taskIds) {
+      TaskRecord record = tasks.get(taskId);
+      if (record != null) {
+        try {
+          decoded.add(IScheduledTask.build(ThriftBinaryCodec.decodeNonNull(
+              ScheduledTask.class,
+              read(record.spool, record.offset, record.length))));
+        } catch (IOException | CodingException e) {
+          // The spool was already decoded once while indexing, so this is not expected.
+          throw new IllegalStateException("Failed to read staged task " + taskId, e);
+        }
+      }
+    }
+    return decoded.build();
+  }
+
+  private Iterable<String> candidates(TaskQuery query) {
+    if (query.isSetTaskIds()) {
+      return query.getTaskIds();
+    }
+    Optional<IJobKey> jobKey = JobKeys.from(Query.arbitrary(query));
+    return jobKey.isPresent()
+        ? ImmutableSet.copyOf(tasksByJobKey.get(jobKey.get()))
+        : ImmutableSet.copyOf(tasks.keySet());
+  }
+
+  @Override
+  public synchronized void deleteTasks(Query.Builder query) {
+    for (String taskId : Tasks.ids(fetchTasks(query))) {
+      remove(taskId);
+    }
+  }
+
+  @Override
+  public synchronized Set<IScheduledTask> fetchTasks(Query.Builder query) {
+    checkNotNull(query);
+
+    // The index only narrows the candidates, the query is applied in full with the same filter as
+    // the primary storage, so that it matches exactly.
+    TaskQuery taskQuery = query.get();
+    return ImmutableSet.copyOf(
+        Iterables.filter(decode(candidates(taskQuery)), Query.filter(taskQuery)));
+  }
+
+  @Override
+  public synchronized Snapshot toSnapshot() {
+    return otherStores.deepCopy()
+        .setTasks(IScheduledTask.toBuildersSet(decode(ImmutableSet.copyOf(tasks.keySet()))));
+  }
+
+  @Override
+  public synchronized void release() {
+    for (RandomAccessFile spool : spools) {
+      try {
+        spool.close();
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Failed to close backup spool: " + e, e);
+      }
+    }
+    spools.clear();
+    tasks.clear();
+    tasksByJobKey.clear();
+    File[] spoolFiles = spoolDir.listFiles();
+    if (spoolFiles != null) {
+      for (File spoolFile : spoolFiles) {
+        spoolFile.delete();
+      }
+    }
+    if (!spoolDir.delete()) {
+      LOG.warning("Failed to delete backup spool dir " + spoolDir);
+    }
+  }
+}
@@ -17,6 +17,8 @@ package com.twitter.aurora.scheduler.storage.backup;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -24,11 +26,12 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import com.google.common.base.Function;
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.io.Files;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Atomics;
+import com.google.inject.BindingAnnotation;
 
-import com.twitter.aurora.codec.ThriftBinaryCodec;
 import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
 import com.twitter.aurora.gen.storage.Snapshot;
 import com.twitter.aurora.scheduler.base.Query;
@@ -39,6 +42,11 @@ import com.twitter.aurora.scheduler.storage.Storage.MutateWork;
 import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
 import com.twitter.common.base.Command;
 
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -112,6 +120,15 @@ public interface Recovery {
     private final Storage primaryStorage;
     private final DistributedSnapshotStore distributedStore;
     private final Command shutDownNow;
+    private final boolean indexedStaging;
+
+    /**
+     * Binding annotation for whether backups are staged as an index into the backup file, rather
+     * than fully loaded into temporary storage.
+     */
+    @BindingAnnotation
+    @Target({FIELD, PARAMETER, METHOD}) @Retention(RUNTIME)
+    @interface IndexedStaging { }
 
     @Inject
     RecoveryImpl(
@@ -119,10 +136,12 @@ public interface Recovery {
         Function<Snapshot, TemporaryStorage> tempStorageFactory,
         Storage primaryStorage,
         DistributedSnapshotStore distributedStore,
-        Command shutDownNow) {
+        Command shutDownNow,
+        @IndexedStaging boolean indexedStaging) {
 
       this.backupDir = checkNotNull(backupDir);
       this.tempStorageFactory = checkNotNull(tempStorageFactory);
+      this.indexedStaging = indexedStaging;
       this.recovery = Atomics.newReference();
       this.primaryStorage = checkNotNull(primaryStorage);
       this.distributedStore = checkNotNull(distributedStore);
@@ -130,7 +149,9 @@ public interface Recovery {
     }
 
     @Override public Set<String> listBackups() {
-      return ImmutableSet.<String>builder().add(backupDir.list()).build();
+      return ImmutableSet.copyOf(Sets.filter(
+          ImmutableSet.copyOf(backupDir.list()),
+          Predicates.not(Predicates.equalTo(BackupManifest.MANIFEST_NAME))));
     }
 
     @Override public void stage(String backupName) throws RecoveryException {
@@ -139,17 +160,19 @@ public interface Recovery {
         throw new RecoveryException("Backup " + backupName + " does not exist.");
       }
 
-      Snapshot snapshot;
+      TemporaryStorage staged;
       try {
-        snapshot = ThriftBinaryCodec.decode(Snapshot.class, Files.toByteArray(backupFile));
+        staged = indexedStaging
+            ? IndexedBackup.load(backupDir, backupName)
+            : tempStorageFactory.apply(BackupFormat.restore(backupDir, backupName));
       } catch (CodingException e) {
         throw new RecoveryException("Failed to decode backup " + e, e);
       } catch (IOException e) {
         throw new RecoveryException("Failed to read backup " + e, e);
       }
-      boolean applied =
-          recovery.compareAndSet(null, new PendingRecovery(tempStorageFactory.apply(snapshot)));
+      boolean applied = recovery.compareAndSet(null, new PendingRecovery(staged));
       if (!applied) {
+        staged.release();
         throw new RecoveryException("Another backup is already loaded.");
       }
     }
@@ -171,7 +194,10 @@ public interface Recovery {
     }
 
     @Override public void unload() {
-      recovery.set(null);
+      @Nullable PendingRecovery unloaded = recovery.getAndSet(null);
+      if (unloaded != null) {
+        unloaded.tempStorage.release();
+      }
     }
 
     @Override public void commit() throws RecoveryException {
@@ -24,6 +24,8 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -32,15 +34,29 @@ import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import com.google.inject.BindingAnnotation;
 
+import org.apache.thrift.TBase;
+
 import com.twitter.aurora.codec.ThriftBinaryCodec;
 import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
+import com.twitter.aurora.gen.JobKey;
+import com.twitter.aurora.gen.ScheduledTask;
 import com.twitter.aurora.gen.storage.Snapshot;
+import com.twitter.aurora.gen.storage.StoredJob;
 import com.twitter.aurora.scheduler.storage.SnapshotStore;
+import com.twitter.aurora.scheduler.storage.entities.IJobKey;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
 import com.twitter.common.stats.Stats;
@@ -51,6 +67,7 @@ import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.ElementType.PARAMETER;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -77,11 +94,27 @@ public interface StorageBackup {
       private final File dir;
       private final int maxBackups;
       private final Amount<Long, Time> interval;
+      private final int incrementalsPerFull;
 
       BackupConfig(File dir, int maxBackups, Amount<Long, Time> interval) {
+        this(dir, maxBackups, interval, 0);
+      }
+
+      /**
+       * Creates a backup configuration.
+       *
+       * @param dir Directory to write backups to.
+       * @param maxBackups Maximum number of backups to retain.
+       * @param interval Minimum interval between backups.
+       * @param incrementalsPerFull Number of incremental backups to write between full backups,
+       *     where {@code 0} disables incremental backups.
+       */
+      BackupConfig(File dir, int maxBackups, Amount<Long, Time> interval, int incrementalsPerFull) {
         this.dir = checkNotNull(dir);
         this.maxBackups = maxBackups;
         this.interval = checkNotNull(interval);
+        checkArgument(incrementalsPerFull >= 0);
+        this.incrementalsPerFull = incrementalsPerFull;
       }
 
       @VisibleForTesting
@@ -115,6 +148,19 @@ public interface StorageBackup {
       return failures;
     }
 
+    private final AtomicLong incrementals = Stats.exportLong("scheduler_backup_incremental");
+    @VisibleForTesting
+    AtomicLong getIncrementals() {
+      return incrementals;
+    }
+
+    private final AtomicLong lastBackupBytes = Stats.exportLong("scheduler_backup_last_size_bytes");
+
+    // Digests of the tasks and jobs in the last full backup written by this process, against
+    // which incremental backups are computed.
+    private Optional<FullBackup> lastFullBackup = Optional.absent();
+    private int incrementalsSinceFull = 0;
+
     @Inject
     StorageBackupImpl(
         @SnapshotDelegate SnapshotStore<Snapshot> delegate,
@@ -146,18 +192,125 @@ public interface StorageBackup {
       return FILE_PREFIX + backupDateFormat.format(new Date(clock.nowMillis()));
     }
 
+    /**
+     * Content digests of the tasks and jobs stored in a full backup.
+     */
+    private static class FullBackup {
+      private final String name;
+      private final Map<String, Long> taskDigests;
+      private final Map<IJobKey, Long> jobDigests;
+
+      FullBackup(String name, Map<String, Long> taskDigests, Map<IJobKey, Long> jobDigests) {
+        this.name = name;
+        this.taskDigests = taskDigests;
+        this.jobDigests = jobDigests;
+      }
+    }
+
+    private static long digest(TBase<?, ?> struct) throws CodingException {
+      return Hashing.murmur3_128().hashBytes(ThriftBinaryCodec.encodeNonNull(struct)).asLong();
+    }
+
+    private static Map<String, Long> taskDigests(Snapshot snapshot) throws CodingException {
+      ImmutableMap.Builder<String, Long> digests = ImmutableMap.builder();
+      for (ScheduledTask task : snapshot.getTasks()) {
+        digests.put(task.getAssignedTask().getTaskId(), digest(task));
+      }
+      return digests.build();
+    }
+
+    private static Map<IJobKey, Long> jobDigests(Snapshot snapshot) throws CodingException {
+      ImmutableMap.Builder<IJobKey, Long> digests = ImmutableMap.builder();
+      for (StoredJob job : snapshot.getJobs()) {
+        digests.put(IJobKey.build(job.getJobConfiguration().getKey()), digest(job));
+      }
+      return digests.build();
+    }
+
+    private boolean shouldWriteIncremental() {
+      return config.incrementalsPerFull > 0
+          && lastFullBackup.isPresent()
+          && incrementalsSinceFull < config.incrementalsPerFull
+          && new File(config.dir, lastFullBackup.get().name).exists();
+    }
+
+    /**
+     * Writes the tasks and jobs that differ from the last full backup.
+     */
+    private long writeIncremental(Snapshot snapshot, File file)
+        throws IOException, CodingException {
+
+      FullBackup base = lastFullBackup.get();
+
+      Map<String, Long> taskDigests = taskDigests(snapshot);
+      ImmutableSet.Builder<ScheduledTask> changedTasks = ImmutableSet.builder();
+      for (ScheduledTask task : snapshot.getTasks()) {
+        String taskId = task.getAssignedTask().getTaskId();
+        if (!taskDigests.get(taskId).equals(base.taskDigests.get(taskId))) {
+          changedTasks.add(task);
+        }
+      }
+
+      Map<IJobKey, Long> jobDigests = jobDigests(snapshot);
+      ImmutableSet.Builder<StoredJob> changedJobs = ImmutableSet.builder();
+      for (StoredJob job : snapshot.getJobs()) {
+        IJobKey jobKey = IJobKey.build(job.getJobConfiguration().getKey());
+        if (!jobDigests.get(jobKey).equals(base.jobDigests.get(jobKey))) {
+          changedJobs.add(job);
+        }
+      }
+      ImmutableSet.Builder<JobKey> deletedJobs = ImmutableSet.builder();
+      for (IJobKey jobKey : Sets.difference(base.jobDigests.keySet(), jobDigests.keySet())) {
+        deletedJobs.add(jobKey.newBuilder());
+      }
+
+      // The snapshot is only encoded, so it may share references with the original.
+      Snapshot changed = new Snapshot()
+          .setTimestamp(snapshot.getTimestamp())
+          .setHostAttributes(snapshot.getHostAttributes())
+          .setTasks(changedTasks.build())
+          .setJobs(changedJobs.build())
+          .setSchedulerMetadata(snapshot.getSchedulerMetadata())
+          .setQuotaConfigurations(snapshot.getQuotaConfigurations())
+          .setLocks(snapshot.getLocks());
+      return BackupFormat.writeIncremental(
+          changed,
+          ImmutableSet.copyOf(Sets.difference(base.taskDigests.keySet(), taskDigests.keySet())),
+          deletedJobs.build(),
+          base.name,
+          file);
+    }
+
     private void save(Snapshot snapshot) {
       lastBackupMs = clock.nowMillis();
 
       String backupName = createBackupName();
       String tempBackupName = "temp_" + backupName;
       File tempFile = new File(config.dir, tempBackupName);
-      LOG.info("Saving backup to " + tempFile);
+      boolean incremental = shouldWriteIncremental();
+      LOG.info("Saving " + (incremental ? "incremental" : "full") + " backup to " + tempFile);
       try {
-        byte[] backup = ThriftBinaryCodec.encodeNonNull(snapshot);
-        Files.write(backup, tempFile);
+        long bytes = incremental
+            ? writeIncremental(snapshot, tempFile)
+            : BackupFormat.writeFull(snapshot, tempFile);
         Files.move(tempFile, new File(config.dir, backupName));
+        lastBackupBytes.set(bytes);
         successes.incrementAndGet();
+
+        if (config.incrementalsPerFull > 0) {
+          BackupManifest manifest = BackupManifest.load(config.dir);
+          if (incremental) {
+            incrementals.incrementAndGet();
+            incrementalsSinceFull++;
+            manifest.addIncremental(backupName, lastFullBackup.get().name);
+          } else {
+            lastFullBackup = Optional.of(
+                new FullBackup(backupName, taskDigests(snapshot), jobDigests(snapshot)));
+            incrementalsSinceFull = 0;
+            manifest.addFull(backupName);
+          }
+          manifest.save();
+        }
       } catch (IOException e) {
         failures.incrementAndGet();
         LOG.log(Level.SEVERE, "Failed to prepare backup " + backupName + ": " + e, e);
@@ -175,16 +328,45 @@ public interface StorageBackup {
       if (backups == null) {
         LOG.severe("Failed to list backup dir " + config.dir);
       } else {
-        int backupsToDelete = backups.length - config.maxBackups;
-        if (backupsToDelete > 0) {
-          List<File> toDelete = Ordering.natural()
-              .onResultOf(FILE_NAME)
-              .sortedCopy(ImmutableList.copyOf(backups)).subList(0, backupsToDelete);
-          LOG.info("Deleting " + backupsToDelete + " outdated backups: " + toDelete);
-          for (File outdated : toDelete) {
-            outdated.delete();
-          }
+        pruneBackups(ImmutableList.copyOf(backups));
+      }
+    }
+
+    private void pruneBackups(List<File> backups) {
+      int backupsToDelete = backups.size() - config.maxBackups;
+      if (backupsToDelete <= 0) {
+        return;
+      }
+
+      List<File> sorted = Ordering.natural().onResultOf(FILE_NAME).sortedCopy(backups);
+      List<File> toDelete = sorted.subList(0, backupsToDelete);
+      if (config.incrementalsPerFull > 0) {
+        // Keep full backups that retained incremental backups depend on.
+        try {
+          BackupManifest manifest = BackupManifest.load(config.dir);
+          final Set<String> requiredBases = manifest.getRequiredBases(
+              Lists.transform(sorted.subList(backupsToDelete, sorted.size()), FILE_NAME));
+          toDelete = FluentIterable.from(toDelete)
+              .filter(new Predicate<File>() {
+                @Override public boolean apply(File file) {
+                  return !requiredBases.contains(file.getName());
+                }
+              })
+              .toList();
+          deleteAll(toDelete);
+          manifest.save();
+        } catch (IOException e) {
+          LOG.log(Level.WARNING, "Failed to read backup manifest, not pruning backups: " + e, e);
         }
+      } else {
+        deleteAll(toDelete);
+      }
+    }
+
+    private static void deleteAll(List<File> toDelete) {
+      LOG.info("Deleting " + toDelete.size() + " outdated backups: " + toDelete);
+      for (File outdated : toDelete) {
+        outdated.delete();
       }
     }
 
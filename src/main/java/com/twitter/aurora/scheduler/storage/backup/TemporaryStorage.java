@@ -62,6 +62,12 @@ interface TemporaryStorage {
    */
   Snapshot toSnapshot();
 
+  /**
+   * Releases any resources held by the temporary storage.  The storage may not be used after it
+   * is released.
+   */
+  void release();
+
   /**
    * A factory that creates temporary storage instances, detached from the rest of the system.
    */
@@ -96,6 +102,10 @@ interface TemporaryStorage {
         @Override public Snapshot toSnapshot() {
           return snapshotStore.createSnapshot();
         }
+
+        @Override public void release() {
+          // Nothing to release, the storage is reclaimed once it is no longer referenced.
+        }
       };
     }
   }
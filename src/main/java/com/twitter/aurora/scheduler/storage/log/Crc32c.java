@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.log;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) checksum, as used by iSCSI and ext4.
+ * <p>
+ * The JDK only provides CRC-32C from Java 9, so this computes it eight bytes at a time using
+ * lookup tables ("slicing-by-8"), which is cheaper than an MD5 digest.  The checksum value is
+ * identical to that of {@code java.util.zip.CRC32C}, so it can be replaced by the
+ * hardware-accelerated JDK implementation without changing the data it is stored with.
+ */
+final class Crc32c implements Checksum {
+
+  // Reversed representation of the Castagnoli polynomial.
+  private static final int POLYNOMIAL = 0x82F63B78;
+
+  // TABLES[k][n] is the checksum update for byte n followed by k zero bytes.
+  private static final int[][] TABLES = new int[8][256];
+  static {
+    for (int n = 0; n < 256; n++) {
+      int crc = n;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = ((crc & 1) == 0) ? (crc >>> 1) : ((crc >>> 1) ^ POLYNOMIAL);
+      }
+      TABLES[0][n] = crc;
+    }
+    for (int k = 1; k < 8; k++) {
+      for (int n = 0; n < 256; n++) {
+        int previous = TABLES[k - 1][n];
+        TABLES[k][n] = (previous >>> 8) ^ TABLES[0][previous & 0xff];
+      }
+    }
+  }
+
+  private int crc = 0;
+
+  @Override
+  public void update(int b) {
+    int state = ~crc;
+    state = (state >>> 8) ^ TABLES[0][(state ^ b) & 0xff];
+    crc = ~state;
+  }
+
+  @Override
+  public void update(byte[] b, int off, int len) {
+    int[] t0 = TABLES[0];
+    int[] t1 = TABLES[1];
+    int[] t2 = TABLES[2];
+    int[] t3 = TABLES[3];
+    int[] t4 = TABLES[4];
+    int[] t5 = TABLES[5];
+    int[] t6 = TABLES[6];
+    int[] t7 = TABLES[7];
+
+    int state = ~crc;
+    int i = off;
+    int end = off + len;
+    for (; i + 8 <= end; i += 8) {
+      state ^= (b[i] & 0xff)
+          | ((b[i + 1] & 0xff) << 8)
+          | ((b[i + 2] & 0xff) << 16)
+          | ((b[i + 3] & 0xff) << 24);
+      state = t7[state & 0xff]
+          ^ t6[(state >>> 8) & 0xff]
+          ^ t5[(state >>> 16) & 0xff]
+          ^ t4[state >>> 24]
+          ^ t3[b[i + 4] & 0xff]
+          ^ t2[b[i + 5] & 0xff]
+          ^ t1[b[i + 6] & 0xff]
+          ^ t0[b[i + 7] & 0xff];
+    }
+    for (; i < end; i++) {
+      state = (state >>> 8) ^ t0[(state ^ b[i]) & 0xff];
+    }
+    crc = ~state;
+  }
+
+  @Override
+  public long getValue() {
+    return crc & 0xffffffffL;
+  }
+
+  @Override
+  public void reset() {
+    crc = 0;
+  }
+}
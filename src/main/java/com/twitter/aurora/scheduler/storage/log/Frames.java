@@ -0,0 +1,404 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.log;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import com.twitter.aurora.codec.ThriftBinaryCodec;
+import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
+import com.twitter.aurora.gen.storage.LogEntry;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Framing format 2, used to split log entries that are too large to append as a single entry.
+ * <p>
+ * A framed entry is appended as a header entry followed by chunk entries.  Rather than wrapping
+ * each in a thrift {@link com.twitter.aurora.gen.storage.Frame}, entries start with a small binary
+ * header:
+ * <pre>
+ *   header: FORMAT_V2 HEADER chunk_count:i32 length:i32 crc32c:i32
+ *   chunk:  FORMAT_V2 CHUNK data...
+ * </pre>
+ * where the data of the chunks concatenated is the thrift binary encoding of the log entry, of
+ * the given length and CRC-32C {@link Crc32c checksum}.  The encoding of a thrift struct starts
+ * with a field type, which is always less than {@link #FORMAT_V2}, so framing format 2 entries
+ * can be told apart from thrift encoded entries, including those of the original frames.
+ * <p>
+ * Log entries are encoded directly into chunks, and decoded directly from the chunks read, so
+ * that large entries such as snapshots are not copied in their entirety while framing.
+ */
+final class Frames {
+
+  /**
+   * First byte of all entries in framing format 2.
+   */
+  static final byte FORMAT_V2 = (byte) 0x82;
+
+  private static final byte HEADER = 0;
+  private static final byte CHUNK = 1;
+
+  // Format, kind, chunk count, length and checksum.
+  static final int HEADER_SIZE = 1 + 1 + 4 + 4 + 4;
+  // Format and kind.
+  static final int CHUNK_HEADER_SIZE = 1 + 1;
+
+  private Frames() {
+    // Utility class.
+  }
+
+  /**
+   * A decoded frame header.
+   */
+  static final class Header {
+    final int chunkCount;
+    final int length;
+    final int checksum;
+
+    private Header(int chunkCount, int length, int checksum) {
+      this.chunkCount = chunkCount;
+      this.length = length;
+      this.checksum = checksum;
+    }
+
+    /**
+     * Checks whether the header describes a frame that could have been serialized with chunks of
+     * the given maximum size.  The header itself is not covered by the checksum, so this guards
+     * against acting on a corrupt chunk count or length.
+     *
+     * @param maxEntrySizeBytes Maximum size of each serialized entry.
+     * @return {@code true} if every chunk holds at least one byte and no more than the maximum.
+     */
+    boolean isValid(int maxEntrySizeBytes) {
+      return (chunkCount > 0)
+          && (length >= chunkCount)
+          && (length <= (long) chunkCount * maxEntrySizeBytes);
+    }
+  }
+
+  /**
+   * Serializes a log entry, splitting it into frames if it is larger than the maximum entry size.
+   *
+   * @param entry The log entry to serialize.
+   * @param maxEntrySizeBytes Maximum size of each serialized entry.
+   * @return The thrift binary encoded entry if it fits into a single entry, otherwise a frame
+   *     header followed by chunks.
+   * @throws CodingException If the entry could not be encoded.
+   */
+  static byte[][] serialize(LogEntry entry, int maxEntrySizeBytes) throws CodingException {
+    checkArgument(maxEntrySizeBytes >= HEADER_SIZE, "Maximum entry size is too small to frame.");
+
+    ChunkingTransport transport = new ChunkingTransport(maxEntrySizeBytes - CHUNK_HEADER_SIZE);
+    try {
+      entry.write(ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(transport));
+    } catch (TException e) {
+      throw new CodingException("Failed to serialize log entry.", e);
+    }
+
+    if (transport.length <= maxEntrySizeBytes) {
+      return new byte[][] {transport.toByteArray()};
+    }
+
+    List<byte[]> chunks = transport.toChunks();
+    byte[][] frames = new byte[chunks.size() + 1][];
+    Crc32c checksum = new Crc32c();
+    for (int i = 0; i < chunks.size(); i++) {
+      byte[] chunk = chunks.get(i);
+      chunk[0] = FORMAT_V2;
+      chunk[1] = CHUNK;
+      checksum.update(chunk, CHUNK_HEADER_SIZE, chunk.length - CHUNK_HEADER_SIZE);
+      frames[i + 1] = chunk;
+    }
+    frames[0] = ByteBuffer.allocate(HEADER_SIZE)
+        .put(FORMAT_V2)
+        .put(HEADER)
+        .putInt(chunks.size())
+        .putInt(transport.length)
+        .putInt((int) checksum.getValue())
+        .array();
+    return frames;
+  }
+
+  /**
+   * Checks whether a log entry is in framing format 2.
+   *
+   * @param contents The contents of the log entry.
+   * @return {@code true} if the entry is a framing format 2 header or chunk.
+   */
+  static boolean isFrame(byte[] contents) {
+    return (contents.length >= CHUNK_HEADER_SIZE) && (contents[0] == FORMAT_V2);
+  }
+
+  /**
+   * Checks whether a log entry is a framing format 2 header.
+   *
+   * @param contents The contents of the log entry.
+   * @return {@code true} if the entry is a header.
+   */
+  static boolean isHeader(byte[] contents) {
+    return isFrame(contents) && (contents[1] == HEADER) && (contents.length == HEADER_SIZE);
+  }
+
+  /**
+   * Checks whether a log entry is a framing format 2 chunk.
+   *
+   * @param contents The contents of the log entry.
+   * @return {@code true} if the entry is a chunk.
+   */
+  static boolean isChunk(byte[] contents) {
+    return isFrame(contents) && (contents[1] == CHUNK);
+  }
+
+  /**
+   * Decodes a header entry.
+   *
+   * @param contents The contents of a log entry for which {@link #isHeader(byte[])} holds.
+   * @return The decoded header.
+   */
+  static Header header(byte[] contents) {
+    checkArgument(isHeader(contents));
+
+    ByteBuffer header = ByteBuffer.wrap(contents);
+    header.position(CHUNK_HEADER_SIZE);
+    return new Header(header.getInt(), header.getInt(), header.getInt());
+  }
+
+  /**
+   * Gets the data of a chunk entry, without copying it.
+   *
+   * @param contents The contents of a log entry for which {@link #isChunk(byte[])} holds.
+   * @return The data of the chunk.
+   */
+  static ByteBuffer chunkData(byte[] contents) {
+    checkArgument(isChunk(contents));
+
+    return ByteBuffer.wrap(contents, CHUNK_HEADER_SIZE, contents.length - CHUNK_HEADER_SIZE);
+  }
+
+  /**
+   * Verifies the chunks of a framed entry against their header and decodes the entry.
+   *
+   * @param header The header of the frame.
+   * @param chunks The data of all chunks of the frame.
+   * @return The decoded log entry.
+   * @throws CodingException If the chunks do not match the header, or could not be decoded.
+   */
+  static LogEntry decode(Header header, List<ByteBuffer> chunks) throws CodingException {
+    long length = 0;
+    Crc32c checksum = new Crc32c();
+    for (ByteBuffer chunk : chunks) {
+      length += chunk.remaining();
+      checksum.update(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+    }
+    if ((length != header.length) || ((int) checksum.getValue() != header.checksum)) {
+      throw new CodingException("Read back a framed log entry that failed its checksum");
+    }
+    return thriftBinaryDecode(chunks);
+  }
+
+  /**
+   * Decodes a log entry whose thrift binary encoding is split across several buffers, without
+   * concatenating them.
+   *
+   * @param chunks The buffers holding the encoded entry.
+   * @return The decoded log entry.
+   * @throws CodingException If the entry could not be decoded.
+   */
+  static LogEntry thriftBinaryDecode(List<ByteBuffer> chunks) throws CodingException {
+    LogEntry entry = new LogEntry();
+    try {
+      entry.read(ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(new CompositeTransport(chunks)));
+    } catch (TException e) {
+      throw new CodingException("Failed to deserialize framed log entry.", e);
+    }
+    return entry;
+  }
+
+  /**
+   * A write-only transport that fills chunks of bounded size, reserving room for a chunk header at
+   * the start of each.
+   */
+  private static class ChunkingTransport extends TTransport {
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final int chunkCapacity;
+    private final List<byte[]> chunks = Lists.newArrayList();
+    private byte[] current;
+    private int position = CHUNK_HEADER_SIZE;
+    private int length = 0;
+
+    ChunkingTransport(int chunkCapacity) {
+      this.chunkCapacity = chunkCapacity;
+      // Most entries are small, so the first chunk grows up to the chunk size as needed.
+      current = new byte[CHUNK_HEADER_SIZE + Math.min(chunkCapacity, INITIAL_CAPACITY)];
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+      length += len;
+      while (len > 0) {
+        if (position == current.length) {
+          int capacity = current.length - CHUNK_HEADER_SIZE;
+          if (capacity < chunkCapacity) {
+            current = Arrays.copyOf(
+                current,
+                CHUNK_HEADER_SIZE + (int) Math.min(chunkCapacity, 2L * capacity));
+          } else {
+            chunks.add(current);
+            current = new byte[CHUNK_HEADER_SIZE + chunkCapacity];
+            position = CHUNK_HEADER_SIZE;
+          }
+        }
+        int written = Math.min(len, current.length - position);
+        System.arraycopy(buf, off, current, position, written);
+        position += written;
+        off += written;
+        len -= written;
+      }
+    }
+
+    byte[] toByteArray() {
+      byte[] contents = new byte[length];
+      int offset = 0;
+      for (byte[] chunk : chunks) {
+        int chunkLength = chunk.length - CHUNK_HEADER_SIZE;
+        System.arraycopy(chunk, CHUNK_HEADER_SIZE, contents, offset, chunkLength);
+        offset += chunkLength;
+      }
+      System.arraycopy(current, CHUNK_HEADER_SIZE, contents, offset, position - CHUNK_HEADER_SIZE);
+      return contents;
+    }
+
+    List<byte[]> toChunks() {
+      byte[] last = (position == current.length) ? current : Arrays.copyOf(current, position);
+      return ImmutableList.<byte[]>builder().addAll(chunks).add(last).build();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void open() {
+      // Nothing to open.
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close.
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+      throw new TTransportException("Cannot read from a chunking transport.");
+    }
+  }
+
+  /**
+   * A read-only transport over a sequence of buffers.  The current buffer is exposed to the
+   * protocol, so that values are decoded in place and binary fields within a buffer are not copied.
+   */
+  private static class CompositeTransport extends TTransport {
+    private final Iterator<ByteBuffer> chunks;
+    private byte[] buffer = new byte[0];
+    private int position = 0;
+    private int limit = 0;
+
+    CompositeTransport(List<ByteBuffer> chunks) {
+      this.chunks = chunks.iterator();
+    }
+
+    private boolean advance() {
+      while (position == limit) {
+        if (!chunks.hasNext()) {
+          return false;
+        }
+        ByteBuffer chunk = chunks.next();
+        buffer = chunk.array();
+        position = chunk.arrayOffset() + chunk.position();
+        limit = position + chunk.remaining();
+      }
+      return true;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+      if (!advance()) {
+        throw new TTransportException(
+            TTransportException.END_OF_FILE,
+            "Framed log entry ended unexpectedly.");
+      }
+      int read = Math.min(len, limit - position);
+      System.arraycopy(buffer, position, buf, off, read);
+      position += read;
+      return read;
+    }
+
+    @Override
+    public byte[] getBuffer() {
+      advance();
+      return buffer;
+    }
+
+    @Override
+    public int getBufferPosition() {
+      advance();
+      return position;
+    }
+
+    @Override
+    public int getBytesRemainingInBuffer() {
+      advance();
+      return limit - position;
+    }
+
+    @Override
+    public void consumeBuffer(int len) {
+      position += len;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void open() {
+      // Nothing to open.
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close.
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws TTransportException {
+      throw new TTransportException("Cannot write to a composite transport.");
+    }
+  }
+}
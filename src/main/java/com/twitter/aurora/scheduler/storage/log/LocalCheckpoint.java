@@ -0,0 +1,303 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.io.Files;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+import com.twitter.aurora.codec.ThriftBinaryCodec;
+import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
+import com.twitter.aurora.gen.storage.Snapshot;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A snapshot of local storage kept on local disk along with the position of the last log entry it
+ * reflects, allowing a scheduler to skip reading the snapshot from the log on startup.
+ *
+ * <p>The checkpoint is stored uncompressed and memory-mapped when loaded so that it can be decoded
+ * without first being copied onto the heap.  The file layout is:
+ * <pre>
+ *   MAGIC (int)
+ *   position identity length (int)
+ *   position identity (bytes)
+ *   thrift binary encoded snapshot (bytes)
+ *   snapshot length (long)
+ *   CRC32 of the snapshot bytes (long)
+ *   END_MAGIC (int)
+ * </pre>
+ */
+class LocalCheckpoint {
+
+  private static final Logger LOG = Logger.getLogger(LocalCheckpoint.class.getName());
+
+  private static final int MAGIC = 0x41434b31;
+  private static final int END_MAGIC = 0x41434b45;
+  private static final int HEADER_BYTES = 4 + 4;
+  private static final int FOOTER_BYTES = 8 + 8 + 4;
+  private static final long MAP_WINDOW_BYTES = 256L * 1024 * 1024;
+  private static final int CHECKSUM_BUFFER_BYTES = 64 * 1024;
+
+  /**
+   * A checkpoint loaded from disk.
+   */
+  static final class Checkpoint {
+    private final byte[] position;
+    private final Snapshot snapshot;
+
+    Checkpoint(byte[] position, Snapshot snapshot) {
+      this.position = checkNotNull(position);
+      this.snapshot = checkNotNull(snapshot);
+    }
+
+    byte[] getPosition() {
+      return position;
+    }
+
+    Snapshot getSnapshot() {
+      return snapshot;
+    }
+  }
+
+  private final File file;
+  private final long mapWindowBytes;
+
+  LocalCheckpoint(File file) {
+    this(file, MAP_WINDOW_BYTES);
+  }
+
+  @VisibleForTesting
+  LocalCheckpoint(File file, long mapWindowBytes) {
+    this.file = checkNotNull(file);
+    this.mapWindowBytes = mapWindowBytes;
+  }
+
+  /**
+   * Replaces the checkpoint on disk.
+   *
+   * @param position Identity of the position of the last log entry reflected in {@code snapshot}.
+   * @param snapshot Snapshot to store.
+   * @throws IOException If the checkpoint could not be written.
+   * @throws CodingException If the snapshot could not be encoded.
+   */
+  void save(byte[] position, Snapshot snapshot) throws IOException, CodingException {
+    checkNotNull(position);
+    checkNotNull(snapshot);
+
+    File temp = new File(file.getParentFile(), "temp_" + file.getName());
+    FileOutputStream tempOut = new FileOutputStream(temp);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(tempOut))) {
+
+      out.writeInt(MAGIC);
+      out.writeInt(position.length);
+      out.write(position);
+
+      CRC32 crc = new CRC32();
+      CountingOutputStream payload = new CountingOutputStream(new CheckedOutputStream(out, crc));
+      try {
+        snapshot.write(
+            ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(new TIOStreamTransport(payload)));
+      } catch (TException e) {
+        throw new CodingException("Failed to encode snapshot: " + e, e);
+      }
+      payload.flush();
+
+      out.writeLong(payload.getCount());
+      out.writeLong(crc.getValue());
+      out.writeInt(END_MAGIC);
+
+      // The checkpoint must be durable before it replaces the previous one, otherwise a crash could
+      // leave a torn checkpoint in its place.
+      out.flush();
+      tempOut.getChannel().force(true);
+    }
+    Files.move(temp, file);
+    syncDirectory(file.getAbsoluteFile().getParentFile());
+  }
+
+  private static void syncDirectory(File dir) {
+    try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // Not all platforms allow directories to be synced, the rename is then only as durable as
+      // the file system makes it.
+      LOG.fine("Unable to sync checkpoint directory " + dir + ": " + e);
+    }
+  }
+
+  /**
+   * Loads the checkpoint from disk, if one exists.
+   *
+   * @return The checkpoint, or absent if none has been saved.
+   * @throws IOException If the checkpoint could not be read.
+   * @throws CodingException If the checkpoint is corrupt.
+   */
+  Optional<Checkpoint> load() throws IOException, CodingException {
+    if (!file.exists()) {
+      return Optional.absent();
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      return Optional.of(read(raf.getChannel()));
+    }
+  }
+
+  /**
+   * Removes the checkpoint from disk.
+   */
+  void delete() {
+    file.delete();
+  }
+
+  private Checkpoint read(FileChannel channel) throws IOException, CodingException {
+    long size = channel.size();
+    if (size < HEADER_BYTES + FOOTER_BYTES) {
+      throw new CodingException("Checkpoint " + file + " is truncated");
+    }
+
+    ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+    if (header.getInt() != MAGIC) {
+      throw new CodingException("Checkpoint " + file + " has an unrecognized header");
+    }
+    int positionLength = header.getInt();
+    if (positionLength < 0 || positionLength > size - HEADER_BYTES - FOOTER_BYTES) {
+      throw new CodingException("Checkpoint " + file + " has an invalid position");
+    }
+    byte[] position = readFully(channel, HEADER_BYTES, positionLength).array();
+    long payloadStart = HEADER_BYTES + positionLength;
+
+    ByteBuffer footer = readFully(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+    long payloadLength = footer.getLong();
+    long checksum = footer.getLong();
+    if (footer.getInt() != END_MAGIC || payloadLength != size - FOOTER_BYTES - payloadStart) {
+      throw new CodingException("Checkpoint " + file + " is truncated");
+    }
+
+    if (checksum(mapped(channel, payloadStart, payloadLength)) != checksum) {
+      throw new CodingException("Checkpoint " + file + " failed its checksum");
+    }
+
+    Snapshot snapshot = new Snapshot();
+    try {
+      snapshot.read(ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(
+          new TIOStreamTransport(mapped(channel, payloadStart, payloadLength))));
+    } catch (TException e) {
+      throw new CodingException("Failed to decode checkpoint " + file + ": " + e, e);
+    }
+    return new Checkpoint(position, snapshot);
+  }
+
+  private InputStream mapped(FileChannel channel, long start, long length) {
+    return new MappedInputStream(channel, start, length, mapWindowBytes);
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long offset, int length)
+      throws IOException {
+
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static long checksum(InputStream in) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] chunk = new byte[CHECKSUM_BUFFER_BYTES];
+    int length;
+    while ((length = in.read(chunk, 0, chunk.length)) != -1) {
+      crc.update(chunk, 0, length);
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Reads a region of a file through a sliding memory-mapped window, avoiding a copy of the whole
+   * checkpoint onto the heap.  Windows are bounded so that checkpoints larger than the 2GB limit of
+   * a single mapping can be read.
+   */
+  private static class MappedInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long end;
+    private final long windowBytes;
+    private long windowStart;
+    private ByteBuffer window = ByteBuffer.allocate(0);
+
+    MappedInputStream(FileChannel channel, long start, long length, long windowBytes) {
+      this.channel = channel;
+      this.windowStart = start;
+      this.end = start + length;
+      this.windowBytes = windowBytes;
+    }
+
+    private boolean nextWindow() throws IOException {
+      if (window.hasRemaining()) {
+        return true;
+      }
+      windowStart += window.limit();
+      if (windowStart >= end) {
+        return false;
+      }
+      window = channel.map(
+          MapMode.READ_ONLY,
+          windowStart,
+          Math.min(windowBytes, end - windowStart));
+      return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return nextWindow() ? window.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (!nextWindow()) {
+        return -1;
+      }
+      int count = Math.min(length, window.remaining());
+      window.get(bytes, offset, count);
+      return count;
+    }
+  }
+}
@@ -25,6 +25,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -35,11 +36,16 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.primitives.Bytes;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.collect.UnmodifiableIterator;
 import com.google.inject.BindingAnnotation;
 
 import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
@@ -59,6 +65,7 @@ import com.twitter.aurora.gen.storage.Transaction;
 import com.twitter.aurora.scheduler.log.Log;
 import com.twitter.aurora.scheduler.log.Log.Entry;
 import com.twitter.aurora.scheduler.log.Log.Position;
+import com.twitter.aurora.scheduler.log.Log.PositionedEntry;
 import com.twitter.aurora.scheduler.log.Log.Stream;
 import com.twitter.aurora.scheduler.log.Log.Stream.InvalidPositionException;
 import com.twitter.aurora.scheduler.log.Log.Stream.StreamAccessException;
@@ -93,11 +100,21 @@ public final class LogManager {
   @BindingAnnotation
   public @interface SnapshotSetting { }
 
+  /**
+   * Binding annotation for whether large entries are framed in the original format, readable by
+   * schedulers that predate {@link Frames framing format 2}.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ ElementType.PARAMETER, ElementType.METHOD })
+  @BindingAnnotation
+  public @interface LegacyFrames { }
+
   private static final Logger LOG = Logger.getLogger(LogManager.class.getName());
 
   private final Log log;
   private final Amount<Integer, Data> maxEntrySize;
   private final boolean deflateSnapshots;
+  private final boolean legacyFrames;
   private final ShutdownRegistry shutdownRegistry;
 
   @Inject
@@ -105,11 +122,13 @@ public final class LogManager {
       Log log,
       @MaxEntrySize Amount<Integer, Data> maxEntrySize,
       @SnapshotSetting boolean deflateSnapshots,
+      @LegacyFrames boolean legacyFrames,
       ShutdownRegistry shutdownRegistry) {
 
     this.log = checkNotNull(log);
     this.maxEntrySize = checkNotNull(maxEntrySize);
     this.deflateSnapshots = deflateSnapshots;
+    this.legacyFrames = legacyFrames;
     this.shutdownRegistry = checkNotNull(shutdownRegistry);
   }
 
@@ -126,7 +145,7 @@ public final class LogManager {
         stream.close();
       }
     });
-    return new StreamManager(stream, deflateSnapshots, maxEntrySize);
+    return new StreamManager(stream, deflateSnapshots, maxEntrySize, legacyFrames);
   }
 
   /**
@@ -149,6 +168,8 @@ public final class LogManager {
     private static class Vars {
       private final AtomicInteger unSnapshottedTransactions =
           Stats.exportInt("scheduler_log_un_snapshotted_transactions");
+      private final AtomicLong unSnapshottedBytes =
+          Stats.exportLong("scheduler_log_un_snapshotted_bytes");
       private final AtomicLong bytesWritten = Stats.exportLong("scheduler_log_bytes_written");
       private final AtomicLong entriesWritten = Stats.exportLong("scheduler_log_entries_written");
       private final AtomicLong badFramesRead = Stats.exportLong("scheduler_log_bad_frames_read");
@@ -165,12 +186,19 @@ public final class LogManager {
     private final boolean deflateSnapshots;
     private final MessageDigest digest;
     private final EntrySerializer entrySerializer;
+    private final int maxEntrySizeBytes;
+
+    StreamManager(
+        Stream stream,
+        boolean deflateSnapshots,
+        Amount<Integer, Data> maxEntrySize,
+        boolean legacyFrames) {
 
-    StreamManager(Stream stream, boolean deflateSnapshots, Amount<Integer, Data> maxEntrySize) {
       this.stream = checkNotNull(stream);
       this.deflateSnapshots = deflateSnapshots;
       digest = createDigest();
-      entrySerializer = new EntrySerializer(digest, maxEntrySize);
+      entrySerializer = new EntrySerializer(digest, maxEntrySize, legacyFrames);
+      maxEntrySizeBytes = maxEntrySize.as(Data.BYTES);
     }
 
     /**
@@ -185,12 +213,116 @@ public final class LogManager {
     public void readFromBeginning(Closure<LogEntry> reader)
         throws CodingException, InvalidPositionException, StreamAccessException {
 
-      Iterator<Entry> entries = stream.readAll();
+      read(stream.readAll(), reader, false);
+    }
+
+    /**
+     * Reads all entries in the log stream after the given position, with the same guarantee of
+     * seeing every entry appended to the log as {@link #readFromBeginning(Closure)}.
+     *
+     * @param position The position of the last entry already read.
+     * @param reader A reader that will be handed log entries decoded from the stream.
+     * @return The position of the last entry handed to {@code reader}, or {@code position} if
+     *     there were no new entries.
+     * @throws CodingException if there was a problem decoding a log entry from the stream.
+     * @throws InvalidPositionException if the given position is not from this log.
+     * @throws StreamAccessException if there is a problem reading from the log.
+     */
+    public Position readAfter(Position position, Closure<LogEntry> reader)
+        throws CodingException, InvalidPositionException, StreamAccessException {
+
+      return read(stream.readAfter(position), Optional.of(position), reader, false).get();
+    }
+
+    /**
+     * Reads the entries after the given position that are currently available to this log replica,
+     * without writing to the log stream.  This allows a replica that is not the log writer to
+     * follow the log.  A framed entry that has not been completely appended yet is not handed to
+     * the reader; it will be read by a later call that resumes from the returned position.
+     *
+     * @param position The position of the last entry already read, or absent to read from the
+     *     beginning of the log.
+     * @param reader A reader that will be handed log entries decoded from the stream.
+     * @return The position of the last entry handed to {@code reader}, or {@code position} if
+     *     there were no new complete entries.
+     * @throws CodingException if there was a problem decoding a log entry from the stream.
+     * @throws InvalidPositionException if the given position is not from this log.
+     * @throws StreamAccessException if there is a problem reading from the log.
+     */
+    public Optional<Position> follow(Optional<Position> position, Closure<LogEntry> reader)
+        throws CodingException, InvalidPositionException, StreamAccessException {
+
+      return read(stream.follow(position), position, reader, true);
+    }
+
+    private Optional<Position> read(
+        Iterator<PositionedEntry> entries,
+        Optional<Position> position,
+        final Closure<LogEntry> reader,
+        boolean following) throws CodingException {
+
+      final PositionTracker tracker = new PositionTracker(entries, position);
+      read(tracker, new Closure<LogEntry>() {
+        @Override public void execute(LogEntry logEntry) {
+          reader.execute(logEntry);
+          tracker.markApplied();
+        }
+      }, following);
+      return tracker.applied;
+    }
+
+    /**
+     * Records the position of the last raw entry consumed, and of the last logical entry applied.
+     */
+    private static class PositionTracker extends UnmodifiableIterator<Entry> {
+      private final Iterator<PositionedEntry> entries;
+      private Optional<Position> consumed;
+      private Optional<Position> applied;
+
+      PositionTracker(Iterator<PositionedEntry> entries, Optional<Position> position) {
+        this.entries = entries;
+        this.consumed = position;
+        this.applied = position;
+      }
+
+      void markApplied() {
+        applied = consumed;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return entries.hasNext();
+      }
+
+      @Override
+      public Entry next() {
+        PositionedEntry entry = entries.next();
+        consumed = Optional.of(entry.position());
+        return entry;
+      }
+    }
 
-      while (entries.hasNext()) {
-        LogEntry logEntry = decodeLogEntry(entries.next());
-        while (logEntry != null && isFrame(logEntry)) {
-          logEntry = tryDecodeFrame(logEntry.getFrame(), entries);
+    private void read(Iterator<? extends Entry> entries, Closure<LogEntry> reader, boolean following)
+        throws CodingException {
+
+      // Frames are read ahead one entry at a time, so that an entry interrupting a frame is then
+      // read as any other entry.
+      PeekingIterator<byte[]> contents =
+          Iterators.peekingIterator(Iterators.transform(entries, readContents));
+      while (contents.hasNext()) {
+        byte[] data = contents.next();
+        LogEntry logEntry;
+        if (Frames.isFrame(data)) {
+          logEntry = tryDecodeFrame(data, contents, following);
+        } else {
+          logEntry = Entries.thriftBinaryDecode(data);
+          if (isFrame(logEntry)) {
+            logEntry = tryDecodeLegacyFrame(logEntry.getFrame(), contents, following);
+          }
+        }
+        if (logEntry == INCOMPLETE_FRAME) {
+          // The remainder of the frame has not been appended yet, pick it up on the next read.
+          return;
         }
         if (logEntry != null) {
           if (logEntry.isSet(_Fields.DEFLATED_ENTRY)) {
@@ -198,45 +330,118 @@ public final class LogManager {
             vars.deflatedEntriesRead.incrementAndGet();
           }
 
+          countUnsnapshotted(logEntry);
           reader.execute(logEntry);
           vars.entriesRead.incrementAndGet();
         }
       }
     }
 
+    /**
+     * Keeps the count of entries since the last snapshot current as the log is read, so that a
+     * replica that recovered or followed the log knows how long its un-snapshotted tail is.
+     */
+    private void countUnsnapshotted(LogEntry logEntry) {
+      switch (logEntry.getSetField()) {
+        case SNAPSHOT:
+          vars.unSnapshottedTransactions.set(0);
+          vars.unSnapshottedBytes.set(0);
+          break;
+        case TRANSACTION:
+          vars.unSnapshottedTransactions.incrementAndGet();
+          break;
+        default:
+          break;
+      }
+    }
+
+    /**
+     * Marks a frame whose chunks ran past the end of the entries read while following the log.
+     */
+    private static final LogEntry INCOMPLETE_FRAME = new LogEntry();
+
     @Nullable
-    private LogEntry tryDecodeFrame(Frame frame, Iterator<Entry> entries) throws CodingException {
+    private LogEntry tryDecodeFrame(
+        byte[] headerData,
+        PeekingIterator<byte[]> contents,
+        boolean following) throws CodingException {
+
+      if (!Frames.isHeader(headerData)) {
+        LOG.warning("Found a frame with no preceding header, skipping.");
+        return null;
+      }
+      Frames.Header header = Frames.header(headerData);
+      if (!header.isValid(maxEntrySizeBytes)) {
+        LOG.warning(String.format("Found a frame header for %d chunks of %d bytes, skipping.",
+            header.chunkCount, header.length));
+        vars.badFramesRead.incrementAndGet();
+        return null;
+      }
+      // Not presized from the header, which may name more chunks than the log holds.
+      List<ByteBuffer> chunks = Lists.newArrayList();
+
+      for (int i = 0; i < header.chunkCount; i++) {
+        if (!contents.hasNext()) {
+          if (following) {
+            return INCOMPLETE_FRAME;
+          }
+          logBadFrame(header.chunkCount, i);
+          return null;
+        }
+        if (!Frames.isChunk(contents.peek())) {
+          logBadFrame(header.chunkCount, i);
+          return null;
+        }
+        chunks.add(Frames.chunkData(contents.next()));
+      }
+      return Frames.decode(header, chunks);
+    }
+
+    @Nullable
+    private LogEntry tryDecodeLegacyFrame(
+        Frame frame,
+        PeekingIterator<byte[]> contents,
+        boolean following) throws CodingException {
+
       if (!isHeader(frame)) {
         LOG.warning("Found a frame with no preceding header, skipping.");
         return null;
       }
       FrameHeader header = frame.getHeader();
-      byte[][] chunks = new byte[header.chunkCount][];
+      List<ByteBuffer> chunks = Lists.newArrayListWithCapacity(header.chunkCount);
 
       digest.reset();
       for (int i = 0; i < header.chunkCount; i++) {
-        if (!entries.hasNext()) {
-          logBadFrame(header, i);
+        if (!contents.hasNext()) {
+          if (following) {
+            return INCOMPLETE_FRAME;
+          }
+          logBadFrame(header.chunkCount, i);
           return null;
         }
-        LogEntry logEntry = decodeLogEntry(entries.next());
-        if (!isFrame(logEntry)) {
-          logBadFrame(header, i);
-          return logEntry;
-        }
-        Frame chunkFrame = logEntry.getFrame();
-        if (!isChunk(chunkFrame)) {
-          logBadFrame(header, i);
-          return logEntry;
+        Frame chunkFrame = decodeLegacyFrame(contents.peek());
+        if (chunkFrame == null || !isChunk(chunkFrame)) {
+          logBadFrame(header.chunkCount, i);
+          return null;
         }
+        contents.next();
         byte[] chunkData = chunkFrame.getChunk().getData();
         digest.update(chunkData);
-        chunks[i] = chunkData;
+        chunks.add(ByteBuffer.wrap(chunkData));
       }
       if (!Arrays.equals(header.getChecksum(), digest.digest())) {
         throw new CodingException("Read back a framed log entry that failed its checksum");
       }
-      return Entries.thriftBinaryDecode(Bytes.concat(chunks));
+      return Frames.thriftBinaryDecode(chunks);
+    }
+
+    @Nullable
+    private static Frame decodeLegacyFrame(byte[] data) throws CodingException {
+      if (Frames.isFrame(data)) {
+        return null;
+      }
+      LogEntry logEntry = Entries.thriftBinaryDecode(data);
+      return isFrame(logEntry) ? logEntry.getFrame() : null;
     }
 
     private static boolean isFrame(LogEntry logEntry) {
@@ -251,17 +456,20 @@ public final class LogManager {
       return frame.getSetField() == Frame._Fields.HEADER;
     }
 
-    private void logBadFrame(FrameHeader header, int chunkIndex) {
+    private void logBadFrame(int chunkCount, int chunkIndex) {
       LOG.info(String.format("Found an aborted transaction, required %d frames and found %d",
-          header.chunkCount, chunkIndex));
+          chunkCount, chunkIndex));
       vars.badFramesRead.incrementAndGet();
     }
 
-    private LogEntry decodeLogEntry(Entry entry) throws CodingException {
-      byte[] contents = entry.contents();
-      vars.bytesRead.addAndGet(contents.length);
-      return Entries.thriftBinaryDecode(contents);
-    }
+    private final Function<Entry, byte[]> readContents = new Function<Entry, byte[]>() {
+      @Override public byte[] apply(Entry entry) {
+        byte[] contents = entry.contents();
+        vars.bytesRead.addAndGet(contents.length);
+        vars.unSnapshottedBytes.addAndGet(contents.length);
+        return contents;
+      }
+    };
 
     /**
      * Truncates all entries in the log stream occuring before the given position.  The entry at the
@@ -291,12 +499,13 @@ public final class LogManager {
      * snapshot.
      *
      * @param snapshot The snapshot to add.
+     * @return The position of the last log entry holding the snapshot.
      * @throws CodingException if the was a problem encoding the snapshot into a log entry.
      * @throws InvalidPositionException if there was a problem truncating before the snapshot.
      * @throws StreamAccessException if there was a problem appending the snapshot to the log.
      */
     @Timed("log_manager_snapshot")
-    void snapshot(Snapshot snapshot)
+    Position snapshot(Snapshot snapshot)
         throws CodingException, InvalidPositionException, StreamAccessException {
 
       LogEntry entry = LogEntry.snapshot(snapshot);
@@ -304,41 +513,89 @@ public final class LogManager {
         entry = Entries.deflate(entry);
       }
 
-      Position position = appendAndGetPosition(entry);
+      List<Position> positions = appendAndGetPositions(entry);
       vars.snapshots.incrementAndGet();
       vars.unSnapshottedTransactions.set(0);
-      stream.truncateBefore(position);
+      vars.unSnapshottedBytes.set(0);
+      stream.truncateBefore(positions.get(0));
+      return Iterables.getLast(positions);
+    }
+
+    /**
+     * Recreates a position in the log stream from its identity.
+     *
+     * @param identity The identity of a position in this log stream.
+     * @return The position.
+     * @throws InvalidPositionException if the identity is not that of a position in this log.
+     */
+    Position position(byte[] identity) throws InvalidPositionException {
+      return stream.position(identity);
+    }
+
+    /**
+     * Gets the number of transactions appended to or read from the log since the last snapshot.
+     *
+     * @return The number of un-snapshotted transactions.
+     */
+    long getUnsnapshottedTransactions() {
+      return vars.unSnapshottedTransactions.get();
+    }
+
+    /**
+     * Gets the number of bytes appended to or read from the log since the last snapshot.
+     *
+     * @return The size of the un-snapshotted log tail.
+     */
+    long getUnsnapshottedBytes() {
+      return vars.unSnapshottedBytes.get();
+    }
+
+    /**
+     * Gets the total number of bytes read from the log stream.
+     *
+     * @return The number of bytes read.
+     */
+    long getBytesRead() {
+      return vars.bytesRead.get();
     }
 
-    @Timed("log_manager_append")
     private Position appendAndGetPosition(LogEntry logEntry) throws CodingException {
-      Position firstPosition = null;
+      return appendAndGetPositions(logEntry).get(0);
+    }
+
+    @Timed("log_manager_append")
+    private List<Position> appendAndGetPositions(LogEntry logEntry) throws CodingException {
       byte[][] entries = entrySerializer.serialize(logEntry);
+      List<Position> positions = Lists.newArrayListWithCapacity(entries.length);
       synchronized (writeMutex) { // ensure all sub-entries are written as a unit
         for (byte[] entry : entries) {
-          Position position = stream.append(entry);
-          if (firstPosition == null) {
-            firstPosition = position;
-          }
+          positions.add(stream.append(entry));
           vars.bytesWritten.addAndGet(entry.length);
+          vars.unSnapshottedBytes.addAndGet(entry.length);
         }
       }
       vars.entriesWritten.incrementAndGet();
-      return firstPosition;
+      return positions;
     }
 
     @VisibleForTesting
     public static class EntrySerializer {
       private final MessageDigest digest;
       private final int maxEntrySizeBytes;
+      private final boolean legacyFrames;
+
+      private EntrySerializer(
+          MessageDigest digest,
+          Amount<Integer, Data> maxEntrySize,
+          boolean legacyFrames) {
 
-      private EntrySerializer(MessageDigest digest, Amount<Integer, Data> maxEntrySize) {
         this.digest = checkNotNull(digest);
         maxEntrySizeBytes = maxEntrySize.as(Data.BYTES);
+        this.legacyFrames = legacyFrames;
       }
 
       public EntrySerializer(Amount<Integer, Data> maxEntrySize) {
-        this(createDigest(), maxEntrySize);
+        this(createDigest(), maxEntrySize, false);
       }
 
       /**
@@ -350,6 +607,10 @@ public final class LogManager {
        */
       @VisibleForTesting
       public byte[][] serialize(LogEntry logEntry) throws CodingException {
+        if (!legacyFrames) {
+          return Frames.serialize(logEntry, maxEntrySizeBytes);
+        }
+
         byte[] entry = Entries.thriftBinaryEncode(logEntry);
         if (entry.length <= maxEntrySizeBytes) {
           return new byte[][] {entry};
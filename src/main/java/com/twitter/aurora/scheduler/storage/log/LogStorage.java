@@ -15,6 +15,7 @@
  */
 package com.twitter.aurora.scheduler.storage.log;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -26,6 +27,9 @@ import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +41,7 @@ import com.google.common.base.Optional;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Atomics;
 import com.google.inject.BindingAnnotation;
 
 import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
@@ -59,6 +64,7 @@ import com.twitter.aurora.gen.storage.Snapshot;
 import com.twitter.aurora.scheduler.base.Query;
 import com.twitter.aurora.scheduler.base.SchedulerException;
 import com.twitter.aurora.scheduler.base.Tasks;
+import com.twitter.aurora.scheduler.log.Log.Position;
 import com.twitter.aurora.scheduler.log.Log.Stream.InvalidPositionException;
 import com.twitter.aurora.scheduler.log.Log.Stream.StreamAccessException;
 import com.twitter.aurora.scheduler.storage.AttributeStore;
@@ -71,6 +77,8 @@ import com.twitter.aurora.scheduler.storage.SchedulerStore;
 import com.twitter.aurora.scheduler.storage.SnapshotStore;
 import com.twitter.aurora.scheduler.storage.Storage;
 import com.twitter.aurora.scheduler.storage.Storage.NonVolatileStorage;
+import com.twitter.aurora.scheduler.storage.StorageProfiler;
+import com.twitter.aurora.scheduler.storage.StorageProfiler.Kind;
 import com.twitter.aurora.scheduler.storage.TaskStore;
 import com.twitter.aurora.scheduler.storage.entities.IJobConfiguration;
 import com.twitter.aurora.scheduler.storage.entities.IJobKey;
@@ -79,6 +87,7 @@ import com.twitter.aurora.scheduler.storage.entities.ILockKey;
 import com.twitter.aurora.scheduler.storage.entities.IQuota;
 import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
 import com.twitter.aurora.scheduler.storage.entities.ITaskConfig;
+import com.twitter.aurora.scheduler.storage.log.LocalCheckpoint.Checkpoint;
 import com.twitter.aurora.scheduler.storage.log.LogManager.StreamManager;
 import com.twitter.aurora.scheduler.storage.log.LogManager.StreamManager.StreamTransaction;
 import com.twitter.common.application.ShutdownRegistry;
@@ -86,6 +95,8 @@ import com.twitter.common.base.Closure;
 import com.twitter.common.inject.TimedInterceptor.Timed;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.StatImpl;
+import com.twitter.common.stats.Stats;
 import com.twitter.common.util.concurrent.ExecutorServiceShutdown;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -170,10 +181,31 @@ public class LogStorage extends ForwardingStore
   private final LogManager logManager;
   private final SchedulingService schedulingService;
   private final SnapshotStore<Snapshot> snapshotStore;
-  private final Amount<Long, Time> snapshotInterval;
+  private final SnapshotPolicy snapshotPolicy;
+  private final StorageProfiler profiler;
+  private final Amount<Long, Time> followInterval;
+  private final Optional<LocalCheckpoint> checkpoint;
+
+  private final AtomicLong followerEntriesApplied =
+      Stats.exportLong("scheduler_log_follower_entries_applied");
+  private final AtomicLong followerFailures = Stats.exportLong("scheduler_log_follower_failures");
+  private volatile long lastFollowedNanos;
+  private final AtomicLong checkpointsWritten =
+      Stats.exportLong("scheduler_log_local_checkpoints_written");
+  private final AtomicLong checkpointFailures =
+      Stats.exportLong("scheduler_log_local_checkpoint_failures");
+  private final AtomicLong checkpointRecoveries =
+      Stats.exportLong("scheduler_log_recover_from_local_checkpoint");
+  private final AtomicLong checkpointFallbacks =
+      Stats.exportLong("scheduler_log_recover_local_checkpoint_fallbacks");
+  private final AtomicLong checkpointLoadMs =
+      Stats.exportLong("scheduler_log_recover_local_checkpoint_load_ms");
+  private final AtomicLong tailReplayMs = Stats.exportLong("scheduler_log_recover_tail_replay_ms");
 
   private StreamManager streamManager;
 
+  private volatile boolean following = false;
+  private Optional<Position> followedPosition = Optional.absent();
   private boolean recovered = false;
   private StreamTransaction transaction = null;
 
@@ -217,12 +249,22 @@ public class LogStorage extends ForwardingStore
   public @interface ShutdownGracePeriod { }
 
   /**
-   * Identifies the interval between snapshots of local storage truncating the log.
+   * Identifies the interval at which a scheduler that is not yet leading reads newly appended
+   * entries from the log into local storage.
    */
   @Retention(RetentionPolicy.RUNTIME)
   @Target({ ElementType.PARAMETER, ElementType.METHOD })
   @BindingAnnotation
-  public @interface SnapshotInterval { }
+  public @interface FollowInterval { }
+
+  /**
+   * Identifies the optional local file holding a checkpoint of local storage, used to avoid reading
+   * the latest snapshot from the log on startup.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ ElementType.PARAMETER, ElementType.METHOD })
+  @BindingAnnotation
+  public @interface LocalCheckpointFile { }
 
   /**
    * Identifies a local storage layer that is written to only after first ensuring the write
@@ -238,7 +280,10 @@ public class LogStorage extends ForwardingStore
              ShutdownRegistry shutdownRegistry,
              @ShutdownGracePeriod Amount<Long, Time> shutdownGracePeriod,
              SnapshotStore<Snapshot> snapshotStore,
-             @SnapshotInterval Amount<Long, Time> snapshotInterval,
+             SnapshotPolicy snapshotPolicy,
+             StorageProfiler profiler,
+             @FollowInterval Amount<Long, Time> followInterval,
+             @LocalCheckpointFile Optional<File> checkpointFile,
              @WriteBehind Storage storage,
              @WriteBehind SchedulerStore.Mutable schedulerStore,
              @WriteBehind JobStore.Mutable jobStore,
@@ -250,7 +295,10 @@ public class LogStorage extends ForwardingStore
     this(logManager,
         new ScheduledExecutorSchedulingService(shutdownRegistry, shutdownGracePeriod),
         snapshotStore,
-        snapshotInterval,
+        snapshotPolicy,
+        profiler,
+        followInterval,
+        checkpointFile,
         storage,
         schedulerStore,
         jobStore,
@@ -264,7 +312,10 @@ public class LogStorage extends ForwardingStore
   LogStorage(LogManager logManager,
              SchedulingService schedulingService,
              SnapshotStore<Snapshot> snapshotStore,
-             Amount<Long, Time> snapshotInterval,
+             SnapshotPolicy snapshotPolicy,
+             StorageProfiler profiler,
+             Amount<Long, Time> followInterval,
+             Optional<File> checkpointFile,
              Storage storage,
              SchedulerStore.Mutable schedulerStore,
              JobStore.Mutable jobStore,
@@ -277,7 +328,20 @@ public class LogStorage extends ForwardingStore
     this.logManager = checkNotNull(logManager);
     this.schedulingService = checkNotNull(schedulingService);
     this.snapshotStore = checkNotNull(snapshotStore);
-    this.snapshotInterval = checkNotNull(snapshotInterval);
+    this.snapshotPolicy = checkNotNull(snapshotPolicy);
+    this.profiler = checkNotNull(profiler);
+    this.followInterval = checkNotNull(followInterval);
+    this.checkpoint = checkpointFile.isPresent()
+        ? Optional.of(new LocalCheckpoint(checkpointFile.get()))
+        : Optional.<LocalCheckpoint>absent();
+
+    Stats.export(new StatImpl<Long>("scheduler_log_follower_lag_ms") {
+      @Override public Long read() {
+        return following
+            ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastFollowedNanos)
+            : 0L;
+      }
+    });
   }
 
   @Override
@@ -289,12 +353,127 @@ public class LogStorage extends ForwardingStore
       throw new IllegalStateException("Failed to open the log, cannot continue", e);
     }
 
-    // TODO(John Sirois): start incremental recovery here from the log and do a final recovery
-    // catchup in start after shutting down the incremental syncer.
+    restoreCheckpoint();
+
+    // Keep local storage warm while we wait to lead, so that start only needs to replay the tail
+    // of the log.
+    if (followInterval.getValue() > 0) {
+      following = true;
+      lastFollowedNanos = System.nanoTime();
+      schedulingService.doEvery(followInterval, new Runnable() {
+        @Override public void run() {
+          follow();
+        }
+      });
+    }
+  }
+
+  /**
+   * Applies the local checkpoint, if there is a usable one, so that only the log entries following
+   * it need to be read.
+   */
+  private void restoreCheckpoint() {
+    if (!checkpoint.isPresent()) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    try {
+      Optional<Checkpoint> loaded = checkpoint.get().load();
+      if (loaded.isPresent()) {
+        Position position = streamManager.position(loaded.get().getPosition());
+        snapshotStore.applySnapshot(loaded.get().getSnapshot());
+        followedPosition = Optional.of(position);
+        checkpointLoadMs.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        LOG.info("Restored local checkpoint of snapshot taken on "
+            + new Date(loaded.get().getSnapshot().getTimestamp()));
+      }
+    } catch (IOException | CodingException | InvalidPositionException e) {
+      LOG.log(Level.WARNING, "Discarding unusable local checkpoint.", e);
+      checkpointFailures.incrementAndGet();
+      checkpoint.get().delete();
+    }
+  }
+
+  /**
+   * Writes a local checkpoint of the given snapshot, which must reflect all log entries up to and
+   * including the given position.
+   */
+  private void saveCheckpoint(Position position, Snapshot snapshot) {
+    if (!checkpoint.isPresent()) {
+      return;
+    }
+
+    try {
+      checkpoint.get().save(position.identity(), snapshot);
+      checkpointsWritten.incrementAndGet();
+    } catch (IOException | CodingException e) {
+      LOG.log(Level.WARNING, "Failed to write local checkpoint.", e);
+      checkpointFailures.incrementAndGet();
+    }
+  }
+
+  /**
+   * Replays log entries appended since the last call into local storage, without writing to the
+   * log.  This is a no-op once the storage has been started.
+   */
+  private synchronized void follow() {
+    if (!following) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    long bytesRead = streamManager.getBytesRead();
+    try {
+      // Like recovery, replayed entries go straight to the underlying storage and are not logged.
+      Optional<Snapshot> checkpointSnapshot = super.write(
+          new MutateWork<Optional<Snapshot>, CodingException>() {
+            @Override public Optional<Snapshot> apply(MutableStoreProvider unused)
+                throws CodingException {
+
+              final AtomicBoolean snapshotApplied = new AtomicBoolean(false);
+              followedPosition = streamManager.follow(followedPosition, new Closure<LogEntry>() {
+                @Override public void execute(LogEntry logEntry) {
+                  replay(logEntry);
+                  followerEntriesApplied.incrementAndGet();
+                  if (logEntry.getSetField() == LogEntry._Fields.SNAPSHOT) {
+                    snapshotApplied.set(true);
+                  }
+                }
+              });
+
+              // Refresh the local checkpoint whenever the log was compacted, so a restart need
+              // not read the new snapshot from the log.
+              return snapshotApplied.get() && checkpoint.isPresent()
+                  ? Optional.of(snapshotStore.createSnapshot())
+                  : Optional.<Snapshot>absent();
+            }
+          });
+      lastFollowedNanos = System.nanoTime();
+      snapshotPolicy.recordReplay(
+          streamManager.getBytesRead() - bytesRead,
+          lastFollowedNanos - start);
+      if (checkpointSnapshot.isPresent()) {
+        saveCheckpoint(followedPosition.get(), checkpointSnapshot.get());
+      }
+    } catch (InvalidPositionException e) {
+      LOG.log(Level.WARNING, "Followed position is no longer valid, restarting from the beginning.",
+          e);
+      followerFailures.incrementAndGet();
+      followedPosition = Optional.absent();
+    } catch (CodingException | StreamAccessException e) {
+      // Entries applied before the failure will be replayed again on the next attempt, which is
+      // safe since replayed operations are idempotent.
+      LOG.log(Level.WARNING, "Failed to follow the log, will retry.", e);
+      followerFailures.incrementAndGet();
+    }
   }
 
   @Override
   public synchronized void start(final MutateWork.NoResult.Quiet initializationLogic) {
+    // We hold the lock, so any in-flight follow has completed and no more will run.
+    following = false;
+
     write(new MutateWork.NoResult.Quiet() {
       @Override protected void execute(MutableStoreProvider unused) {
         // Must have the underlying storage started so we can query it for the last checkpoint.
@@ -319,17 +498,46 @@ public class LogStorage extends ForwardingStore
 
   @Timed("scheduler_log_recover")
   void recover() throws RecoveryFailedException {
+    Closure<LogEntry> replayer = new Closure<LogEntry>() {
+      @Override public void execute(LogEntry logEntry) {
+        replay(logEntry);
+      }
+    };
+    long start = System.nanoTime();
+    long bytesRead = streamManager.getBytesRead();
     try {
-      streamManager.readFromBeginning(new Closure<LogEntry>() {
-        @Override public void execute(LogEntry logEntry) {
-          replay(logEntry);
+      if (followedPosition.isPresent()) {
+        try {
+          LOG.info("Replaying the log tail following the checkpointed or followed position.");
+          streamManager.readAfter(followedPosition.get(), replayer);
+          tailReplayMs.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+          checkpointRecoveries.incrementAndGet();
+          recordReplay(start, bytesRead);
+          return;
+        } catch (InvalidPositionException e) {
+          // The local state does not belong to this log, discard it and start over.
+          LOG.log(Level.WARNING, "Local state does not match the log, replaying the whole log.", e);
+          checkpointFallbacks.incrementAndGet();
+          followedPosition = Optional.absent();
+          if (checkpoint.isPresent()) {
+            checkpoint.get().delete();
+          }
+          snapshotStore.applySnapshot(new Snapshot());
         }
-      });
+      }
+      streamManager.readFromBeginning(replayer);
+      recordReplay(start, bytesRead);
     } catch (CodingException | InvalidPositionException | StreamAccessException e) {
       throw new RecoveryFailedException(e);
     }
   }
 
+  private void recordReplay(long startNanos, long startBytesRead) {
+    snapshotPolicy.recordReplay(
+        streamManager.getBytesRead() - startBytesRead,
+        System.nanoTime() - startNanos);
+  }
+
   private static final class RecoveryFailedException extends SchedulerException {
     private RecoveryFailedException(Throwable cause) {
       super(cause);
@@ -422,11 +630,20 @@ public class LogStorage extends ForwardingStore
   }
 
   private void scheduleSnapshots() {
-    if (snapshotInterval.getValue() > 0) {
-      schedulingService.doEvery(snapshotInterval, new Runnable() {
+    if (snapshotPolicy.getCheckInterval().getValue() > 0) {
+      schedulingService.doEvery(snapshotPolicy.getCheckInterval(), new Runnable() {
         @Override public void run() {
+          Optional<SnapshotPolicy.Reason> reason = snapshotPolicy.check(
+              streamManager.getUnsnapshottedTransactions(),
+              streamManager.getUnsnapshottedBytes());
+          if (!reason.isPresent()) {
+            return;
+          }
+
+          LOG.info("Snapshotting local storage, triggered by " + reason.get());
           try {
             snapshot();
+            snapshotPolicy.snapshotTaken();
           } catch (StorageException e) {
             if (e.getCause() != null) {
               LOG.log(Level.WARNING, e.getMessage(), e.getCause());
@@ -448,13 +665,19 @@ public class LogStorage extends ForwardingStore
    */
   @Timed("scheduler_log_snapshot")
   void doSnapshot() throws CodingException, InvalidPositionException, StreamAccessException {
-    super.write(new MutateWork.NoResult<CodingException>() {
-      @Override protected void execute(MutableStoreProvider unused)
+    final AtomicReference<Position> position = Atomics.newReference();
+    Snapshot snapshot = super.write(new MutateWork<Snapshot, CodingException>() {
+      @Override public Snapshot apply(MutableStoreProvider unused)
           throws CodingException, InvalidPositionException, StreamAccessException {
 
-        persist(snapshotStore.createSnapshot());
+        Snapshot created = snapshotStore.createSnapshot();
+        position.set(streamManager.snapshot(created));
+        return created;
       }
     });
+
+    // The snapshot is not shared, so the checkpoint can be written without holding up writers.
+    saveCheckpoint(position.get(), snapshot);
   }
 
   @Timed("scheduler_log_snapshot_persist")
@@ -466,7 +689,40 @@ public class LogStorage extends ForwardingStore
   }
 
   @Override
-  public synchronized <T, E extends Exception> T write(final MutateWork<T, E> work)
+  public <T, E extends Exception> T write(final MutateWork<T, E> work)
+      throws StorageException, E {
+
+    long waitStart = System.nanoTime();
+    // Nested writes, including those of the write-behind storage, are attributed to this work.
+    boolean outermost = profiler.enter(work);
+    try {
+      synchronized (this) {
+        long lockedNanos = System.nanoTime();
+        // Time spent waiting on other writers (including snapshots) feeds the snapshot policy, so
+        // that snapshots back off while storage is contended.
+        if (recovered && transaction == null) {
+          snapshotPolicy.recordWriteWait(lockedNanos - waitStart);
+        }
+        try {
+          return doWrite(work);
+        } finally {
+          if (outermost) {
+            profiler.record(
+                Kind.LOG_WRITE,
+                work,
+                lockedNanos - waitStart,
+                System.nanoTime() - lockedNanos);
+          }
+        }
+      }
+    } finally {
+      if (outermost) {
+        profiler.exit();
+      }
+    }
+  }
+
+  private <T, E extends Exception> T doWrite(final MutateWork<T, E> work)
       throws StorageException, E {
 
     // We don't want to use the log when recovering from it, we just want to update the underlying
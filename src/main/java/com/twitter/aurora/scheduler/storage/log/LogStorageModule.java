@@ -15,22 +15,27 @@
  */
 package com.twitter.aurora.scheduler.storage.log;
 
+import java.io.File;
 import java.lang.annotation.Annotation;
 
 import javax.inject.Singleton;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
 import com.google.inject.AbstractModule;
 import com.google.inject.Key;
+import com.google.inject.Provides;
 import com.google.inject.TypeLiteral;
 
 import com.twitter.aurora.scheduler.log.Log;
 import com.twitter.aurora.scheduler.storage.CallOrderEnforcingStorage;
 import com.twitter.aurora.scheduler.storage.DistributedSnapshotStore;
+import com.twitter.aurora.scheduler.storage.log.LogManager.LegacyFrames;
 import com.twitter.aurora.scheduler.storage.log.LogManager.MaxEntrySize;
 import com.twitter.aurora.scheduler.storage.log.LogManager.SnapshotSetting;
+import com.twitter.aurora.scheduler.storage.log.LogStorage.FollowInterval;
+import com.twitter.aurora.scheduler.storage.log.LogStorage.LocalCheckpointFile;
 import com.twitter.aurora.scheduler.storage.log.LogStorage.ShutdownGracePeriod;
-import com.twitter.aurora.scheduler.storage.log.LogStorage.SnapshotInterval;
 import com.twitter.common.application.ShutdownRegistry;
 import com.twitter.common.args.Arg;
 import com.twitter.common.args.CmdLine;
@@ -59,11 +64,60 @@ public class LogStorageModule extends AbstractModule {
       Arg.create(Amount.of(2L, Time.SECONDS));
 
   @CmdLine(name = "dlog_snapshot_interval",
-           help = "Specifies the frequency at which snapshots of local storage are taken and "
-                  + "written to the log.")
+           help = "Specifies the maximum time between snapshots of local storage written to the "
+                  + "log, if the log has grown since the last snapshot.  A zero interval disables "
+                  + "time-based snapshots.")
   private static final Arg<Amount<Long, Time>> SNAPSHOT_INTERVAL =
       Arg.create(Amount.of(1L, Time.HOURS));
 
+  @CmdLine(name = "dlog_snapshot_min_interval",
+           help = "Specifies the minimum time between snapshots of local storage written to the "
+                  + "log, regardless of how much the log has grown.")
+  private static final Arg<Amount<Long, Time>> SNAPSHOT_MIN_INTERVAL =
+      Arg.create(Amount.of(1L, Time.MINUTES));
+
+  @CmdLine(name = "dlog_snapshot_check_interval",
+           help = "Specifies the frequency at which log growth is checked to decide whether a "
+                  + "snapshot should be taken.  A zero interval disables snapshots.")
+  private static final Arg<Amount<Long, Time>> SNAPSHOT_CHECK_INTERVAL =
+      Arg.create(Amount.of(10L, Time.SECONDS));
+
+  @CmdLine(name = "dlog_snapshot_max_transactions",
+           help = "Number of transactions appended to the log since the last snapshot that "
+                  + "triggers a new snapshot.  Zero disables this trigger.")
+  private static final Arg<Long> SNAPSHOT_MAX_TRANSACTIONS = Arg.create(50000L);
+
+  @CmdLine(name = "dlog_snapshot_max_bytes",
+           help = "Size of the log entries appended since the last snapshot that triggers a new "
+                  + "snapshot.  Zero disables this trigger.")
+  private static final Arg<Amount<Long, Data>> SNAPSHOT_MAX_BYTES =
+      Arg.create(Amount.of(128L, Data.MB));
+
+  @CmdLine(name = "dlog_snapshot_max_replay_time",
+           help = "Estimated time to replay the log entries appended since the last snapshot that "
+                  + "triggers a new snapshot, based on observed replay throughput.  Zero disables "
+                  + "this trigger.")
+  private static final Arg<Amount<Long, Time>> SNAPSHOT_MAX_REPLAY_TIME =
+      Arg.create(Amount.of(30L, Time.SECONDS));
+
+  @CmdLine(name = "dlog_snapshot_write_contention_threshold",
+           help = "Fraction of time storage writers spend waiting on each other above which "
+                  + "snapshots are deferred until the maximum snapshot interval.")
+  private static final Arg<Double> SNAPSHOT_WRITE_CONTENTION_THRESHOLD = Arg.create(0.5);
+
+  @CmdLine(name = "dlog_follow_interval",
+           help = "Specifies the frequency at which a scheduler that is not leading reads new log "
+                  + "entries into local storage, so that it only needs to replay the tail of the "
+                  + "log when elected.  A zero interval disables following.")
+  private static final Arg<Amount<Long, Time>> FOLLOW_INTERVAL =
+      Arg.create(Amount.of(1L, Time.SECONDS));
+
+  @CmdLine(name = "dlog_local_checkpoint_path",
+           help = "Path of a local file in which to keep a checkpoint of the latest log snapshot, "
+                  + "so that startup only needs to replay log entries following it.  Local "
+                  + "checkpoints are disabled if unset.")
+  private static final Arg<File> LOCAL_CHECKPOINT_PATH = Arg.create(null);
+
   @CmdLine(name = "dlog_max_entry_size",
            help = "Specifies the maximum entry size to append to the log. Larger entries will be "
                   + "split across entry Frames.")
@@ -74,6 +128,13 @@ public class LogStorageModule extends AbstractModule {
   @CmdLine(name = "deflate_snapshots", help = "Whether snapshots should be deflate-compressed.")
   private static final Arg<Boolean> DEFLATE_SNAPSHOTS = Arg.create(true);
 
+  @CmdLine(name = "dlog_legacy_frames",
+           help = "Whether to split large log entries into frames in the original format, which "
+                  + "schedulers that predate framing format 2 can read.  Both formats are always "
+                  + "readable.  Disable only once no scheduler that predates format 2 may read "
+                  + "the log.")
+  private static final Arg<Boolean> LEGACY_FRAMES = Arg.create(true);
+
   @Override
   protected void configure() {
     requireBinding(Log.class);
@@ -81,18 +142,35 @@ public class LogStorageModule extends AbstractModule {
     requireBinding(ShutdownRegistry.class);
 
     bindInterval(ShutdownGracePeriod.class, SHUTDOWN_GRACE_PERIOD);
-    bindInterval(SnapshotInterval.class, SNAPSHOT_INTERVAL);
+    bindInterval(FollowInterval.class, FOLLOW_INTERVAL);
+    bind(new TypeLiteral<Optional<File>>() { }).annotatedWith(LocalCheckpointFile.class)
+        .toInstance(Optional.fromNullable(LOCAL_CHECKPOINT_PATH.get()));
 
     bind(new TypeLiteral<Amount<Integer, Data>>() { }).annotatedWith(MaxEntrySize.class)
         .toInstance(MAX_LOG_ENTRY_SIZE.get());
     bind(LogManager.class).in(Singleton.class);
     bind(Boolean.class).annotatedWith(SnapshotSetting.class).toInstance(DEFLATE_SNAPSHOTS.get());
+    bind(Boolean.class).annotatedWith(LegacyFrames.class).toInstance(LEGACY_FRAMES.get());
 
     bind(LogStorage.class).in(Singleton.class);
     install(CallOrderEnforcingStorage.wrappingModule(LogStorage.class));
     bind(DistributedSnapshotStore.class).to(LogStorage.class);
   }
 
+  @Provides
+  @Singleton
+  SnapshotPolicy provideSnapshotPolicy(Clock clock) {
+    return new SnapshotPolicy(
+        clock,
+        SNAPSHOT_CHECK_INTERVAL.get(),
+        SNAPSHOT_MIN_INTERVAL.get(),
+        SNAPSHOT_INTERVAL.get(),
+        SNAPSHOT_MAX_TRANSACTIONS.get(),
+        SNAPSHOT_MAX_BYTES.get(),
+        SNAPSHOT_MAX_REPLAY_TIME.get(),
+        SNAPSHOT_WRITE_CONTENTION_THRESHOLD.get());
+  }
+
   private void bindInterval(Class<? extends Annotation> key, Arg<Amount<Long, Time>> value) {
     bind(Key.get(new TypeLiteral<Amount<Long, Time>>() { }, key)).toInstance(value.get());
   }
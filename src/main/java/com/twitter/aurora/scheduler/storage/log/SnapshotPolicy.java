@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.log;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.StatImpl;
+import com.twitter.common.stats.Stats;
+import com.twitter.common.util.Clock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Decides when local storage should be snapshotted to the log, based on how much the log has grown
+ * since the last snapshot rather than on a fixed timer.
+ *
+ * <p>A snapshot is triggered once the un-snapshotted tail of the log exceeds a transaction count,
+ * a size, or an estimated replay time, or once the maximum interval has passed.  Snapshots are
+ * never taken while the log is quiet, more often than the minimum interval, or while writers are
+ * contending for storage - unless the maximum interval has passed.  Limits of zero are disabled.
+ */
+class SnapshotPolicy {
+
+  private static final Logger LOG = Logger.getLogger(SnapshotPolicy.class.getName());
+
+  /**
+   * The reason a snapshot was triggered.
+   */
+  enum Reason {
+    TRANSACTIONS,
+    BYTES,
+    REPLAY_TIME,
+    INTERVAL
+  }
+
+  private final Clock clock;
+  private final Amount<Long, Time> checkInterval;
+  private final long minIntervalNanos;
+  private final long maxIntervalNanos;
+  private final long maxTransactions;
+  private final long maxBytes;
+  private final long maxReplayNanos;
+  private final double maxWriteContention;
+
+  private final Map<Reason, AtomicLong> triggered = Maps.newEnumMap(Reason.class);
+  private final AtomicLong deferred =
+      Stats.exportLong("scheduler_log_snapshots_deferred_for_contention");
+  private final AtomicLong writeWaitNanos = new AtomicLong();
+  private final AtomicLong replayedBytes = new AtomicLong();
+  private final AtomicLong replayNanos = new AtomicLong();
+
+  private volatile long lastSnapshotNanos;
+  private long lastCheckNanos;
+  private volatile long lastUnsnapshottedBytes;
+
+  /**
+   * Creates a snapshot policy.
+   *
+   * @param clock Clock to measure intervals with.
+   * @param checkInterval How often the policy should be consulted.
+   * @param minInterval Minimum time between snapshots.
+   * @param maxInterval Maximum time between snapshots while the log is growing.
+   * @param maxTransactions Number of un-snapshotted transactions that triggers a snapshot.
+   * @param maxSize Size of the un-snapshotted log tail that triggers a snapshot.
+   * @param maxReplayTime Estimated replay time of the un-snapshotted log tail that triggers a
+   *     snapshot.
+   * @param maxWriteContention Fraction of wall time spent by writers waiting on storage above which
+   *     snapshots are deferred.
+   */
+  SnapshotPolicy(
+      Clock clock,
+      Amount<Long, Time> checkInterval,
+      Amount<Long, Time> minInterval,
+      Amount<Long, Time> maxInterval,
+      long maxTransactions,
+      Amount<Long, Data> maxSize,
+      Amount<Long, Time> maxReplayTime,
+      double maxWriteContention) {
+
+    this.clock = checkNotNull(clock);
+    this.checkInterval = checkNotNull(checkInterval);
+    this.minIntervalNanos = minInterval.as(Time.NANOSECONDS);
+    this.maxIntervalNanos = maxInterval.as(Time.NANOSECONDS);
+    checkArgument(maxTransactions >= 0);
+    this.maxTransactions = maxTransactions;
+    this.maxBytes = maxSize.as(Data.BYTES);
+    this.maxReplayNanos = maxReplayTime.as(Time.NANOSECONDS);
+    checkArgument(maxWriteContention > 0);
+    this.maxWriteContention = maxWriteContention;
+
+    lastSnapshotNanos = clock.nowNanos();
+    lastCheckNanos = lastSnapshotNanos;
+
+    for (Reason reason : Reason.values()) {
+      triggered.put(reason, Stats.exportLong(
+          "scheduler_log_snapshots_triggered_by_" + reason.name().toLowerCase()));
+    }
+    Stats.export(new StatImpl<Long>("scheduler_log_snapshot_estimated_replay_ms") {
+      @Override public Long read() {
+        return TimeUnit.NANOSECONDS.toMillis(estimateReplayNanos(lastUnsnapshottedBytes));
+      }
+    });
+  }
+
+  /**
+   * Gets how often the policy should be consulted.
+   *
+   * @return The check interval.
+   */
+  Amount<Long, Time> getCheckInterval() {
+    return checkInterval;
+  }
+
+  /**
+   * Records the time spent by a storage writer waiting to write.
+   *
+   * @param nanos Time waited.
+   */
+  void recordWriteWait(long nanos) {
+    writeWaitNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Records the time taken to replay a portion of the log, to estimate replay throughput.
+   *
+   * @param bytes Bytes of log entries replayed.
+   * @param nanos Time taken to read and apply the entries.
+   */
+  void recordReplay(long bytes, long nanos) {
+    if (bytes > 0) {
+      replayedBytes.addAndGet(bytes);
+      replayNanos.addAndGet(nanos);
+    }
+  }
+
+  private long estimateReplayNanos(long bytes) {
+    long measuredBytes = replayedBytes.get();
+    return measuredBytes == 0 ? 0 : (long) (bytes * (replayNanos.get() / (double) measuredBytes));
+  }
+
+  /**
+   * Checks whether a snapshot should be taken now.  Should be called every
+   * {@link #getCheckInterval() check interval}.
+   *
+   * @param unsnapshottedTransactions Transactions in the log since the last snapshot.
+   * @param unsnapshottedBytes Bytes in the log since the last snapshot.
+   * @return The reason a snapshot should be taken, or absent if no snapshot should be taken.
+   */
+  synchronized Optional<Reason> check(long unsnapshottedTransactions, long unsnapshottedBytes) {
+    lastUnsnapshottedBytes = unsnapshottedBytes;
+
+    long now = clock.nowNanos();
+    long sinceCheck = now - lastCheckNanos;
+    lastCheckNanos = now;
+    boolean contended = sinceCheck > 0
+        && writeWaitNanos.getAndSet(0) / (double) sinceCheck > maxWriteContention;
+
+    long sinceSnapshot = now - lastSnapshotNanos;
+    if ((unsnapshottedTransactions == 0 && unsnapshottedBytes == 0)
+        || sinceSnapshot < minIntervalNanos) {
+      return Optional.absent();
+    }
+
+    Reason reason;
+    if (maxTransactions > 0 && unsnapshottedTransactions >= maxTransactions) {
+      reason = Reason.TRANSACTIONS;
+    } else if (maxBytes > 0 && unsnapshottedBytes >= maxBytes) {
+      reason = Reason.BYTES;
+    } else if (maxReplayNanos > 0 && estimateReplayNanos(unsnapshottedBytes) >= maxReplayNanos) {
+      reason = Reason.REPLAY_TIME;
+    } else if (maxIntervalNanos > 0 && sinceSnapshot >= maxIntervalNanos) {
+      reason = Reason.INTERVAL;
+    } else {
+      return Optional.absent();
+    }
+
+    if (contended && (maxIntervalNanos == 0 || sinceSnapshot < maxIntervalNanos)) {
+      LOG.info("Deferring snapshot triggered by " + reason + " due to storage write contention.");
+      deferred.incrementAndGet();
+      return Optional.absent();
+    }
+
+    triggered.get(reason).incrementAndGet();
+    return Optional.of(reason);
+  }
+
+  /**
+   * Records that a snapshot was taken.
+   */
+  void snapshotTaken() {
+    lastSnapshotNanos = clock.nowNanos();
+  }
+}
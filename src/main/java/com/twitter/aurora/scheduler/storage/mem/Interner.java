@@ -15,24 +15,104 @@
  */
 package com.twitter.aurora.scheduler.storage.mem;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * An interning pool that can be used to retrieve the canonical instances of objects, while
  * maintaining a reference count to the canonical instances.
  *
+ * <p>The pool is split into lock stripes by hash code, so that threads interning unrelated values
+ * rarely contend.  Callers that already know the hash code of a value may provide it, to avoid
+ * rehashing values that are expensive to hash.
+ *
  * @param <T> The interned object type.
  * @param <A> The type used for maintaining associations.
  */
 class Interner<T, A> {
 
-  private final Map<T, InternEntry<A, T>> pool = Maps.newHashMap();
+  private static final int DEFAULT_STRIPES = 16;
+
+  private final List<Stripe<T, A>> stripes;
+  private final int stripeMask;
+  private final AtomicLong contendedLocks = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+
+  Interner() {
+    this(DEFAULT_STRIPES);
+  }
+
+  /**
+   * Creates an interner with a number of lock stripes.
+   *
+   * @param numStripes Number of lock stripes, which must be a power of two.
+   */
+  Interner(int numStripes) {
+    checkArgument(numStripes > 0 && Integer.bitCount(numStripes) == 1,
+        "Number of stripes must be a power of two.");
+
+    ImmutableList.Builder<Stripe<T, A>> builder = ImmutableList.builder();
+    for (int i = 0; i < numStripes; i++) {
+      builder.add(new Stripe<T, A>());
+    }
+    this.stripes = builder.build();
+    this.stripeMask = numStripes - 1;
+  }
+
+  private static class Stripe<T, A> {
+    private final Lock lock = new ReentrantLock();
+    private final Map<HashedKey<T>, InternEntry<A, T>> pool = Maps.newHashMap();
+  }
+
+  /**
+   * A pool key that caches the hash code of the value it wraps.
+   */
+  private static class HashedKey<T> {
+    private final T value;
+    private final int hash;
+
+    HashedKey(T value, int hash) {
+      this.value = value;
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof HashedKey)) {
+        return false;
+      }
+      HashedKey<?> other = (HashedKey<?>) o;
+      return (hash == other.hash) && ((value == other.value) || value.equals(other.value));
+    }
+  }
+
+  private Stripe<T, A> lock(int hash) {
+    // Spread the hash bits, as the low bits of generated hash codes are often poorly distributed.
+    int spread = hash ^ (hash >>> 16);
+    Stripe<T, A> stripe = stripes.get(spread & stripeMask);
+    if (!stripe.lock.tryLock()) {
+      contendedLocks.incrementAndGet();
+      stripe.lock.lock();
+    }
+    return stripe;
+  }
 
   /**
    * Retrieves the canonical instance of {@code t} and maintains {@code association} with the
@@ -42,15 +122,36 @@ class Interner<T, A> {
    * @param association A value to associate with {@code t}.
    * @return The interned value, which may be reference-equivalent to {@code t}.
    */
-  synchronized T addAssociation(T t, A association) {
-    InternEntry<A, T> entry = pool.get(t);
-    if (entry == null) {
-      entry = new InternEntry<>(t, association);
-      pool.put(t, entry);
-    } else {
-      entry.associations.add(association);
+  T addAssociation(T t, A association) {
+    return addAssociation(t, t.hashCode(), association);
+  }
+
+  /**
+   * Equivalent to {@link #addAssociation(Object, Object)}, using a known hash code of {@code t}.
+   *
+   * @param t The object to intern, or get the previously-interned value for.
+   * @param hash The hash code of {@code t}.
+   * @param association A value to associate with {@code t}.
+   * @return The interned value, which may be reference-equivalent to {@code t}.
+   */
+  T addAssociation(T t, int hash, A association) {
+    HashedKey<T> key = new HashedKey<>(t, hash);
+    Stripe<T, A> stripe = lock(hash);
+    try {
+      InternEntry<A, T> entry = stripe.pool.get(key);
+      if (entry == null) {
+        entry = new InternEntry<>(t, association);
+        stripe.pool.put(key, entry);
+      } else {
+        entry.associations.add(association);
+        if (entry.interned != t) {
+          hits.incrementAndGet();
+        }
+      }
+      return entry.interned;
+    } finally {
+      stripe.lock.unlock();
     }
-    return entry.interned;
   }
 
   /**
@@ -59,31 +160,103 @@ class Interner<T, A> {
    * @param t The interned value that {@code association} was associated with.
    * @param association The association to remove.
    */
-  synchronized void removeAssociation(T t, A association) {
-    InternEntry<A, T> entry = pool.get(t);
-    if (entry != null) {
-      entry.associations.remove(association);
-      if (entry.associations.isEmpty()) {
-        pool.remove(t);
+  void removeAssociation(T t, A association) {
+    removeAssociation(t, t.hashCode(), association);
+  }
+
+  /**
+   * Equivalent to {@link #removeAssociation(Object, Object)}, using a known hash code of {@code t}.
+   *
+   * @param t The interned value that {@code association} was associated with.
+   * @param hash The hash code of {@code t}.
+   * @param association The association to remove.
+   */
+  void removeAssociation(T t, int hash, A association) {
+    HashedKey<T> key = new HashedKey<>(t, hash);
+    Stripe<T, A> stripe = lock(hash);
+    try {
+      InternEntry<A, T> entry = stripe.pool.get(key);
+      if (entry != null) {
+        entry.associations.remove(association);
+        if (entry.associations.isEmpty()) {
+          stripe.pool.remove(key);
+        }
       }
+    } finally {
+      stripe.lock.unlock();
     }
   }
 
   /**
    * Removes all interned values and associations.
    */
-  synchronized void clear() {
-    pool.clear();
+  void clear() {
+    for (Stripe<T, A> stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        stripe.pool.clear();
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of distinct values currently interned.
+   *
+   * @return Number of interned values.
+   */
+  long size() {
+    long size = 0;
+    for (Stripe<T, A> stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        size += stripe.pool.size();
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Gets the number of times a value was replaced with an existing, equal canonical instance.
+   *
+   * @return Number of interning hits.
+   */
+  long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of times a thread had to wait for a lock stripe held by another thread.
+   *
+   * @return Number of contended lock acquisitions.
+   */
+  long getContendedLocks() {
+    return contendedLocks.get();
   }
 
   @VisibleForTesting
-  synchronized boolean isInterned(T t) {
-    return pool.containsKey(t);
+  boolean isInterned(T t) {
+    int hash = t.hashCode();
+    Stripe<T, A> stripe = lock(hash);
+    try {
+      return stripe.pool.containsKey(new HashedKey<>(t, hash));
+    } finally {
+      stripe.lock.unlock();
+    }
   }
 
   @VisibleForTesting
-  synchronized Set<A> getAssociations(T t) {
-    return ImmutableSet.copyOf(pool.get(t).associations);
+  Set<A> getAssociations(T t) {
+    int hash = t.hashCode();
+    Stripe<T, A> stripe = lock(hash);
+    try {
+      return ImmutableSet.copyOf(stripe.pool.get(new HashedKey<>(t, hash)).associations);
+    } finally {
+      stripe.lock.unlock();
+    }
   }
 
   private static class InternEntry<A, T> {
@@ -28,6 +28,8 @@ import com.twitter.aurora.scheduler.storage.QuotaStore;
 import com.twitter.aurora.scheduler.storage.ReadWriteLockManager;
 import com.twitter.aurora.scheduler.storage.SchedulerStore;
 import com.twitter.aurora.scheduler.storage.Storage;
+import com.twitter.aurora.scheduler.storage.StorageProfiler;
+import com.twitter.aurora.scheduler.storage.StorageProfiler.Kind;
 import com.twitter.aurora.scheduler.storage.TaskStore;
 import com.twitter.common.inject.TimedInterceptor.Timed;
 import com.twitter.common.stats.Stats;
@@ -50,6 +52,7 @@ public class MemStorage implements Storage {
 
   private final MutableStoreProvider storeProvider;
   private final ReadWriteLockManager lockManager = new ReadWriteLockManager();
+  private final StorageProfiler profiler;
 
   @Inject
   MemStorage(
@@ -58,8 +61,10 @@ public class MemStorage implements Storage {
       final TaskStore.Mutable taskStore,
       final LockStore.Mutable lockStore,
       final QuotaStore.Mutable quotaStore,
-      final AttributeStore.Mutable attributeStore) {
+      final AttributeStore.Mutable attributeStore,
+      StorageProfiler profiler) {
 
+    this.profiler = checkNotNull(profiler);
     storeProvider = new MutableStoreProvider() {
       @Override public SchedulerStore.Mutable getSchedulerStore() {
         return schedulerStore;
@@ -96,13 +101,15 @@ public class MemStorage implements Storage {
    */
   @VisibleForTesting
   public static MemStorage newEmptyStorage() {
+    StorageProfiler profiler = new StorageProfiler();
     return new MemStorage(
         new MemSchedulerStore(),
         new MemJobStore(),
-        new MemTaskStore(),
+        new MemTaskStore(profiler),
         new MemLockStore(),
         new MemQuotaStore(),
-        new MemAttributeStore());
+        new MemAttributeStore(),
+        profiler);
   }
 
   @Timed("mem_storage_consistent_read_operation")
@@ -112,13 +119,21 @@ public class MemStorage implements Storage {
 
     long lockStartNanos = System.nanoTime();
     boolean topLevelOperation = lockManager.readLock();
+    long lockedNanos = System.nanoTime();
     if (topLevelOperation) {
-      readLockWaitNanos.addAndGet(System.nanoTime() - lockStartNanos);
+      readLockWaitNanos.addAndGet(lockedNanos - lockStartNanos);
     }
     try {
       return work.apply(storeProvider);
     } finally {
       lockManager.readUnlock();
+      if (topLevelOperation) {
+        profiler.record(
+            Kind.CONSISTENT_READ,
+            work,
+            lockedNanos - lockStartNanos,
+            System.nanoTime() - lockedNanos);
+      }
     }
   }
 
@@ -127,7 +142,12 @@ public class MemStorage implements Storage {
   public <T, E extends Exception> T weaklyConsistentRead(Work<T, E> work)
       throws StorageException, E {
 
-    return work.apply(storeProvider);
+    long startNanos = System.nanoTime();
+    try {
+      return work.apply(storeProvider);
+    } finally {
+      profiler.record(Kind.WEAKLY_CONSISTENT_READ, work, 0, System.nanoTime() - startNanos);
+    }
   }
 
   @Timed("mem_storage_write_operation")
@@ -139,13 +159,21 @@ public class MemStorage implements Storage {
 
     long lockStartNanos = System.nanoTime();
     boolean topLevelOperation = lockManager.writeLock();
+    long lockedNanos = System.nanoTime();
     if (topLevelOperation) {
-      writeLockWaitNanos.addAndGet(System.nanoTime() - lockStartNanos);
+      writeLockWaitNanos.addAndGet(lockedNanos - lockStartNanos);
     }
     try {
       return work.apply(storeProvider);
     } finally {
       lockManager.writeUnlock();
+      if (topLevelOperation) {
+        profiler.record(
+            Kind.WRITE,
+            work,
+            lockedNanos - lockStartNanos,
+            System.nanoTime() - lockedNanos);
+      }
     }
   }
 
@@ -22,28 +22,29 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 
-import org.apache.commons.lang.StringUtils;
-
+import com.twitter.aurora.gen.AssignedTask;
 import com.twitter.aurora.gen.ScheduledTask;
 import com.twitter.aurora.gen.TaskConfig;
 import com.twitter.aurora.gen.TaskQuery;
 import com.twitter.aurora.scheduler.base.JobKeys;
 import com.twitter.aurora.scheduler.base.Query;
 import com.twitter.aurora.scheduler.base.Tasks;
+import com.twitter.aurora.scheduler.storage.StorageProfiler;
 import com.twitter.aurora.scheduler.storage.TaskStore;
 import com.twitter.aurora.scheduler.storage.entities.IJobKey;
 import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
@@ -54,6 +55,7 @@ import com.twitter.common.base.MorePreconditions;
 import com.twitter.common.inject.TimedInterceptor.Timed;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.StatImpl;
 import com.twitter.common.stats.Stats;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -81,18 +83,68 @@ class MemTaskStore implements TaskStore.Mutable {
   // rather than the task), but we intuit this detail here for performance reasons.
   private final Interner<TaskConfig, String> configInterner = new Interner<TaskConfig, String>();
 
+  // Identity strings that are repeated across tasks of a job, or tasks on a host, are shared.
+  private final StringPool stringPool = new StringPool();
+
   private final AtomicLong taskQueriesById = Stats.exportLong("task_queries_by_id");
   private final AtomicLong taskQueriesByJob = Stats.exportLong("task_queries_by_job");
   private final AtomicLong taskQueriesAll = Stats.exportLong("task_queries_all");
 
+  private final StorageProfiler profiler;
+
+  MemTaskStore() {
+    this(new StorageProfiler());
+  }
+
+  @Inject
+  MemTaskStore(StorageProfiler profiler) {
+    this.profiler = checkNotNull(profiler);
+  }
+
+  /**
+   * Exports gauges of the interned task configs and pooled strings.  Guice only calls this for the
+   * bound store, so that scratch stores, such as those of staged backups, do not take over the
+   * gauges.
+   */
+  @Inject
+  void exportStats() {
+    Stats.export(new StatImpl<Long>("mem_storage_interned_task_configs") {
+      @Override public Long read() {
+        return configInterner.size();
+      }
+    });
+    Stats.export(new StatImpl<Long>("mem_storage_task_config_intern_hits") {
+      @Override public Long read() {
+        return configInterner.getHits();
+      }
+    });
+    Stats.export(new StatImpl<Long>("mem_storage_task_config_interner_contended_locks") {
+      @Override public Long read() {
+        return configInterner.getContendedLocks();
+      }
+    });
+    Stats.export(new StatImpl<Long>("mem_storage_string_pool_hits") {
+      @Override public Long read() {
+        return stringPool.getHits();
+      }
+    });
+    Stats.export(new StatImpl<Long>("mem_storage_string_pool_saved_bytes_estimate") {
+      @Override public Long read() {
+        return stringPool.getSavedBytes();
+      }
+    });
+  }
+
   @Timed("mem_storage_fetch_tasks")
   @Override
   public ImmutableSet<IScheduledTask> fetchTasks(Query.Builder query) {
     checkNotNull(query);
 
     long start = System.nanoTime();
-    ImmutableSet<IScheduledTask> result = matches(query.get()).toSet();
+    Candidates candidates = candidates(query.get());
+    ImmutableSet<IScheduledTask> result = filter(candidates, query.get()).toSet();
     long durationNanos = System.nanoTime() - start;
+    profiler.recordQuery(candidates.index, candidates.tasks.size(), result.size(), durationNanos);
     Level level = (durationNanos >= slowQueryThresholdNanos) ? Level.INFO : Level.FINE;
     if (LOG.isLoggable(level)) {
       Long time = Amount.of(durationNanos, Time.NANOSECONDS).as(Time.MILLISECONDS);
@@ -102,12 +154,51 @@ class MemTaskStore implements TaskStore.Mutable {
     return result;
   }
 
-  private final Function<IScheduledTask, Task> toTask =
-      new Function<IScheduledTask, Task>() {
-        @Override public Task apply(IScheduledTask task) {
-          return new Task(task, configInterner);
-        }
-      };
+  private void internIdentity(TaskConfig config) {
+    if (config.isSetOwner()) {
+      config.getOwner().setRole(stringPool.intern(config.getOwner().getRole()));
+      config.getOwner().setUser(stringPool.intern(config.getOwner().getUser()));
+    }
+    config.setEnvironment(stringPool.intern(config.getEnvironment()));
+    config.setJobName(stringPool.intern(config.getJobName()));
+  }
+
+  /**
+   * Canonicalizes a task to be stored, sharing its configuration with other tasks that have an
+   * equal configuration.
+   *
+   * @param task Task to store.
+   * @param previous The stored task being replaced, if any.
+   * @return The canonicalized task.
+   */
+  private Task toTask(IScheduledTask task, @Nullable Task previous) {
+    ScheduledTask builder = task.newBuilder();
+    AssignedTask assigned = builder.getAssignedTask();
+    assigned.setSlaveHost(stringPool.intern(assigned.getSlaveHost()));
+    assigned.setSlaveId(stringPool.intern(assigned.getSlaveId()));
+
+    TaskConfig config = assigned.getTask();
+    int configHash = config.hashCode();
+    TaskConfig canonical;
+    if (previous != null
+        && previous.configHash == configHash
+        && previous.config.equals(config)) {
+
+      // The most common mutation is a state change, where the task keeps its configuration and
+      // its association with the interned configuration.
+      canonical = previous.config;
+    } else {
+      if (previous != null) {
+        configInterner.removeAssociation(previous.config, previous.configHash, Tasks.id(task));
+      }
+      internIdentity(config);
+      canonical = configInterner.addAssociation(config, configHash, Tasks.id(task));
+    }
+    assigned.setTask(canonical);
+
+    // The builder is private to this method, so it is safe to wrap without a defensive copy.
+    return new Task(IScheduledTask.FROM_BUILDER.apply(builder), canonical, configHash);
+  }
 
   @Timed("mem_storage_save_tasks")
   @Override
@@ -116,9 +207,13 @@ class MemTaskStore implements TaskStore.Mutable {
     Preconditions.checkState(Tasks.ids(newTasks).size() == newTasks.size(),
         "Proposed new tasks would create task ID collision.");
 
-    Iterable<Task> canonicalized = Iterables.transform(newTasks, toTask);
-    tasks.putAll(Maps.uniqueIndex(canonicalized, TO_ID));
-    tasksByJobKey.putAll(taskIdsByJobKey(canonicalized));
+    ImmutableList.Builder<Task> canonicalized = ImmutableList.builder();
+    for (IScheduledTask task : newTasks) {
+      canonicalized.add(toTask(task, tasks.get(Tasks.id(task))));
+    }
+    Iterable<Task> toSave = canonicalized.build();
+    tasks.putAll(Maps.uniqueIndex(toSave, TO_ID));
+    tasksByJobKey.putAll(taskIdsByJobKey(toSave));
   }
 
   private Multimap<IJobKey, String> taskIdsByJobKey(Iterable<Task> toIndex) {
@@ -144,7 +239,7 @@ class MemTaskStore implements TaskStore.Mutable {
       Task removed = tasks.remove(id);
       if (removed != null) {
         tasksByJobKey.remove(Tasks.SCHEDULED_TO_JOB_KEY.apply(removed.task), id);
-        configInterner.removeAssociation(removed.task.getAssignedTask().getTask().newBuilder(), id);
+        configInterner.removeAssociation(removed.config, removed.configHash, id);
       }
     }
   }
@@ -159,13 +254,15 @@ class MemTaskStore implements TaskStore.Mutable {
     checkNotNull(mutator);
 
     ImmutableSet.Builder<IScheduledTask> mutated = ImmutableSet.builder();
-    for (IScheduledTask original : matches(query.get())) {
+    TaskQuery taskQuery = query.get();
+    for (IScheduledTask original : filter(candidates(taskQuery), taskQuery)) {
       IScheduledTask maybeMutated = mutator.apply(original);
       if (!original.equals(maybeMutated)) {
         Preconditions.checkState(
             Tasks.id(original).equals(Tasks.id(maybeMutated)),
             "A task's ID may not be mutated.");
-        tasks.put(Tasks.id(maybeMutated), toTask.apply(maybeMutated));
+        String taskId = Tasks.id(maybeMutated);
+        tasks.put(taskId, toTask(maybeMutated, tasks.get(taskId)));
         mutated.add(maybeMutated);
       }
     }
@@ -185,66 +282,12 @@ class MemTaskStore implements TaskStore.Mutable {
     } else {
       ScheduledTask updated = stored.task.newBuilder();
       updated.getAssignedTask().setTask(taskConfiguration.newBuilder());
-      tasks.put(taskId, toTask.apply(IScheduledTask.build(updated)));
+      tasks.put(taskId, toTask(IScheduledTask.build(updated), stored));
       return true;
     }
   }
 
-  private static Predicate<IScheduledTask> queryFilter(final TaskQuery query) {
-    return new Predicate<IScheduledTask>() {
-      @Override public boolean apply(IScheduledTask task) {
-        ITaskConfig config = task.getAssignedTask().getTask();
-        if (query.getOwner() != null) {
-          if (!StringUtils.isBlank(query.getOwner().getRole())) {
-            if (!query.getOwner().getRole().equals(config.getOwner().getRole())) {
-              return false;
-            }
-          }
-          if (!StringUtils.isBlank(query.getOwner().getUser())) {
-            if (!query.getOwner().getUser().equals(config.getOwner().getUser())) {
-              return false;
-            }
-          }
-        }
-        if (query.getEnvironment() != null) {
-          if (!query.getEnvironment().equals(config.getEnvironment())) {
-            return false;
-          }
-        }
-        if (query.getJobName() != null) {
-          if (!query.getJobName().equals(config.getJobName())) {
-            return false;
-          }
-        }
-
-        if (query.getTaskIds() != null) {
-          if (!query.getTaskIds().contains(Tasks.id(task))) {
-            return false;
-          }
-        }
-
-        if (query.getStatusesSize() > 0) {
-          if (!query.getStatuses().contains(task.getStatus())) {
-            return false;
-          }
-        }
-        if (!StringUtils.isEmpty(query.getSlaveHost())) {
-          if (!query.getSlaveHost().equals(task.getAssignedTask().getSlaveHost())) {
-            return false;
-          }
-        }
-        if (query.getInstanceIdsSize() > 0) {
-          if (!query.getInstanceIds().contains(task.getAssignedTask().getInstanceId())) {
-            return false;
-          }
-        }
-
-        return true;
-      }
-    };
-  }
-
-  private Iterable<Task> fromIdIndex(Iterable<String> taskIds) {
+  private Collection<Task> fromIdIndex(Iterable<String> taskIds) {
     ImmutableList.Builder<Task> matches = ImmutableList.builder();
     for (String id : taskIds) {
       Task match = tasks.get(id);
@@ -255,27 +298,39 @@ class MemTaskStore implements TaskStore.Mutable {
     return matches.build();
   }
 
-  private FluentIterable<IScheduledTask> matches(TaskQuery query) {
-    // Apply the query against the working set.
-    Iterable<Task> from;
+  /**
+   * Tasks that may match a query, found through the most selective index.
+   */
+  private static class Candidates {
+    private final String index;
+    private final Collection<Task> tasks;
+
+    Candidates(String index, Collection<Task> tasks) {
+      this.index = index;
+      this.tasks = tasks;
+    }
+  }
+
+  private Candidates candidates(TaskQuery query) {
     Optional<IJobKey> jobKey = JobKeys.from(Query.arbitrary(query));
     if (query.isSetTaskIds()) {
       taskQueriesById.incrementAndGet();
-      from = fromIdIndex(query.getTaskIds());
+      return new Candidates("id", fromIdIndex(query.getTaskIds()));
     } else if (jobKey.isPresent()) {
       taskQueriesByJob.incrementAndGet();
       Collection<String> taskIds = tasksByJobKey.get(jobKey.get());
-      if (taskIds == null) {
-        from = ImmutableList.of();
-      } else {
-        from = fromIdIndex(taskIds);
-      }
+      return new Candidates(
+          "job",
+          (taskIds == null) ? ImmutableList.<Task>of() : fromIdIndex(taskIds));
     } else {
       taskQueriesAll.incrementAndGet();
-      from = tasks.values();
+      return new Candidates("all", tasks.values());
     }
+  }
 
-    return FluentIterable.from(from).transform(TO_SCHEDULED).filter(queryFilter(query));
+  private FluentIterable<IScheduledTask> filter(Candidates candidates, TaskQuery query) {
+    // Apply the query against the working set.
+    return FluentIterable.from(candidates.tasks).transform(TO_SCHEDULED).filter(Query.filter(query));
   }
 
   private static final Function<Task, IScheduledTask> TO_SCHEDULED =
@@ -290,15 +345,13 @@ class MemTaskStore implements TaskStore.Mutable {
 
   private static class Task {
     private final IScheduledTask task;
+    private final TaskConfig config;
+    private final int configHash;
 
-    Task(IScheduledTask task, Interner<TaskConfig, String> interner) {
-      interner.removeAssociation(task.getAssignedTask().getTask().newBuilder(), Tasks.id(task));
-      TaskConfig canonical = interner.addAssociation(
-          task.getAssignedTask().getTask().newBuilder(),
-          Tasks.id(task));
-      ScheduledTask builder = task.newBuilder();
-      builder.getAssignedTask().setTask(canonical);
-      this.task = IScheduledTask.build(builder);
+    Task(IScheduledTask task, TaskConfig config, int configHash) {
+      this.task = task;
+      this.config = config;
+      this.configHash = configHash;
     }
   }
 }
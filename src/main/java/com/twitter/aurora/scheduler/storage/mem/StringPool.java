@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.mem;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Interners;
+
+/**
+ * A pool of canonical string instances, used to share the identity strings that are repeated
+ * across many tasks, such as roles, job names and slave hosts.
+ *
+ * <p>Strings are weakly referenced by the pool, so unused strings are reclaimed without explicit
+ * reference counting.
+ */
+class StringPool {
+
+  // The estimated heap cost of a string beyond its characters: the String object and its array.
+  private static final int STRING_OVERHEAD_BYTES = 56;
+
+  private final com.google.common.collect.Interner<String> pool = Interners.newWeakInterner();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong savedBytes = new AtomicLong();
+
+  /**
+   * Gets the canonical instance of a string.
+   *
+   * @param value String to intern.
+   * @return The canonical instance equal to {@code value}, or {@code null} if {@code value} is
+   *     {@code null}.
+   */
+  @Nullable
+  String intern(@Nullable String value) {
+    if (value == null) {
+      return null;
+    }
+
+    String canonical = pool.intern(value);
+    if (canonical != value) {
+      hits.incrementAndGet();
+      savedBytes.addAndGet(STRING_OVERHEAD_BYTES + 2 * value.length());
+    }
+    return canonical;
+  }
+
+  /**
+   * Gets the number of strings that were replaced with an existing canonical instance.
+   *
+   * @return Number of pool hits.
+   */
+  long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Gets an estimate of the heap that was made reclaimable by replacing strings with canonical
+   * instances.
+   *
+   * @return Estimated number of bytes saved.
+   */
+  long getSavedBytes() {
+    return savedBytes.get();
+  }
+}
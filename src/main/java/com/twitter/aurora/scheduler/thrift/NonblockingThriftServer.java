@@ -0,0 +1,747 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.thrift;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TMemoryBuffer;
+
+import com.twitter.common.stats.SlidingStats;
+import com.twitter.common.stats.Stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A thrift server that multiplexes connections on a single selector thread, and processes
+ * requests on a bounded pool of worker threads.
+ * <p>
+ * Requests and responses use the framed transport and the binary protocol.  Each connection has
+ * at most one request in progress, further requests on the connection are read once the response
+ * has been written.  Requests that arrive when the request queue is full are rejected with an
+ * application exception rather than waiting for a worker.  The SSL engine's delegated tasks,
+ * which perform the costly handshake computations, run on a separate pool of threads so that
+ * handshakes do not stall other connections.
+ */
+class NonblockingThriftServer {
+
+  private static final Logger LOG = Logger.getLogger(NonblockingThriftServer.class.getName());
+
+  private static final int FRAME_HEADER_BYTES = 4;
+  private static final int READ_CHUNK_BYTES = 4096;
+  private static final String UNKNOWN_METHOD = "unknown";
+
+  /**
+   * Sizing of the server's worker pool and request queue.
+   */
+  static class Settings {
+    private final int workerThreads;
+    private final int maxQueuedRequests;
+    private final int maxFrameBytes;
+
+    Settings(int workerThreads, int maxQueuedRequests, int maxFrameBytes) {
+      checkArgument(workerThreads > 0);
+      checkArgument(maxQueuedRequests > 0);
+      checkArgument(maxFrameBytes > 0);
+      this.workerThreads = workerThreads;
+      this.maxQueuedRequests = maxQueuedRequests;
+      this.maxFrameBytes = maxFrameBytes;
+    }
+  }
+
+  private final TProcessor processor;
+  private final Set<String> methods;
+  private final Settings settings;
+  private final Optional<SSLContext> sslContext;
+  private final TProtocolFactory protocolFactory = new TBinaryProtocol.Factory();
+
+  private final SlidingStats queueTime =
+      new SlidingStats("scheduler_thrift_request_queue", "nanos");
+  private final AtomicLong rejectedRequests =
+      Stats.exportLong("scheduler_thrift_requests_rejected");
+  private final LoadingCache<String, AtomicLong> inFlightByMethod = CacheBuilder.newBuilder()
+      .build(new CacheLoader<String, AtomicLong>() {
+        @Override public AtomicLong load(String method) {
+          return Stats.exportLong(
+              Stats.normalizeName(String.format("scheduler_thrift_%s_in_flight", method)));
+        }
+      });
+
+  // Requests that workers have finished, to be written out by the selector thread.
+  private final Queue<Completion> completions = new ConcurrentLinkedQueue<Completion>();
+  // SSL connections whose delegated tasks have finished, to be resumed by the selector thread.
+  private final Queue<SslConnection> resumptions = new ConcurrentLinkedQueue<SslConnection>();
+
+  private ThreadPoolExecutor workers;
+  private ExecutorService sslTasks;
+  private Selector selector;
+  private ServerSocketChannel serverChannel;
+  private Thread selectorThread;
+  private volatile boolean stopped;
+
+  /**
+   * Creates a server that is not yet listening.
+   *
+   * @param processor Processor to handle requests.
+   * @param methods Names of the methods served, used to export per-method statistics.
+   * @param settings Worker pool and request queue sizing.
+   * @param sslContext SSL context to secure connections with, if SSL is enabled.
+   */
+  NonblockingThriftServer(
+      TProcessor processor,
+      Set<String> methods,
+      Settings settings,
+      Optional<SSLContext> sslContext) {
+
+    this.processor = checkNotNull(processor);
+    this.methods = ImmutableSet.copyOf(methods);
+    this.settings = checkNotNull(settings);
+    this.sslContext = checkNotNull(sslContext);
+  }
+
+  /**
+   * Starts listening for requests.
+   *
+   * @param port Port to listen on, or {@code 0} to pick an ephemeral port.
+   * @return The port the server is listening on.
+   * @throws IOException If the server socket could not be bound.
+   */
+  synchronized int start(int port) throws IOException {
+    checkState(selectorThread == null, "Server already started.");
+
+    BlockingQueue<Runnable> requestQueue =
+        new ArrayBlockingQueue<Runnable>(settings.maxQueuedRequests);
+    Stats.exportSize("scheduler_thrift_request_queue_size", requestQueue);
+    workers = new ThreadPoolExecutor(
+        settings.workerThreads,
+        settings.workerThreads,
+        0L,
+        TimeUnit.MILLISECONDS,
+        requestQueue,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ThriftWorker-%d").build());
+    if (sslContext.isPresent()) {
+      sslTasks = Executors.newFixedThreadPool(
+          Runtime.getRuntime().availableProcessors(),
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ThriftSslTask-%d").build());
+    }
+
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.configureBlocking(false);
+    serverChannel.socket().setReuseAddress(true);
+    serverChannel.socket().bind(new InetSocketAddress(port));
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+    selectorThread = new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("ThriftSelector-%d")
+        .build()
+        .newThread(new Runnable() {
+          @Override public void run() {
+            select();
+          }
+        });
+    selectorThread.start();
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /**
+   * Stops accepting requests and closes all connections.  Requests in progress are abandoned.
+   */
+  synchronized void shutdown() {
+    if (selectorThread == null) {
+      return;
+    }
+
+    stopped = true;
+    selector.wakeup();
+    try {
+      selectorThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    workers.shutdownNow();
+    if (sslTasks != null) {
+      sslTasks.shutdownNow();
+    }
+    selectorThread = null;
+  }
+
+  @VisibleForTesting
+  int queuedRequests() {
+    return workers.getQueue().size();
+  }
+
+  private void select() {
+    while (!stopped) {
+      try {
+        selector.select();
+
+        Completion completion;
+        while ((completion = completions.poll()) != null) {
+          complete(completion);
+        }
+        SslConnection resumed;
+        while ((resumed = resumptions.poll()) != null) {
+          resume(resumed);
+        }
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+
+          if (key.isAcceptable()) {
+            accept();
+          } else {
+            Connection connection = (Connection) key.attachment();
+            try {
+              if (key.isWritable()) {
+                handleWrite(connection);
+              }
+              if (key.isValid() && key.isReadable()) {
+                handleRead(connection);
+              }
+            } catch (IOException e) {
+              LOG.log(Level.FINE, "Closing thrift connection: " + e, e);
+              connection.close();
+            }
+          }
+        }
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Thrift selector failed: " + e, e);
+      }
+    }
+
+    for (SelectionKey key : selector.keys()) {
+      if (key.attachment() instanceof Connection) {
+        ((Connection) key.attachment()).close();
+      }
+    }
+    try {
+      serverChannel.close();
+      selector.close();
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Failed to close thrift server socket: " + e, e);
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) {
+      return;
+    }
+
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+    Connection connection;
+    if (sslContext.isPresent()) {
+      SSLEngine engine = sslContext.get().createSSLEngine();
+      engine.setUseClientMode(false);
+      engine.setNeedClientAuth(false);
+      engine.setEnabledCipherSuites(engine.getSupportedCipherSuites());
+      engine.beginHandshake();
+      connection = new SslConnection(channel, key, engine);
+    } else {
+      connection = new PlainConnection(channel, key);
+    }
+    key.attach(connection);
+  }
+
+  private void handleRead(Connection connection) throws IOException {
+    if (!connection.read()) {
+      connection.close();
+      return;
+    }
+    maybeDispatch(connection);
+    connection.updateInterest();
+  }
+
+  private void handleWrite(Connection connection) throws IOException {
+    if (connection.write() && connection.responding) {
+      connection.responding = false;
+      connection.processing = false;
+      // A subsequent request may already be buffered.
+      maybeDispatch(connection);
+    }
+    connection.updateInterest();
+  }
+
+  private void maybeDispatch(Connection connection) throws IOException {
+    if (connection.processing) {
+      return;
+    }
+
+    Optional<byte[]> frame = connection.nextFrame();
+    if (frame.isPresent()) {
+      connection.processing = true;
+      dispatch(connection, frame.get());
+    }
+  }
+
+  private TMemoryBuffer buffer(byte[] data) throws TException {
+    TMemoryBuffer buffer = new TMemoryBuffer(data.length);
+    buffer.write(data);
+    return buffer;
+  }
+
+  private static byte[] toBytes(TMemoryBuffer buffer) {
+    byte[] bytes = new byte[buffer.length()];
+    System.arraycopy(buffer.getArray(), 0, bytes, 0, bytes.length);
+    return bytes;
+  }
+
+  private void dispatch(final Connection connection, final byte[] frame) throws IOException {
+    final TMessage message;
+    try {
+      message = protocolFactory.getProtocol(buffer(frame)).readMessageBegin();
+    } catch (TException e) {
+      throw new IOException("Malformed thrift request.", e);
+    }
+
+    final long enqueuedNanos = System.nanoTime();
+    try {
+      workers.execute(new Runnable() {
+        @Override public void run() {
+          queueTime.accumulate(System.nanoTime() - enqueuedNanos);
+          AtomicLong inFlight = inFlightByMethod.getUnchecked(
+              methods.contains(message.name) ? message.name : UNKNOWN_METHOD);
+          inFlight.incrementAndGet();
+          try {
+            TMemoryBuffer out = new TMemoryBuffer(1024);
+            processor.process(
+                protocolFactory.getProtocol(buffer(frame)),
+                protocolFactory.getProtocol(out));
+            completions.add(new Completion(connection, toBytes(out)));
+          } catch (TException e) {
+            LOG.log(Level.WARNING, "Failed to process thrift request: " + e, e);
+            completions.add(new Completion(connection, null));
+          } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Failed to process thrift request: " + e, e);
+            completions.add(new Completion(connection, null));
+          } finally {
+            inFlight.decrementAndGet();
+          }
+          selector.wakeup();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejectedRequests.incrementAndGet();
+      if (message.type == TMessageType.ONEWAY) {
+        connection.processing = false;
+      } else {
+        try {
+          connection.respond(rejection(message));
+        } catch (TException te) {
+          throw new IOException("Failed to encode rejection.", te);
+        }
+      }
+    }
+  }
+
+  private byte[] rejection(TMessage message) throws TException {
+    TMemoryBuffer out = new TMemoryBuffer(128);
+    TProtocol protocol = protocolFactory.getProtocol(out);
+    protocol.writeMessageBegin(new TMessage(message.name, TMessageType.EXCEPTION, message.seqid));
+    new TApplicationException(
+        TApplicationException.INTERNAL_ERROR,
+        "Request rejected, the server is overloaded.").write(protocol);
+    protocol.writeMessageEnd();
+    return toBytes(out);
+  }
+
+  private void complete(Completion completion) {
+    Connection connection = completion.connection;
+    if (!connection.key.isValid()) {
+      return;
+    }
+
+    try {
+      if (completion.response == null) {
+        connection.close();
+      } else if (completion.response.length == 0) {
+        // One-way requests have no response.
+        connection.processing = false;
+        maybeDispatch(connection);
+        connection.updateInterest();
+      } else {
+        connection.respond(completion.response);
+        handleWrite(connection);
+      }
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Closing thrift connection: " + e, e);
+      connection.close();
+    }
+  }
+
+  private void resume(SslConnection connection) {
+    if (!connection.key.isValid()) {
+      return;
+    }
+
+    try {
+      connection.delegating = false;
+      if (!connection.unwrap()) {
+        connection.close();
+        return;
+      }
+      maybeDispatch(connection);
+      // Writes handshake messages and responses held back while the tasks ran.
+      handleWrite(connection);
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Closing thrift connection: " + e, e);
+      connection.close();
+    }
+  }
+
+  private static ByteBuffer ensureRemaining(ByteBuffer buffer, int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return buffer;
+    }
+
+    ByteBuffer grown =
+        ByteBuffer.allocate(Math.max(buffer.position() + bytes, buffer.capacity() * 2));
+    buffer.flip();
+    grown.put(buffer);
+    return grown;
+  }
+
+  private static class Completion {
+    private final Connection connection;
+    @Nullable private final byte[] response;
+
+    Completion(Connection connection, @Nullable byte[] response) {
+      this.connection = connection;
+      this.response = response;
+    }
+  }
+
+  /**
+   * A client connection, accessed only from the selector thread.
+   */
+  private abstract class Connection {
+    protected final SocketChannel channel;
+    protected final SelectionKey key;
+
+    // Application data received from the client, in write mode.
+    protected ByteBuffer appIn = ByteBuffer.allocate(READ_CHUNK_BYTES);
+    // Response frame to send to the client, in read mode.
+    protected ByteBuffer appOut = ByteBuffer.allocate(0);
+
+    // Whether a request from this connection is being processed or responded to.
+    private boolean processing = false;
+    // Whether a response is being written to the client.
+    private boolean responding = false;
+
+    Connection(SocketChannel channel, SelectionKey key) {
+      this.channel = channel;
+      this.key = key;
+    }
+
+    /**
+     * Reads available data from the client.
+     *
+     * @return {@code false} if the client closed the connection.
+     * @throws IOException If the read failed.
+     */
+    abstract boolean read() throws IOException;
+
+    /**
+     * Writes as much pending output as the socket accepts.
+     *
+     * @return {@code true} if all pending output was written.
+     * @throws IOException If the write failed.
+     */
+    abstract boolean write() throws IOException;
+
+    abstract boolean hasPendingOutput();
+
+    Optional<byte[]> nextFrame() throws IOException {
+      if (appIn.position() < FRAME_HEADER_BYTES) {
+        return Optional.absent();
+      }
+
+      int length = appIn.getInt(0);
+      if ((length < 0) || (length > settings.maxFrameBytes)) {
+        throw new IOException("Invalid thrift frame size " + length);
+      }
+
+      int frameBytes = FRAME_HEADER_BYTES + length;
+      if (appIn.position() < frameBytes) {
+        appIn = ensureRemaining(appIn, frameBytes - appIn.position());
+        return Optional.absent();
+      }
+
+      byte[] frame = new byte[length];
+      appIn.flip();
+      appIn.position(FRAME_HEADER_BYTES);
+      appIn.get(frame);
+      appIn.compact();
+      return Optional.of(frame);
+    }
+
+    void respond(byte[] response) {
+      appOut = ByteBuffer.allocate(FRAME_HEADER_BYTES + response.length);
+      appOut.putInt(response.length).put(response).flip();
+      responding = true;
+    }
+
+    void updateInterest() {
+      if (!key.isValid()) {
+        return;
+      }
+
+      if (hasPendingOutput()) {
+        key.interestOps(SelectionKey.OP_WRITE);
+      } else {
+        key.interestOps(processing ? 0 : SelectionKey.OP_READ);
+      }
+    }
+
+    void close() {
+      key.cancel();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOG.log(Level.FINE, "Failed to close thrift connection: " + e, e);
+      }
+    }
+  }
+
+  private class PlainConnection extends Connection {
+    PlainConnection(SocketChannel channel, SelectionKey key) {
+      super(channel, key);
+    }
+
+    @Override boolean read() throws IOException {
+      appIn = ensureRemaining(appIn, READ_CHUNK_BYTES);
+      return channel.read(appIn) >= 0;
+    }
+
+    @Override boolean write() throws IOException {
+      while (appOut.hasRemaining()) {
+        if (channel.write(appOut) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override boolean hasPendingOutput() {
+      return appOut.hasRemaining();
+    }
+  }
+
+  private class SslConnection extends Connection {
+    private final SSLEngine engine;
+    // Encrypted data received from the client, in write mode.
+    private ByteBuffer netIn;
+    // Encrypted data to send to the client, in write mode.
+    private ByteBuffer netOut;
+    // Whether the engine's delegated tasks are running, during which the connection is idle.
+    private boolean delegating = false;
+
+    SslConnection(SocketChannel channel, SelectionKey key, SSLEngine engine) {
+      super(channel, key);
+      this.engine = engine;
+      this.netIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+      this.netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+    }
+
+    private void delegateTasks() {
+      final List<Runnable> tasks = Lists.newArrayList();
+      Runnable task;
+      while ((task = engine.getDelegatedTask()) != null) {
+        tasks.add(task);
+      }
+      if (tasks.isEmpty()) {
+        return;
+      }
+
+      delegating = true;
+      try {
+        sslTasks.execute(new Runnable() {
+          @Override public void run() {
+            for (Runnable delegated : tasks) {
+              delegated.run();
+            }
+            resumptions.add(SslConnection.this);
+            selector.wakeup();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // The server is shutting down.
+        close();
+      }
+    }
+
+    private boolean flushNetOut() throws IOException {
+      netOut.flip();
+      try {
+        while (netOut.hasRemaining()) {
+          if (channel.write(netOut) == 0) {
+            return false;
+          }
+        }
+        return true;
+      } finally {
+        netOut.compact();
+      }
+    }
+
+    private SSLEngineResult wrap(ByteBuffer source) throws IOException {
+      netOut = ensureRemaining(netOut, engine.getSession().getPacketBufferSize());
+      SSLEngineResult result = engine.wrap(source, netOut);
+      if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+        delegateTasks();
+      }
+      if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+        throw new IOException("SSL connection closed.");
+      }
+      return result;
+    }
+
+    @Override boolean read() throws IOException {
+      netIn = ensureRemaining(netIn, engine.getSession().getPacketBufferSize());
+      if (channel.read(netIn) < 0) {
+        return false;
+      }
+      return delegating || unwrap();
+    }
+
+    /**
+     * Decrypts buffered data from the client, until more data is needed or the engine's
+     * delegated tasks must run.
+     *
+     * @return {@code false} if the client closed the connection.
+     * @throws IOException If the data could not be decrypted.
+     */
+    boolean unwrap() throws IOException {
+      netIn.flip();
+      try {
+        while (!delegating) {
+          appIn = ensureRemaining(appIn, engine.getSession().getApplicationBufferSize());
+          SSLEngineResult result = engine.unwrap(netIn, appIn);
+          if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+            return false;
+          }
+          if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+            delegateTasks();
+            break;
+          }
+
+          // Handshake messages are written as soon as they are produced.
+          while (!delegating && (engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP)) {
+            if (wrap(ByteBuffer.allocate(0)).bytesProduced() == 0) {
+              break;
+            }
+          }
+          flushNetOut();
+
+          if ((result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW)
+              || ((result.bytesConsumed() == 0) && (result.bytesProduced() == 0))) {
+            break;
+          }
+        }
+        return true;
+      } finally {
+        netIn.compact();
+      }
+    }
+
+    @Override boolean write() throws IOException {
+      while (true) {
+        if (!flushNetOut() || delegating) {
+          return false;
+        }
+        if (!appOut.hasRemaining() && (engine.getHandshakeStatus() != HandshakeStatus.NEED_WRAP)) {
+          return true;
+        }
+        if (wrap(appOut).bytesProduced() == 0) {
+          return !delegating && !appOut.hasRemaining();
+        }
+      }
+    }
+
+    @Override boolean hasPendingOutput() {
+      return (netOut.position() > 0) || appOut.hasRemaining();
+    }
+
+    @Override void updateInterest() {
+      if (delegating) {
+        if (key.isValid()) {
+          key.interestOps(0);
+        }
+      } else {
+        super.updateInterest();
+      }
+    }
+
+    @Override void close() {
+      engine.closeOutbound();
+      super.close();
+    }
+  }
+}
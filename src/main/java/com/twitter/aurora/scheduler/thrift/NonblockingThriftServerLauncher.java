@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.thrift;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+import javax.net.ssl.SSLContext;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+
+import com.twitter.aurora.gen.AuroraAdmin;
+import com.twitter.aurora.gen.AuroraAdmin.Iface;
+import com.twitter.aurora.scheduler.thrift.NonblockingThriftServer.Settings;
+import com.twitter.common.application.modules.LifecycleModule.ServiceRunner;
+import com.twitter.common.application.modules.LocalServiceRegistry.LocalService;
+import com.twitter.common.base.Command;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Service launcher that starts the scheduler thrift interface on a {@link NonblockingThriftServer},
+ * and registers it as a primary service for the application.
+ */
+class NonblockingThriftServerLauncher implements ServiceRunner {
+
+  private static final Logger LOG =
+      Logger.getLogger(NonblockingThriftServerLauncher.class.getName());
+
+  private final Iface schedulerThriftInterface;
+  private final ThriftConfiguration configuration;
+  private final Settings settings;
+
+  @Inject
+  NonblockingThriftServerLauncher(
+      Iface schedulerThriftInterface,
+      ThriftConfiguration configuration,
+      Settings settings) {
+
+    this.schedulerThriftInterface = checkNotNull(schedulerThriftInterface);
+    this.configuration = checkNotNull(configuration);
+    this.settings = checkNotNull(settings);
+  }
+
+  @Override
+  public LocalService launch() {
+    ImmutableSet.Builder<String> methods = ImmutableSet.builder();
+    for (Method method : Iface.class.getMethods()) {
+      methods.add(method.getName());
+    }
+
+    Optional<SSLContext> sslContext = ThriftServerLauncher.createSslContext(configuration);
+    if (!sslContext.isPresent()) {
+      LOG.warning("Running Thrift Server without SSL.");
+    }
+
+    final NonblockingThriftServer server = new NonblockingThriftServer(
+        new AuroraAdmin.Processor(schedulerThriftInterface),
+        methods.build(),
+        settings,
+        sslContext);
+    int port;
+    try {
+      port = server.start(configuration.getServingPort());
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to start thrift server.", e);
+    }
+    LOG.info("Non-blocking thrift server listening on port " + port);
+
+    Command shutdown = new Command() {
+      @Override public void execute() {
+        LOG.info("Stopping thrift server.");
+        server.shutdown();
+      }
+    };
+
+    return LocalService.primaryService(port, shutdown);
+  }
+}
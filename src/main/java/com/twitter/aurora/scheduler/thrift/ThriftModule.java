@@ -20,9 +20,15 @@ import javax.inject.Singleton;
 import com.google.inject.AbstractModule;
 
 import com.twitter.aurora.gen.AuroraAdmin;
+import com.twitter.aurora.scheduler.thrift.NonblockingThriftServer.Settings;
 import com.twitter.aurora.scheduler.thrift.aop.AopModule;
 import com.twitter.common.application.http.Registration;
 import com.twitter.common.application.modules.LifecycleModule;
+import com.twitter.common.args.Arg;
+import com.twitter.common.args.CmdLine;
+import com.twitter.common.args.constraints.Positive;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
 import com.twitter.common.thrift.ThriftServer;
 
 /**
@@ -30,11 +36,40 @@ import com.twitter.common.thrift.ThriftServer;
  */
 public class ThriftModule extends AbstractModule {
 
+  @CmdLine(name = "thrift_nonblocking_server",
+      help = "Serve the thrift API from a selector thread and a bounded worker pool.  Clients must "
+          + "use the framed transport.")
+  private static final Arg<Boolean> NONBLOCKING_SERVER = Arg.create(false);
+
+  @Positive
+  @CmdLine(name = "thrift_worker_threads",
+      help = "Number of threads processing thrift requests, when using the non-blocking server.")
+  private static final Arg<Integer> WORKER_THREADS = Arg.create(16);
+
+  @Positive
+  @CmdLine(name = "thrift_max_queued_requests",
+      help = "Number of thrift requests that may wait for a worker thread before further requests "
+          + "are rejected, when using the non-blocking server.")
+  private static final Arg<Integer> MAX_QUEUED_REQUESTS = Arg.create(1000);
+
+  @CmdLine(name = "thrift_max_frame_size",
+      help = "Largest thrift request accepted, when using the non-blocking server.")
+  private static final Arg<Amount<Long, Data>> MAX_FRAME_SIZE =
+      Arg.create(Amount.of(16L, Data.MB));
+
   @Override
   protected void configure() {
     bind(AuroraAdmin.Iface.class).to(SchedulerThriftInterface.class);
-    bind(ThriftServer.class).to(SchedulerThriftServer.class).in(Singleton.class);
-    LifecycleModule.bindServiceRunner(binder(), ThriftServerLauncher.class);
+    if (NONBLOCKING_SERVER.get()) {
+      bind(Settings.class).toInstance(new Settings(
+          WORKER_THREADS.get(),
+          MAX_QUEUED_REQUESTS.get(),
+          MAX_FRAME_SIZE.get().as(Data.BYTES).intValue()));
+      LifecycleModule.bindServiceRunner(binder(), NonblockingThriftServerLauncher.class);
+    } else {
+      bind(ThriftServer.class).to(SchedulerThriftServer.class).in(Singleton.class);
+      LifecycleModule.bindServiceRunner(binder(), ThriftServerLauncher.class);
+    }
 
     Registration.registerServlet(binder(), "/api", SchedulerAPIServlet.class, true);
 
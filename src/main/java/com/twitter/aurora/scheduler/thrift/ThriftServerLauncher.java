@@ -28,6 +28,7 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 
 import com.twitter.aurora.gen.AuroraAdmin;
@@ -51,7 +52,8 @@ class ThriftServerLauncher implements ServiceRunner {
   private final ThriftConfiguration configuration;
 
   // Security is enforced via file permissions, not via this password, for what it's worth.
-  private static final String SSL_KEYFILE_PASSWORD = "MesosKeyStorePassword";
+  @VisibleForTesting
+  static final String SSL_KEYFILE_PASSWORD = "MesosKeyStorePassword";
 
   private final Iface schedulerThriftInterface;
   private final ThriftServer schedulerThriftServer;
@@ -86,24 +88,44 @@ class ThriftServerLauncher implements ServiceRunner {
     return LocalService.primaryService(schedulerThriftServer.getListeningPort(), shutdown);
   }
 
-  private ServerSocket getServerSocket() {
+  /**
+   * Creates an SSL context from the configured key file, if SSL is enabled.
+   *
+   * @param configuration Thrift server configuration.
+   * @return The SSL context, or absent if SSL is not enabled.
+   */
+  static Optional<SSLContext> createSslContext(ThriftConfiguration configuration) {
     try {
       Optional<? extends InputStream> sslKeyStream = configuration.getSslKeyStream();
       if (!sslKeyStream.isPresent()) {
-        LOG.warning("Running Thrift Server without SSL.");
-        return new ServerSocket(configuration.getServingPort());
-      } else {
-        // TODO(Kevin Sweeney): Add helper to perform this keyfile import.
-        KeyStore ks = KeyStore.getInstance("JKS");
-        ks.load(sslKeyStream.get(), SSL_KEYFILE_PASSWORD.toCharArray());
+        return Optional.absent();
+      }
 
-        KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
-        kmf.init(ks, SSL_KEYFILE_PASSWORD.toCharArray());
+      // TODO(Kevin Sweeney): Add helper to perform this keyfile import.
+      KeyStore ks = KeyStore.getInstance("JKS");
+      ks.load(sslKeyStream.get(), SSL_KEYFILE_PASSWORD.toCharArray());
 
-        SSLContext ctx = SSLContext.getInstance("TLS");
-        ctx.init(kmf.getKeyManagers(), null, null);
+      KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
+      kmf.init(ks, SSL_KEYFILE_PASSWORD.toCharArray());
+
+      SSLContext ctx = SSLContext.getInstance("TLS");
+      ctx.init(kmf.getKeyManagers(), null, null);
+      return Optional.of(ctx);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read key file.", e);
+    } catch (GeneralSecurityException e) {
+      throw new RuntimeException("SSL setup failed.", e);
+    }
+  }
 
-        SSLServerSocketFactory ssf = ctx.getServerSocketFactory();
+  private ServerSocket getServerSocket() {
+    Optional<SSLContext> sslContext = createSslContext(configuration);
+    try {
+      if (!sslContext.isPresent()) {
+        LOG.warning("Running Thrift Server without SSL.");
+        return new ServerSocket(configuration.getServingPort());
+      } else {
+        SSLServerSocketFactory ssf = sslContext.get().getServerSocketFactory();
         SSLServerSocket serverSocket = (SSLServerSocket) ssf.createServerSocket(
             configuration.getServingPort());
         serverSocket.setEnabledCipherSuites(serverSocket.getSupportedCipherSuites());
@@ -111,9 +133,7 @@ class ThriftServerLauncher implements ServiceRunner {
         return serverSocket;
       }
     } catch (IOException e) {
-      throw new RuntimeException("Failed to read key file.", e);
-    } catch (GeneralSecurityException e) {
-      throw new RuntimeException("SSL setup failed.", e);
+      throw new RuntimeException("Failed to open server socket.", e);
     }
   }
 }
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.thrift.aop;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import com.twitter.aurora.auth.CapabilityValidator;
+import com.twitter.aurora.auth.CapabilityValidator.AuditCheck;
+import com.twitter.aurora.auth.CapabilityValidator.Capability;
+import com.twitter.aurora.auth.SessionValidator.AuthFailedException;
+import com.twitter.aurora.gen.AuroraAdmin;
+import com.twitter.aurora.gen.ResponseCode;
+import com.twitter.aurora.gen.SessionKey;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.stats.SlidingStats;
+import com.twitter.common.stats.Stats;
+import com.twitter.common.util.Clock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A method interceptor that limits the rate and concurrency of thrift calls, so that a single
+ * role can not starve others of the scheduler.
+ * <p>
+ * Each role has a token bucket per method, which rejects calls once the role exceeds the method's
+ * rate.  Calls admitted by the buckets then wait for a slot in either the read-only or the
+ * mutation lane, and are rejected if no slot frees up within the maximum queueing time.
+ * Administrative calls bypass both the buckets and the lanes, so they are always served first.
+ * <p>
+ * Roles are named by clients, so only roles known to storage are tracked individually.  Calls
+ * naming no role, or a role unknown to storage, share the budget of a single fallback role.  A call
+ * carrying a session is only charged to the role it names once the session is authenticated for
+ * that role, otherwise it is charged to a budget shared by all unauthenticated calls, so callers
+ * can not exhaust the budget of a role they do not act for.
+ */
+class AdmissionControlInterceptor implements MethodInterceptor {
+
+  private static final long BUCKET_IDLE_MINS = 10;
+
+  @VisibleForTesting
+  static final String UNAUTHENTICATED_ROLE = "unauthenticated";
+
+  private static final Set<String> ADMIN_METHODS;
+  static {
+    ImmutableSet.Builder<String> adminMethods = ImmutableSet.builder();
+    for (Method method : AuroraAdmin.Iface.class.getDeclaredMethods()) {
+      adminMethods.add(method.getName());
+    }
+    ADMIN_METHODS = adminMethods.build();
+  }
+
+  /**
+   * Admission limits.  Rates are calls per second for each role and method, a rate of zero
+   * disables the limit.
+   */
+  static class Settings {
+    private final double readRate;
+    private final double mutationRate;
+    private final Map<String, Double> methodRates;
+    private final int readConcurrency;
+    private final int mutationConcurrency;
+    private final Amount<Long, Time> maxQueueTime;
+
+    Settings(
+        double readRate,
+        double mutationRate,
+        Map<String, Double> methodRates,
+        int readConcurrency,
+        int mutationConcurrency,
+        Amount<Long, Time> maxQueueTime) {
+
+      checkArgument(readRate >= 0);
+      checkArgument(mutationRate >= 0);
+      checkArgument(readConcurrency > 0);
+      checkArgument(mutationConcurrency > 0);
+      this.readRate = readRate;
+      this.mutationRate = mutationRate;
+      this.methodRates = ImmutableMap.copyOf(methodRates);
+      this.readConcurrency = readConcurrency;
+      this.mutationConcurrency = mutationConcurrency;
+      this.maxQueueTime = checkNotNull(maxQueueTime);
+    }
+  }
+
+  private final Settings settings;
+  private final Clock clock;
+  private final Semaphore readLane;
+  private final Semaphore mutationLane;
+
+  @Inject private KnownRoles knownRoles;
+  @Inject private CapabilityValidator capabilityValidator;
+
+  // Buckets of idle roles are dropped, a recreated bucket starts full.
+  private final LoadingCache<RateKey, TokenBucket> buckets = CacheBuilder.newBuilder()
+      .expireAfterAccess(BUCKET_IDLE_MINS, TimeUnit.MINUTES)
+      .build(new CacheLoader<RateKey, TokenBucket>() {
+        @Override public TokenBucket load(RateKey key) {
+          return new TokenBucket(getRate(key.method), clock);
+        }
+      });
+
+  // Stats are keyed by roles validated against storage, so their number is bounded.
+  private final LoadingCache<String, AtomicLong> rejections =
+      CacheBuilder.newBuilder().build(new CacheLoader<String, AtomicLong>() {
+        @Override public AtomicLong load(String role) {
+          return Stats.exportLong(
+              Stats.normalizeName(String.format("thrift_admission_%s_rejected", role)));
+        }
+      });
+
+  private final LoadingCache<String, SlidingStats> queueTimes =
+      CacheBuilder.newBuilder().build(new CacheLoader<String, SlidingStats>() {
+        @Override public SlidingStats load(String role) {
+          return new SlidingStats(
+              Stats.normalizeName(String.format("thrift_admission_%s_queue", role)),
+              "nanos");
+        }
+      });
+
+  AdmissionControlInterceptor(Settings settings) {
+    this(settings, Clock.SYSTEM_CLOCK);
+  }
+
+  @VisibleForTesting
+  AdmissionControlInterceptor(Settings settings, Clock clock) {
+    this.settings = checkNotNull(settings);
+    this.clock = checkNotNull(clock);
+    this.readLane = new Semaphore(settings.readConcurrency, true);
+    this.mutationLane = new Semaphore(settings.mutationConcurrency, true);
+  }
+
+  private double getRate(String method) {
+    Double override = settings.methodRates.get(method);
+    if (override != null) {
+      return override;
+    }
+    return Interceptors.READ_ONLY_METHODS.contains(method)
+        ? settings.readRate
+        : settings.mutationRate;
+  }
+
+  @Nullable
+  private static SessionKey getSessionKey(Object[] arguments) {
+    for (Object argument : arguments) {
+      if (argument instanceof SessionKey) {
+        return (SessionKey) argument;
+      }
+    }
+    return null;
+  }
+
+  private boolean isAuthenticated(SessionKey session, String role) {
+    try {
+      capabilityValidator.checkAuthenticated(session, ImmutableSet.of(role));
+      return true;
+    } catch (AuthFailedException e) {
+      try {
+        // Administrators may act for any role.
+        capabilityValidator.checkAuthorized(session, Capability.ROOT, AuditCheck.NONE);
+        return true;
+      } catch (AuthFailedException rootFailed) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Finds the role whose budget a call is charged to.
+   *
+   * @param method Invoked method.
+   * @param arguments Arguments of the invocation.
+   * @return The role named by the call if it is known and, for calls carrying a session, the
+   *     session is authenticated for it, otherwise a fallback role.
+   */
+  private String getBudgetRole(Method method, Object[] arguments) {
+    String role = knownRoles.validate(Interceptors.getRole(method, arguments));
+    SessionKey session = getSessionKey(arguments);
+    if ((session == null)
+        || Interceptors.UNKNOWN_ROLE.equals(role)
+        || (getRate(method.getName()) == 0)) {
+
+      return role;
+    }
+
+    return isAuthenticated(session, role) ? role : UNAUTHENTICATED_ROLE;
+  }
+
+  private Object reject(Method method, String role, String reason) throws Exception {
+    rejections.getUnchecked(role).incrementAndGet();
+    return Interceptors.properlyTypedResponse(
+        method,
+        ResponseCode.ERROR,
+        String.format("%s for role %s, calls to %s are being rejected.",
+            reason, role, method.getName()));
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    Method method = invocation.getMethod();
+    if (ADMIN_METHODS.contains(method.getName())) {
+      return invocation.proceed();
+    }
+
+    checkNotNull(knownRoles, "Known roles have not yet been set.");
+    checkNotNull(capabilityValidator, "Capability validator has not yet been set.");
+    String role = getBudgetRole(method, invocation.getArguments());
+    if (!buckets.getUnchecked(new RateKey(role, method.getName())).tryAcquire()) {
+      return reject(method, role, "Rate limit exceeded");
+    }
+
+    Semaphore lane =
+        Interceptors.READ_ONLY_METHODS.contains(method.getName()) ? readLane : mutationLane;
+    long start = System.nanoTime();
+    boolean admitted = lane.tryAcquire(
+        settings.maxQueueTime.as(Time.NANOSECONDS),
+        TimeUnit.NANOSECONDS);
+    queueTimes.getUnchecked(role).accumulate(System.nanoTime() - start);
+    if (!admitted) {
+      return reject(method, role, "Scheduler is overloaded");
+    }
+
+    try {
+      return invocation.proceed();
+    } finally {
+      lane.release();
+    }
+  }
+
+  private static class RateKey {
+    private final String role;
+    private final String method;
+
+    RateKey(String role, String method) {
+      this.role = role;
+      this.method = method;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(role, method);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof RateKey)) {
+        return false;
+      }
+
+      RateKey other = (RateKey) o;
+      return role.equals(other.role) && method.equals(other.method);
+    }
+  }
+
+  /**
+   * A token bucket that holds up to one second of calls at its rate.
+   */
+  private static class TokenBucket {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double rate;
+    private final double capacity;
+    private final Clock clock;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(double rate, Clock clock) {
+      this.rate = rate;
+      this.capacity = Math.max(1, rate);
+      this.clock = clock;
+      this.tokens = capacity;
+      this.lastRefillNanos = clock.nowNanos();
+    }
+
+    synchronized boolean tryAcquire() {
+      if (rate == 0) {
+        return true;
+      }
+
+      long now = clock.nowNanos();
+      tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * rate / NANOS_PER_SECOND);
+      lastRefillNanos = now;
+      if (tokens < 1) {
+        return false;
+      }
+      tokens--;
+      return true;
+    }
+  }
+}
@@ -24,6 +24,7 @@ import javax.inject.Singleton;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
@@ -44,9 +45,16 @@ import com.twitter.aurora.GuiceUtils;
 import com.twitter.aurora.auth.CapabilityValidator;
 import com.twitter.aurora.gen.AuroraAdmin;
 import com.twitter.aurora.gen.AuroraSchedulerManager;
+import com.twitter.aurora.scheduler.events.PubsubEventModule;
+import com.twitter.aurora.scheduler.storage.Storage;
 import com.twitter.aurora.scheduler.thrift.auth.DecoratedThrift;
+import com.twitter.common.application.ShutdownRegistry;
 import com.twitter.common.args.Arg;
 import com.twitter.common.args.CmdLine;
+import com.twitter.common.args.constraints.NotNegative;
+import com.twitter.common.args.constraints.Positive;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
 
 /**
  * Binding module for AOP-style decorations of the thrift API.
@@ -60,21 +68,92 @@ public class AopModule extends AbstractModule {
       help = "Allow new jobs to be created, if false all job creation requests will be denied.")
   private static final Arg<Boolean> ENABLE_JOB_CREATION = Arg.create(true);
 
+  @CmdLine(name = "thrift_admission_control",
+      help = "Limit the rate and concurrency of thrift calls made on behalf of each role.")
+  private static final Arg<Boolean> ADMISSION_CONTROL = Arg.create(false);
+
+  @NotNegative
+  @CmdLine(name = "thrift_role_read_rate",
+      help = "Calls per second each role may make to each read-only thrift method, when admission "
+          + "control is enabled.  Zero disables the limit.")
+  private static final Arg<Double> ROLE_READ_RATE = Arg.create(50.0);
+
+  @NotNegative
+  @CmdLine(name = "thrift_role_mutation_rate",
+      help = "Calls per second each role may make to each mutating thrift method, when admission "
+          + "control is enabled.  Zero disables the limit.")
+  private static final Arg<Double> ROLE_MUTATION_RATE = Arg.create(10.0);
+
+  @CmdLine(name = "thrift_role_method_rates",
+      help = "Per-method overrides of the calls per second each role may make, when admission "
+          + "control is enabled.")
+  private static final Arg<Map<String, Double>> ROLE_METHOD_RATES =
+      Arg.<Map<String, Double>>create(ImmutableMap.<String, Double>of());
+
+  @Positive
+  @CmdLine(name = "thrift_read_lane_concurrency",
+      help = "Read-only thrift calls that may run concurrently, when admission control is enabled.")
+  private static final Arg<Integer> READ_LANE_CONCURRENCY = Arg.create(16);
+
+  @Positive
+  @CmdLine(name = "thrift_mutation_lane_concurrency",
+      help = "Mutating thrift calls that may run concurrently, when admission control is enabled.")
+  private static final Arg<Integer> MUTATION_LANE_CONCURRENCY = Arg.create(8);
+
+  @CmdLine(name = "thrift_admission_max_queue_time",
+      help = "Maximum time a thrift call waits for its lane before it is rejected, when admission "
+          + "control is enabled.")
+  private static final Arg<Amount<Long, Time>> ADMISSION_MAX_QUEUE_TIME =
+      Arg.create(Amount.of(1L, Time.SECONDS));
+
+  @CmdLine(name = "thrift_role_latency_stats",
+      help = "Export thrift call latency percentiles for each role known to storage.")
+  private static final Arg<Boolean> ROLE_LATENCY_STATS = Arg.create(false);
+
+  @Positive
+  @CmdLine(name = "thrift_audit_log_buffer_size",
+      help = "Number of thrift calls that may wait to be written to the audit log.")
+  private static final Arg<Integer> AUDIT_LOG_BUFFER_SIZE = Arg.create(10000);
+
+  @CmdLine(name = "thrift_audit_read_sample_rate",
+      help = "Fraction of read-only thrift calls written to the audit log, between 0 and 1.  "
+          + "Mutating calls are always logged.")
+  private static final Arg<Double> AUDIT_READ_SAMPLE_RATE = Arg.create(1.0);
+
   private static final Matcher<? super Class<?>> THRIFT_IFACE_MATCHER =
       Matchers.subclassesOf(AuroraAdmin.Iface.class)
           .and(Matchers.annotatedWith(DecoratedThrift.class));
 
   private final Map<String, Boolean> toggledMethods;
+  private final Optional<AdmissionControlInterceptor.Settings> admissionSettings;
 
   public AopModule() {
-    this(ImmutableMap.of(
-        "createJob", ENABLE_JOB_CREATION.get(),
-        "acquireLock", ENABLE_UPDATES.get()));
+    this(
+        ImmutableMap.of(
+            "createJob", ENABLE_JOB_CREATION.get(),
+            "acquireLock", ENABLE_UPDATES.get()),
+        ADMISSION_CONTROL.get()
+            ? Optional.of(new AdmissionControlInterceptor.Settings(
+                ROLE_READ_RATE.get(),
+                ROLE_MUTATION_RATE.get(),
+                ROLE_METHOD_RATES.get(),
+                READ_LANE_CONCURRENCY.get(),
+                MUTATION_LANE_CONCURRENCY.get(),
+                ADMISSION_MAX_QUEUE_TIME.get()))
+            : Optional.<AdmissionControlInterceptor.Settings>absent());
   }
 
   @VisibleForTesting
   AopModule(Map<String, Boolean> toggledMethods) {
+    this(toggledMethods, Optional.<AdmissionControlInterceptor.Settings>absent());
+  }
+
+  private AopModule(
+      Map<String, Boolean> toggledMethods,
+      Optional<AdmissionControlInterceptor.Settings> admissionSettings) {
+
     this.toggledMethods = ImmutableMap.copyOf(toggledMethods);
+    this.admissionSettings = admissionSettings;
   }
 
   private static final Function<Method, String> GET_NAME = new Function<Method, String>() {
@@ -86,14 +165,20 @@ public class AopModule extends AbstractModule {
   @Override
   protected void configure() {
     requireBinding(CapabilityValidator.class);
+    requireBinding(Storage.class);
+    requireBinding(ShutdownRegistry.class);
+    bind(KnownRoles.class).in(Singleton.class);
+    bind(KnownRoles.Refresher.class).in(Singleton.class);
+    PubsubEventModule.bindSubscriber(binder(), KnownRoles.Refresher.class);
 
     // Layer ordering:
-    // Log -> CapabilityValidator -> FeatureToggle -> StatsExporter -> APIVersion ->
-    // SchedulerThriftInterface
+    // Log -> CapabilityValidator -> FeatureToggle -> AdmissionControl -> StatsExporter ->
+    // APIVersion -> SchedulerThriftInterface
 
     // TODO(Sathya): Consider using provider pattern for constructing interceptors to facilitate
     // unit testing without the creation of Guice injectors.
-    bindThriftDecorator(new LoggingInterceptor());
+    bindThriftDecorator(
+        new LoggingInterceptor(AUDIT_LOG_BUFFER_SIZE.get(), AUDIT_READ_SAMPLE_RATE.get()));
 
     // Note: it's important that the capability interceptor is only applied to AuroraAdmin.Iface
     // methods, and does not pick up methods on AuroraSchedulerManager.Iface.
@@ -126,7 +211,10 @@ public class AopModule extends AbstractModule {
       }
     });
     bindThriftDecorator(new FeatureToggleInterceptor());
-    bindThriftDecorator(new ThriftStatsExporterInterceptor());
+    if (admissionSettings.isPresent()) {
+      bindThriftDecorator(new AdmissionControlInterceptor(admissionSettings.get()));
+    }
+    bindThriftDecorator(new ThriftStatsExporterInterceptor(ROLE_LATENCY_STATS.get()));
     bindThriftDecorator(new APIVersionInterceptor());
   }
 
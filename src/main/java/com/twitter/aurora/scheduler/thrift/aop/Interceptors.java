@@ -17,11 +17,21 @@ package com.twitter.aurora.scheduler.thrift.aop;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Set;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
 
+import com.twitter.aurora.gen.AddInstancesConfig;
+import com.twitter.aurora.gen.JobConfiguration;
+import com.twitter.aurora.gen.JobKey;
+import com.twitter.aurora.gen.Lock;
+import com.twitter.aurora.gen.LockKey;
 import com.twitter.aurora.gen.ResponseCode;
+import com.twitter.aurora.gen.TaskQuery;
 
 /**
  * Utility class for functions useful when implementing an interceptor on the thrift interface.
@@ -34,6 +44,19 @@ final class Interceptors {
 
   private static final Logger LOG = Logger.getLogger(Interceptors.class.getName());
 
+  static final String UNKNOWN_ROLE = "unknown";
+
+  // Methods that do not modify scheduler state.
+  static final Set<String> READ_ONLY_METHODS = ImmutableSet.of(
+      "getTasksStatus",
+      "getJobs",
+      "getQuota",
+      "getVersion",
+      "populateJobConfig");
+
+  // Methods whose first argument is a role name.
+  private static final Set<String> ROLE_ARGUMENT_METHODS = ImmutableSet.of("getJobs", "getQuota");
+
   static Object properlyTypedResponse(Method method, ResponseCode responseCode, String message)
       throws IllegalAccessException, InstantiationException {
 
@@ -44,6 +67,65 @@ final class Interceptors {
     return response;
   }
 
+  @Nullable
+  private static String getRole(@Nullable JobKey key) {
+    return (key == null) ? null : key.getRole();
+  }
+
+  @Nullable
+  private static String getArgumentRole(Object argument) {
+    if (argument instanceof JobKey) {
+      return getRole((JobKey) argument);
+    } else if (argument instanceof JobConfiguration) {
+      JobConfiguration config = (JobConfiguration) argument;
+      if (config.isSetKey()) {
+        return getRole(config.getKey());
+      } else if (config.isSetOwner()) {
+        return config.getOwner().getRole();
+      }
+    } else if (argument instanceof TaskQuery) {
+      TaskQuery query = (TaskQuery) argument;
+      if (query.isSetOwner()) {
+        return query.getOwner().getRole();
+      }
+    } else if (argument instanceof AddInstancesConfig) {
+      return getRole(((AddInstancesConfig) argument).getKey());
+    } else if (argument instanceof LockKey || argument instanceof Lock) {
+      LockKey lockKey =
+          (argument instanceof Lock) ? ((Lock) argument).getKey() : (LockKey) argument;
+      if ((lockKey != null) && lockKey.isSetJob()) {
+        return getRole(lockKey.getJob());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the role a thrift call acts on, from the call's arguments.  This is called for every
+   * thrift call, so it avoids allocating.
+   *
+   * @param method Invoked method.
+   * @param arguments Arguments of the invocation.
+   * @return The role, or {@link #UNKNOWN_ROLE} if no argument identifies a role.
+   */
+  static String getRole(Method method, Object[] arguments) {
+    if (ROLE_ARGUMENT_METHODS.contains(method.getName())
+        && (arguments.length > 0)
+        && (arguments[0] instanceof String)) {
+
+      return (String) arguments[0];
+    }
+
+    for (Object argument : arguments) {
+      String role = getArgumentRole(argument);
+      if (role != null) {
+        return role;
+      }
+    }
+
+    return UNKNOWN_ROLE;
+  }
+
   private static <T> void invoke(
       Class<?> type,
       Object obj,
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.thrift.aop;
+
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.twitter.aurora.scheduler.base.JobKeys;
+import com.twitter.aurora.scheduler.base.Query;
+import com.twitter.aurora.scheduler.base.Tasks;
+import com.twitter.aurora.scheduler.events.PubsubEvent.EventSubscriber;
+import com.twitter.aurora.scheduler.events.PubsubEvent.StorageStarted;
+import com.twitter.aurora.scheduler.storage.Storage;
+import com.twitter.aurora.scheduler.storage.Storage.StoreProvider;
+import com.twitter.aurora.scheduler.storage.Storage.Work;
+import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.util.concurrent.ExecutorServiceShutdown;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Roles that have tasks or quota in storage.
+ * <p>
+ * Roles named in thrift calls are supplied by clients, so interceptors that keep state or export
+ * stats per role use this to map roles unknown to the scheduler to a single fallback role, which
+ * keeps the number of roles tracked bounded.  The roles are rebuilt from storage in the
+ * background, so validating a role never reads storage.
+ */
+class KnownRoles {
+
+  private volatile Set<String> roles;
+
+  @Inject
+  KnownRoles() {
+    this(ImmutableSet.<String>of());
+  }
+
+  @VisibleForTesting
+  KnownRoles(Set<String> roles) {
+    this.roles = ImmutableSet.copyOf(roles);
+  }
+
+  void update(Set<String> newRoles) {
+    roles = ImmutableSet.copyOf(newRoles);
+  }
+
+  /**
+   * Maps a client-supplied role to a role that may be used to key per-role state.
+   *
+   * @param role Role named by a client.
+   * @return {@code role} if it is known to storage, otherwise {@link Interceptors#UNKNOWN_ROLE}.
+   */
+  String validate(String role) {
+    return roles.contains(role) ? role : Interceptors.UNKNOWN_ROLE;
+  }
+
+  /**
+   * Periodically rebuilds the known roles from storage once storage has started.
+   */
+  static class Refresher implements EventSubscriber {
+    private static final Logger LOG = Logger.getLogger(Refresher.class.getName());
+
+    private static final long REFRESH_INTERVAL_SECS = 60;
+    private static final Amount<Long, Time> SHUTDOWN_GRACE_PERIOD = Amount.of(1L, Time.SECONDS);
+
+    private final KnownRoles knownRoles;
+    private final Storage storage;
+    private final ScheduledExecutorService executor;
+
+    @Inject
+    Refresher(KnownRoles knownRoles, Storage storage, ShutdownRegistry shutdownRegistry) {
+      this(knownRoles, storage, createExecutor(shutdownRegistry));
+    }
+
+    @VisibleForTesting
+    Refresher(KnownRoles knownRoles, Storage storage, ScheduledExecutorService executor) {
+      this.knownRoles = checkNotNull(knownRoles);
+      this.storage = checkNotNull(storage);
+      this.executor = checkNotNull(executor);
+    }
+
+    private static ScheduledExecutorService createExecutor(ShutdownRegistry shutdownRegistry) {
+      ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("KnownRoles-%d")
+              .setDaemon(true)
+              .build());
+      shutdownRegistry.addAction(new ExecutorServiceShutdown(executor, SHUTDOWN_GRACE_PERIOD));
+      return executor;
+    }
+
+    @Subscribe
+    public void storageStarted(StorageStarted event) {
+      executor.scheduleWithFixedDelay(
+          new Runnable() {
+            @Override public void run() {
+              try {
+                refresh();
+              } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Failed to refresh known roles: " + e, e);
+              }
+            }
+          },
+          0,
+          REFRESH_INTERVAL_SECS,
+          TimeUnit.SECONDS);
+    }
+
+    @VisibleForTesting
+    void refresh() {
+      knownRoles.update(storage.weaklyConsistentRead(new Work.Quiet<Set<String>>() {
+        @Override public Set<String> apply(StoreProvider storeProvider) {
+          return ImmutableSet.<String>builder()
+              .addAll(FluentIterable
+                  .from(storeProvider.getTaskStore().fetchTasks(Query.unscoped()))
+                  .transform(Tasks.SCHEDULED_TO_JOB_KEY)
+                  .transform(JobKeys.TO_ROLE))
+              .addAll(storeProvider.getQuotaStore().fetchQuotas().keySet())
+              .build();
+        }
+      }));
+    }
+  }
+}
@@ -15,32 +15,54 @@
  */
 package com.twitter.aurora.scheduler.thrift.aop;
 
+import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.inject.Inject;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
+import org.apache.thrift.TBase;
 
 import com.twitter.aurora.auth.CapabilityValidator;
 import com.twitter.aurora.gen.ExecutorConfig;
 import com.twitter.aurora.gen.JobConfiguration;
 import com.twitter.aurora.gen.ResponseCode;
 import com.twitter.aurora.gen.SessionKey;
+import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.base.Command;
+import com.twitter.common.stats.Stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 import static com.twitter.aurora.scheduler.thrift.aop.Interceptors.properlyTypedResponse;
 
 /**
  * A method interceptor that logs all invocations as well as any unchecked exceptions thrown from
  * the underlying call.
+ * <p>
+ * Invocations are formatted and logged on a background thread, fed through a bounded buffer.
+ * Invocations are recorded before the call proceeds.  Mutating calls may modify their arguments,
+ * so their arguments are copied, while read-only calls are recorded with their arguments by
+ * reference.  Read-only calls may be sampled, and are dropped when the buffer is full.  Mutating
+ * calls are always logged, on the calling thread if the buffer is full.
  */
 class LoggingInterceptor implements MethodInterceptor {
 
@@ -71,10 +93,84 @@ class LoggingInterceptor implements MethodInterceptor {
           }
       );
 
-  @Override
-  public Object invoke(MethodInvocation invocation) throws Throwable {
+  private final double readSampleRate;
+  private final BlockingQueue<Invocation> buffer;
+  private final AtomicLong droppedReads = Stats.exportLong("thrift_audit_log_reads_dropped");
+  private final AtomicLong synchronousWrites =
+      Stats.exportLong("thrift_audit_log_synchronous_writes");
+  private final Thread writer;
+
+  /**
+   * Creates an interceptor with a background writer thread, which is started once the interceptor
+   * is injected.
+   *
+   * @param bufferSize Maximum number of invocations waiting to be logged.
+   * @param readSampleRate Fraction of read-only invocations to log, between 0 and 1.
+   */
+  LoggingInterceptor(int bufferSize, double readSampleRate) {
+    checkArgument((readSampleRate >= 0) && (readSampleRate <= 1));
+    this.readSampleRate = readSampleRate;
+    this.buffer = new ArrayBlockingQueue<Invocation>(bufferSize);
+    Stats.exportSize("thrift_audit_log_buffered", buffer);
+
+    writer = new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("ThriftAuditLog-%d")
+        .build()
+        .newThread(new Runnable() {
+          @Override public void run() {
+            drain();
+          }
+        });
+  }
+
+  /**
+   * Starts the background writer, and stops it on shutdown once buffered invocations are logged.
+   *
+   * @param shutdownRegistry Registry to stop the writer with.
+   */
+  @Inject
+  void start(ShutdownRegistry shutdownRegistry) {
+    writer.start();
+    shutdownRegistry.addAction(new Command() {
+      @Override public void execute() {
+        writer.interrupt();
+      }
+    });
+  }
+
+  private static class Invocation {
+    private final Method method;
+    private final Object[] arguments;
+
+    Invocation(Method method, Object[] arguments) {
+      this.method = method;
+      this.arguments = arguments;
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      try {
+        log(buffer.take());
+      } catch (InterruptedException e) {
+        List<Invocation> remaining = Lists.newArrayList();
+        buffer.drainTo(remaining);
+        for (Invocation invocation : remaining) {
+          log(invocation);
+        }
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        LOG.log(Level.WARNING, "Failed to log thrift call: " + e, e);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  String format(Method method, Object[] arguments) {
     List<String> argStrings = Lists.newArrayList();
-    for (Object arg : invocation.getArguments()) {
+    for (Object arg : arguments) {
       if (arg == null) {
         argStrings.add("null");
       } else {
@@ -82,12 +178,62 @@ class LoggingInterceptor implements MethodInterceptor {
         argStrings.add((printFunction == null) ? arg.toString() : printFunction.apply(arg));
       }
     }
-    String methodName = invocation.getMethod().getName();
-    String message = String.format("%s(%s)", methodName, Joiner.on(", ").join(argStrings));
-    LOG.info(message);
+    return String.format("%s(%s)", method.getName(), Joiner.on(", ").join(argStrings));
+  }
+
+  private void log(Invocation invocation) {
+    LOG.info(format(invocation.method, invocation.arguments));
+  }
+
+  private static Object copy(Object argument) {
+    if (argument instanceof TBase) {
+      return ((TBase<?, ?>) argument).deepCopy();
+    } else if (argument instanceof Set) {
+      return Sets.newLinkedHashSet((Set<?>) argument);
+    } else if (argument instanceof List) {
+      return Lists.newArrayList((List<?>) argument);
+    } else if (argument instanceof Map) {
+      return Maps.newLinkedHashMap((Map<?, ?>) argument);
+    } else {
+      return argument;
+    }
+  }
+
+  private void audit(Method method, Object[] arguments) {
+    boolean readOnly = Interceptors.READ_ONLY_METHODS.contains(method.getName());
+    if (readOnly
+        && (readSampleRate < 1)
+        && (ThreadLocalRandom.current().nextDouble() >= readSampleRate)) {
+
+      return;
+    }
+
+    Object[] recorded = arguments;
+    if (!readOnly) {
+      recorded = new Object[arguments.length];
+      for (int i = 0; i < arguments.length; i++) {
+        recorded[i] = copy(arguments[i]);
+      }
+    }
+
+    Invocation invocation = new Invocation(method, recorded);
+    if (!buffer.offer(invocation)) {
+      if (readOnly) {
+        droppedReads.incrementAndGet();
+      } else {
+        synchronousWrites.incrementAndGet();
+        log(invocation);
+      }
+    }
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    audit(invocation.getMethod(), invocation.getArguments());
     try {
       return invocation.proceed();
     } catch (RuntimeException e) {
+      String message = format(invocation.getMethod(), invocation.getArguments());
       LOG.log(Level.WARNING, "Uncaught exception while handling " + message, e);
       return properlyTypedResponse(invocation.getMethod(), ResponseCode.ERROR, e.getMessage());
     }
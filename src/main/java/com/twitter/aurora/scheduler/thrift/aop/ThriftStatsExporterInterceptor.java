@@ -17,6 +17,8 @@ package com.twitter.aurora.scheduler.thrift.aop;
 
 import java.lang.reflect.Method;
 
+import javax.inject.Inject;
+
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -24,14 +26,42 @@ import com.google.common.cache.LoadingCache;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
+import com.twitter.aurora.gen.Response;
+import com.twitter.aurora.scheduler.stats.LatencyHistogram;
 import com.twitter.common.stats.SlidingStats;
 import com.twitter.common.stats.Stats;
 
 /**
  * A method interceptor that exports counterStats about thrift calls.
+ * <p>
+ * In addition to average latencies per method, latency percentiles are exported per method and
+ * per response code.  Latency percentiles may also be exported per role acted on, for roles known
+ * to storage.
  */
 class ThriftStatsExporterInterceptor implements MethodInterceptor {
 
+  // Response code recorded for calls that throw.
+  private static final String EXCEPTION = "exception";
+
+  private static LoadingCache<String, LatencyHistogram> histograms(final String format) {
+    return CacheBuilder.newBuilder().build(new CacheLoader<String, LatencyHistogram>() {
+      @Override public LatencyHistogram load(String key) {
+        return LatencyHistogram.export(String.format(format, key));
+      }
+    });
+  }
+
+  private final LoadingCache<String, LatencyHistogram> methodLatencies =
+      histograms("scheduler_thrift_%s_latency_nanos");
+  private final LoadingCache<String, LatencyHistogram> roleLatencies =
+      histograms("scheduler_thrift_role_%s_latency_nanos");
+  private final LoadingCache<String, LatencyHistogram> responseCodeLatencies =
+      histograms("scheduler_thrift_response_%s_latency_nanos");
+
+  private final boolean roleStats;
+
+  @Inject private KnownRoles knownRoles;
+
   private final LoadingCache<Method, SlidingStats> stats =
       CacheBuilder.newBuilder().build(new CacheLoader<Method, SlidingStats>() {
         @Override public SlidingStats load(Method method) {
@@ -41,14 +71,36 @@ class ThriftStatsExporterInterceptor implements MethodInterceptor {
         }
       });
 
+  /**
+   * Creates a stats exporter.
+   *
+   * @param roleStats Whether to export latency percentiles per role.
+   */
+  ThriftStatsExporterInterceptor(boolean roleStats) {
+    this.roleStats = roleStats;
+  }
+
   @Override
   public Object invoke(MethodInvocation invocation) throws Throwable {
-    SlidingStats stat = stats.get(invocation.getMethod());
+    Method method = invocation.getMethod();
+    SlidingStats stat = stats.get(method);
+    String responseCode = EXCEPTION;
     long start = System.nanoTime();
     try {
-      return invocation.proceed();
+      Object result = invocation.proceed();
+      if ((result instanceof Response) && ((Response) result).isSetResponseCode()) {
+        responseCode = ((Response) result).getResponseCode().name();
+      }
+      return result;
     } finally {
-      stat.accumulate(System.nanoTime() - start);
+      long elapsed = System.nanoTime() - start;
+      stat.accumulate(elapsed);
+      methodLatencies.getUnchecked(method.getName()).record(elapsed);
+      if (roleStats) {
+        String role = Interceptors.getRole(method, invocation.getArguments());
+        roleLatencies.getUnchecked(knownRoles.validate(role)).record(elapsed);
+      }
+      responseCodeLatencies.getUnchecked(responseCode).record(elapsed);
     }
   }
 }
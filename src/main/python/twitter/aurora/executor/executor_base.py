@@ -82,7 +82,7 @@ class ThermosExecutorBase(mesos.Executor):
   def disconnected(self, driver):
     self.log('disconnected() called')
 
-  def send_update(self, driver, task_id, state, message=None):
+  def send_update(self, driver, task_id, state, message=None, data=None):
     update = mesos_pb.TaskStatus()
     if not isinstance(state, int):
       raise TypeError('Invalid state type %s, should be int.' % type(state))
@@ -92,6 +92,8 @@ class ThermosExecutorBase(mesos.Executor):
     update.task_id.value = task_id
     if message:
       update.message = str(message)
+    if data:
+      update.data = data
     self.log('Updating %s => %s' % (task_id, self.MESOS_STATES[state]))
     self.log('   Reason: %s' % message)
     driver.sendStatusUpdate(update)
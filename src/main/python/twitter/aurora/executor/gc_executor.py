@@ -25,6 +25,7 @@ from twitter.thermos.monitoring.garbage import TaskGarbageCollector
 from gen.twitter.aurora.comm.ttypes import (
     AdjustRetainedTasks,
     DeletedTasks,
+    GcExecutorCapabilities,
     SchedulerMessage)
 from gen.twitter.aurora.ttypes import ScheduleStatus
 
@@ -66,6 +67,10 @@ class ThermosGCExecutor(ThermosExecutorBase, ExceptionalThread, Observable):
 
   PERSISTENCE_WAIT = Amount(5, Time.SECONDS)
 
+  # sent with every finished GC task, so the scheduler only sends incremental messages to
+  # executors that can apply them
+  CAPABILITIES = thrift_serialize(GcExecutorCapabilities(incremental=True))
+
   def __init__(self,
                checkpoint_root,
                verbose=True,
@@ -86,6 +91,8 @@ class ThermosGCExecutor(ThermosExecutorBase, ExceptionalThread, Observable):
     self._slave_id = None # cache the slave ID provided by the slave
     self._task_id = None  # the task_id currently being executed by the ThermosGCExecutor, if any
     self._start_time = None # the start time of a task currently being executed, if any
+    self._retained_tasks = None # the tasks to retain from the last accepted launchTask, used to
+                                # apply incremental AdjustRetainedTasks messages
     self._detector = executor_detector()
     self._collector = task_garbage_collector(root=checkpoint_root)
     self._clock = clock
@@ -401,7 +408,8 @@ class ThermosGCExecutor(ThermosExecutorBase, ExceptionalThread, Observable):
       self._driver.sendFrameworkMessage(thrift_serialize(
           SchedulerMessage(deletedTasks=DeletedTasks(taskIds=deleted_tasks))))
     self.send_update(
-        self._driver, task.task_id.value, mesos_pb.TASK_FINISHED, 'Garbage collection finished.')
+        self._driver, task.task_id.value, mesos_pb.TASK_FINISHED, 'Garbage collection finished.',
+        data=self.CAPABILITIES)
     self.log('Garbage collection complete [task_id=%s]' % task_id)
     self._task_id = self._start_time = None
 
@@ -441,7 +449,8 @@ class ThermosGCExecutor(ThermosExecutorBase, ExceptionalThread, Observable):
         pass
       else:
         self.send_update(self._driver, prev_task_id, mesos_pb.TASK_FINISHED,
-                         'Garbage collection skipped - GC executor shutting down')
+                         'Garbage collection skipped - GC executor shutting down',
+                         data=self.CAPABILITIES)
         # TODO(jon) Remove this once external MESOS-243 is resolved.
         self.log('Sleeping briefly to mitigate https://issues.apache.org/jira/browse/MESOS-243')
         self._clock.sleep(self.PERSISTENCE_WAIT.as_(Time.SECONDS))
@@ -469,6 +478,19 @@ class ThermosGCExecutor(ThermosExecutorBase, ExceptionalThread, Observable):
       self.send_update(
           self._driver, task_id, mesos_pb.TASK_FAILED, 'Deserialization of GC task failed')
       return
+    if art.incremental:
+      if self._retained_tasks is None:
+        self.log('=> No retained tasks to apply incremental GC task to - failing')
+        self.send_update(
+            self._driver, task_id, mesos_pb.TASK_FAILED, 'Incremental GC task without prior task')
+        return
+      retained_tasks = dict(self._retained_tasks)
+      for released_task_id in art.releasedTasks or ():
+        retained_tasks.pop(released_task_id, None)
+      retained_tasks.update(art.retainedTasks or {})
+    else:
+      retained_tasks = art.retainedTasks
+    self._retained_tasks = dict(retained_tasks or {})
     try:
       prev_task_id, _ = self._gc_task_queue.popitem(0)
     except KeyError: # no enqueued GC tasks - reset counter
@@ -478,9 +500,10 @@ class ThermosGCExecutor(ThermosExecutorBase, ExceptionalThread, Observable):
       self._dropped_tasks.increment()
       self.log('=> Updating scheduler')
       self.send_update(self._driver, prev_task_id, mesos_pb.TASK_FINISHED,
-                       'Garbage collection skipped - GC executor received another task')
+                       'Garbage collection skipped - GC executor received another task',
+                       data=self.CAPABILITIES)
     self.log('=> Adding %s to GC queue' % task_id)
-    self._gc_task_queue[task_id] = (task, art.retainedTasks, self._clock.time())
+    self._gc_task_queue[task_id] = (task, retained_tasks, self._clock.time())
 
   def killTask(self, driver, task_id):
     """Remove the specified task from the queue, if it's not yet run. Otherwise, no-op."""
@@ -35,7 +35,20 @@ union SchedulerMessage {
 // executor should only retain tasks associated with the provided tasks IDs.
 struct AdjustRetainedTasks {
   2: map<string, api.ScheduleStatus> retainedTasks  // All tasks that the executor should
-                                                    // retain, and their statuses.
+                                                    // retain, and their statuses.  When
+                                                    // incremental, only the tasks added or
+                                                    // changed since the previous message.
+  3: optional bool incremental                      // Whether this message only describes changes
+                                                    // relative to the previous message accepted
+                                                    // by the executor.
+  4: optional set<string> releasedTasks             // Tasks no longer retained since the previous
+                                                    // message, only set when incremental.
+}
+
+// Sent by the GC executor as the data of the status update that finishes a GC task,
+// describing the messages the executor supports.
+struct GcExecutorCapabilities {
+  1: bool incremental  // Whether the executor applies incremental AdjustRetainedTasks messages.
 }
 
 // Message sent from the scheduler to the executor.
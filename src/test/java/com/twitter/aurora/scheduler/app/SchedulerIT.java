@@ -36,7 +36,9 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.net.HostAndPort;
+import com.google.common.primitives.Ints;
 import com.google.common.testing.TearDown;
 import com.google.common.util.concurrent.Atomics;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -51,6 +53,7 @@ import org.apache.mesos.Protos.MasterInfo;
 import org.apache.mesos.Protos.Status;
 import org.apache.mesos.Scheduler;
 import org.apache.mesos.SchedulerDriver;
+import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 import org.easymock.IMocksControl;
 import org.junit.Before;
@@ -77,6 +80,7 @@ import com.twitter.aurora.scheduler.configuration.ConfigurationManager;
 import com.twitter.aurora.scheduler.log.Log;
 import com.twitter.aurora.scheduler.log.Log.Entry;
 import com.twitter.aurora.scheduler.log.Log.Position;
+import com.twitter.aurora.scheduler.log.Log.PositionedEntry;
 import com.twitter.aurora.scheduler.log.Log.Stream;
 import com.twitter.aurora.scheduler.storage.backup.BackupModule;
 import com.twitter.aurora.scheduler.storage.log.LogManager.StreamManager.EntrySerializer;
@@ -268,6 +272,10 @@ public class SchedulerIT extends BaseZooKeeperTest {
     @Override public int compareTo(Position position) {
       return pos - ((IntPosition) position).pos;
     }
+
+    @Override public byte[] identity() {
+      return Ints.toByteArray(pos);
+    }
   }
   private IntPosition nextPosition() {
     return new IntPosition(curPosition.incrementAndGet());
@@ -320,6 +328,10 @@ public class SchedulerIT extends BaseZooKeeperTest {
 
     expect(log.open()).andReturn(logStream);
     expect(logStream.readAll()).andReturn(recoveredEntries.iterator()).anyTimes();
+    // Nothing new is seen while following the log before leading, so recovery reads it all.
+    expect(logStream.follow(EasyMock.<Optional<Position>>anyObject()))
+        .andReturn(Iterators.<PositionedEntry>emptyIterator())
+        .anyTimes();
     // An empty saveTasks is an artifact of the fact that mutateTasks always writes a log operation
     // even if nothing is changed.
     streamMatcher.expectTransaction(Op.saveTasks(new SaveTasks(ImmutableSet.<ScheduledTask>of())))
@@ -38,6 +38,7 @@ import com.twitter.aurora.scheduler.Driver;
 import com.twitter.aurora.scheduler.async.OfferQueue.LaunchException;
 import com.twitter.aurora.scheduler.async.OfferQueue.OfferQueueImpl;
 import com.twitter.aurora.scheduler.async.OfferQueue.OfferReturnDelay;
+import com.twitter.aurora.scheduler.configuration.Resources;
 import com.twitter.aurora.scheduler.events.PubsubEvent.DriverDisconnected;
 import com.twitter.aurora.scheduler.state.MaintenanceController;
 import com.twitter.common.quantity.Amount;
@@ -79,12 +80,21 @@ public class OfferQueueImplTest extends EasyMockTest {
     });
     maintenanceController = createMock(MaintenanceController.class);
     offerAcceptor = createMock(new Clazz<Function<Offer, Optional<TaskInfo>>>() { });
+    offerQueue = createQueue(PlacementPolicy.FIRST_FIT);
+  }
+
+  private OfferQueueImpl createQueue(PlacementPolicy placementPolicy) {
     OfferReturnDelay returnDelay = new OfferReturnDelay() {
       @Override public Amount<Integer, Time> get() {
         return RETURN_DELAY;
       }
     };
-    offerQueue = new OfferQueueImpl(driver, returnDelay, executor, maintenanceController);
+    return new OfferQueueImpl(
+        driver,
+        returnDelay,
+        executor,
+        maintenanceController,
+        placementPolicy);
   }
 
   @Test
@@ -140,6 +150,67 @@ public class OfferQueueImplTest extends EasyMockTest {
     assertFalse(offerQueue.launchFirst(offerAcceptor));
   }
 
+  private static Offer sizedOffer(Offer offer, double cpus, long ramMb) {
+    return offer.toBuilder()
+        .addResources(Resources.makeMesosResource(Resources.CPUS, cpus))
+        .addResources(Resources.makeMesosResource(Resources.RAM_MB, ramMb))
+        .build();
+  }
+
+  private void expectSizedOffers(Offer small, Offer medium, Offer large, Offer drainingLarge) {
+    expect(maintenanceController.getMode(small.getHostname())).andReturn(MaintenanceMode.NONE);
+    expect(maintenanceController.getMode(medium.getHostname())).andReturn(MaintenanceMode.NONE);
+    expect(maintenanceController.getMode(large.getHostname())).andReturn(MaintenanceMode.NONE);
+    expect(maintenanceController.getMode(drainingLarge.getHostname()))
+        .andReturn(MaintenanceMode.DRAINING);
+  }
+
+  @Test
+  public void testBestFit() throws Exception {
+    Offer small = sizedOffer(OFFER_A, 1, 1024);
+    Offer medium = sizedOffer(OFFER_B, 4, 512);
+    Offer large = sizedOffer(OFFER_C, 8, 8192);
+    Offer drainingLarge = sizedOffer(Offers.makeOffer("OFFER_D", "HOST_D"), 16, 16384);
+    expectSizedOffers(small, medium, large, drainingLarge);
+    control.checkOrder(true);
+    expect(offerAcceptor.apply(small)).andReturn(Optional.<TaskInfo>absent());
+    expect(offerAcceptor.apply(medium)).andReturn(Optional.<TaskInfo>absent());
+    expect(offerAcceptor.apply(large)).andReturn(Optional.<TaskInfo>absent());
+    expect(offerAcceptor.apply(drainingLarge)).andReturn(Optional.<TaskInfo>absent());
+
+    control.replay();
+
+    OfferQueueImpl queue = createQueue(PlacementPolicy.BEST_FIT);
+    queue.addOffer(large);
+    queue.addOffer(drainingLarge);
+    queue.addOffer(small);
+    queue.addOffer(medium);
+    assertFalse(queue.launchFirst(offerAcceptor));
+  }
+
+  @Test
+  public void testWorstFit() throws Exception {
+    Offer small = sizedOffer(OFFER_A, 1, 1024);
+    Offer medium = sizedOffer(OFFER_B, 4, 512);
+    Offer large = sizedOffer(OFFER_C, 8, 8192);
+    Offer drainingLarge = sizedOffer(Offers.makeOffer("OFFER_D", "HOST_D"), 16, 16384);
+    expectSizedOffers(small, medium, large, drainingLarge);
+    control.checkOrder(true);
+    expect(offerAcceptor.apply(large)).andReturn(Optional.<TaskInfo>absent());
+    expect(offerAcceptor.apply(medium)).andReturn(Optional.<TaskInfo>absent());
+    expect(offerAcceptor.apply(small)).andReturn(Optional.<TaskInfo>absent());
+    expect(offerAcceptor.apply(drainingLarge)).andReturn(Optional.<TaskInfo>absent());
+
+    control.replay();
+
+    OfferQueueImpl queue = createQueue(PlacementPolicy.WORST_FIT);
+    queue.addOffer(small);
+    queue.addOffer(drainingLarge);
+    queue.addOffer(medium);
+    queue.addOffer(large);
+    assertFalse(queue.launchFirst(offerAcceptor));
+  }
+
   @Test
   public void testFlushOffers() throws Exception {
     expect(maintenanceController.getMode(HOST_A)).andReturn(MaintenanceMode.NONE);
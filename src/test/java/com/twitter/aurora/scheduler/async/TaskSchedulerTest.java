@@ -55,6 +55,7 @@ import com.twitter.aurora.scheduler.events.PubsubEvent.HostMaintenanceStateChang
 import com.twitter.aurora.scheduler.events.PubsubEvent.StorageStarted;
 import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import com.twitter.aurora.scheduler.events.PubsubEvent.TasksDeleted;
+import com.twitter.aurora.scheduler.events.VetoAggregator;
 import com.twitter.aurora.scheduler.state.MaintenanceController;
 import com.twitter.aurora.scheduler.state.StateManager;
 import com.twitter.aurora.scheduler.state.TaskAssigner;
@@ -132,11 +133,25 @@ public class TaskSchedulerTest extends EasyMockTest {
 
   private void replayAndCreateScheduler() {
     control.replay();
-    offerQueue = new OfferQueueImpl(driver, returnDelay, executor, maintenance);
+    offerQueue = new OfferQueueImpl(
+        driver,
+        returnDelay,
+        executor,
+        maintenance,
+        PlacementPolicy.FIRST_FIT);
     RateLimiter rateLimiter = RateLimiter.create(1);
     Amount<Long, Time> flappingThreshold = Amount.of(5L, Time.MINUTES);
+    VetoAggregator vetoAggregator = new VetoAggregator() {
+      @Override public void beginAttempt(String taskId) {
+        // No-op.
+      }
+
+      @Override public void endAttempt(boolean scheduled) {
+        // No-op.
+      }
+    };
     SchedulingAction scheduler =
-        new TaskScheduler(storage, stateManager, assigner, offerQueue);
+        new TaskScheduler(storage, stateManager, assigner, offerQueue, vetoAggregator);
     taskGroups = new TaskGroups(
         executor,
         storage,
@@ -459,6 +474,9 @@ public class TaskSchedulerTest extends EasyMockTest {
     expect(maintenance.getMode("HOST_B")).andReturn(MaintenanceMode.SCHEDULED);
     expectOffer();
     expect(maintenance.getMode("HOST_C")).andReturn(MaintenanceMode.DRAINED);
+    // Offers are re-sorted with the modes held by the maintenance controller.
+    expect(maintenance.getMode("HOST_A")).andReturn(MaintenanceMode.DRAINING);
+    expect(maintenance.getMode("HOST_C")).andReturn(MaintenanceMode.NONE);
 
     IScheduledTask taskA = makeTask("A", PENDING);
     TaskInfo mesosTaskA = makeTaskInfo(taskA);
@@ -659,6 +677,84 @@ public class TaskSchedulerTest extends EasyMockTest {
     flapping.getValue().run();
   }
 
+  @Test
+  public void testFlappingPenaltyFromStateChanges() {
+    expectAnyMaintenanceCalls();
+
+    final IScheduledTask taskA0 = makeFlappyTask("a0", null);
+    final IScheduledTask taskA1 = makeFlappyTask("a1", "a0");
+    IScheduledTask taskA2 = IScheduledTask.build(makeTask("a2", INIT).newBuilder()
+        .setAncestorId("a1"));
+
+    expectOfferDeclineIn(10);
+    Capture<Runnable> first = expectTaskGroupBackoff(10);
+
+    // Each consecutive flap of the instance grows the penalty.
+    expect(flappingStrategy.calculateBackoffMs(0)).andReturn(5L);
+    expect(flappingStrategy.calculateBackoffMs(5L)).andReturn(10L);
+    Capture<Runnable> flapping = expectTaskRetryIn(10);
+
+    expectTaskScheduled(taskA2);
+
+    replayAndCreateScheduler();
+
+    offerQueue.addOffer(OFFER_A);
+
+    changeState(taskA0, RUNNING, FAILED);
+    changeState(taskA1, RUNNING, FAILED);
+
+    // The penalty is recorded from the state changes, the ancestors need not be in storage.
+    storage.write(new MutateWork.NoResult.Quiet() {
+      @Override protected void execute(MutableStoreProvider storeProvider) {
+        storeProvider.getUnsafeTaskStore().deleteTasks(Tasks.ids(taskA0, taskA1));
+      }
+    });
+    changeState(taskA2, INIT, PENDING);
+
+    first.getValue().run();
+    clock.waitFor(10);
+    flapping.getValue().run();
+  }
+
+  @Test
+  public void testFlappingPenaltyRebuiltOnStorageStart() {
+    expectAnyMaintenanceCalls();
+
+    IScheduledTask taskA0 = makeFlappyTask("a0", null);
+    IScheduledTask taskA1 = makeFlappyTask("a1", "a0");
+    IScheduledTask taskA2 = IScheduledTask.build(makeTask("a2", PENDING).newBuilder()
+        .setAncestorId("a1"));
+    final ImmutableSet<IScheduledTask> tasks = ImmutableSet.of(
+        IScheduledTask.build(taskA0.newBuilder().setStatus(FAILED)),
+        IScheduledTask.build(taskA1.newBuilder().setStatus(FAILED)),
+        taskA2);
+
+    expectOfferDeclineIn(10);
+    Capture<Runnable> first = expectTaskGroupBackoff(10);
+
+    // The flapping history of the instance is rebuilt from the terminated tasks in storage.
+    expect(flappingStrategy.calculateBackoffMs(0)).andReturn(5L);
+    expect(flappingStrategy.calculateBackoffMs(5L)).andReturn(10L);
+    Capture<Runnable> flapping = expectTaskRetryIn(10);
+
+    expectTaskScheduled(taskA2);
+
+    replayAndCreateScheduler();
+
+    offerQueue.addOffer(OFFER_A);
+
+    storage.write(new MutateWork.NoResult.Quiet() {
+      @Override protected void execute(MutableStoreProvider storeProvider) {
+        storeProvider.getUnsafeTaskStore().saveTasks(tasks);
+      }
+    });
+    taskGroups.storageStarted(new StorageStarted());
+
+    first.getValue().run();
+    clock.waitFor(10);
+    flapping.getValue().run();
+  }
+
   @Test
   public void testNoPenaltyForInterruptedTasks() {
     expectAnyMaintenanceCalls();
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.configuration;
+
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PortRangesTest {
+
+  private static final Random RANDOM = new Random(0);
+
+  @Test
+  public void testOverlappingRanges() {
+    PortRanges ports = PortRanges.from(ImmutableList.of(range(1, 5), range(3, 8), range(9, 9)));
+    assertEquals(9, ports.size());
+    assertEquals(
+        ContiguousSet.create(Range.closed(1, 9), DiscreteDomain.integers()),
+        ports.select(9, RANDOM));
+  }
+
+  @Test
+  public void testSelectFromRanges() {
+    PortRanges ports = PortRanges.from(ImmutableList.of(range(100, 104), range(200, 204)));
+    Set<Integer> expected = ImmutableSet.of(100, 101, 102, 103, 104, 200, 201, 202, 203, 204);
+    for (int i = 0; i < 100; i++) {
+      Set<Integer> selected = ports.select(3, RANDOM);
+      assertEquals(3, selected.size());
+      assertTrue(expected.containsAll(selected));
+    }
+  }
+
+  @Test
+  public void testSelectFromLargeRange() {
+    PortRanges ports = PortRanges.from(ImmutableList.of(range(1, 65535)));
+    assertEquals(65535, ports.size());
+    for (int port : ports.select(5, RANDOM)) {
+      assertTrue(port >= 1 && port <= 65535);
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    PortRanges ports = PortRanges.from(ImmutableList.<org.apache.mesos.Protos.Value.Range>of());
+    assertEquals(0, ports.size());
+    assertEquals(ImmutableSet.<Integer>of(), ports.select(0, RANDOM));
+  }
+
+  private static org.apache.mesos.Protos.Value.Range range(long begin, long end) {
+    return org.apache.mesos.Protos.Value.Range.newBuilder().setBegin(begin).setEnd(end).build();
+  }
+}
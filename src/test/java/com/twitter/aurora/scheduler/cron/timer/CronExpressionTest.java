@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.cron.timer;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import com.google.common.base.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.scheduler.cron.CronException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import static com.twitter.aurora.gen.test.Constants.VALID_CRON_SCHEDULES;
+
+public class CronExpressionTest {
+
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+  private SimpleDateFormat format;
+
+  @Before
+  public void setUp() {
+    format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    format.setTimeZone(UTC);
+  }
+
+  private long time(String date) throws ParseException {
+    return format.parse(date).getTime();
+  }
+
+  private void expectFires(String schedule, String after, String... expected) throws Exception {
+    CronExpression expression = CronExpression.parse(schedule);
+    long current = time(after);
+    for (String next : expected) {
+      current = expression.nextFireAfter(current, UTC).get();
+      assertEquals(next, format.format(current));
+    }
+  }
+
+  @Test
+  public void testAcceptsValidSchedules() throws Exception {
+    for (String schedule : VALID_CRON_SCHEDULES) {
+      CronExpression.parse(schedule);
+    }
+  }
+
+  @Test
+  public void testEveryMinute() throws Exception {
+    expectFires("* * * * *", "2013-10-17 10:07", "2013-10-17 10:08", "2013-10-17 10:09");
+  }
+
+  @Test
+  public void testFiresStrictlyAfter() throws Exception {
+    expectFires("7 10 * * *", "2013-10-17 10:07", "2013-10-18 10:07");
+  }
+
+  @Test
+  public void testListsAndNamedDays() throws Exception {
+    expectFires(
+        "30 18,23 * * MON-FRI",
+        "2013-10-18 19:00",
+        "2013-10-18 23:30",
+        "2013-10-21 18:30");
+  }
+
+  @Test
+  public void testStepFromValue() throws Exception {
+    expectFires("0 0/3 * * *", "2013-10-17 10:07", "2013-10-17 12:00", "2013-10-17 15:00");
+  }
+
+  @Test
+  public void testSundayAsSeven() throws Exception {
+    expectFires("0 12 * * 7", "2013-10-17 10:07", "2013-10-20 12:00");
+  }
+
+  @Test
+  public void testDayOfMonthOrDayOfWeek() throws Exception {
+    // 2013-10-20 is a Sunday.
+    expectFires("0 0 1 * 0", "2013-10-17 10:07", "2013-10-20 00:00", "2013-10-27 00:00",
+        "2013-11-01 00:00");
+  }
+
+  @Test
+  public void testLeapDay() throws Exception {
+    expectFires("0 0 29 2 *", "2013-10-17 10:07", "2016-02-29 00:00", "2020-02-29 00:00");
+  }
+
+  @Test
+  public void testShorthand() throws Exception {
+    expectFires("@daily", "2013-10-17 10:07", "2013-10-18 00:00");
+  }
+
+  @Test
+  public void testNeverFires() throws Exception {
+    assertFalse(CronExpression.parse("0 0 30 2 *").nextFireAfter(time("2013-10-17 10:07"), UTC)
+        .isPresent());
+  }
+
+  @Test(expected = CronException.class)
+  public void testWrongFieldCount() throws Exception {
+    CronExpression.parse("* * * *");
+  }
+
+  @Test(expected = CronException.class)
+  public void testOutOfRange() throws Exception {
+    CronExpression.parse("60 * * * *");
+  }
+
+  @Test(expected = CronException.class)
+  public void testZeroStep() throws Exception {
+    CronExpression.parse("*/0 * * * *");
+  }
+
+  @Test(expected = CronException.class)
+  public void testInvalidValue() throws Exception {
+    CronExpression.parse("a * * * *");
+  }
+
+  @Test(expected = CronException.class)
+  public void testBackwardsRange() throws Exception {
+    CronExpression.parse("5-1 * * * *");
+  }
+
+  @Test
+  public void testNamedMonths() throws Exception {
+    assertEquals(
+        Optional.of(time("2014-01-01 00:00")),
+        CronExpression.parse("0 0 1 JAN *").nextFireAfter(time("2013-10-17 10:07"), UTC));
+  }
+}
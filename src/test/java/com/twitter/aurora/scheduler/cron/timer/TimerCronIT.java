@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.cron.timer;
+
+import java.util.TimeZone;
+
+import com.twitter.aurora.scheduler.cron.CronPredictor;
+import com.twitter.aurora.scheduler.cron.CronScheduler;
+import com.twitter.aurora.scheduler.cron.testing.AbstractCronIT;
+import com.twitter.common.util.Clock;
+
+public class TimerCronIT extends AbstractCronIT {
+  @Override
+  protected CronScheduler makeCronScheduler() {
+    return new TimerCronScheduler(Clock.SYSTEM_CLOCK, TimeZone.getDefault(), 1);
+  }
+
+  @Override
+  protected void expectStartCronScheduler() {
+    // Nothing to expect.
+  }
+
+  @Override
+  protected void expectStopCronScheduler() {
+    // Nothing to expect.
+  }
+
+  @Override
+  protected CronPredictor makeCronPredictor() {
+    return new CachedCronPredictor(Clock.SYSTEM_CLOCK, TimeZone.getDefault());
+  }
+}
@@ -46,8 +46,9 @@ public class NotifyingSchedulingFilterTest extends EasyMockTest {
 
   private static final Veto VETO_1 = new Veto("veto1", 1);
   private static final Veto VETO_2 = new Veto("veto2", 2);
+  private static final Veto MISMATCH = Veto.constraintMismatch("mismatch");
 
-  private SchedulingFilter filter;
+  private NotifyingSchedulingFilter filter;
 
   private Closure<PubsubEvent> eventSink;
   private SchedulingFilter delegate;
@@ -79,4 +80,53 @@ public class NotifyingSchedulingFilterTest extends EasyMockTest {
 
     assertEquals(vetoes, filter.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID));
   }
+
+  @Test
+  public void testAttemptSendsClosestFit() {
+    expect(delegate.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID))
+        .andReturn(ImmutableSet.of(MISMATCH));
+    expect(delegate.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID))
+        .andReturn(ImmutableSet.of(VETO_1, VETO_2));
+    expect(delegate.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID))
+        .andReturn(ImmutableSet.of(VETO_2));
+    eventSink.execute(new Vetoed(TASK_ID, ImmutableSet.of(VETO_2)));
+
+    control.replay();
+
+    filter.beginAttempt(TASK_ID);
+    filter.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID);
+    filter.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID);
+    filter.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID);
+    filter.endAttempt(false);
+  }
+
+  @Test
+  public void testAttemptScheduled() {
+    expect(delegate.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID))
+        .andReturn(ImmutableSet.of(VETO_1));
+    expect(delegate.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID))
+        .andReturn(ImmutableSet.<Veto>of());
+
+    control.replay();
+
+    filter.beginAttempt(TASK_ID);
+    filter.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID);
+    filter.filter(TASK_RESOURCES, SLAVE, TASK, TASK_ID);
+    filter.endAttempt(true);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNestedAttempt() {
+    control.replay();
+
+    filter.beginAttempt(TASK_ID);
+    filter.beginAttempt(TASK_ID);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testEndWithoutAttempt() {
+    control.replay();
+
+    filter.endAttempt(false);
+  }
 }
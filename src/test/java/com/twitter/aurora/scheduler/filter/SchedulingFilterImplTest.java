@@ -390,6 +390,14 @@ public class SchedulingFilterImplTest extends EasyMockTest {
     assertNoVetoes(rackLimitTask(OWNER_B, JOB_A, 2), HOST_C);
   }
 
+  @Test
+  public void testVetoKindOmitsConstraintName() {
+    control.replay();
+
+    assertEquals(limitVeto(HOST_ATTRIBUTE).getKind(), limitVeto(RACK_ATTRIBUTE).getKind());
+    assertEquals(mismatchVeto(HOST_ATTRIBUTE).getKind(), mismatchVeto("jvm").getKind());
+  }
+
   @Test
   public void testAttribute() throws Exception {
     expectGetHostAttributes(HOST_A, valueAttribute("jvm", "1.0")).atLeastOnce();
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.net.HttpHeaders;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.gen.AssignedTask;
+import com.twitter.aurora.gen.Identity;
+import com.twitter.aurora.gen.ScheduleStatus;
+import com.twitter.aurora.gen.ScheduledTask;
+import com.twitter.aurora.gen.TaskConfig;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TasksDeleted;
+import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.testing.easymock.EasyMockTest;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ResponseCacheFilterTest extends EasyMockTest {
+
+  private static final String PATH = "/scheduler/role";
+  private static final String CONTENT_TYPE = "text/html";
+  private static final byte[] BODY = "rendered".getBytes(Charsets.UTF_8);
+  private static final String ETAG = "\"" + Hashing.murmur3_128().hashBytes(BODY) + "\"";
+
+  private ResponseCacheFilter filter;
+  private HttpServletRequest request;
+  private HttpServletRequest conditionalRequest;
+  private HttpServletResponse response;
+  private ByteArrayOutputStream sent;
+  private AtomicInteger renders;
+  private FilterChain chain;
+
+  @Before
+  public void setUp() throws Exception {
+    filter = new ResponseCacheFilter(Amount.of(1L, Time.HOURS), Amount.of(1L, Data.MB));
+    request = createRequest(null);
+    conditionalRequest = createRequest(ETAG);
+    response = createMock(HttpServletResponse.class);
+    sent = new ByteArrayOutputStream();
+    renders = new AtomicInteger();
+    chain = new FilterChain() {
+      @Override public void doFilter(ServletRequest req, ServletResponse resp) throws IOException {
+        renders.incrementAndGet();
+        resp.setContentType(CONTENT_TYPE);
+        resp.getOutputStream().write(BODY);
+      }
+    };
+
+    response.setContentType(CONTENT_TYPE);
+    expectLastCall().anyTimes();
+    expect(response.getContentType()).andReturn(CONTENT_TYPE).anyTimes();
+    response.setHeader(HttpHeaders.ETAG, ETAG);
+    expectLastCall().anyTimes();
+    response.setContentLength(BODY.length);
+    expectLastCall().anyTimes();
+    expect(response.getOutputStream()).andReturn(new ServletOutputStream() {
+      @Override public void write(int b) {
+        sent.write(b);
+      }
+    }).anyTimes();
+  }
+
+  private HttpServletRequest createRequest(String ifNoneMatch) {
+    return createRequest(ifNoneMatch, null);
+  }
+
+  private HttpServletRequest createRequest(String ifNoneMatch, String accept) {
+    HttpServletRequest mockRequest = createMock(HttpServletRequest.class);
+    expect(mockRequest.getMethod()).andReturn("GET").anyTimes();
+    expect(mockRequest.getRequestURI()).andReturn(PATH).anyTimes();
+    expect(mockRequest.getContextPath()).andReturn("").anyTimes();
+    expect(mockRequest.getQueryString()).andReturn(null).anyTimes();
+    expect(mockRequest.getHeader(HttpHeaders.ACCEPT_ENCODING)).andReturn(null).anyTimes();
+    expect(mockRequest.getHeader(HttpHeaders.ACCEPT)).andReturn(accept).anyTimes();
+    expect(mockRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).andReturn(ifNoneMatch).anyTimes();
+    return mockRequest;
+  }
+
+  private static IScheduledTask makeTask(String role, String job) {
+    return IScheduledTask.build(new ScheduledTask()
+        .setStatus(ScheduleStatus.RUNNING)
+        .setAssignedTask(new AssignedTask()
+            .setTaskId("id")
+            .setTask(new TaskConfig()
+                .setOwner(new Identity(role, "user"))
+                .setEnvironment("env")
+                .setJobName(job))));
+  }
+
+  @Test
+  public void testCachedUntilInvalidated() throws Exception {
+    response.setStatus(HttpServletResponse.SC_OK);
+    expectLastCall().times(4);
+
+    control.replay();
+
+    filter.doFilter(request, response, chain);
+    filter.doFilter(request, response, chain);
+    assertEquals(1, renders.get());
+
+    // Events for other roles do not affect the page.
+    filter.taskChangedState(new TaskStateChange(makeTask("other", "job"), ScheduleStatus.PENDING));
+    filter.doFilter(request, response, chain);
+    assertEquals(1, renders.get());
+
+    filter.tasksDeleted(new TasksDeleted(ImmutableSet.of(makeTask("role", "job"))));
+    filter.doFilter(request, response, chain);
+    assertEquals(2, renders.get());
+    assertEquals(4 * BODY.length, sent.size());
+  }
+
+  @Test
+  public void testNotModified() throws Exception {
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+    control.replay();
+
+    filter.doFilter(request, response, chain);
+    filter.doFilter(conditionalRequest, response, chain);
+    assertEquals(1, renders.get());
+    assertEquals(BODY.length, sent.size());
+  }
+
+  @Test
+  public void testCachedPerAcceptHeader() throws Exception {
+    HttpServletRequest jsonRequest = createRequest(null, "application/json");
+    response.setStatus(HttpServletResponse.SC_OK);
+    expectLastCall().times(3);
+
+    control.replay();
+
+    filter.doFilter(request, response, chain);
+    filter.doFilter(jsonRequest, response, chain);
+    filter.doFilter(jsonRequest, response, chain);
+    assertEquals(2, renders.get());
+  }
+
+  @Test
+  public void testGenerations() {
+    control.replay();
+
+    long cluster = filter.getGeneration("/utilization");
+    long role = filter.getGeneration("/scheduler/role");
+    long job = filter.getGeneration("/scheduler/role/env/job");
+    long otherJob = filter.getGeneration("/scheduler/role/env/other");
+
+    filter.taskChangedState(new TaskStateChange(makeTask("role", "job"), ScheduleStatus.PENDING));
+    assertFalse(cluster == filter.getGeneration("/utilization"));
+    assertFalse(role == filter.getGeneration("/scheduler/role"));
+    assertFalse(job == filter.getGeneration("/scheduler/role/env/job"));
+    assertEquals(otherJob, filter.getGeneration("/scheduler/role/env/other"));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.local;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import com.twitter.aurora.gen.Identity;
+import com.twitter.aurora.gen.JobConfiguration;
+import com.twitter.aurora.scheduler.local.JobMix.JobGroup;
+import com.twitter.aurora.scheduler.local.JobMix.Kind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JobMixTest {
+
+  private static final Identity OWNER = new Identity("role", "user");
+
+  @Test
+  public void testParse() {
+    JobMix mix = JobMix.parse(ImmutableList.of(
+        "# kind jobs instances cpus ram_mb disk_mb",
+        "service 2 10 1.0 1024 2048 production",
+        "",
+        "\tadhoc  3  5  0.5  512  1024  # trailing comment",
+        "cron 1 1 1 1024 1024"));
+
+    List<JobGroup> groups = mix.getGroups();
+    assertEquals(3, groups.size());
+    assertEquals(Kind.SERVICE, groups.get(0).getKind());
+    assertEquals(2, groups.get(0).getJobs());
+    assertEquals(10, groups.get(0).getInstances());
+    assertTrue(groups.get(0).isProduction());
+    assertEquals(Kind.ADHOC, groups.get(1).getKind());
+    assertFalse(groups.get(1).isProduction());
+    assertEquals(Kind.CRON, groups.get(2).getKind());
+    assertEquals(2 * 10 + 3 * 5 + 1, mix.getInstanceCount());
+  }
+
+  @Test
+  public void testCreateJobs() {
+    JobMix mix = JobMix.parse(ImmutableList.of(
+        "service 2 10 1.0 1024 2048 production",
+        "cron 1 1 1 1024 1024"));
+
+    List<JobConfiguration> jobs = mix.createJobs(OWNER);
+    assertEquals(3, jobs.size());
+    assertTrue(jobs.get(0).getTaskConfig().isIsService());
+    assertTrue(jobs.get(0).getTaskConfig().isProduction());
+    assertEquals(10, jobs.get(0).getInstanceCount());
+    assertFalse(jobs.get(0).getKey().getName().equals(jobs.get(1).getKey().getName()));
+    assertTrue(jobs.get(2).isSetCronSchedule());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingField() {
+    JobMix.parse(ImmutableList.of("service 2 10 1.0 1024"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownKind() {
+    JobMix.parse(ImmutableList.of("batch 2 10 1.0 1024 2048"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadNumber() {
+    JobMix.parse(ImmutableList.of("service two 10 1.0 1024 2048"));
+  }
+}
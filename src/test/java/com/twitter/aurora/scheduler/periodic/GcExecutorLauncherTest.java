@@ -21,6 +21,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
 
 import org.apache.mesos.Protos.ExecutorInfo;
 import org.apache.mesos.Protos.FrameworkID;
@@ -29,6 +30,8 @@ import org.apache.mesos.Protos.OfferID;
 import org.apache.mesos.Protos.Resource;
 import org.apache.mesos.Protos.SlaveID;
 import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -40,20 +43,28 @@ import com.twitter.aurora.gen.ScheduleStatus;
 import com.twitter.aurora.gen.ScheduledTask;
 import com.twitter.aurora.gen.TaskConfig;
 import com.twitter.aurora.gen.comm.AdjustRetainedTasks;
+import com.twitter.aurora.gen.comm.GcExecutorCapabilities;
 import com.twitter.aurora.scheduler.PulseMonitor;
 import com.twitter.aurora.scheduler.base.Query;
 import com.twitter.aurora.scheduler.base.Tasks;
 import com.twitter.aurora.scheduler.configuration.Resources;
+import com.twitter.aurora.scheduler.events.PubsubEvent.StorageStarted;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TasksDeleted;
 import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
 import com.twitter.aurora.scheduler.storage.testing.StorageTestUtil;
 import com.twitter.common.testing.easymock.EasyMockTest;
 
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import static com.twitter.aurora.gen.ScheduleStatus.ASSIGNED;
 import static com.twitter.aurora.gen.ScheduleStatus.FAILED;
+import static com.twitter.aurora.gen.ScheduleStatus.FINISHED;
+import static com.twitter.aurora.gen.ScheduleStatus.RUNNING;
 
 public class GcExecutorLauncherTest extends EasyMockTest {
 
@@ -80,9 +91,14 @@ public class GcExecutorLauncherTest extends EasyMockTest {
     storageUtil = new StorageTestUtil(this);
     storageUtil.expectOperations();
     hostMonitor = createMock(new Clazz<PulseMonitor<String>>() { });
-    gcExecutorLauncher = new GcExecutorLauncher(
+    gcExecutorLauncher = createLauncher(false);
+  }
+
+  private GcExecutorLauncher createLauncher(boolean incremental) {
+    return new GcExecutorLauncher(
         hostMonitor,
         Optional.of("nonempty"),
+        incremental,
         storageUtil.storage);
   }
 
@@ -141,10 +157,126 @@ public class GcExecutorLauncherTest extends EasyMockTest {
     assertFalse(gcExecutorLauncher.createTask(smallOffer).isPresent());
   }
 
+  @Test
+  public void testIndexedTasks() throws ThriftBinaryCodec.CodingException {
+    IScheduledTask deletedTask = makeTask(JOB_A, true, FAILED);
+    ScheduledTask otherHostTask = makeTask(JOB_A, true, RUNNING).newBuilder();
+    otherHostTask.getAssignedTask().setSlaveHost("other-host");
+    IScheduledTask runningTask = makeTask(JOB_A, true, RUNNING);
+
+    storageUtil.expectTaskFetch(
+        Query.unscoped(),
+        deletedTask,
+        IScheduledTask.build(otherHostTask));
+    expect(hostMonitor.isAlive(HOST)).andReturn(false);
+    hostMonitor.pulse(HOST);
+
+    control.replay();
+
+    gcExecutorLauncher.storageStarted(new StorageStarted());
+    gcExecutorLauncher.taskChangedState(new TaskStateChange(runningTask, ASSIGNED));
+    gcExecutorLauncher.tasksDeleted(new TasksDeleted(ImmutableSet.of(deletedTask)));
+
+    Optional<TaskInfo> taskInfo = gcExecutorLauncher.createTask(OFFER);
+    assertTrue(taskInfo.isPresent());
+    assertRetainedTasks(taskInfo.get(), runningTask);
+  }
+
+  @Test
+  public void testIncremental() throws ThriftBinaryCodec.CodingException {
+    gcExecutorLauncher = createLauncher(true);
+
+    IScheduledTask deletedTask = makeTask(JOB_A, true, FAILED);
+    IScheduledTask finishedTask = makeTask(JOB_A, true, RUNNING);
+    IScheduledTask newTask = makeTask(JOB_A, true, RUNNING);
+
+    storageUtil.expectTaskFetch(Query.unscoped(), deletedTask, finishedTask);
+    expect(hostMonitor.isAlive(HOST)).andReturn(false).times(3);
+    hostMonitor.pulse(HOST);
+    expectLastCall().times(3);
+
+    control.replay();
+
+    gcExecutorLauncher.storageStarted(new StorageStarted());
+
+    // The first message is complete.
+    TaskInfo taskInfo = gcExecutorLauncher.createTask(OFFER).get();
+    assertFalse(decode(taskInfo).isIncremental());
+    assertRetainedTasks(taskInfo, deletedTask, finishedTask);
+    assertTrue(gcExecutorLauncher.statusUpdate(
+        gcStatus(taskInfo, TaskState.TASK_FINISHED, new GcExecutorCapabilities(true))));
+
+    gcExecutorLauncher.tasksDeleted(new TasksDeleted(ImmutableSet.of(deletedTask)));
+    finishedTask = IScheduledTask.build(finishedTask.newBuilder().setStatus(FINISHED));
+    gcExecutorLauncher.taskChangedState(new TaskStateChange(finishedTask, RUNNING));
+    gcExecutorLauncher.taskChangedState(new TaskStateChange(newTask, ASSIGNED));
+
+    // Once accepted, only changes are sent.
+    taskInfo = gcExecutorLauncher.createTask(OFFER).get();
+    AdjustRetainedTasks message = decode(taskInfo);
+    assertTrue(message.isIncremental());
+    assertRetainedTasks(taskInfo, finishedTask, newTask);
+    assertEquals(ImmutableSet.of(Tasks.id(deletedTask)), message.getReleasedTasks());
+    assertTrue(gcExecutorLauncher.statusUpdate(gcStatus(taskInfo, TaskState.TASK_FAILED)));
+
+    // A rejected message is followed by a complete one.
+    taskInfo = gcExecutorLauncher.createTask(OFFER).get();
+    assertFalse(decode(taskInfo).isIncremental());
+    assertRetainedTasks(taskInfo, finishedTask, newTask);
+  }
+
+  @Test
+  public void testIncrementalUnsupported() throws ThriftBinaryCodec.CodingException {
+    gcExecutorLauncher = createLauncher(true);
+
+    IScheduledTask task = makeTask(JOB_A, true, RUNNING);
+
+    storageUtil.expectTaskFetch(Query.unscoped(), task);
+    expect(hostMonitor.isAlive(HOST)).andReturn(false).times(3);
+    hostMonitor.pulse(HOST);
+    expectLastCall().times(3);
+
+    control.replay();
+
+    gcExecutorLauncher.storageStarted(new StorageStarted());
+
+    // An executor that does not report its capabilities may predate incremental messages.
+    TaskInfo taskInfo = gcExecutorLauncher.createTask(OFFER).get();
+    assertTrue(gcExecutorLauncher.statusUpdate(gcStatus(taskInfo, TaskState.TASK_FINISHED)));
+    taskInfo = gcExecutorLauncher.createTask(OFFER).get();
+    assertFalse(decode(taskInfo).isIncremental());
+    assertRetainedTasks(taskInfo, task);
+
+    assertTrue(gcExecutorLauncher.statusUpdate(
+        gcStatus(taskInfo, TaskState.TASK_FINISHED, new GcExecutorCapabilities(false))));
+    taskInfo = gcExecutorLauncher.createTask(OFFER).get();
+    assertFalse(decode(taskInfo).isIncremental());
+    assertRetainedTasks(taskInfo, task);
+  }
+
+  private static TaskStatus gcStatus(TaskInfo taskInfo, TaskState state) {
+    return TaskStatus.newBuilder().setTaskId(taskInfo.getTaskId()).setState(state).build();
+  }
+
+  private static TaskStatus gcStatus(
+      TaskInfo taskInfo,
+      TaskState state,
+      GcExecutorCapabilities capabilities) throws ThriftBinaryCodec.CodingException {
+
+    return gcStatus(taskInfo, state).toBuilder()
+        .setData(ByteString.copyFrom(ThriftBinaryCodec.encodeNonNull(capabilities)))
+        .build();
+  }
+
+  private static AdjustRetainedTasks decode(TaskInfo taskInfo)
+      throws ThriftBinaryCodec.CodingException {
+
+    return ThriftBinaryCodec.decode(AdjustRetainedTasks.class, taskInfo.getData().toByteArray());
+  }
+
   private static void assertRetainedTasks(TaskInfo taskInfo, IScheduledTask... tasks)
       throws ThriftBinaryCodec.CodingException {
-    AdjustRetainedTasks message = ThriftBinaryCodec.decode(
-        AdjustRetainedTasks.class, taskInfo.getData().toByteArray());
+    AdjustRetainedTasks message = decode(taskInfo);
     Map<String, IScheduledTask> byId = Tasks.mapById(ImmutableSet.copyOf(tasks));
     assertEquals(Maps.transformValues(byId, Tasks.GET_STATUS), message.getRetainedTasks());
   }
@@ -132,6 +132,15 @@ public abstract class BaseSchedulerCoreImplTest extends EasyMockTest {
   private static final String SLAVE_HOST_1 = "SlaveHost1";
 
   private Driver driver;
+
+  // Sends kills directly to the driver, so that they may be expected on the driver mock.
+  private final KillDispatcher killDispatcher = new KillDispatcher() {
+    @Override public void killTasks(Iterable<String> taskIds) {
+      for (String taskId : taskIds) {
+        driver.killTask(taskId);
+      }
+    }
+  };
   private StateManagerImpl stateManager;
   private Storage storage;
   private SchedulerCoreImpl scheduler;
@@ -191,7 +200,13 @@ public abstract class BaseSchedulerCoreImplTest extends EasyMockTest {
       }
     });
 
-    stateManager = new StateManagerImpl(storage, clock, driver, taskIdGenerator, eventSink);
+    stateManager = new StateManagerImpl(
+        storage,
+        clock,
+        killDispatcher,
+        taskIdGenerator,
+        new TaskEventRetention(100),
+        eventSink);
     ImmediateJobManager immediateManager = new ImmediateJobManager(stateManager, storage);
     cron = new CronJobManager(stateManager, storage, cronScheduler, shutdownRegistry);
     scheduler = new SchedulerCoreImpl(
@@ -16,16 +16,15 @@
 package com.twitter.aurora.scheduler.state;
 
 import java.util.Map;
-import java.util.concurrent.Executor;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 
-import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.IExpectationSetters;
 import org.junit.Before;
@@ -45,8 +44,11 @@ import com.twitter.aurora.scheduler.configuration.SanitizedConfiguration;
 import com.twitter.aurora.scheduler.cron.CronScheduler;
 import com.twitter.aurora.scheduler.events.PubsubEvent;
 import com.twitter.aurora.scheduler.events.PubsubEvent.StorageStarted;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import com.twitter.aurora.scheduler.events.PubsubEvent.TasksDeleted;
 import com.twitter.aurora.scheduler.storage.Storage;
 import com.twitter.aurora.scheduler.storage.entities.IJobConfiguration;
+import com.twitter.aurora.scheduler.storage.entities.IJobKey;
 import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
 import com.twitter.aurora.scheduler.storage.entities.ITaskConfig;
 import com.twitter.aurora.scheduler.storage.testing.StorageTestUtil;
@@ -56,10 +58,10 @@ import com.twitter.common.base.ExceptionalCommand;
 import com.twitter.common.testing.easymock.EasyMockTest;
 
 import static org.easymock.EasyMock.anyObject;
-import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import static com.twitter.aurora.gen.Constants.DEFAULT_ENVIRONMENT;
@@ -70,12 +72,11 @@ public class CronJobManagerTest extends EasyMockTest {
   private static final String OWNER = "owner";
   private static final String ENVIRONMENT = "staging11";
   private static final String JOB_NAME = "jobName";
-  private static final IScheduledTask TASK = IScheduledTask.build(new ScheduledTask());
+  private static final IScheduledTask TASK = makeTask("task", ScheduleStatus.KILLING);
+  private static final IScheduledTask TASK_KILLED = makeTask("task", ScheduleStatus.KILLED);
 
   private SchedulerCore scheduler;
   private StateManagerImpl stateManager;
-  private Executor delayExecutor;
-  private Capture<Runnable> delayLaunchCapture;
   private StorageTestUtil storageUtil;
 
   private CronScheduler cronScheduler;
@@ -88,8 +89,6 @@ public class CronJobManagerTest extends EasyMockTest {
   public void setUp() throws Exception {
     scheduler = createMock(SchedulerCore.class);
     stateManager = createMock(StateManagerImpl.class);
-    delayExecutor = createMock(Executor.class);
-    delayLaunchCapture = createCapture();
     storageUtil = new StorageTestUtil(this);
     storageUtil.expectOperations();
     cronScheduler = createMock(CronScheduler.class);
@@ -99,8 +98,7 @@ public class CronJobManagerTest extends EasyMockTest {
         stateManager,
         storageUtil.storage,
         cronScheduler,
-        shutdownRegistry,
-        delayExecutor);
+        shutdownRegistry);
     cron.schedulerCore = scheduler;
     job = makeJob();
     sanitizedConfiguration = SanitizedConfiguration.fromUnsanitized(job);
@@ -166,22 +164,27 @@ public class CronJobManagerTest extends EasyMockTest {
     cron.startJobNow(job.getKey());
   }
 
-  @Test
-  public void testDelayedStart() throws Exception {
-    expectJobAccepted();
+  private void expectDelayedStart() throws Exception {
     expectJobFetch();
 
     // Query to test if live tasks exist for the job.
     expectActiveTaskFetch(TASK);
 
-    // Live tasks exist, so the cron manager must delay the cron launch.
-    delayExecutor.execute(capture(delayLaunchCapture));
-
     // The cron manager will then try to initiate the kill.
     scheduler.killTasks((Query.Builder) anyObject(), eq(CronJobManager.CRON_USER));
 
-    // Immediate query and delayed query.
-    expectActiveTaskFetch(TASK).times(2);
+    // Live tasks remain, so the cron manager must delay the cron launch.
+    expectActiveTaskFetch(TASK);
+  }
+
+  private void taskKilled() {
+    cron.taskChangedState(new TaskStateChange(TASK_KILLED, ScheduleStatus.KILLING));
+  }
+
+  @Test
+  public void testDelayedStart() throws Exception {
+    expectJobAccepted();
+    expectDelayedStart();
 
     // Simulate the live task disappearing.
     expectActiveTaskFetch();
@@ -192,35 +195,77 @@ public class CronJobManagerTest extends EasyMockTest {
 
     cron.receiveJob(sanitizedConfiguration);
     cron.startJobNow(job.getKey());
-    delayLaunchCapture.getValue().run();
+    assertEquals(ImmutableSet.of(job.getKey()), cron.getPendingRuns());
+    taskKilled();
+    assertEquals(ImmutableSet.<IJobKey>of(), cron.getPendingRuns());
   }
 
   @Test
-  public void testDelayedStartResets() throws Exception {
+  public void testDelayedStartTasksDeleted() throws Exception {
     expectJobAccepted();
-    expectJobFetch();
+    expectDelayedStart();
+    expectActiveTaskFetch();
 
-    // Query to test if live tasks exist for the job.
-    expectActiveTaskFetch(TASK);
+    stateManager.insertPendingTasks(sanitizedConfiguration.getTaskConfigs());
 
-    // Live tasks exist, so the cron manager must delay the cron launch.
-    delayExecutor.execute(capture(delayLaunchCapture));
+    control.replay();
 
-    // The cron manager will then try to initiate the kill.
-    scheduler.killTasks((Query.Builder) anyObject(), eq(CronJobManager.CRON_USER));
+    cron.receiveJob(sanitizedConfiguration);
+    cron.startJobNow(job.getKey());
+    cron.tasksDeleted(new TasksDeleted(ImmutableSet.of(TASK)));
+  }
+
+  @Test
+  public void testDelayedStartIgnoresUnrelatedTasks() throws Exception {
+    expectJobAccepted();
+    expectDelayedStart();
+
+    control.replay();
+
+    cron.receiveJob(sanitizedConfiguration);
+    cron.startJobNow(job.getKey());
 
-    // Immediate query and delayed query.
-    expectActiveTaskFetch(TASK).times(2);
+    // Another task of the job, which the run is not waiting on.
+    cron.taskChangedState(
+        new TaskStateChange(makeTask("other", ScheduleStatus.FINISHED), ScheduleStatus.RUNNING));
+
+    // A task of the job that is still active.
+    cron.taskChangedState(new TaskStateChange(TASK, ScheduleStatus.RUNNING));
+    assertEquals(ImmutableSet.of(job.getKey()), cron.getPendingRuns());
+  }
+
+  @Test
+  public void testDelayedStartWaitsForStragglers() throws Exception {
+    expectJobAccepted();
+    expectDelayedStart();
+
+    // A task became active after the run was delayed.
+    IScheduledTask straggler = makeTask("straggler", ScheduleStatus.PENDING);
+    expectActiveTaskFetch(straggler);
+    expectActiveTaskFetch();
+
+    stateManager.insertPendingTasks(sanitizedConfiguration.getTaskConfigs());
+
+    control.replay();
+
+    cron.receiveJob(sanitizedConfiguration);
+    cron.startJobNow(job.getKey());
+    taskKilled();
+    assertEquals(ImmutableSet.of(job.getKey()), cron.getPendingRuns());
+    cron.tasksDeleted(new TasksDeleted(ImmutableSet.of(straggler)));
+    assertEquals(ImmutableSet.<IJobKey>of(), cron.getPendingRuns());
+  }
+
+  @Test
+  public void testDelayedStartResets() throws Exception {
+    expectJobAccepted();
+    expectDelayedStart();
 
     // Simulate the live task disappearing.
     expectActiveTaskFetch();
 
     // Round two.
-    expectJobFetch();
-    expectActiveTaskFetch(TASK);
-    delayExecutor.execute(capture(delayLaunchCapture));
-    scheduler.killTasks((Query.Builder) anyObject(), eq(CronJobManager.CRON_USER));
-    expectActiveTaskFetch(TASK).times(2);
+    expectDelayedStart();
     expectActiveTaskFetch();
 
     stateManager.insertPendingTasks(sanitizedConfiguration.getTaskConfigs());
@@ -230,32 +275,20 @@ public class CronJobManagerTest extends EasyMockTest {
 
     cron.receiveJob(sanitizedConfiguration);
     cron.startJobNow(job.getKey());
-    delayLaunchCapture.getValue().run();
+    taskKilled();
 
     // Start the job again.  Since the previous delayed start completed, this should repeat the
     // entire process.
     cron.startJobNow(job.getKey());
-    delayLaunchCapture.getValue().run();
+    taskKilled();
   }
 
   @Test
   public void testDelayedStartMultiple() throws Exception {
     expectJobAccepted();
-    expectJobFetch();
-
-    // Query to test if live tasks exist for the job.
-    expectActiveTaskFetch(TASK).times(3);
-
-    // Live tasks exist, so the cron manager must delay the cron launch.
-    delayExecutor.execute(capture(delayLaunchCapture));
-
-    // The cron manager will then try to initiate the kill.
-    expectJobFetch().times(2);
-    scheduler.killTasks((Query.Builder) anyObject(), eq(CronJobManager.CRON_USER));
-    expectLastCall().times(3);
-
-    // Immediate queries and delayed query.
-    expectActiveTaskFetch(TASK).times(4);
+    expectDelayedStart();
+    expectDelayedStart();
+    expectDelayedStart();
 
     // Simulate the live task disappearing.
     expectActiveTaskFetch();
@@ -266,12 +299,12 @@ public class CronJobManagerTest extends EasyMockTest {
 
     cron.receiveJob(sanitizedConfiguration);
 
-    // Attempt to trick the cron manager into launching multiple times, or launching multiple
-    // pollers.
+    // Attempt to trick the cron manager into launching multiple times.
     cron.startJobNow(job.getKey());
     cron.startJobNow(job.getKey());
     cron.startJobNow(job.getKey());
-    delayLaunchCapture.getValue().run();
+    taskKilled();
+    taskKilled();
   }
 
   @Test
@@ -344,6 +377,14 @@ public class CronJobManagerTest extends EasyMockTest {
         .setInstanceCount(1));
   }
 
+  private static IScheduledTask makeTask(String id, ScheduleStatus status) {
+    return IScheduledTask.build(new ScheduledTask()
+        .setStatus(status)
+        .setAssignedTask(new AssignedTask()
+            .setTaskId(id)
+            .setTask(defaultTask().setEnvironment(ENVIRONMENT))));
+  }
+
   private static TaskConfig defaultTask() {
     return new TaskConfig()
         .setContactEmail("testing@twitter.com")
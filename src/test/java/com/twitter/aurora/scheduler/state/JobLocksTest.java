@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.state;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.scheduler.base.JobKeys;
+import com.twitter.aurora.scheduler.state.JobLocks.Held;
+import com.twitter.aurora.scheduler.storage.entities.IJobKey;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JobLocksTest {
+
+  private static final IJobKey JOB_A = JobKeys.from("role", "env", "a");
+  private static final IJobKey JOB_B = JobKeys.from("role", "env", "b");
+  private static final long ACQUIRE_TIMEOUT_SECS = 10;
+  private static final long BLOCKED_WAIT_MS = 100;
+
+  private JobLocks jobLocks;
+
+  @Before
+  public void setUp() {
+    // Enough stripes that the test jobs are unlikely to share one.
+    jobLocks = new JobLocks(1024);
+  }
+
+  @Test
+  public void testIndependentJobs() throws Exception {
+    Held held = jobLocks.lockJob("test", JOB_A);
+    try {
+      assertAcquired(JOB_B);
+    } finally {
+      held.release();
+    }
+  }
+
+  @Test
+  public void testSameJob() throws Exception {
+    Held held = jobLocks.lockJob("test", JOB_A);
+    try {
+      assertBlocked(JOB_A);
+    } finally {
+      held.release();
+    }
+    assertAcquired(JOB_A);
+  }
+
+  @Test
+  public void testAllJobs() throws Exception {
+    Held held = jobLocks.lockAllJobs("test");
+    try {
+      assertBlocked(JOB_A);
+
+      // Jobs may be locked within an operation holding all job locks.
+      jobLocks.lockJob("test", JOB_A).release();
+    } finally {
+      held.release();
+    }
+    assertAcquired(JOB_A);
+  }
+
+  @Test
+  public void testReentrant() {
+    Held outer = jobLocks.lockJobs("test", ImmutableSet.of(JOB_A, JOB_B));
+    jobLocks.lockJob("test", JOB_B).release();
+    outer.release();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNoAdditionalJobs() {
+    jobLocks.lockJob("test", JOB_A);
+    jobLocks.lockJob("test", JOB_B);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNoUpgradeToAllJobs() {
+    jobLocks.lockJob("test", JOB_A);
+    jobLocks.lockAllJobs("test");
+  }
+
+  private CountDownLatch lockInOtherThread(final IJobKey jobKey) {
+    final CountDownLatch locked = new CountDownLatch(1);
+    Thread thread = new Thread() {
+      @Override public void run() {
+        jobLocks.lockJob("test", jobKey).release();
+        locked.countDown();
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+    return locked;
+  }
+
+  private void assertAcquired(IJobKey jobKey) throws InterruptedException {
+    // Generous, since a loaded host may be slow to run the thread.
+    assertTrue(lockInOtherThread(jobKey).await(ACQUIRE_TIMEOUT_SECS, TimeUnit.SECONDS));
+  }
+
+  private void assertBlocked(IJobKey jobKey) throws InterruptedException {
+    assertFalse(lockInOtherThread(jobKey).await(BLOCKED_WAIT_MS, TimeUnit.MILLISECONDS));
+  }
+}
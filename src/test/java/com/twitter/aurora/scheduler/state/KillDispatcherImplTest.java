@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.state;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.RateLimiter;
+
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.scheduler.Driver;
+import com.twitter.aurora.scheduler.state.KillDispatcher.KillDispatcherImpl;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.testing.easymock.EasyMockTest;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+
+public class KillDispatcherImplTest extends EasyMockTest {
+
+  private static final Amount<Long, Time> RETRY_DELAY = Amount.of(1L, Time.SECONDS);
+
+  private Driver driver;
+  private ScheduledExecutorService executor;
+
+  @Before
+  public void setUp() {
+    driver = createMock(Driver.class);
+    executor = createMock(ScheduledExecutorService.class);
+  }
+
+  private KillDispatcher createDispatcher(int maxAttempts) {
+    return createDispatcher(10, maxAttempts);
+  }
+
+  private KillDispatcher createDispatcher(int maxQueueDepth, int maxAttempts) {
+    return new KillDispatcherImpl(
+        driver,
+        executor,
+        RateLimiter.create(1000),
+        maxQueueDepth,
+        2,
+        maxAttempts,
+        RETRY_DELAY);
+  }
+
+  @Test
+  public void testBatchedKills() {
+    Capture<Runnable> drain = createCapture();
+    executor.execute(capture(drain));
+    driver.killTask("a");
+    driver.killTask("b");
+    driver.killTask("c");
+
+    control.replay();
+
+    KillDispatcher dispatcher = createDispatcher(3);
+    dispatcher.killTasks(ImmutableList.of("a", "b"));
+    dispatcher.killTasks(ImmutableList.of("c"));
+    drain.getValue().run();
+  }
+
+  @Test
+  public void testQueueOverflow() {
+    Capture<Runnable> drain = createCapture();
+    executor.execute(capture(drain));
+    driver.killTask("a");
+    driver.killTask("b");
+    driver.killTask("c");
+    driver.killTask("d");
+
+    control.replay();
+
+    KillDispatcher dispatcher = createDispatcher(1, 3);
+    dispatcher.killTasks(ImmutableList.of("a", "b", "c"));
+    dispatcher.killTasks(ImmutableList.of("d"));
+    drain.getValue().run();
+  }
+
+  @Test
+  public void testRetry() {
+    Capture<Runnable> drain = createCapture();
+    executor.execute(capture(drain));
+    driver.killTask("a");
+    expectLastCall().andThrow(new IllegalStateException("Driver not running"));
+    Capture<Runnable> retry = createCapture();
+    expect(executor.schedule(capture(retry), eq(1L), eq(TimeUnit.SECONDS))).andReturn(null);
+    driver.killTask("a");
+
+    control.replay();
+
+    createDispatcher(3).killTasks(ImmutableList.of("a"));
+    drain.getValue().run();
+    retry.getValue().run();
+  }
+
+  @Test
+  public void testGiveUp() {
+    Capture<Runnable> drain = createCapture();
+    executor.execute(capture(drain));
+    driver.killTask("a");
+    expectLastCall().andThrow(new IllegalStateException("Driver not running"));
+
+    control.replay();
+
+    createDispatcher(1).killTasks(ImmutableList.of("a"));
+    drain.getValue().run();
+  }
+}
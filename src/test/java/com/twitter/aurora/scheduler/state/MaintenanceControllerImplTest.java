@@ -17,7 +17,6 @@ package com.twitter.aurora.scheduler.state;
 
 import java.util.Set;
 
-import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -116,9 +115,13 @@ public class MaintenanceControllerImplTest extends EasyMockTest {
     control.replay();
 
     assertStatus(HOST_A, SCHEDULED, maintenance.startMaintenance(A));
+    assertEquals(SCHEDULED, maintenance.getMode(HOST_A));
     assertStatus(HOST_A, DRAINING, maintenance.drain(A));
+    assertEquals(DRAINING, maintenance.getMode(HOST_A));
     eventSink.execute(new TaskStateChange(IScheduledTask.build(task.setStatus(FINISHED)), RUNNING));
+    assertEquals(DRAINED, maintenance.getMode(HOST_A));
     assertStatus(HOST_A, NONE, maintenance.endMaintenance(A));
+    assertEquals(NONE, maintenance.getMode(HOST_A));
   }
 
   @Test
@@ -185,15 +188,25 @@ public class MaintenanceControllerImplTest extends EasyMockTest {
 
   @Test
   public void testGetMode() {
-    expect(storageUtil.attributeStore.getHostAttributes(HOST_A))
-        .andReturn(Optional.of(new HostAttributes().setHost(HOST_A).setMode(DRAINING)));
-    expect(storageUtil.attributeStore.getHostAttributes("unknown"))
-        .andReturn(Optional.<HostAttributes>absent());
+    expect(storageUtil.attributeStore.getHostAttributes())
+        .andReturn(ImmutableSet.of(
+            new HostAttributes().setHost(HOST_A).setMode(SCHEDULED),
+            new HostAttributes().setHost(HOST_B).setMode(NONE)));
+    expectMaintenanceModeChange(HOST_B, SCHEDULED);
+    expectMaintenanceModeChange(HOST_A, NONE);
 
     control.replay();
 
-    assertEquals(DRAINING, maintenance.getMode(HOST_A));
+    // Modes are loaded when storage starts, and read without accessing storage.
+    eventSink.execute(new StorageStarted());
+    assertEquals(SCHEDULED, maintenance.getMode(HOST_A));
+    assertEquals(NONE, maintenance.getMode(HOST_B));
     assertEquals(NONE, maintenance.getMode("unknown"));
+
+    maintenance.startMaintenance(ImmutableSet.of(HOST_B));
+    maintenance.endMaintenance(A);
+    assertEquals(NONE, maintenance.getMode(HOST_A));
+    assertEquals(SCHEDULED, maintenance.getMode(HOST_B));
   }
 
   private void expectFetchTasksByHost(String hostName, ImmutableSet<ScheduledTask> tasks) {
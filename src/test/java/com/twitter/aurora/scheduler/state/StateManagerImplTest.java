@@ -78,6 +78,15 @@ public class StateManagerImplTest extends EasyMockTest {
   private static final IJobKey JOB_KEY = JobKeys.from(JIM.getRole(), DEFAULT_ENVIRONMENT, MY_JOB);
 
   private Driver driver;
+
+  // Sends kills directly to the driver, so that they may be expected on the driver mock.
+  private final KillDispatcher killDispatcher = new KillDispatcher() {
+    @Override public void killTasks(Iterable<String> taskIds) {
+      for (String taskId : taskIds) {
+        driver.killTask(taskId);
+      }
+    }
+  };
   private TaskIdGenerator taskIdGenerator;
   private Closure<PubsubEvent> eventSink;
   private StateManagerImpl stateManager;
@@ -91,7 +100,13 @@ public class StateManagerImplTest extends EasyMockTest {
     eventSink = createMock(new Clazz<Closure<PubsubEvent>>() { });
     // TODO(William Farner): Use a mocked storage.
     storage = MemStorage.newEmptyStorage();
-    stateManager = new StateManagerImpl(storage, clock, driver, taskIdGenerator, eventSink);
+    stateManager = new StateManagerImpl(
+        storage,
+        clock,
+        killDispatcher,
+        taskIdGenerator,
+        new TaskEventRetention(100),
+        eventSink);
   }
 
   @After
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.state;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.gen.ScheduleStatus;
+import com.twitter.aurora.gen.ScheduledTask;
+import com.twitter.aurora.gen.TaskEvent;
+import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
+import com.twitter.aurora.scheduler.storage.entities.ITaskEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import static com.twitter.aurora.gen.ScheduleStatus.ASSIGNED;
+import static com.twitter.aurora.gen.ScheduleStatus.FAILED;
+import static com.twitter.aurora.gen.ScheduleStatus.PENDING;
+import static com.twitter.aurora.gen.ScheduleStatus.RUNNING;
+import static com.twitter.aurora.gen.ScheduleStatus.STARTING;
+
+public class TaskEventRetentionTest {
+
+  private TaskEventRetention retention;
+
+  @Before
+  public void setUp() {
+    retention = new TaskEventRetention(2);
+  }
+
+  private static TaskEvent event(long timestamp, ScheduleStatus status) {
+    return new TaskEvent().setTimestamp(timestamp).setStatus(status);
+  }
+
+  private static IScheduledTask task(TaskEvent... events) {
+    return IScheduledTask.build(new ScheduledTask().setTaskEvents(Lists.newArrayList(events)));
+  }
+
+  private static List<String> describe(IScheduledTask task) {
+    ImmutableList.Builder<String> events = ImmutableList.builder();
+    for (ITaskEvent event : task.getTaskEvents()) {
+      events.add(event.getTimestamp() + " " + event.getStatus()
+          + (event.isSetMessage() ? " " + event.getMessage() : ""));
+    }
+    return events.build();
+  }
+
+  @Test
+  public void testShortHistory() {
+    IScheduledTask task = task(event(1, PENDING), event(2, ASSIGNED), event(3, STARTING));
+    assertSame(task, retention.compact(task));
+  }
+
+  @Test
+  public void testCompaction() {
+    IScheduledTask task = task(
+        event(1, PENDING),
+        event(2, ASSIGNED),
+        event(3, STARTING),
+        event(4, RUNNING).setMessage("Started"),
+        event(5, FAILED),
+        event(6, PENDING),
+        event(7, ASSIGNED),
+        event(8, STARTING));
+
+    assertEquals(
+        ImmutableList.of(
+            "1 PENDING",
+            "4 RUNNING Started",
+            "6 PENDING " + TaskEventRetention.SUMMARY_MESSAGE,
+            "7 ASSIGNED",
+            "8 STARTING"),
+        describe(retention.compact(task)));
+  }
+
+  @Test
+  public void testRecompaction() {
+    IScheduledTask task = task(
+        event(1, PENDING),
+        event(2, ASSIGNED),
+        event(3, STARTING),
+        event(4, RUNNING),
+        event(5, FAILED));
+    IScheduledTask compacted = retention.compact(task);
+    assertEquals(
+        ImmutableList.of(
+            "1 PENDING",
+            "3 STARTING " + TaskEventRetention.SUMMARY_MESSAGE,
+            "4 RUNNING",
+            "5 FAILED"),
+        describe(compacted));
+
+    ScheduledTask builder = compacted.newBuilder();
+    builder.addToTaskEvents(event(6, PENDING));
+    builder.addToTaskEvents(event(7, ASSIGNED));
+    assertEquals(
+        ImmutableList.of(
+            "1 PENDING",
+            "5 FAILED " + TaskEventRetention.SUMMARY_MESSAGE,
+            "6 PENDING",
+            "7 ASSIGNED"),
+        describe(retention.compact(IScheduledTask.build(builder))));
+  }
+
+  @Test
+  public void testMessagesBounded() {
+    IScheduledTask task = task(
+        event(1, PENDING),
+        event(2, ASSIGNED).setMessage("a"),
+        event(3, STARTING).setMessage("b"),
+        event(4, RUNNING).setMessage("c"),
+        event(5, FAILED),
+        event(6, PENDING),
+        event(7, ASSIGNED));
+
+    assertEquals(
+        ImmutableList.of(
+            "1 PENDING",
+            "3 STARTING b",
+            "4 RUNNING c",
+            "5 FAILED " + TaskEventRetention.SUMMARY_MESSAGE,
+            "6 PENDING",
+            "7 ASSIGNED"),
+        describe(retention.compact(task)));
+  }
+
+  @Test
+  public void testMessageResemblingSummary() {
+    IScheduledTask task = task(
+        event(1, PENDING),
+        event(2, ASSIGNED),
+        event(3, STARTING).setMessage("Compacted 3 earlier events"),
+        event(4, RUNNING),
+        event(5, FAILED),
+        event(6, PENDING),
+        event(7, ASSIGNED));
+
+    assertEquals(
+        ImmutableList.of(
+            "1 PENDING",
+            "3 STARTING Compacted 3 earlier events",
+            "5 FAILED " + TaskEventRetention.SUMMARY_MESSAGE,
+            "6 PENDING",
+            "7 ASSIGNED"),
+        describe(retention.compact(task)));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.stats;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.util.testing.FakeClock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+  private static final Amount<Long, Time> WINDOW = Amount.of(1L, Time.MINUTES);
+
+  private FakeClock clock;
+  private LatencyHistogram histogram;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock();
+    histogram = new LatencyHistogram(clock, WINDOW);
+  }
+
+  @Test
+  public void testBuckets() {
+    for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+      int bucket = LatencyHistogram.bucket(value);
+      long highest = LatencyHistogram.highestValue(bucket);
+      assertTrue(value + " above " + highest, value <= highest);
+      assertTrue(value + " too far below " + highest, highest - value <= value / 16);
+      if (bucket > 0) {
+        assertTrue(LatencyHistogram.highestValue(bucket - 1) < value);
+      }
+    }
+    assertEquals(0, LatencyHistogram.bucket(-5));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertEquals(0, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void testPercentiles() {
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    assertWithin(500000, histogram.getPercentile(50));
+    assertWithin(900000, histogram.getPercentile(90));
+    assertWithin(990000, histogram.getPercentile(99));
+    assertWithin(1000000, histogram.getPercentile(100));
+    assertWithin(1000, histogram.getPercentile(0));
+  }
+
+  @Test
+  public void testWindows() {
+    histogram.record(1000000);
+    clock.advance(WINDOW);
+    histogram.record(10);
+
+    // The previous window is still included.
+    assertWithin(1000000, histogram.getPercentile(99));
+
+    clock.advance(WINDOW);
+    assertEquals(10, histogram.getPercentile(99));
+
+    clock.advance(Amount.of(2 * WINDOW.getValue(), WINDOW.getUnit()));
+    assertEquals(0, histogram.getPercentile(99));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(expected + " > " + actual, expected <= actual);
+    assertTrue(actual + " too far above " + expected, actual - expected <= expected / 16);
+  }
+}
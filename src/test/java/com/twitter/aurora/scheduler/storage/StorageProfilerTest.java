@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.scheduler.storage.StorageProfiler.Kind;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.util.testing.FakeClock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StorageProfilerTest {
+
+  private static class OuterWork { }
+  private static class InnerWork { }
+
+  private FakeClock clock;
+  private StorageProfiler profiler;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock();
+    profiler = new StorageProfiler(2, clock);
+  }
+
+  private static Map<String, Object> site(List<Map<String, Object>> sites, Kind kind) {
+    for (Map<String, Object> site : sites) {
+      if (site.get("kind").equals(kind.name())) {
+        return site;
+      }
+    }
+    throw new AssertionError("No site recorded for " + kind);
+  }
+
+  @Test
+  public void testSiteStats() {
+    profiler.record(Kind.WRITE, new InnerWork(), 5L, 10L);
+    profiler.record(Kind.WRITE, new InnerWork(), 1L, 30L);
+    profiler.record(Kind.CONSISTENT_READ, new OuterWork(), 0L, 100L);
+
+    List<Map<String, Object>> sites = profiler.getSites();
+    assertEquals(2, sites.size());
+    // Sites are ordered by total hold time.
+    assertEquals(Kind.CONSISTENT_READ.name(), sites.get(0).get("kind"));
+
+    Map<String, Object> write = site(sites, Kind.WRITE);
+    assertEquals(InnerWork.class.getName(), write.get("site"));
+    assertEquals(2L, write.get("count"));
+    assertEquals(6L, write.get("wait_nanos_total"));
+    assertEquals(5L, write.get("wait_nanos_max"));
+    assertEquals(40L, write.get("hold_nanos_total"));
+    assertEquals(30L, write.get("hold_nanos_max"));
+  }
+
+  @Test
+  public void testNestedAttribution() {
+    assertTrue(profiler.enter(new OuterWork()));
+    assertFalse(profiler.enter(new InnerWork()));
+    profiler.record(Kind.WRITE, new InnerWork(), 0L, 10L);
+    profiler.exit();
+
+    profiler.record(Kind.WRITE, new InnerWork(), 0L, 10L);
+
+    List<Map<String, Object>> sites = profiler.getSites();
+    assertEquals(2, sites.size());
+    assertEquals(
+        ImmutableList.of(OuterWork.class.getName(), InnerWork.class.getName()),
+        ImmutableList.of(sites.get(0).get("site"), sites.get(1).get("site")));
+  }
+
+  @Test
+  public void testSlowestRetained() {
+    profiler.record(Kind.WRITE, new InnerWork(), 0L, 10L);
+    clock.advance(Amount.of(1L, Time.SECONDS));
+    profiler.record(Kind.WRITE, new InnerWork(), 0L, 30L);
+    profiler.record(Kind.LOG_WRITE, new OuterWork(), 7L, 20L);
+    profiler.record(Kind.WRITE, new InnerWork(), 0L, 5L);
+
+    List<Map<String, Object>> slowest = profiler.getSlowest();
+    assertEquals(2, slowest.size());
+    assertEquals(
+        ImmutableMap.<String, Object>of(
+            "kind", Kind.WRITE.name(),
+            "site", InnerWork.class.getName(),
+            "wait_nanos", 0L,
+            "hold_nanos", 30L,
+            "timestamp_ms", 1000L),
+        slowest.get(0));
+    assertEquals(20L, slowest.get(1).get("hold_nanos"));
+    assertEquals(Kind.LOG_WRITE.name(), slowest.get(1).get("kind"));
+  }
+
+  @Test
+  public void testQueryStats() {
+    profiler.recordQuery("job", 10, 2, 100L);
+    profiler.recordQuery("job", 20, 20, 50L);
+    profiler.recordQuery("all", 1000, 1, 5000L);
+
+    Map<String, Map<String, Long>> queries = profiler.getQueries();
+    assertEquals(2, queries.size());
+    assertEquals(
+        ImmutableMap.of("count", 2L, "scanned", 30L, "returned", 22L, "nanos_total", 150L),
+        queries.get("job"));
+    assertEquals(
+        ImmutableMap.of("count", 1L, "scanned", 1000L, "returned", 1L, "nanos_total", 5000L),
+        queries.get("all"));
+  }
+}
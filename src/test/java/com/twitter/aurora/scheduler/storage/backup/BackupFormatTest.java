@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.backup;
+
+import java.io.File;
+import java.util.Arrays;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.codec.ThriftBinaryCodec;
+import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
+import com.twitter.aurora.gen.AssignedTask;
+import com.twitter.aurora.gen.ScheduleStatus;
+import com.twitter.aurora.gen.ScheduledTask;
+import com.twitter.aurora.gen.storage.SchedulerMetadata;
+import com.twitter.aurora.gen.storage.Snapshot;
+import com.twitter.aurora.gen.storage.StoredJob;
+import com.twitter.aurora.scheduler.storage.backup.BackupFormat.BackupType;
+import com.twitter.common.io.FileUtils;
+
+import static org.junit.Assert.assertEquals;
+
+public class BackupFormatTest {
+
+  private File dir;
+
+  @Before
+  public void setUp() {
+    dir = FileUtils.createTempDir();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    org.apache.commons.io.FileUtils.deleteDirectory(dir);
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Snapshot snapshot = makeSnapshot();
+    File file = new File(dir, "backup");
+    assertEquals(file.length(), BackupFormat.writeFull(snapshot, file));
+
+    assertEquals(BackupType.FULL, BackupFormat.read(file).getType());
+    assertEquals(snapshot, BackupFormat.restore(dir, "backup"));
+  }
+
+  @Test
+  public void testReadLegacy() throws Exception {
+    Snapshot snapshot = makeSnapshot();
+    Files.write(ThriftBinaryCodec.encodeNonNull(snapshot), new File(dir, "legacy"));
+
+    assertEquals(snapshot, BackupFormat.restore(dir, "legacy"));
+  }
+
+  @Test(expected = CodingException.class)
+  public void testCorruptPayload() throws Exception {
+    File file = new File(dir, "backup");
+    BackupFormat.writeFull(makeSnapshot(), file);
+
+    byte[] contents = Files.toByteArray(file);
+    contents[contents.length / 2] ^= 0xFF;
+    Files.write(contents, file);
+
+    BackupFormat.read(file);
+  }
+
+  @Test(expected = CodingException.class)
+  public void testTruncated() throws Exception {
+    File file = new File(dir, "backup");
+    BackupFormat.writeFull(makeSnapshot(), file);
+
+    byte[] contents = Files.toByteArray(file);
+    Files.write(Arrays.copyOf(contents, contents.length - 1), file);
+
+    BackupFormat.read(file);
+  }
+
+  private static Snapshot makeSnapshot() {
+    ImmutableSet.Builder<ScheduledTask> tasks = ImmutableSet.builder();
+    for (int i = 0; i < 100; i++) {
+      tasks.add(new ScheduledTask()
+          .setStatus(ScheduleStatus.RUNNING)
+          .setAssignedTask(new AssignedTask().setTaskId("task-" + i).setSlaveHost("host-" + i)));
+    }
+    return new Snapshot()
+        .setTimestamp(1L)
+        .setTasks(tasks.build())
+        .setJobs(ImmutableSet.<StoredJob>of())
+        .setSchedulerMetadata(new SchedulerMetadata().setFrameworkId("frameworkId"));
+  }
+}
@@ -75,6 +75,7 @@ public class RecoveryTest extends EasyMockTest {
   private FakeClock clock;
   private StorageBackupImpl storageBackup;
   private RecoveryImpl recovery;
+  private RecoveryImpl indexedRecovery;
 
   @Before
   public void setUp() {
@@ -93,7 +94,20 @@ public class RecoveryTest extends EasyMockTest {
     TemporaryStorageFactory factory = new TemporaryStorageFactory();
     storageBackup =
         new StorageBackupImpl(snapshotStore, clock, new BackupConfig(backupDir, 5, INTERVAL));
-    recovery = new RecoveryImpl(backupDir, factory, primaryStorage, distributedStore, shutDownNow);
+    recovery = new RecoveryImpl(
+        backupDir,
+        factory,
+        primaryStorage,
+        distributedStore,
+        shutDownNow,
+        false);
+    indexedRecovery = new RecoveryImpl(
+        backupDir,
+        factory,
+        primaryStorage,
+        distributedStore,
+        shutDownNow,
+        true);
   }
 
   @Test
@@ -147,6 +161,72 @@ public class RecoveryTest extends EasyMockTest {
     transaction.getValue().apply(storeProvider);
   }
 
+  @Test
+  public void testRecoverIndexed() throws Exception {
+    expect(snapshotStore.createSnapshot()).andReturn(SNAPSHOT1);
+    Capture<MutateWork<?, ?>> transaction = createCapture();
+    expect(primaryStorage.write(capture(transaction))).andReturn(null);
+    distributedStore.persist(SNAPSHOT1);
+    shutDownNow.execute();
+
+    control.replay();
+
+    clock.advance(INTERVAL);
+    storageBackup.createSnapshot();
+    indexedRecovery.stage(storageBackup.createBackupName());
+    assertEquals(
+        IScheduledTask.setFromBuilders(SNAPSHOT1.getTasks()),
+        indexedRecovery.query(Query.unscoped()));
+    assertEquals(
+        IScheduledTask.setFromBuilders(ImmutableSet.of(TASK1)),
+        indexedRecovery.query(Query.jobScoped(Tasks.SCHEDULED_TO_JOB_KEY.apply(
+            IScheduledTask.build(TASK1)))));
+    assertEquals(
+        IScheduledTask.setFromBuilders(ImmutableSet.of(TASK2)),
+        indexedRecovery.query(Query.taskScoped(Tasks.id(TASK2), "unknown")));
+    indexedRecovery.commit();
+    transaction.getValue().apply(storeProvider);
+  }
+
+  @Test
+  public void testModifySnapshotBeforeCommitIndexed() throws Exception {
+    expect(snapshotStore.createSnapshot()).andReturn(SNAPSHOT1);
+    Snapshot modified = SNAPSHOT1.deepCopy().setTasks(ImmutableSet.of(TASK1));
+    Capture<MutateWork<?, ?>> transaction = createCapture();
+    expect(primaryStorage.write(capture(transaction))).andReturn(null);
+    distributedStore.persist(modified);
+    shutDownNow.execute();
+
+    control.replay();
+
+    clock.advance(INTERVAL);
+    storageBackup.createSnapshot();
+    indexedRecovery.stage(storageBackup.createBackupName());
+    indexedRecovery.deleteTasks(Query.taskScoped(Tasks.id(TASK2)));
+    assertEquals(
+        IScheduledTask.setFromBuilders(modified.getTasks()),
+        indexedRecovery.query(Query.unscoped()));
+    indexedRecovery.commit();
+    transaction.getValue().apply(storeProvider);
+  }
+
+  @Test
+  public void testUnloadIndexed() throws Exception {
+    expect(snapshotStore.createSnapshot()).andReturn(SNAPSHOT1);
+
+    control.replay();
+
+    clock.advance(INTERVAL);
+    storageBackup.createSnapshot();
+    String backup = storageBackup.createBackupName();
+    indexedRecovery.stage(backup);
+    indexedRecovery.unload();
+    indexedRecovery.stage(backup);
+    assertEquals(
+        IScheduledTask.setFromBuilders(SNAPSHOT1.getTasks()),
+        indexedRecovery.query(Query.unscoped()));
+  }
+
   @Test(expected = RecoveryException.class)
   public void testLoadUnknownBackup() throws Exception {
     control.replay();
@@ -21,24 +21,26 @@ import java.util.List;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.io.Files;
 import com.google.common.testing.TearDown;
 
 import org.junit.Before;
 import org.junit.Test;
 
-import com.twitter.aurora.codec.ThriftBinaryCodec;
+import com.twitter.aurora.gen.AssignedTask;
 import com.twitter.aurora.gen.Attribute;
 import com.twitter.aurora.gen.HostAttributes;
 import com.twitter.aurora.gen.JobConfiguration;
 import com.twitter.aurora.gen.JobKey;
 import com.twitter.aurora.gen.Quota;
+import com.twitter.aurora.gen.ScheduleStatus;
 import com.twitter.aurora.gen.ScheduledTask;
 import com.twitter.aurora.gen.storage.QuotaConfiguration;
 import com.twitter.aurora.gen.storage.SchedulerMetadata;
 import com.twitter.aurora.gen.storage.Snapshot;
 import com.twitter.aurora.gen.storage.StoredJob;
 import com.twitter.aurora.scheduler.storage.SnapshotStore;
+import com.twitter.aurora.scheduler.storage.backup.BackupFormat.BackupContents;
+import com.twitter.aurora.scheduler.storage.backup.BackupFormat.BackupType;
 import com.twitter.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImpl;
 import com.twitter.aurora.scheduler.storage.backup.StorageBackup.StorageBackupImpl.BackupConfig;
 import com.twitter.common.io.FileUtils;
@@ -49,6 +51,7 @@ import com.twitter.common.util.testing.FakeClock;
 
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class StorageBackupTest extends EasyMockTest {
 
@@ -92,12 +95,85 @@ public class StorageBackupTest extends EasyMockTest {
     assertBackupCount(1);
     assertEquals(1, storageBackup.getSuccesses().get());
 
-    Snapshot restored = ThriftBinaryCodec.decode(
-        Snapshot.class,
-        Files.toByteArray(config.getDir().listFiles()[0]));
+    Snapshot restored = BackupFormat.read(config.getDir().listFiles()[0]).getSnapshot();
     assertEquals(snapshot, restored);
   }
 
+  @Test
+  public void testIncrementalBackups() throws Exception {
+    config = new BackupConfig(config.getDir(), 2, INTERVAL, 2);
+    storageBackup = new StorageBackupImpl(delegate, clock, config);
+
+    Snapshot full = makeSnapshot().setTasks(ImmutableSet.of(
+        makeTask("a", ScheduleStatus.PENDING),
+        makeTask("b", ScheduleStatus.RUNNING)));
+    Snapshot firstIncremental = full.deepCopy().setTasks(ImmutableSet.of(
+        makeTask("a", ScheduleStatus.RUNNING),
+        makeTask("b", ScheduleStatus.RUNNING)));
+    Snapshot secondIncremental = firstIncremental.deepCopy()
+        .setTasks(ImmutableSet.of(
+            makeTask("a", ScheduleStatus.RUNNING),
+            makeTask("c", ScheduleStatus.PENDING)))
+        .setJobs(ImmutableSet.<StoredJob>of());
+    Snapshot nextFull = secondIncremental.deepCopy();
+    expect(delegate.createSnapshot()).andReturn(full);
+    expect(delegate.createSnapshot()).andReturn(firstIncremental);
+    expect(delegate.createSnapshot()).andReturn(secondIncremental);
+    expect(delegate.createSnapshot()).andReturn(nextFull);
+
+    control.replay();
+
+    String fullName = backup();
+    assertEquals(BackupType.FULL, BackupFormat.read(backupFile(fullName)).getType());
+
+    String firstIncrementalName = backup();
+    BackupContents contents = BackupFormat.read(backupFile(firstIncrementalName));
+    assertEquals(BackupType.INCREMENTAL, contents.getType());
+    assertEquals(fullName, contents.getBaseName().get());
+    assertEquals(
+        ImmutableSet.of(makeTask("a", ScheduleStatus.RUNNING)),
+        contents.getSnapshot().getTasks());
+    assertEquals(firstIncremental, BackupFormat.restore(config.getDir(), firstIncrementalName));
+
+    // The full backup is retained beyond max_saved_backups while an incremental depends on it.
+    String secondIncrementalName = backup();
+    contents = BackupFormat.read(backupFile(secondIncrementalName));
+    assertEquals(ImmutableSet.of("b"), contents.getDeletedTaskIds());
+    assertEquals(
+        ImmutableSet.of(new JobKey("owner", "env", "jobA")),
+        contents.getDeletedJobs());
+    assertEquals(secondIncremental, BackupFormat.restore(config.getDir(), secondIncrementalName));
+    assertTrue(backupFile(fullName).exists());
+    assertEquals(2, storageBackup.getIncrementals().get());
+
+    String nextFullName = backup();
+    assertEquals(BackupType.FULL, BackupFormat.read(backupFile(nextFullName)).getType());
+    assertEquals(
+        ImmutableSet.of(
+            fullName,
+            secondIncrementalName,
+            nextFullName,
+            BackupManifest.MANIFEST_NAME),
+        ImmutableSet.copyOf(config.getDir().list()));
+    assertEquals(4, storageBackup.getSuccesses().get());
+  }
+
+  private String backup() {
+    clock.advance(INTERVAL);
+    storageBackup.createSnapshot();
+    return storageBackup.createBackupName();
+  }
+
+  private File backupFile(String name) {
+    return new File(config.getDir(), name);
+  }
+
+  private static ScheduledTask makeTask(String id, ScheduleStatus status) {
+    return new ScheduledTask()
+        .setStatus(status)
+        .setAssignedTask(new AssignedTask().setTaskId(id));
+  }
+
   @Test
   public void testDirectoryMissing() {
     Snapshot snapshot = makeSnapshot();
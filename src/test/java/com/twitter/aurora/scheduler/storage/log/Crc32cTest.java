@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.log;
+
+import java.util.Random;
+
+import com.google.common.base.Charsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class Crc32cTest {
+
+  private static long checksum(byte[] data) {
+    Crc32c crc = new Crc32c();
+    crc.update(data, 0, data.length);
+    return crc.getValue();
+  }
+
+  @Test
+  public void testKnownValues() {
+    assertEquals(0L, checksum(new byte[0]));
+    assertEquals(0xE3069283L, checksum("123456789".getBytes(Charsets.US_ASCII)));
+    // From RFC 3720, appendix B.4.
+    assertEquals(0x8A9136AAL, checksum(new byte[32]));
+  }
+
+  @Test
+  public void testIncrementalUpdates() {
+    byte[] data = new byte[1000];
+    new Random(0).nextBytes(data);
+    long expected = checksum(data);
+
+    for (int split = 0; split < 20; split++) {
+      Crc32c crc = new Crc32c();
+      crc.update(data, 0, split);
+      crc.update(data[split]);
+      crc.update(data, split + 1, data.length - split - 1);
+      assertEquals(expected, crc.getValue());
+    }
+  }
+
+  @Test
+  public void testReset() {
+    byte[] data = "123456789".getBytes(Charsets.US_ASCII);
+    Crc32c crc = new Crc32c();
+    crc.update(data, 0, 4);
+    crc.reset();
+    crc.update(data, 0, data.length);
+    assertEquals(0xE3069283L, crc.getValue());
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.log;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import com.twitter.aurora.codec.ThriftBinaryCodec;
+import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
+import com.twitter.aurora.gen.AssignedTask;
+import com.twitter.aurora.gen.ScheduleStatus;
+import com.twitter.aurora.gen.ScheduledTask;
+import com.twitter.aurora.gen.TaskConfig;
+import com.twitter.aurora.gen.storage.LogEntry;
+import com.twitter.aurora.gen.storage.Snapshot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FramesTest {
+
+  private static final LogEntry ENTRY = LogEntry.snapshot(new Snapshot()
+      .setTimestamp(1L)
+      .setTasks(ImmutableSet.of(
+          new ScheduledTask().setStatus(ScheduleStatus.RUNNING)
+              .setAssignedTask(new AssignedTask().setTaskId("task_id")
+                  .setTask(new TaskConfig().setJobName("job_name"))))));
+
+  private static List<ByteBuffer> chunks(byte[][] frames) {
+    List<ByteBuffer> chunks = Lists.newArrayList();
+    for (int i = 1; i < frames.length; i++) {
+      assertTrue(Frames.isChunk(frames[i]));
+      chunks.add(Frames.chunkData(frames[i]));
+    }
+    return chunks;
+  }
+
+  @Test
+  public void testUnframed() throws CodingException {
+    byte[] encoded = ThriftBinaryCodec.encode(ENTRY);
+
+    byte[][] frames = Frames.serialize(ENTRY, encoded.length);
+    assertEquals(1, frames.length);
+    assertArrayEquals(encoded, frames[0]);
+    assertFalse(Frames.isFrame(frames[0]));
+  }
+
+  @Test
+  public void testFramed() throws CodingException {
+    byte[] encoded = ThriftBinaryCodec.encode(ENTRY);
+
+    for (int maxEntrySize = Frames.HEADER_SIZE; maxEntrySize < encoded.length; maxEntrySize++) {
+      byte[][] frames = Frames.serialize(ENTRY, maxEntrySize);
+      assertTrue(Frames.isHeader(frames[0]));
+      Frames.Header header = Frames.header(frames[0]);
+      assertEquals(frames.length - 1, header.chunkCount);
+      assertEquals(encoded.length, header.length);
+      for (byte[] frame : frames) {
+        assertTrue(frame.length <= maxEntrySize);
+      }
+      assertEquals(ENTRY, Frames.decode(header, chunks(frames)));
+    }
+  }
+
+  @Test(expected = CodingException.class)
+  public void testMissingChunk() throws CodingException {
+    byte[][] frames = Frames.serialize(ENTRY, ThriftBinaryCodec.encode(ENTRY).length / 2);
+    List<ByteBuffer> chunks = chunks(frames);
+    chunks.remove(chunks.size() - 1);
+    Frames.decode(Frames.header(frames[0]), chunks);
+  }
+
+  @Test(expected = CodingException.class)
+  public void testCorruptChunk() throws CodingException {
+    byte[][] frames = Frames.serialize(ENTRY, ThriftBinaryCodec.encode(ENTRY).length / 2);
+    frames[1][Frames.CHUNK_HEADER_SIZE] ^= 1;
+    Frames.decode(Frames.header(frames[0]), chunks(frames));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.log;
+
+import java.io.File;
+import java.util.Arrays;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.codec.ThriftBinaryCodec.CodingException;
+import com.twitter.aurora.gen.AssignedTask;
+import com.twitter.aurora.gen.ScheduleStatus;
+import com.twitter.aurora.gen.ScheduledTask;
+import com.twitter.aurora.gen.storage.SchedulerMetadata;
+import com.twitter.aurora.gen.storage.Snapshot;
+import com.twitter.aurora.scheduler.storage.log.LocalCheckpoint.Checkpoint;
+import com.twitter.common.io.FileUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class LocalCheckpointTest {
+
+  private static final byte[] POSITION = {0, 0, 0, 0, 0, 0, 0, 42};
+
+  private File dir;
+  private File file;
+  private LocalCheckpoint checkpoint;
+
+  @Before
+  public void setUp() {
+    dir = FileUtils.createTempDir();
+    file = new File(dir, "checkpoint");
+    checkpoint = new LocalCheckpoint(file);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    org.apache.commons.io.FileUtils.deleteDirectory(dir);
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Snapshot snapshot = makeSnapshot();
+    checkpoint.save(POSITION, snapshot);
+
+    Checkpoint loaded = checkpoint.load().get();
+    assertArrayEquals(POSITION, loaded.getPosition());
+    assertEquals(snapshot, loaded.getSnapshot());
+  }
+
+  @Test
+  public void testMappedInWindows() throws Exception {
+    Snapshot snapshot = makeSnapshot();
+    checkpoint.save(POSITION, snapshot);
+
+    Checkpoint loaded = new LocalCheckpoint(file, 7).load().get();
+    assertArrayEquals(POSITION, loaded.getPosition());
+    assertEquals(snapshot, loaded.getSnapshot());
+  }
+
+  @Test
+  public void testReplace() throws Exception {
+    checkpoint.save(POSITION, makeSnapshot());
+    Snapshot snapshot = new Snapshot().setTimestamp(2L);
+    checkpoint.save(new byte[] {1}, snapshot);
+
+    Checkpoint loaded = checkpoint.load().get();
+    assertArrayEquals(new byte[] {1}, loaded.getPosition());
+    assertEquals(snapshot, loaded.getSnapshot());
+  }
+
+  @Test
+  public void testMissing() throws Exception {
+    assertFalse(checkpoint.load().isPresent());
+  }
+
+  @Test
+  public void testDelete() throws Exception {
+    checkpoint.save(POSITION, makeSnapshot());
+    checkpoint.delete();
+    assertFalse(checkpoint.load().isPresent());
+  }
+
+  @Test(expected = CodingException.class)
+  public void testCorrupt() throws Exception {
+    checkpoint.save(POSITION, makeSnapshot());
+
+    byte[] contents = Files.toByteArray(file);
+    contents[contents.length / 2] ^= 0xFF;
+    Files.write(contents, file);
+
+    checkpoint.load();
+  }
+
+  @Test(expected = CodingException.class)
+  public void testTruncated() throws Exception {
+    checkpoint.save(POSITION, makeSnapshot());
+
+    byte[] contents = Files.toByteArray(file);
+    Files.write(Arrays.copyOf(contents, contents.length - 1), file);
+
+    checkpoint.load();
+  }
+
+  @Test(expected = CodingException.class)
+  public void testEmpty() throws Exception {
+    Files.write(new byte[0], file);
+
+    checkpoint.load();
+  }
+
+  private static Snapshot makeSnapshot() {
+    ImmutableSet.Builder<ScheduledTask> tasks = ImmutableSet.builder();
+    for (int i = 0; i < 100; i++) {
+      tasks.add(new ScheduledTask()
+          .setStatus(ScheduleStatus.RUNNING)
+          .setAssignedTask(new AssignedTask().setTaskId("task-" + i).setSlaveHost("host-" + i)));
+    }
+    return new Snapshot()
+        .setTimestamp(1L)
+        .setTasks(tasks.build())
+        .setSchedulerMetadata(new SchedulerMetadata().setFrameworkId("frameworkId"));
+  }
+}
@@ -25,6 +25,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -60,8 +61,10 @@ import com.twitter.aurora.scheduler.base.JobKeys;
 import com.twitter.aurora.scheduler.log.Log;
 import com.twitter.aurora.scheduler.log.Log.Entry;
 import com.twitter.aurora.scheduler.log.Log.Position;
+import com.twitter.aurora.scheduler.log.Log.PositionedEntry;
 import com.twitter.aurora.scheduler.log.Log.Stream;
 import com.twitter.aurora.scheduler.storage.log.LogManager.StreamManager;
+import com.twitter.aurora.scheduler.storage.log.LogManager.StreamManager.EntrySerializer;
 import com.twitter.aurora.scheduler.storage.log.LogManager.StreamManager.StreamTransaction;
 import com.twitter.common.application.ShutdownRegistry;
 import com.twitter.common.base.Closure;
@@ -111,7 +114,11 @@ public class LogManagerTest extends EasyMockTest {
   }
 
   private StreamManager createStreamManager(Amount<Integer, Data> maxEntrySize) {
-    return new StreamManager(stream, false, maxEntrySize);
+    return new StreamManager(stream, false, maxEntrySize, false);
+  }
+
+  private StreamManager createLegacyStreamManager(Amount<Integer, Data> maxEntrySize) {
+    return new StreamManager(stream, false, maxEntrySize, true);
   }
 
   @Test
@@ -128,7 +135,7 @@ public class LogManagerTest extends EasyMockTest {
 
     control.replay();
 
-    new LogManager(log, NO_FRAMES_EVER_SIZE, false, shutdownRegistry).open();
+    new LogManager(log, NO_FRAMES_EVER_SIZE, false, false, shutdownRegistry).open();
 
     assertTrue(shutdownAction.hasCaptured());
     shutdownAction.getValue().execute();
@@ -327,7 +334,7 @@ public class LogManagerTest extends EasyMockTest {
 
     control.replay();
 
-    StreamManager streamManager = createStreamManager(message.chunkSize);
+    StreamManager streamManager = createLegacyStreamManager(message.chunkSize);
     StreamTransaction transaction = streamManager.startTransaction();
     transaction.add(saveFrameworkId);
 
@@ -380,6 +387,23 @@ public class LogManagerTest extends EasyMockTest {
         throw new UnsupportedOperationException();
       }
 
+      @Override
+      public Iterator<PositionedEntry> readAfter(Position position)
+          throws InvalidPositionException, StreamAccessException {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Iterator<PositionedEntry> follow(Optional<Position> position)
+          throws InvalidPositionException, StreamAccessException {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Position position(byte[] identity) throws InvalidPositionException {
+        throw new UnsupportedOperationException();
+      }
+
       @Override
       public void truncateBefore(Position position)
           throws InvalidPositionException, StreamAccessException {
@@ -392,7 +416,8 @@ public class LogManagerTest extends EasyMockTest {
       }
     };
 
-    final StreamManager streamManager = new StreamManager(mockStream, false, message1.chunkSize);
+    final StreamManager streamManager =
+        new StreamManager(mockStream, false, message1.chunkSize, true);
     StreamTransaction tr1 = streamManager.startTransaction();
     tr1.add(op1);
 
@@ -475,6 +500,60 @@ public class LogManagerTest extends EasyMockTest {
     createStreamManager(message.chunkSize).readFromBeginning(reader);
   }
 
+  @Test
+  public void testStreamManagerFollowIncompleteFrame() throws Exception {
+    LogEntry transaction1 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r1", "env", "name").newBuilder())));
+    LogEntry transaction2 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r2", "env", "name").newBuilder())));
+
+    Message message = frame(transaction1);
+
+    // The first read sees a complete entry followed by a frame whose last chunk has not been
+    // appended yet.
+    Position headerPosition = createMock(Position.class);
+    expect(stream.follow(Optional.<Position>absent())).andReturn(ImmutableList.of(
+        positionedEntry(transaction2, position1),
+        positionedEntry(message.header, headerPosition),
+        positionedEntry(message.chunks.get(0), createMock(Position.class))).iterator());
+
+    // The next read resumes after the complete entry, and sees the whole frame.
+    List<PositionedEntry> entries = Lists.newArrayList();
+    entries.add(positionedEntry(message.header, headerPosition));
+    for (LogEntry chunk : message.chunks) {
+      entries.add(positionedEntry(chunk, position2));
+    }
+    expect(stream.follow(Optional.of(position1))).andReturn(entries.iterator());
+
+    Closure<LogEntry> reader = createMock(new Clazz<Closure<LogEntry>>() { });
+    reader.execute(transaction2);
+    reader.execute(transaction1);
+
+    control.replay();
+
+    StreamManager streamManager = createStreamManager(message.chunkSize);
+    assertEquals(Optional.of(position1), streamManager.follow(Optional.<Position>absent(), reader));
+    assertEquals(Optional.of(position2), streamManager.follow(Optional.of(position1), reader));
+  }
+
+  @Test
+  public void testStreamManagerReadAfter() throws Exception {
+    LogEntry transaction1 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r1", "env", "name").newBuilder())));
+    expect(stream.readAfter(position1))
+        .andReturn(Iterators.singletonIterator(positionedEntry(transaction1, position2)));
+    expect(stream.readAfter(position2)).andReturn(Iterators.<PositionedEntry>emptyIterator());
+
+    Closure<LogEntry> reader = createMock(new Clazz<Closure<LogEntry>>() { });
+    reader.execute(transaction1);
+
+    control.replay();
+
+    StreamManager streamManager = createNoMessagesStreamManager();
+    assertSame(position2, streamManager.readAfter(position1, reader));
+    assertSame(position2, streamManager.readAfter(position2, reader));
+  }
+
   @Test
   public void testWriteAndReadDeflatedEntry() throws Exception {
     Snapshot snapshot = createSnapshot();
@@ -494,11 +573,141 @@ public class LogManagerTest extends EasyMockTest {
 
     control.replay();
 
-    StreamManager streamManager = new StreamManager(stream, true, NO_FRAMES_EVER_SIZE);
+    StreamManager streamManager = new StreamManager(stream, true, NO_FRAMES_EVER_SIZE, false);
     streamManager.snapshot(snapshot);
     streamManager.readFromBeginning(reader);
   }
 
+  @Test
+  public void testWriteAndReadFrames() throws Exception {
+    Snapshot snapshot = createSnapshot();
+    LogEntry snapshotEntry = LogEntry.snapshot(snapshot);
+    Amount<Integer, Data> maxEntrySize = Amount.of(encode(snapshotEntry).length / 3, Data.BYTES);
+
+    byte[][] frames = new EntrySerializer(maxEntrySize).serialize(snapshotEntry);
+    assertTrue(Frames.isHeader(frames[0]));
+    List<Entry> entries = Lists.newArrayList();
+    for (int i = 0; i < frames.length; i++) {
+      assertTrue(frames[i].length <= maxEntrySize.getValue());
+      if (i > 0) {
+        assertTrue(Frames.isChunk(frames[i]));
+      }
+      expect(stream.append(aryEq(frames[i]))).andReturn((i == 0) ? position1 : position2);
+      entries.add(entry(frames[i]));
+    }
+    stream.truncateBefore(position1);
+    expect(stream.readAll()).andReturn(entries.iterator());
+
+    Closure<LogEntry> reader = createMock(new Clazz<Closure<LogEntry>>() { });
+    reader.execute(snapshotEntry);
+
+    control.replay();
+
+    StreamManager streamManager = createStreamManager(maxEntrySize);
+    assertSame(position2, streamManager.snapshot(snapshot));
+    streamManager.readFromBeginning(reader);
+  }
+
+  @Test
+  public void testStreamManagerReadAbortedFrames() throws Exception {
+    LogEntry transaction1 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r1", "env", "name").newBuilder())));
+    LogEntry transaction2 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r2", "env", "name").newBuilder())));
+
+    Amount<Integer, Data> maxEntrySize = Amount.of(encode(transaction1).length / 2, Data.BYTES);
+    byte[][] frames = new EntrySerializer(maxEntrySize).serialize(transaction1);
+    assertTrue(frames.length > 2);
+
+    List<Entry> entries = Lists.newArrayList();
+    // Should be read and skipped.
+    entries.add(entry(frames[1]));
+    // An aborted frame, which should be skipped.
+    entries.add(entry(frames[0]));
+    entries.add(entry(frames[1]));
+    // Should be read as 1 entry.
+    entries.add(entry(encode(transaction2)));
+    // Should be read as 1 entry.
+    for (byte[] frame : frames) {
+      entries.add(entry(frame));
+    }
+    expect(stream.readAll()).andReturn(entries.iterator());
+
+    Closure<LogEntry> reader = createMock(new Clazz<Closure<LogEntry>>() { });
+    reader.execute(transaction2);
+    reader.execute(transaction1);
+
+    control.replay();
+
+    createStreamManager(maxEntrySize).readFromBeginning(reader);
+  }
+
+  @Test
+  public void testStreamManagerReadBadFrameHeader() throws Exception {
+    LogEntry transaction1 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r1", "env", "name").newBuilder())));
+    LogEntry transaction2 = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r2", "env", "name").newBuilder())));
+
+    Amount<Integer, Data> maxEntrySize = Amount.of(encode(transaction1).length / 2, Data.BYTES);
+    byte[][] frames = new EntrySerializer(maxEntrySize).serialize(transaction1);
+    // The header is not checksummed, corrupt the chunk count after its format and type bytes.
+    ByteBuffer.wrap(frames[0]).putInt(2, Integer.MAX_VALUE);
+
+    List<Entry> entries = Lists.newArrayList();
+    // The frame should be skipped.
+    for (byte[] frame : frames) {
+      entries.add(entry(frame));
+    }
+    // Should be read as 1 entry.
+    entries.add(entry(encode(transaction2)));
+    expect(stream.readAll()).andReturn(entries.iterator());
+
+    Closure<LogEntry> reader = createMock(new Clazz<Closure<LogEntry>>() { });
+    reader.execute(transaction2);
+
+    control.replay();
+
+    createStreamManager(maxEntrySize).readFromBeginning(reader);
+  }
+
+  @Test(expected = CodingException.class)
+  public void testStreamManagerReadCorruptFrame() throws Exception {
+    LogEntry transaction = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("r1", "env", "name").newBuilder())));
+
+    Amount<Integer, Data> maxEntrySize = Amount.of(encode(transaction).length / 2, Data.BYTES);
+    byte[][] frames = new EntrySerializer(maxEntrySize).serialize(transaction);
+    frames[1][frames[1].length - 1] ^= 1;
+
+    List<Entry> entries = Lists.newArrayList();
+    for (byte[] frame : frames) {
+      entries.add(entry(frame));
+    }
+    expect(stream.readAll()).andReturn(entries.iterator());
+
+    Closure<LogEntry> reader = createMock(new Clazz<Closure<LogEntry>>() { });
+
+    control.replay();
+
+    createStreamManager(maxEntrySize).readFromBeginning(reader);
+  }
+
+  private Entry entry(byte[] contents) {
+    Entry entry = createMock(Entry.class);
+    expect(entry.contents()).andReturn(contents);
+    return entry;
+  }
+
+  private PositionedEntry positionedEntry(LogEntry logEntry, Position position)
+      throws CodingException {
+
+    PositionedEntry entry = createMock(PositionedEntry.class);
+    expect(entry.contents()).andReturn(encode(logEntry));
+    expect(entry.position()).andReturn(position);
+    return entry;
+  }
+
   private Snapshot createSnapshot() {
     return new Snapshot()
         .setTimestamp(1L)
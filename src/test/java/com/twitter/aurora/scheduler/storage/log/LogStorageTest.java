@@ -15,6 +15,7 @@
  */
 package com.twitter.aurora.scheduler.storage.log;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -68,10 +69,13 @@ import com.twitter.aurora.scheduler.base.Tasks;
 import com.twitter.aurora.scheduler.log.Log;
 import com.twitter.aurora.scheduler.log.Log.Entry;
 import com.twitter.aurora.scheduler.log.Log.Position;
+import com.twitter.aurora.scheduler.log.Log.PositionedEntry;
 import com.twitter.aurora.scheduler.log.Log.Stream;
+import com.twitter.aurora.scheduler.log.Log.Stream.InvalidPositionException;
 import com.twitter.aurora.scheduler.storage.SnapshotStore;
 import com.twitter.aurora.scheduler.storage.Storage.MutableStoreProvider;
 import com.twitter.aurora.scheduler.storage.Storage.MutateWork;
+import com.twitter.aurora.scheduler.storage.StorageProfiler;
 import com.twitter.aurora.scheduler.storage.entities.IJobConfiguration;
 import com.twitter.aurora.scheduler.storage.entities.IJobKey;
 import com.twitter.aurora.scheduler.storage.entities.ILock;
@@ -86,10 +90,12 @@ import com.twitter.aurora.scheduler.storage.testing.StorageTestUtil;
 import com.twitter.common.application.ShutdownRegistry;
 import com.twitter.common.base.Command;
 import com.twitter.common.base.ExceptionalCommand;
+import com.twitter.common.io.FileUtils;
 import com.twitter.common.quantity.Amount;
 import com.twitter.common.quantity.Data;
 import com.twitter.common.quantity.Time;
 import com.twitter.common.testing.easymock.EasyMockTest;
+import com.twitter.common.util.testing.FakeClock;
 
 import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.eq;
@@ -97,13 +103,18 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.notNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class LogStorageTest extends EasyMockTest {
 
   private static final Amount<Long, Time> SNAPSHOT_INTERVAL = Amount.of(1L, Time.MINUTES);
+  private static final Amount<Long, Time> FOLLOW_INTERVAL = Amount.of(1L, Time.SECONDS);
+  private static final Amount<Long, Time> NO_FOLLOWING = Amount.of(0L, Time.SECONDS);
+  private static final long MAX_UNSNAPSHOTTED_TRANSACTIONS = 2;
   private static final long NOW = 42L;
 
+  private LogManager logManager;
   private LogStorage logStorage;
   private Log log;
   private Stream stream;
@@ -119,30 +130,47 @@ public class LogStorageTest extends EasyMockTest {
     log = createMock(Log.class);
 
     shutdownRegistry = createMock(ShutdownRegistry.class);
-    LogManager logManager = new LogManager(log, Amount.of(1, Data.GB), false, shutdownRegistry);
+    logManager = new LogManager(log, Amount.of(1, Data.GB), false, false, shutdownRegistry);
 
     schedulingService = createMock(SchedulingService.class);
     snapshotStore = createMock(new Clazz<SnapshotStore<Snapshot>>() { });
     storageUtil = new StorageTestUtil(this);
 
-    logStorage =
-        new LogStorage(logManager,
-            schedulingService,
-            snapshotStore,
-            SNAPSHOT_INTERVAL,
-            storageUtil.storage,
-            storageUtil.schedulerStore,
-            storageUtil.jobStore,
-            storageUtil.taskStore,
-            storageUtil.lockStore,
-            storageUtil.quotaStore,
-            storageUtil.attributeStore);
+    logStorage = createLogStorage(NO_FOLLOWING, Optional.<File>absent());
 
     stream = createMock(Stream.class);
     streamMatcher = LogOpMatcher.matcherFor(stream);
     position = createMock(Position.class);
   }
 
+  private LogStorage createLogStorage(
+      Amount<Long, Time> followInterval,
+      Optional<File> checkpointFile) {
+
+    return new LogStorage(logManager,
+        schedulingService,
+        snapshotStore,
+        new SnapshotPolicy(
+            new FakeClock(),
+            SNAPSHOT_INTERVAL,
+            Amount.of(0L, Time.SECONDS),
+            Amount.of(0L, Time.SECONDS),
+            MAX_UNSNAPSHOTTED_TRANSACTIONS,
+            Amount.of(0L, Data.BYTES),
+            Amount.of(0L, Time.SECONDS),
+            0.5),
+        new StorageProfiler(),
+        followInterval,
+        checkpointFile,
+        storageUtil.storage,
+        storageUtil.schedulerStore,
+        storageUtil.jobStore,
+        storageUtil.taskStore,
+        storageUtil.lockStore,
+        storageUtil.quotaStore,
+        storageUtil.attributeStore);
+  }
+
   @Test
   public void testStart() throws Exception {
     // We should open the log and arrange for its clean shutdown.
@@ -204,7 +232,8 @@ public class LogStorageTest extends EasyMockTest {
           }
         });
 
-    // We should perform a snapshot when the snapshot thread runs.
+    // We should perform a snapshot when the snapshot thread runs, since the recovered transactions
+    // reach the snapshot policy's limit.
     Capture<Runnable> snapshotAction = createCapture();
     schedulingService.doEvery(eq(SNAPSHOT_INTERVAL), capture(snapshotAction));
     Snapshot snapshotContents = new Snapshot()
@@ -240,6 +269,106 @@ public class LogStorageTest extends EasyMockTest {
     shutdownStream.getValue().execute();
   }
 
+  @Test
+  public void testFollowBeforeStart() throws Exception {
+    LogStorage followingStorage = createLogStorage(FOLLOW_INTERVAL, Optional.<File>absent());
+    storageUtil.expectOperations();
+
+    expect(log.open()).andReturn(stream);
+    shutdownRegistry.addAction(EasyMock.<Command>notNull());
+    Capture<Runnable> followAction = createCapture();
+    schedulingService.doEvery(eq(FOLLOW_INTERVAL), capture(followAction));
+
+    // While not leading, new entries are applied to local storage as they are seen.
+    Position followedPosition = createMock(Position.class);
+    expect(stream.follow(Optional.<Position>absent())).andReturn(Iterators.singletonIterator(
+        positionedEntry(Op.saveFrameworkId(new SaveFrameworkId("bob")), followedPosition)));
+    storageUtil.schedulerStore.saveFrameworkId("bob");
+
+    // On start only the tail of the log is replayed.
+    expect(stream.readAfter(followedPosition)).andReturn(Iterators.singletonIterator(
+        positionedEntry(Op.saveFrameworkId(new SaveFrameworkId("jim")), position)));
+    storageUtil.schedulerStore.saveFrameworkId("jim");
+    schedulingService.doEvery(eq(SNAPSHOT_INTERVAL), notNull(Runnable.class));
+
+    control.replay();
+
+    followingStorage.prepare();
+    followAction.getValue().run();
+    followingStorage.start(MutateWork.NOOP);
+
+    // Following stops once started.
+    followAction.getValue().run();
+  }
+
+  @Test
+  public void testRecoverFromLocalCheckpoint() throws Exception {
+    File checkpointFile = new File(FileUtils.createTempDir(), "checkpoint");
+    Snapshot snapshot = new Snapshot().setTimestamp(NOW);
+    new LocalCheckpoint(checkpointFile).save(new byte[] {1}, snapshot);
+    LogStorage checkpointedStorage = createLogStorage(NO_FOLLOWING, Optional.of(checkpointFile));
+    storageUtil.expectOperations();
+
+    expect(log.open()).andReturn(stream);
+    shutdownRegistry.addAction(EasyMock.<Command>notNull());
+
+    // The checkpoint is applied in place of reading the snapshot from the log.
+    Position checkpointPosition = createMock(Position.class);
+    expect(stream.position(EasyMock.aryEq(new byte[] {1}))).andReturn(checkpointPosition);
+    snapshotStore.applySnapshot(snapshot);
+
+    expect(stream.readAfter(checkpointPosition)).andReturn(Iterators.singletonIterator(
+        positionedEntry(Op.saveFrameworkId(new SaveFrameworkId("jim")), position)));
+    storageUtil.schedulerStore.saveFrameworkId("jim");
+    schedulingService.doEvery(eq(SNAPSHOT_INTERVAL), notNull(Runnable.class));
+
+    control.replay();
+
+    checkpointedStorage.prepare();
+    checkpointedStorage.start(MutateWork.NOOP);
+  }
+
+  @Test
+  public void testLocalCheckpointFallback() throws Exception {
+    File checkpointFile = new File(FileUtils.createTempDir(), "checkpoint");
+    Snapshot snapshot = new Snapshot().setTimestamp(NOW);
+    new LocalCheckpoint(checkpointFile).save(new byte[] {1}, snapshot);
+    LogStorage checkpointedStorage = createLogStorage(NO_FOLLOWING, Optional.of(checkpointFile));
+    storageUtil.expectOperations();
+
+    expect(log.open()).andReturn(stream);
+    shutdownRegistry.addAction(EasyMock.<Command>notNull());
+
+    Position checkpointPosition = createMock(Position.class);
+    expect(stream.position(EasyMock.aryEq(new byte[] {1}))).andReturn(checkpointPosition);
+    snapshotStore.applySnapshot(snapshot);
+
+    // The checkpoint turns out to be from some other log, so local state is discarded and the
+    // whole log is replayed.
+    expect(stream.readAfter(checkpointPosition))
+        .andThrow(new InvalidPositionException("Past the end"));
+    snapshotStore.applySnapshot(new Snapshot());
+    Entry entry = createMock(Entry.class);
+    expect(entry.contents()).andReturn(ThriftBinaryCodec.encodeNonNull(
+        createTransaction(Op.saveFrameworkId(new SaveFrameworkId("jim")))));
+    expect(stream.readAll()).andReturn(Iterators.singletonIterator(entry));
+    storageUtil.schedulerStore.saveFrameworkId("jim");
+    schedulingService.doEvery(eq(SNAPSHOT_INTERVAL), notNull(Runnable.class));
+
+    control.replay();
+
+    checkpointedStorage.prepare();
+    checkpointedStorage.start(MutateWork.NOOP);
+    assertFalse(checkpointFile.exists());
+  }
+
+  private PositionedEntry positionedEntry(Op op, Position entryPosition) throws CodingException {
+    PositionedEntry entry = createMock(PositionedEntry.class);
+    expect(entry.contents()).andReturn(ThriftBinaryCodec.encodeNonNull(createTransaction(op)));
+    expect(entry.position()).andReturn(entryPosition);
+    return entry;
+  }
+
   abstract class MutationFixture {
     private final AtomicBoolean runCalled = new AtomicBoolean(false);
 
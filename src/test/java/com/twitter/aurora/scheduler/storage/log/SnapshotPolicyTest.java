@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.log;
+
+import com.google.common.base.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.scheduler.storage.log.SnapshotPolicy.Reason;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Data;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.util.testing.FakeClock;
+
+import static org.junit.Assert.assertEquals;
+
+public class SnapshotPolicyTest {
+
+  private static final Amount<Long, Time> CHECK_INTERVAL = Amount.of(10L, Time.SECONDS);
+  private static final Amount<Long, Time> MIN_INTERVAL = Amount.of(1L, Time.MINUTES);
+  private static final Amount<Long, Time> MAX_INTERVAL = Amount.of(1L, Time.HOURS);
+  private static final long MAX_TRANSACTIONS = 100;
+  private static final long MAX_BYTES = Amount.of(1L, Data.MB).as(Data.BYTES);
+  private static final Amount<Long, Time> MAX_REPLAY_TIME = Amount.of(10L, Time.SECONDS);
+
+  private FakeClock clock;
+  private SnapshotPolicy policy;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock();
+    policy = new SnapshotPolicy(
+        clock,
+        CHECK_INTERVAL,
+        MIN_INTERVAL,
+        MAX_INTERVAL,
+        MAX_TRANSACTIONS,
+        Amount.of(MAX_BYTES, Data.BYTES),
+        MAX_REPLAY_TIME,
+        0.5);
+  }
+
+  @Test
+  public void testQuiet() {
+    clock.advance(MAX_INTERVAL);
+    assertEquals(Optional.<Reason>absent(), policy.check(0, 0));
+  }
+
+  @Test
+  public void testMinInterval() {
+    clock.advance(Amount.of(59L, Time.SECONDS));
+    assertEquals(Optional.<Reason>absent(), policy.check(MAX_TRANSACTIONS, MAX_BYTES));
+    clock.advance(Amount.of(1L, Time.SECONDS));
+    assertEquals(Optional.of(Reason.TRANSACTIONS), policy.check(MAX_TRANSACTIONS, MAX_BYTES));
+  }
+
+  @Test
+  public void testTriggers() {
+    clock.advance(MIN_INTERVAL);
+    assertEquals(Optional.<Reason>absent(), policy.check(MAX_TRANSACTIONS - 1, MAX_BYTES - 1));
+    assertEquals(Optional.of(Reason.TRANSACTIONS), policy.check(MAX_TRANSACTIONS, 1));
+    assertEquals(Optional.of(Reason.BYTES), policy.check(1, MAX_BYTES));
+
+    // Replaying 1 KB took 1 second, so 10 KB of log would take 10 seconds to replay.
+    policy.recordReplay(1024, Amount.of(1L, Time.SECONDS).as(Time.NANOSECONDS));
+    assertEquals(Optional.<Reason>absent(), policy.check(1, 9 * 1024));
+    assertEquals(Optional.of(Reason.REPLAY_TIME), policy.check(1, 10 * 1024));
+  }
+
+  @Test
+  public void testMaxInterval() {
+    clock.advance(MIN_INTERVAL);
+    assertEquals(Optional.<Reason>absent(), policy.check(1, 1));
+    clock.advance(MAX_INTERVAL);
+    assertEquals(Optional.of(Reason.INTERVAL), policy.check(1, 1));
+
+    policy.snapshotTaken();
+    clock.advance(MIN_INTERVAL);
+    assertEquals(Optional.<Reason>absent(), policy.check(1, 1));
+  }
+
+  @Test
+  public void testDeferredForContention() {
+    clock.advance(MIN_INTERVAL);
+    policy.recordWriteWait(Amount.of(40L, Time.SECONDS).as(Time.NANOSECONDS));
+    assertEquals(Optional.<Reason>absent(), policy.check(MAX_TRANSACTIONS, 1));
+
+    // Contention is measured over the time since the last check.
+    clock.advance(CHECK_INTERVAL);
+    assertEquals(Optional.of(Reason.TRANSACTIONS), policy.check(MAX_TRANSACTIONS, 1));
+  }
+
+  @Test
+  public void testContentionDoesNotDeferPastMaxInterval() {
+    clock.advance(MAX_INTERVAL);
+    policy.recordWriteWait(MAX_INTERVAL.as(Time.NANOSECONDS));
+    assertEquals(Optional.of(Reason.TRANSACTIONS), policy.check(MAX_TRANSACTIONS, 1));
+  }
+}
@@ -98,6 +98,47 @@ public class InternerTest {
     assertFalse(interner.isInterned(JOAN));
   }
 
+  @Test
+  public void testHits() {
+    assertSame(JOAN, interner.addAssociation(JOAN, BOB));
+    assertEquals(0, interner.getHits());
+    assertSame(JOAN, interner.addAssociation(JOAN, BOB2));
+    assertEquals(0, interner.getHits());
+    assertSame(JOAN, interner.addAssociation(SAME_JOAN, BARRY));
+    assertEquals(1, interner.getHits());
+    assertEquals(1, interner.size());
+  }
+
+  @Test
+  public void testKnownHash() {
+    assertSame(JOAN, interner.addAssociation(JOAN, JOAN.hashCode(), BOB));
+    assertSame(JOAN, interner.addAssociation(SAME_JOAN, BOB2));
+    interner.removeAssociation(SAME_JOAN, SAME_JOAN.hashCode(), BOB);
+    interner.removeAssociation(JOAN, JOAN.hashCode(), BOB2);
+    assertFalse(interner.isInterned(JOAN));
+  }
+
+  @Test
+  public void testStripes() {
+    interner = new Interner<>(1);
+    assertSame(JOAN, interner.addAssociation(JOAN, BOB));
+    assertSame(STEVE, interner.addAssociation(STEVE, BOB));
+    assertEquals(2, interner.size());
+
+    interner = new Interner<>(64);
+    for (int i = 0; i < 1000; i++) {
+      interner.addAssociation(new Internable("value" + i), BOB);
+    }
+    assertEquals(1000, interner.size());
+    interner.clear();
+    assertEquals(0, interner.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidStripes() {
+    new Interner<Internable, String>(3);
+  }
+
   private static class Internable {
     private final String value;
 
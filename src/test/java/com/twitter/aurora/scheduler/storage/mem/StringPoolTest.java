@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.storage.mem;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StringPoolTest {
+
+  private StringPool pool;
+
+  @Before
+  public void setUp() {
+    pool = new StringPool();
+  }
+
+  @Test
+  public void testIntern() {
+    String first = new String("host");
+    String second = new String("host");
+    assertNotSame(first, second);
+
+    assertSame(first, pool.intern(first));
+    assertEquals(0, pool.getHits());
+    assertSame(first, pool.intern(second));
+    assertEquals(1, pool.getHits());
+    assertTrue(pool.getSavedBytes() > 0);
+  }
+
+  @Test
+  public void testNull() {
+    assertNull(pool.intern(null));
+    assertEquals(0, pool.getHits());
+  }
+}
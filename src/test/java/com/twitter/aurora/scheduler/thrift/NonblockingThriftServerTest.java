@@ -0,0 +1,261 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.thrift;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.concurrent.CountDownLatch;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.gen.AuroraAdmin;
+import com.twitter.aurora.gen.Response;
+import com.twitter.aurora.scheduler.thrift.NonblockingThriftServer.Settings;
+import com.twitter.common.io.FileUtils;
+import com.twitter.common.testing.easymock.EasyMockTest;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import static com.twitter.aurora.gen.ResponseCode.OK;
+
+public class NonblockingThriftServerTest extends EasyMockTest {
+
+  private static final Response VERSION = new Response().setResponseCode(OK).setMessage("v");
+  // Larger than an SSL record, so that it is sent in several packets.
+  private static final String LARGE = Strings.repeat("x", 100 * 1024);
+
+  private AuroraAdmin.Iface iface;
+  private NonblockingThriftServer server;
+  private TTransport transport;
+  private int port;
+  private File keyDir;
+
+  @Before
+  public void setUp() {
+    iface = createMock(AuroraAdmin.Iface.class);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (transport != null) {
+      transport.close();
+    }
+    server.shutdown();
+    if (keyDir != null) {
+      org.apache.commons.io.FileUtils.deleteDirectory(keyDir);
+    }
+  }
+
+  private void start(Settings settings, Optional<SSLContext> sslContext) throws Exception {
+    server = new NonblockingThriftServer(
+        new AuroraAdmin.Processor(iface),
+        ImmutableSet.of("getVersion", "getJobs"),
+        settings,
+        sslContext);
+    port = server.start(0);
+  }
+
+  private AuroraAdmin.Client startAndConnect(Settings settings) throws Exception {
+    start(settings, Optional.<SSLContext>absent());
+    return connect();
+  }
+
+  private AuroraAdmin.Client connect() throws Exception {
+    transport = open();
+    return new AuroraAdmin.Client(new TBinaryProtocol(transport));
+  }
+
+  private TTransport open() throws Exception {
+    TTransport framed = new TFramedTransport(new TSocket("localhost", port));
+    framed.open();
+    return framed;
+  }
+
+  @Test
+  public void testRequests() throws Exception {
+    expect(iface.getVersion()).andReturn(VERSION).times(3);
+
+    control.replay();
+
+    AuroraAdmin.Client client = startAndConnect(new Settings(2, 10, 1024 * 1024));
+    for (int i = 0; i < 3; i++) {
+      assertEquals(VERSION, client.getVersion());
+    }
+  }
+
+  @Test
+  public void testOverloaded() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    expect(iface.getVersion()).andAnswer(new IAnswer<Response>() {
+      @Override public Response answer() throws InterruptedException {
+        started.countDown();
+        release.await();
+        return VERSION;
+      }
+    }).times(2);
+
+    control.replay();
+
+    // One request occupies the only worker, a second waits in the queue.
+    final AuroraAdmin.Client blocked = startAndConnect(new Settings(1, 1, 1024 * 1024));
+    Thread first = new Thread() {
+      @Override public void run() {
+        try {
+          blocked.getVersion();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    first.start();
+    started.await();
+
+    TTransport queuedTransport = open();
+    final AuroraAdmin.Client queued = new AuroraAdmin.Client(new TBinaryProtocol(queuedTransport));
+    Thread second = new Thread() {
+      @Override public void run() {
+        try {
+          queued.getVersion();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    second.start();
+
+    // Wait for the second request to be queued.
+    while (server.queuedRequests() == 0) {
+      Thread.sleep(10);
+    }
+
+    TTransport rejectedTransport = open();
+    try {
+      new AuroraAdmin.Client(new TBinaryProtocol(rejectedTransport)).getVersion();
+      fail("Request should have been rejected.");
+    } catch (TApplicationException e) {
+      assertEquals(TApplicationException.INTERNAL_ERROR, e.getType());
+    } finally {
+      rejectedTransport.close();
+    }
+
+    release.countDown();
+    first.join();
+    second.join();
+    queuedTransport.close();
+  }
+
+  private File createKeyStore() throws Exception {
+    keyDir = FileUtils.createTempDir();
+    File keyStore = new File(keyDir, "keystore.jks");
+    Process keytool = new ProcessBuilder(
+        new File(System.getProperty("java.home"), "bin/keytool").getPath(),
+        "-genkeypair",
+        "-alias", "thrift",
+        "-keyalg", "RSA",
+        "-keysize", "2048",
+        "-dname", "CN=localhost",
+        "-validity", "1",
+        "-storetype", "JKS",
+        "-keystore", keyStore.getPath(),
+        "-storepass", ThriftServerLauncher.SSL_KEYFILE_PASSWORD,
+        "-keypass", ThriftServerLauncher.SSL_KEYFILE_PASSWORD)
+        .inheritIO()
+        .start();
+    assertEquals(0, keytool.waitFor());
+    return keyStore;
+  }
+
+  private static SSLContext createServerContext(final File keyStore) {
+    return ThriftServerLauncher.createSslContext(new ThriftConfiguration() {
+      @Override public Optional<? extends InputStream> getSslKeyStream() throws IOException {
+        return Optional.of(new FileInputStream(keyStore));
+      }
+
+      @Override public int getServingPort() {
+        return 0;
+      }
+    }).get();
+  }
+
+  private static SSLContext createClientContext(File keyStore) throws Exception {
+    KeyStore trusted = KeyStore.getInstance("JKS");
+    InputStream in = new FileInputStream(keyStore);
+    try {
+      trusted.load(in, ThriftServerLauncher.SSL_KEYFILE_PASSWORD.toCharArray());
+    } finally {
+      in.close();
+    }
+
+    TrustManagerFactory trustManagers =
+        TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    trustManagers.init(trusted);
+    SSLContext context = SSLContext.getInstance("TLS");
+    context.init(null, trustManagers.getTrustManagers(), null);
+    return context;
+  }
+
+  private static TTransport openSsl(SSLContext context, int port) throws Exception {
+    SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost", port);
+    socket.startHandshake();
+    return new TFramedTransport(new TSocket(socket));
+  }
+
+  @Test
+  public void testSslRequests() throws Exception {
+    Response large = new Response().setResponseCode(OK).setMessage(LARGE);
+    expect(iface.getVersion()).andReturn(VERSION).times(2);
+    expect(iface.getJobs(LARGE)).andReturn(large);
+
+    control.replay();
+
+    File keyStore = createKeyStore();
+    start(new Settings(2, 10, 1024 * 1024), Optional.of(createServerContext(keyStore)));
+    SSLContext clientContext = createClientContext(keyStore);
+
+    TTransport closed = openSsl(clientContext, port);
+    AuroraAdmin.Client client = new AuroraAdmin.Client(new TBinaryProtocol(closed));
+    assertEquals(VERSION, client.getVersion());
+    // The request and response each span several SSL records.
+    assertEquals(large, client.getJobs(LARGE));
+    closed.close();
+
+    // The server keeps serving other clients once a client closes its connection.
+    transport = openSsl(clientContext, port);
+    assertEquals(VERSION, new AuroraAdmin.Client(new TBinaryProtocol(transport)).getVersion());
+  }
+}
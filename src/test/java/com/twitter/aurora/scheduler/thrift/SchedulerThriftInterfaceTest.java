@@ -86,6 +86,8 @@ import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
 import com.twitter.aurora.scheduler.storage.entities.ITaskConfig;
 import com.twitter.aurora.scheduler.storage.testing.StorageTestUtil;
 import com.twitter.aurora.scheduler.thrift.aop.AopModule;
+import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.application.ShutdownRegistry.ShutdownRegistryImpl;
 import com.twitter.common.testing.easymock.EasyMockTest;
 import com.twitter.common.util.Clock;
 import com.twitter.common.util.testing.FakeClock;
@@ -162,6 +164,7 @@ public class SchedulerThriftInterfaceTest extends EasyMockTest {
         bind(Recovery.class).toInstance(recovery);
         bind(MaintenanceController.class).toInstance(maintenance);
         bind(CronJobManager.class).toInstance(cronJobManager);
+        bind(ShutdownRegistry.class).toInstance(new ShutdownRegistryImpl());
         bind(AuroraAdmin.Iface.class).to(SchedulerThriftInterface.class);
       }
     };
@@ -46,6 +46,7 @@ import com.twitter.aurora.scheduler.storage.entities.IQuota;
 import com.twitter.aurora.scheduler.storage.testing.StorageTestUtil;
 import com.twitter.aurora.scheduler.thrift.auth.ThriftAuthModule;
 import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.application.ShutdownRegistry.ShutdownRegistryImpl;
 import com.twitter.common.testing.easymock.EasyMockTest;
 
 import static org.easymock.EasyMock.expectLastCall;
@@ -142,7 +143,7 @@ public class ThriftIT extends EasyMockTest {
             bindMock(Recovery.class);
             bindMock(SchedulerCore.class);
             bindMock(LockManager.class);
-            bindMock(ShutdownRegistry.class);
+            bind(ShutdownRegistry.class).toInstance(new ShutdownRegistryImpl());
             bindMock(StateManager.class);
             storageTestUtil = new StorageTestUtil(ThriftIT.this);
             bind(Storage.class).toInstance(storageTestUtil.storage);
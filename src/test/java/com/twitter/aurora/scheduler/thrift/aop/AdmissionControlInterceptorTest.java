@@ -0,0 +1,254 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.thrift.aop;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.matcher.Matchers;
+
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.auth.CapabilityValidator;
+import com.twitter.aurora.auth.CapabilityValidator.AuditCheck;
+import com.twitter.aurora.auth.CapabilityValidator.Capability;
+import com.twitter.aurora.auth.SessionValidator.AuthFailedException;
+import com.twitter.aurora.gen.AuroraAdmin;
+import com.twitter.aurora.gen.Hosts;
+import com.twitter.aurora.gen.Identity;
+import com.twitter.aurora.gen.JobKey;
+import com.twitter.aurora.gen.Response;
+import com.twitter.aurora.gen.SessionKey;
+import com.twitter.aurora.gen.TaskQuery;
+import com.twitter.aurora.scheduler.thrift.auth.DecoratedThrift;
+import com.twitter.common.quantity.Amount;
+import com.twitter.common.quantity.Time;
+import com.twitter.common.testing.easymock.EasyMockTest;
+import com.twitter.common.util.testing.FakeClock;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import static com.twitter.aurora.gen.ResponseCode.ERROR;
+import static com.twitter.aurora.gen.ResponseCode.OK;
+
+public class AdmissionControlInterceptorTest extends EasyMockTest {
+
+  private static final String ROLE_A = "a";
+  private static final String ROLE_B = "b";
+  private static final KnownRoles KNOWN_ROLES = new KnownRoles(ImmutableSet.of(ROLE_A, ROLE_B));
+  private static final SessionKey SESSION = new SessionKey();
+  private static final SessionKey OTHER_SESSION = new SessionKey().setMechanism("other");
+  private static final Response OK_RESPONSE = new Response().setResponseCode(OK);
+
+  private AuroraAdmin.Iface realThrift;
+  private CapabilityValidator capabilityValidator;
+  private FakeClock clock;
+
+  @Before
+  public void setUp() {
+    realThrift = createMock(AuroraAdmin.Iface.class);
+    capabilityValidator = createMock(CapabilityValidator.class);
+    clock = new FakeClock();
+  }
+
+  private AuroraAdmin.Iface decorate(
+      double readRate,
+      Map<String, Double> methodRates,
+      int concurrency) {
+
+    return decorate(readRate, 0, methodRates, concurrency);
+  }
+
+  private AuroraAdmin.Iface decorate(
+      double readRate,
+      double mutationRate,
+      Map<String, Double> methodRates,
+      int concurrency) {
+
+    final AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(
+        new AdmissionControlInterceptor.Settings(
+            readRate,
+            mutationRate,
+            methodRates,
+            concurrency,
+            concurrency,
+            Amount.of(0L, Time.MILLISECONDS)),
+        clock);
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        MockDecoratedThrift.bindForwardedMock(binder(), realThrift);
+        bind(KnownRoles.class).toInstance(KNOWN_ROLES);
+        bind(CapabilityValidator.class).toInstance(capabilityValidator);
+        AopModule.bindThriftDecorator(
+            binder(),
+            Matchers.annotatedWith(DecoratedThrift.class),
+            interceptor);
+      }
+    });
+    return injector.getInstance(AuroraAdmin.Iface.class);
+  }
+
+  private static TaskQuery query(String role) {
+    return new TaskQuery().setOwner(new Identity().setRole(role));
+  }
+
+  @Test
+  public void testRoleRateLimited() throws Exception {
+    expect(realThrift.getJobs(ROLE_A)).andReturn(OK_RESPONSE).times(3);
+    expect(realThrift.getJobs(ROLE_B)).andReturn(OK_RESPONSE);
+
+    control.replay();
+
+    AuroraAdmin.Iface thrift = decorate(2, ImmutableMap.<String, Double>of(), 10);
+    assertSame(OK_RESPONSE, thrift.getJobs(ROLE_A));
+    assertSame(OK_RESPONSE, thrift.getJobs(ROLE_A));
+    assertEquals(ERROR, thrift.getJobs(ROLE_A).getResponseCode());
+
+    // Other roles have their own budget.
+    assertSame(OK_RESPONSE, thrift.getJobs(ROLE_B));
+
+    clock.advance(Amount.of(500L, Time.MILLISECONDS));
+    assertSame(OK_RESPONSE, thrift.getJobs(ROLE_A));
+    assertEquals(ERROR, thrift.getJobs(ROLE_A).getResponseCode());
+  }
+
+  @Test
+  public void testUnknownRolesShareBudget() throws Exception {
+    expect(realThrift.getJobs("c")).andReturn(OK_RESPONSE);
+    expect(realThrift.getJobs(ROLE_A)).andReturn(OK_RESPONSE);
+
+    control.replay();
+
+    AuroraAdmin.Iface thrift = decorate(1, ImmutableMap.<String, Double>of(), 10);
+    assertSame(OK_RESPONSE, thrift.getJobs("c"));
+    assertEquals(ERROR, thrift.getJobs("d").getResponseCode());
+    assertSame(OK_RESPONSE, thrift.getJobs(ROLE_A));
+  }
+
+  @Test
+  public void testUnauthenticatedCallsShareBudget() throws Exception {
+    JobKey job = new JobKey(ROLE_A, "env", "job");
+    expect(capabilityValidator.checkAuthenticated(OTHER_SESSION, ImmutableSet.of(ROLE_A)))
+        .andThrow(new AuthFailedException("Not a member of role a"))
+        .times(2);
+    expect(capabilityValidator.checkAuthorized(OTHER_SESSION, Capability.ROOT, AuditCheck.NONE))
+        .andThrow(new AuthFailedException("Not an administrator"))
+        .times(2);
+    expect(capabilityValidator.checkAuthenticated(SESSION, ImmutableSet.of(ROLE_A)))
+        .andReturn(null);
+    expect(realThrift.startCronJob(job, OTHER_SESSION)).andReturn(OK_RESPONSE);
+    expect(realThrift.startCronJob(job, SESSION)).andReturn(OK_RESPONSE);
+
+    control.replay();
+
+    AuroraAdmin.Iface thrift = decorate(0, 1, ImmutableMap.<String, Double>of(), 10);
+    assertSame(OK_RESPONSE, thrift.startCronJob(job, OTHER_SESSION));
+    assertEquals(ERROR, thrift.startCronJob(job, OTHER_SESSION).getResponseCode());
+
+    // Calls that fail authentication do not use up the budget of the role they name.
+    assertSame(OK_RESPONSE, thrift.startCronJob(job, SESSION));
+  }
+
+  @Test
+  public void testMethodRateOverride() throws Exception {
+    expect(realThrift.getTasksStatus(query(ROLE_A))).andReturn(OK_RESPONSE);
+    expect(realThrift.getJobs(ROLE_A)).andReturn(OK_RESPONSE).times(3);
+
+    control.replay();
+
+    AuroraAdmin.Iface thrift = decorate(3, ImmutableMap.of("getTasksStatus", 1.0), 10);
+    assertSame(OK_RESPONSE, thrift.getTasksStatus(query(ROLE_A)));
+    assertEquals(ERROR, thrift.getTasksStatus(query(ROLE_A)).getResponseCode());
+    for (int i = 0; i < 3; i++) {
+      assertSame(OK_RESPONSE, thrift.getJobs(ROLE_A));
+    }
+  }
+
+  @Test
+  public void testAdminBypassesLimits() throws Exception {
+    Hosts hosts = new Hosts();
+    expect(realThrift.maintenanceStatus(hosts, SESSION)).andReturn(OK_RESPONSE).times(5);
+
+    control.replay();
+
+    AuroraAdmin.Iface thrift = decorate(1, ImmutableMap.<String, Double>of(), 1);
+    for (int i = 0; i < 5; i++) {
+      assertSame(OK_RESPONSE, thrift.maintenanceStatus(hosts, SESSION));
+    }
+  }
+
+  @Test
+  public void testLaneFull() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    expect(realThrift.getJobs(ROLE_A)).andAnswer(new IAnswer<Response>() {
+      @Override public Response answer() throws InterruptedException {
+        started.countDown();
+        release.await();
+        return OK_RESPONSE;
+      }
+    });
+    expect(realThrift.getJobs(ROLE_B)).andReturn(OK_RESPONSE);
+
+    control.replay();
+
+    final AuroraAdmin.Iface thrift = decorate(0, ImmutableMap.<String, Double>of(), 1);
+    Thread blocked = new Thread() {
+      @Override public void run() {
+        try {
+          thrift.getJobs(ROLE_A);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    blocked.start();
+    started.await();
+
+    assertEquals(ERROR, thrift.getJobs(ROLE_B).getResponseCode());
+    release.countDown();
+    blocked.join();
+    assertSame(OK_RESPONSE, thrift.getJobs(ROLE_B));
+  }
+
+  @Test
+  public void testGetRole() throws Exception {
+    assertEquals(
+        ROLE_A,
+        Interceptors.getRole(
+            AuroraAdmin.Iface.class.getMethod("getTasksStatus", TaskQuery.class),
+            new Object[] {query(ROLE_A)}));
+    assertEquals(
+        ROLE_B,
+        Interceptors.getRole(
+            AuroraAdmin.Iface.class.getMethod("startCronJob", JobKey.class, SessionKey.class),
+            new Object[] {new JobKey(ROLE_B, "env", "job"), SESSION}));
+    assertEquals(
+        Interceptors.UNKNOWN_ROLE,
+        Interceptors.getRole(
+            AuroraAdmin.Iface.class.getMethod("getVersion"),
+            new Object[] {}));
+  }
+}
@@ -32,6 +32,9 @@ import com.twitter.aurora.gen.JobConfiguration;
 import com.twitter.aurora.gen.Response;
 import com.twitter.aurora.gen.ResponseCode;
 import com.twitter.aurora.gen.SessionKey;
+import com.twitter.aurora.scheduler.storage.Storage;
+import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.application.ShutdownRegistry.ShutdownRegistryImpl;
 import com.twitter.common.testing.easymock.EasyMockTest;
 
 import static org.easymock.EasyMock.expect;
@@ -44,6 +47,7 @@ public class AopModuleTest extends EasyMockTest {
 
   private CapabilityValidator capabilityValidator;
   private Iface mockThrift;
+  private Storage storage;
 
   @Before
   public void setUp() throws Exception {
@@ -52,6 +56,7 @@ public class AopModuleTest extends EasyMockTest {
         .andReturn("user")
         .anyTimes();
     mockThrift = createMock(Iface.class);
+    storage = createMock(Storage.class);
   }
 
   private Iface getIface(Map<String, Boolean> toggledMethods) {
@@ -59,6 +64,8 @@ public class AopModuleTest extends EasyMockTest {
         new AbstractModule() {
           @Override protected void configure() {
             bind(CapabilityValidator.class).toInstance(capabilityValidator);
+            bind(Storage.class).toInstance(storage);
+            bind(ShutdownRegistry.class).toInstance(new ShutdownRegistryImpl());
             MockDecoratedThrift.bindForwardedMock(binder(), mockThrift);
           }
         },
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.thrift.aop;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.gen.AssignedTask;
+import com.twitter.aurora.gen.Identity;
+import com.twitter.aurora.gen.Quota;
+import com.twitter.aurora.gen.ScheduledTask;
+import com.twitter.aurora.gen.TaskConfig;
+import com.twitter.aurora.scheduler.base.Query;
+import com.twitter.aurora.scheduler.storage.entities.IQuota;
+import com.twitter.aurora.scheduler.storage.entities.IScheduledTask;
+import com.twitter.aurora.scheduler.storage.testing.StorageTestUtil;
+import com.twitter.common.testing.easymock.EasyMockTest;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+
+public class KnownRolesTest extends EasyMockTest {
+
+  private StorageTestUtil storageUtil;
+  private KnownRoles knownRoles;
+  private KnownRoles.Refresher refresher;
+
+  @Before
+  public void setUp() {
+    storageUtil = new StorageTestUtil(this);
+    storageUtil.expectOperations();
+    knownRoles = new KnownRoles();
+    refresher = new KnownRoles.Refresher(
+        knownRoles,
+        storageUtil.storage,
+        createMock(ScheduledExecutorService.class));
+  }
+
+  private static IScheduledTask makeTask(String role) {
+    return IScheduledTask.build(new ScheduledTask()
+        .setAssignedTask(new AssignedTask()
+            .setTaskId(role + "-task")
+            .setTask(new TaskConfig()
+                .setOwner(new Identity().setRole(role).setUser("user"))
+                .setEnvironment("test")
+                .setJobName("job"))));
+  }
+
+  @Test
+  public void testRefresh() {
+    storageUtil.expectTaskFetch(Query.unscoped(), makeTask("a"));
+    expect(storageUtil.quotaStore.fetchQuotas())
+        .andReturn(ImmutableMap.of("b", IQuota.build(new Quota(1.0, 1, 1))));
+
+    control.replay();
+
+    assertEquals(Interceptors.UNKNOWN_ROLE, knownRoles.validate("a"));
+    refresher.refresh();
+    assertEquals("a", knownRoles.validate("a"));
+    assertEquals("b", knownRoles.validate("b"));
+    assertEquals(Interceptors.UNKNOWN_ROLE, knownRoles.validate("c"));
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.aurora.scheduler.thrift.aop;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.matcher.Matchers;
+
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.twitter.aurora.auth.CapabilityValidator;
+import com.twitter.aurora.gen.AuroraAdmin;
+import com.twitter.aurora.gen.ExecutorConfig;
+import com.twitter.aurora.gen.JobConfigValidation;
+import com.twitter.aurora.gen.JobConfiguration;
+import com.twitter.aurora.gen.Lock;
+import com.twitter.aurora.gen.Response;
+import com.twitter.aurora.gen.ScheduleStatus;
+import com.twitter.aurora.gen.SessionKey;
+import com.twitter.aurora.gen.TaskConfig;
+import com.twitter.aurora.gen.TaskQuery;
+import com.twitter.aurora.scheduler.thrift.auth.DecoratedThrift;
+import com.twitter.common.application.ShutdownRegistry;
+import com.twitter.common.application.ShutdownRegistry.ShutdownRegistryImpl;
+import com.twitter.common.testing.easymock.EasyMockTest;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static com.twitter.aurora.gen.ResponseCode.OK;
+
+public class LoggingInterceptorTest extends EasyMockTest {
+
+  private static final SessionKey SESSION = new SessionKey();
+  private static final Response OK_RESPONSE = new Response().setResponseCode(OK);
+
+  private final Logger logger = Logger.getLogger(LoggingInterceptor.class.getName());
+  private final List<String> messages = new CopyOnWriteArrayList<String>();
+  private final CountDownLatch logged = new CountDownLatch(1);
+  private final Handler handler = new Handler() {
+    @Override public void publish(LogRecord record) {
+      messages.add(record.getMessage());
+      logged.countDown();
+    }
+
+    @Override public void flush() {
+      // No-op.
+    }
+
+    @Override public void close() {
+      // No-op.
+    }
+  };
+
+  private CapabilityValidator validator;
+  private AuroraAdmin.Iface realThrift;
+
+  @Before
+  public void setUp() {
+    validator = createMock(CapabilityValidator.class);
+    realThrift = createMock(AuroraAdmin.Iface.class);
+    logger.addHandler(handler);
+  }
+
+  @After
+  public void tearDown() {
+    logger.removeHandler(handler);
+  }
+
+  private AuroraAdmin.Iface decorate(final LoggingInterceptor interceptor) {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override protected void configure() {
+        bind(CapabilityValidator.class).toInstance(validator);
+        bind(ShutdownRegistry.class).toInstance(new ShutdownRegistryImpl());
+        MockDecoratedThrift.bindForwardedMock(binder(), realThrift);
+        AopModule.bindThriftDecorator(
+            binder(),
+            Matchers.annotatedWith(DecoratedThrift.class),
+            interceptor);
+      }
+    });
+    return injector.getInstance(AuroraAdmin.Iface.class);
+  }
+
+  @Test
+  public void testReadsSampledMutationsLogged() throws Exception {
+    TaskQuery query = new TaskQuery().setJobName("job");
+    Lock lock = new Lock();
+    expect(validator.toString(SESSION)).andReturn("user").anyTimes();
+    expect(realThrift.getJobs("role")).andReturn(OK_RESPONSE);
+    expect(realThrift.killTasks(query, lock, SESSION)).andReturn(OK_RESPONSE);
+
+    control.replay();
+
+    AuroraAdmin.Iface thrift = decorate(new LoggingInterceptor(10, 0));
+    thrift.getJobs("role");
+    thrift.killTasks(query, lock, SESSION);
+
+    logged.await();
+    // Calls are logged in order, so the read would have been logged first.
+    assertEquals(1, messages.size());
+    assertTrue(messages.get(0).startsWith("killTasks("));
+    assertTrue(messages.get(0).endsWith(", user)"));
+  }
+
+  @Test
+  public void testArgumentsRecordedBeforeCall() throws Exception {
+    final TaskQuery query = new TaskQuery().setJobName("job");
+    Lock lock = new Lock();
+    expect(validator.toString(SESSION)).andReturn("user").anyTimes();
+    expect(realThrift.killTasks(query, lock, SESSION)).andAnswer(new IAnswer<Response>() {
+      @Override public Response answer() {
+        query.setStatuses(EnumSet.of(ScheduleStatus.RUNNING));
+        return OK_RESPONSE;
+      }
+    });
+
+    control.replay();
+
+    AuroraAdmin.Iface thrift = decorate(new LoggingInterceptor(10, 1));
+    thrift.killTasks(query, lock, SESSION);
+
+    logged.await();
+    assertTrue(messages.get(0).startsWith("killTasks("));
+    assertFalse(messages.get(0).contains("RUNNING"));
+  }
+
+  @Test
+  public void testExecutorConfigBlanked() throws Exception {
+    control.replay();
+
+    LoggingInterceptor interceptor = new LoggingInterceptor(10, 1);
+    decorate(interceptor);
+    JobConfiguration config = new JobConfiguration()
+        .setTaskConfig(new TaskConfig().setExecutorConfig(new ExecutorConfig("name", "secret")));
+    String message = interceptor.format(
+        AuroraAdmin.Iface.class.getMethod(
+            "populateJobConfig",
+            JobConfiguration.class,
+            JobConfigValidation.class),
+        new Object[] {config, null});
+
+    assertTrue(message.startsWith("populateJobConfig("));
+    assertTrue(message.contains("BLANKED"));
+    assertFalse(message.contains("secret"));
+    assertEquals("secret", config.getTaskConfig().getExecutorConfig().getData());
+  }
+}
@@ -35,6 +35,7 @@ import com.twitter.common.testing.easymock.EasyMockTest;
 
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
 import static com.twitter.aurora.gen.ResponseCode.OK;
@@ -42,41 +43,66 @@ import static com.twitter.aurora.gen.ResponseCode.OK;
 public class ThriftStatsExporterInterceptorTest extends EasyMockTest {
 
   private static final String ROLE = "bob";
+  private static final String UNTRACKED_ROLE = "alice";
+  private static final KnownRoles KNOWN_ROLES =
+      new KnownRoles(ImmutableSet.of(ROLE, UNTRACKED_ROLE));
 
   private AuroraAdmin.Iface realThrift;
-  private AuroraAdmin.Iface decoratedThrift;
-  private ThriftStatsExporterInterceptor statsInterceptor;
 
   @Before
   public void setUp() {
-    statsInterceptor = new ThriftStatsExporterInterceptor();
     realThrift = createMock(AuroraAdmin.Iface.class);
+  }
+
+  private AuroraAdmin.Iface decorate(boolean roleStats) {
+    final ThriftStatsExporterInterceptor statsInterceptor =
+        new ThriftStatsExporterInterceptor(roleStats);
     Injector injector = Guice.createInjector(new AbstractModule() {
       @Override protected void configure() {
         MockDecoratedThrift.bindForwardedMock(binder(), realThrift);
+        bind(KnownRoles.class).toInstance(KNOWN_ROLES);
         AopModule.bindThriftDecorator(
             binder(),
             Matchers.annotatedWith(DecoratedThrift.class),
             statsInterceptor);
       }
     });
-    decoratedThrift = injector.getInstance(AuroraAdmin.Iface.class);
+    return injector.getInstance(AuroraAdmin.Iface.class);
   }
 
-  @Test
-  public void testIncrementStat() throws Exception {
-    Response response = new Response().setResponseCode(OK)
+  private static Response jobsResponse() {
+    return new Response().setResponseCode(OK)
         .setResult(Result.getJobsResult(new GetJobsResult()
         .setConfigs(ImmutableSet.<JobConfiguration>of())));
+  }
+
+  @Test
+  public void testIncrementStat() throws Exception {
+    Response response = jobsResponse();
 
     expect(realThrift.getJobs(ROLE)).andReturn(response);
     control.replay();
 
-    assertSame(response, decoratedThrift.getJobs(ROLE));
+    assertSame(response, decorate(true).getJobs(ROLE));
     assertNotNull(Stats.getVariable("scheduler_thrift_getJobs_events"));
     assertNotNull(Stats.getVariable("scheduler_thrift_getJobs_events_per_sec"));
     assertNotNull(Stats.getVariable("scheduler_thrift_getJobs_nanos_per_event"));
     assertNotNull(Stats.getVariable("scheduler_thrift_getJobs_nanos_total"));
     assertNotNull(Stats.getVariable("scheduler_thrift_getJobs_nanos_total_per_sec"));
+    assertNotNull(Stats.getVariable("scheduler_thrift_getJobs_latency_nanos_p50"));
+    assertNotNull(Stats.getVariable("scheduler_thrift_getJobs_latency_nanos_p999"));
+    assertNotNull(Stats.getVariable("scheduler_thrift_role_bob_latency_nanos_p99"));
+    assertNotNull(Stats.getVariable("scheduler_thrift_response_OK_latency_nanos_p90"));
+  }
+
+  @Test
+  public void testRoleStatsDisabled() throws Exception {
+    Response response = jobsResponse();
+
+    expect(realThrift.getJobs(UNTRACKED_ROLE)).andReturn(response);
+    control.replay();
+
+    assertSame(response, decorate(false).getJobs(UNTRACKED_ROLE));
+    assertNull(Stats.getVariable("scheduler_thrift_role_alice_latency_nanos_p99"));
   }
 }
@@ -18,7 +18,10 @@ from twitter.thermos.common.path import TaskPath
 from twitter.thermos.config.schema import SimpleTask
 from twitter.thermos.core.runner import TaskRunner
 
-from gen.twitter.aurora.comm.ttypes import AdjustRetainedTasks, SchedulerMessage
+from gen.twitter.aurora.comm.ttypes import (
+    AdjustRetainedTasks,
+    GcExecutorCapabilities,
+    SchedulerMessage)
 from gen.twitter.aurora.constants import LIVE_STATES, TERMINAL_STATES
 from gen.twitter.aurora.ttypes import ScheduleStatus
 from gen.twitter.thermos.ttypes import ProcessState, TaskState
@@ -88,6 +91,7 @@ class ProxyDriver(object):
   def __init__(self):
     self.stopped = threading.Event()
     self.updates = []
+    self.update_data = {}
     self.messages = []
 
   def stop(self):
@@ -95,6 +99,7 @@ class ProxyDriver(object):
 
   def sendStatusUpdate(self, update):
     self.updates.append(StatusUpdate(update.state, update.task_id.value))
+    self.update_data[update.task_id.value] = update.data
 
   def sendFrameworkMessage(self, message):
     self.messages.append(thrift_deserialize(SchedulerMessage(), message))
@@ -451,6 +456,32 @@ def test_gc_multiple_launchtasks():
   assert not proxy_driver.stopped.is_set()
   assert len(proxy_driver.updates) >= 1
   assert StatusUpdate(mesos.TASK_FINISHED, TASK2) in proxy_driver.updates
+  # The dropped task reports that the executor applies incremental messages.
+  assert thrift_deserialize(
+      GcExecutorCapabilities(), proxy_driver.update_data[TASK2]).incremental
+
+
+def test_gc_incremental_launchtasks():
+  TASK2, TASK3 = "task2", "task3"
+  proxy_driver = ProxyDriver()
+  with temporary_dir() as td:
+    executor = build_blocking_gc_executor(td, proxy_driver)
+    # An incremental message cannot be applied without a prior message.
+    executor.launchTask(proxy_driver, serialize_art(AdjustRetainedTasks(
+        retainedTasks={'a': ScheduleStatus.RUNNING}, incremental=True)))
+    thread_yield()
+    assert StatusUpdate(mesos.TASK_FAILED, TASK_ID) in proxy_driver.updates
+    executor.launchTask(proxy_driver, serialize_art(AdjustRetainedTasks(
+        retainedTasks={'a': ScheduleStatus.RUNNING, 'b': ScheduleStatus.RUNNING}), task_id=TASK2))
+    thread_yield()
+    executor.launchTask(proxy_driver, serialize_art(AdjustRetainedTasks(
+        retainedTasks={'b': ScheduleStatus.FINISHED, 'c': ScheduleStatus.STARTING},
+        incremental=True,
+        releasedTasks=set(['a'])), task_id=TASK3))
+    thread_yield()
+    assert executor._retained_tasks == {
+        'b': ScheduleStatus.FINISHED, 'c': ScheduleStatus.STARTING}
+  assert not proxy_driver.stopped.is_set()
 
 
 def test_gc_shutdown():